@@ -0,0 +1,104 @@
+package com.evenza.backend.model;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * An in-memory H2 database in MySQL mode behind a Hibernate session factory configured
+ * like application.properties, counting the statements sent to the database.
+ */
+final class BenchmarkDatabase {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final SessionFactory sessionFactory;
+
+    BenchmarkDatabase(String name, Class<?>... entities) {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+
+        Configuration configuration = new Configuration();
+        for (Class<?> entity : entities) {
+            configuration.addAnnotatedClass(entity);
+        }
+        configuration.getProperties().put(AvailableSettings.DATASOURCE, counting(h2));
+        // Spring Boot's column naming, which the entities' indexes are written against
+        configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
+        configuration.setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        configuration.setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+        configuration.setProperty(AvailableSettings.ORDER_INSERTS, "true");
+        configuration.setProperty(AvailableSettings.ORDER_UPDATES, "true");
+        sessionFactory = configuration.buildSessionFactory();
+    }
+
+    SessionFactory sessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Statement executions so far; a JDBC batch counts once.
+     */
+    long roundTrips() {
+        return roundTrips.get();
+    }
+
+    void close() {
+        sessionFactory.close();
+    }
+
+    private DataSource counting(DataSource target) {
+        return proxy(DataSource.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? countingConnection(connection) : result;
+        });
+    }
+
+    private Connection countingConnection(Connection target) {
+        return proxy(Connection.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Statement statement ? countingStatement(statement) : result;
+        });
+    }
+
+    private Statement countingStatement(Statement target) {
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(BenchmarkDatabase.class.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    if (EXECUTE_METHODS.contains(method.getName())) {
+                        roundTrips.incrementAndGet();
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(BenchmarkDatabase.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
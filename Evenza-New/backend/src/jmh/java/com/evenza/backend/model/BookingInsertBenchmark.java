@@ -0,0 +1,147 @@
+package com.evenza.backend.model;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Saving a 10-seat booking in one transaction, with the IDENTITY keys bookings used to
+ * have against the application-assigned {@link com.evenza.backend.util.TimeOrderedId}
+ * keys, with JDBC batching on as in application.properties. Prints the statements sent
+ * per booking after each iteration; H2 runs in-process, so against MySQL the time
+ * difference grows with the network round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingInsertBenchmark {
+
+    private static final int SEATS = 10;
+
+    @Entity
+    @Table(name = "identity_bookings")
+    public static class IdentityBooking {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+
+        @Column(nullable = false)
+        String seatId;
+
+        @Column(nullable = false)
+        String entityType;
+
+        @Column(nullable = false)
+        String entityId;
+
+        String userId;
+
+        Long userKey;
+
+        String paymentId;
+
+        @Column(nullable = false)
+        double amount;
+
+        @Column(nullable = false)
+        LocalDateTime bookingTime = LocalDateTime.now();
+
+        @Column(nullable = false)
+        String status = "CONFIRMED";
+    }
+
+    private BenchmarkDatabase database;
+    private long bookings;
+    private long roundTripsBefore;
+    // Never reset, so payment and seat stay unique across iterations
+    private long payments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("booking_inserts", Booking.class, IdentityBooking.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounts() {
+        bookings = 0;
+        roundTripsBefore = database.roundTrips();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRoundTrips() {
+        System.out.printf("%n%.1f statements per %d-seat booking%n",
+                (double) (database.roundTrips() - roundTripsBefore) / bookings, SEATS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void identityKeys() {
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            String paymentId = "pay_" + payments++;
+            for (int seat = 1; seat <= SEATS; seat++) {
+                IdentityBooking booking = new IdentityBooking();
+                booking.seatId = "A" + seat;
+                booking.entityType = "CONCERT";
+                booking.entityId = "12";
+                booking.userId = "7";
+                booking.userKey = 7L;
+                booking.paymentId = paymentId;
+                booking.amount = 250;
+                session.persist(booking);
+            }
+            session.getTransaction().commit();
+        }
+        bookings++;
+    }
+
+    @Benchmark
+    public void timeOrderedKeys() {
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            String paymentId = "pay_" + payments++;
+            for (int seat = 1; seat <= SEATS; seat++) {
+                Booking booking = new Booking();
+                booking.setSeatId("A" + seat);
+                booking.setEntityType("CONCERT");
+                booking.setEntityId("12");
+                booking.setUserId("7");
+                // Set up front, so the user key listener has nothing to resolve
+                booking.setUserKey(7L);
+                booking.setPaymentId(paymentId);
+                booking.setAmount(250);
+                booking.setStatus("CONFIRMED");
+                session.persist(booking);
+            }
+            session.getTransaction().commit();
+        }
+        bookings++;
+    }
+}
@@ -0,0 +1,132 @@
+package com.evenza.backend.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evenza.backend.util.BookingJournal;
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+
+/**
+ * Bookings per second through the write-behind journal, appended and forced to disk
+ * before the caller is answered, against saving them straight through JPA as
+ * {@code saveAll} does. Each operation is one 10-seat booking, so the force here is one
+ * per booking and the journal service's group commit only does better. H2 runs in
+ * memory and never syncs, so the JPA side is a lower bound on what MySQL costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BookingJournalBenchmark {
+
+    private static final int SEATS = 10;
+    private static final int JOURNAL_CAPACITY = 64 * 1024 * 1024;
+
+    private BenchmarkDatabase database;
+    private Path dir;
+    private BookingJournal journal;
+    // Never reset, so payment and seat stay unique across iterations
+    private final AtomicLong payments = new AtomicLong();
+    // Appends share it; starting the full file over takes it alone, as the drainer would
+    private final ReadWriteLock drainLock = new ReentrantReadWriteLock();
+
+    @Setup
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase("journal_bookings", Booking.class);
+        dir = Files.createTempDirectory("booking-journal");
+        journal = new BookingJournal(dir.resolve("journal.dat"), JOURNAL_CAPACITY);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(dir.resolve("journal.dat"));
+        Files.deleteIfExists(dir);
+        database.close();
+    }
+
+    @Benchmark
+    public long journalAppendAndForce() {
+        List<Booking> bookings = booking();
+        // Assigned up front, as the journal service does
+        bookings.forEach(booking -> booking.setId(TimeOrderedIdGenerator.nextId()));
+        while (true) {
+            drainLock.readLock().lock();
+            try {
+                if (journal.append(bookings) >= 0) {
+                    return journal.force();
+                }
+            } finally {
+                drainLock.readLock().unlock();
+            }
+            drain();
+        }
+    }
+
+    @Benchmark
+    public void jpaSaveAll() {
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            for (Booking booking : booking()) {
+                session.persist(booking);
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    // The drainer would have caught up long before; start the file over
+    private void drain() {
+        drainLock.writeLock().lock();
+        try {
+            journal.force();
+            List<BookingJournal.Entry> entries = journal.readDurable(Integer.MAX_VALUE);
+            if (!entries.isEmpty()) {
+                journal.checkpoint(entries.get(entries.size() - 1).endPosition());
+            }
+        } finally {
+            drainLock.writeLock().unlock();
+        }
+    }
+
+    private List<Booking> booking() {
+        String paymentId = "pay_" + payments.incrementAndGet();
+        List<Booking> bookings = new ArrayList<>(SEATS);
+        for (int seat = 1; seat <= SEATS; seat++) {
+            Booking booking = new Booking();
+            booking.setSeatId("A" + seat);
+            booking.setEntityType("CONCERT");
+            booking.setEntityId("12");
+            booking.setUserId("7");
+            booking.setUserKey(7L);
+            booking.setPaymentId(paymentId);
+            booking.setAmount(250);
+            booking.setStatus("CONFIRMED");
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+}
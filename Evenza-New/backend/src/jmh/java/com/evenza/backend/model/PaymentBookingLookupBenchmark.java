@@ -0,0 +1,131 @@
+package com.evenza.backend.model;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+
+/**
+ * Finding or creating the booking of a verified payment as the bookings table grows:
+ * the old load-everything-and-filter against the indexed lookup and INSERT IGNORE that
+ * PaymentService.findOrCreateBooking does now. Each call verifies a payment that has no
+ * booking yet, the common case. The old path is slow at a million rows; leave it out
+ * with {@code -Djmh.args="PaymentBookingLookup.indexed"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PaymentBookingLookupBenchmark {
+
+    private static final String INSERT_PAYMENT_BOOKING_SQL = "INSERT IGNORE INTO bookings " +
+            "(id, seat_id, entity_type, entity_id, user_id, user_key, payment_id, amount, booking_time, status, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 'CONFIRMED', ?)";
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private long payments;
+
+    @Setup
+    public void setUp() {
+        database = new BenchmarkDatabase("payment_bookings", Booking.class);
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            session.doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_PAYMENT_BOOKING_SQL)) {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    for (int row = 0; row < rows; row++) {
+                        bind(insert, TimeOrderedIdGenerator.nextId(), "A" + (row % 200), "seeded_" + row / 4, now);
+                        insert.addBatch();
+                        if (row % 1000 == 999) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            });
+            session.getTransaction().commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Booking> findAllAndFilter() {
+        String paymentId = "pay_" + payments++;
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.createQuery("from Booking", Booking.class).getResultList().stream()
+                    .filter(booking -> paymentId.equals(booking.getPaymentId()))
+                    .findFirst();
+        }
+    }
+
+    @Benchmark
+    public Booking indexedFindOrCreate() {
+        String paymentId = "pay_" + payments++;
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            Optional<Booking> existing = findFirstByPaymentId(session, paymentId);
+            if (existing.isPresent()) {
+                session.getTransaction().commit();
+                return existing.get();
+            }
+            session.doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_PAYMENT_BOOKING_SQL)) {
+                    bind(insert, TimeOrderedIdGenerator.nextId(), "AUTO-" + paymentId, paymentId,
+                            Timestamp.valueOf(LocalDateTime.now()));
+                    insert.executeUpdate();
+                }
+            });
+            Booking booking = findFirstByPaymentId(session, paymentId).orElseThrow();
+            session.getTransaction().commit();
+            return booking;
+        }
+    }
+
+    private static Optional<Booking> findFirstByPaymentId(Session session, String paymentId) {
+        return session.createQuery("from Booking b where b.paymentId = :paymentId order by b.id", Booking.class)
+                .setParameter("paymentId", paymentId)
+                .setMaxResults(1)
+                .uniqueResultOptional();
+    }
+
+    private static void bind(PreparedStatement insert, long id, String seatId, String paymentId, Timestamp now)
+            throws SQLException {
+        insert.setLong(1, id);
+        insert.setString(2, seatId);
+        insert.setString(3, "CONCERT");
+        insert.setString(4, "12");
+        insert.setString(5, "7");
+        insert.setLong(6, 7L);
+        insert.setString(7, paymentId);
+        insert.setDouble(8, 250);
+        insert.setTimestamp(9, now);
+        insert.setTimestamp(10, now);
+    }
+}
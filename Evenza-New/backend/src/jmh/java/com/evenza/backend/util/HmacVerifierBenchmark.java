@@ -0,0 +1,78 @@
+package com.evenza.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Verifying one Razorpay payment signature: the per-call Mac, key and hex string that
+ * PaymentService used to build, against {@link HmacVerifier}. Run with {@code -prof gc}
+ * to see the allocation per verification as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class HmacVerifierBenchmark {
+
+    private static final String KEY_SECRET = "rzp_test_key_secret_0123456789";
+    private static final String ORDER_ID = "order_NxbGkqBz7T1YlC";
+    private static final String PAYMENT_ID = "pay_NxbGmQ0c8Jg2Zp";
+
+    private HmacVerifier verifier;
+    private String signature;
+
+    @Setup
+    public void setUp() {
+        verifier = new HmacVerifier(KEY_SECRET.getBytes(StandardCharsets.UTF_8));
+        signature = verifier.sign(ORDER_ID, '|', PAYMENT_ID);
+    }
+
+    @Benchmark
+    public boolean macPerCall() throws Exception {
+        return hmacSha256(ORDER_ID + "|" + PAYMENT_ID, KEY_SECRET).equals(signature);
+    }
+
+    @Benchmark
+    public boolean hmacVerifier() {
+        return verifier.verify(ORDER_ID, '|', PAYMENT_ID, signature);
+    }
+
+    // As PaymentService verified signatures before HmacVerifier
+    private static String hmacSha256(String data, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes("UTF-8"), "HmacSHA256");
+        mac.init(secretKeySpec);
+        byte[] hash = mac.doFinal(data.getBytes("UTF-8"));
+        return bytesToHex(hash);
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
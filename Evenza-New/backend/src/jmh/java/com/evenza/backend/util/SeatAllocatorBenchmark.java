@@ -0,0 +1,67 @@
+package com.evenza.backend.util;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Best-available allocation on a 60,000-seat stadium (100 sections of 20 rows of 30 seats)
+ * with seats taken at random. At high occupancy few rows can seat the party together,
+ * so the allocator scans every row and falls back to splitting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatAllocatorBenchmark {
+
+    private static final String ROWS = "ABCDEFGHIJKLMNOPQRST";
+
+    @Param({"0.5", "0.9", "0.99"})
+    private double occupancy;
+
+    @Param({"2", "6"})
+    private int quantity;
+
+    private VenueLayout stadium;
+    private BitSet taken;
+
+    @Setup
+    public void setUp() {
+        stadium = VenueLayout.of(List.of(
+                new VenueLayout.SectionGroup("EXECUTIVE", 40, ROWS, 30, 2000),
+                new VenueLayout.SectionGroup("STANDARD", 60, ROWS, 30, 1000)));
+        taken = new BitSet(stadium.getSeatCount());
+        Random random = new Random(42);
+        for (int position = 0; position < stadium.getSeatCount(); position++) {
+            if (random.nextDouble() < occupancy) {
+                taken.set(position);
+            }
+        }
+    }
+
+    @Benchmark
+    public SeatAllocator.Allocation anySection() {
+        return SeatAllocator.allocate(stadium, taken, quantity, section -> true, true);
+    }
+
+    @Benchmark
+    public SeatAllocator.Allocation standardOnly() {
+        return SeatAllocator.allocate(stadium, taken, quantity, section -> section.category().equals("STANDARD"), true);
+    }
+}
@@ -0,0 +1,101 @@
+package com.evenza.backend.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evenza.backend.model.Booking;
+
+/**
+ * Checking a 6-seat request against a show: the per-seat scan over the show's bookings
+ * that the seat check used to do, against the in-memory {@link SeatStateMap}.
+ * Half of the show is sold or held. The scan excludes loading the bookings, which it
+ * also did once per seat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatCheckBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    private int seats;
+
+    private List<Booking> bookings;
+    private SeatStateMap seatMap;
+    private List<String> requested;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime expiry = LocalDateTime.now().plusHours(1);
+        long expiryMillis = System.currentTimeMillis() + 3600_000L;
+        bookings = new ArrayList<>(seats / 2);
+        seatMap = new SeatStateMap();
+        for (int seat = 0; seat < seats; seat += 2) {
+            Booking booking = new Booking();
+            booking.setSeatId("A" + seat);
+            booking.setUserId("7");
+            if (seat % 4 == 0) {
+                booking.setStatus("CONFIRMED");
+                seatMap.markSold(List.of(booking.getSeatId()));
+            } else {
+                booking.setStatus("RESERVED");
+                booking.setReservationExpiry(expiry);
+                seatMap.markHeld(booking.getSeatId(), "7", expiryMillis);
+            }
+            bookings.add(booking);
+        }
+        // Free seats at the end of the show, the worst case for the scan
+        requested = new ArrayList<>();
+        for (int seat = seats - 11; seat < seats; seat += 2) {
+            requested.add("A" + seat);
+        }
+    }
+
+    @Benchmark
+    public int scanBookings() {
+        int taken = 0;
+        for (String seatId : requested) {
+            boolean seatTaken = bookings.stream()
+                    .filter(b -> b.getSeatId().equals(seatId))
+                    .anyMatch(b -> {
+                        if ("RESERVED".equals(b.getStatus())) {
+                            return b.getReservationExpiry() != null
+                                    && b.getReservationExpiry().isAfter(LocalDateTime.now());
+                        }
+                        return "CONFIRMED".equals(b.getStatus());
+                    });
+            if (seatTaken) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+
+    @Benchmark
+    public int seatStateMap() {
+        int taken = 0;
+        long now = System.currentTimeMillis();
+        for (String seatId : requested) {
+            if (seatMap.isTaken(seatId, now)) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,47 @@
+package com.evenza.backend.DTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.ResponseEntity;
+
+import com.evenza.backend.util.PageCursor;
+
+/**
+ * One page of a keyset-paginated list.
+ * @param nextCursor cursor of the following page, or null if this is the last one
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public static <T> CursorPage<T> empty() {
+        return new CursorPage<>(new ArrayList<>(), null);
+    }
+
+    /**
+     * Builds a page from rows fetched with one row more than the page size; that extra
+     * row only tells whether another page follows.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize,
+                                       Function<T, LocalDateTime> createdAt, Function<T, ?> id) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        T last = items.get(pageSize - 1);
+        return new CursorPage<>(items, new PageCursor(createdAt.apply(last), String.valueOf(id.apply(last))).encode());
+    }
+
+    /**
+     * The items as the response body, which keeps list responses unchanged for existing
+     * clients, and the next cursor in the {@value PageCursor#NEXT_CURSOR_HEADER} header.
+     */
+    public ResponseEntity<List<T>> toResponse() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+}
@@ -0,0 +1,9 @@
+package com.evenza.backend.DTO;
+
+/**
+ * An order created at the payment gateway, in the fields of a Razorpay order that the
+ * checkout needs.
+ * @param amount amount in paise
+ */
+public record GatewayOrder(String id, long amount, String currency, String receipt, String status) {
+}
@@ -0,0 +1,10 @@
+package com.evenza.backend.DTO;
+
+/**
+ * Projection of a payment row down to what reconciliation compares.
+ */
+public interface PaymentLedgerView {
+    String getRazorpayPaymentId();
+    double getAmount();
+    String getStatus();
+}
@@ -7,5 +7,9 @@ import lombok.Setter;
 @Getter
 public class PaymentRequest {
     private int amount; // In INR
+    // Passed to the gateway as order notes, so webhooks can attribute the payment
+    private String entityType;
+    private String entityId;
+    private String userId;
 
 }
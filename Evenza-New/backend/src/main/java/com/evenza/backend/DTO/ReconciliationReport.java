@@ -0,0 +1,34 @@
+package com.evenza.backend.DTO;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * State and totals of a reconciliation job.
+ * @param mismatches counts per mismatch type; the rows are in the CSV at {@code reportFile}
+ * @param rowsPerSecond ledger and settlement rows read per second, sort included
+ */
+public record ReconciliationReport(
+        String jobId,
+        String status,
+        String settlementFile,
+        LocalDate from,
+        LocalDate to,
+        long ledgerRows,
+        long settlementRows,
+        long skippedRows,
+        long matched,
+        Map<String, Long> mismatches,
+        String reportFile,
+        long elapsedMillis,
+        long rowsPerSecond,
+        String error) {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    public static ReconciliationReport running(String jobId, String settlementFile, LocalDate from, LocalDate to) {
+        return new ReconciliationReport(jobId, RUNNING, settlementFile, from, to, 0, 0, 0, 0, Map.of(), null, 0, 0, null);
+    }
+}
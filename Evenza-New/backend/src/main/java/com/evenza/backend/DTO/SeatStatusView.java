@@ -0,0 +1,9 @@
+package com.evenza.backend.DTO;
+
+/**
+ * Projection of a booking row down to what a seat map needs.
+ */
+public interface SeatStatusView {
+    String getSeatId();
+    String getStatus();
+}
@@ -0,0 +1,10 @@
+package com.evenza.backend.DTO;
+
+/**
+ * One payment line of a gateway settlement file.
+ * @param paymentId the gateway payment ID
+ * @param amountPaise the settled amount in paise
+ * @param line the line of the original file, for the mismatch report
+ */
+public record SettlementRecord(String paymentId, long amountPaise, long line) {
+}
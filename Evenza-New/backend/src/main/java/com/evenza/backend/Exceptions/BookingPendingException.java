@@ -0,0 +1,22 @@
+package com.evenza.backend.Exceptions;
+
+import java.util.List;
+
+import com.evenza.backend.model.Booking;
+
+/**
+ * The bookings were taken and journaled but the journal has not confirmed them as durable
+ * yet; they are written once it catches up. The sale is pending, not failed.
+ */
+public class BookingPendingException extends RuntimeException {
+    private final List<Booking> bookings;
+
+    public BookingPendingException(List<Booking> bookings) {
+        super("Booking received and pending confirmation");
+        this.bookings = bookings;
+    }
+
+    public List<Booking> getBookings() {
+        return bookings;
+    }
+}
@@ -0,0 +1,20 @@
+package com.evenza.backend.Exceptions;
+
+/**
+ * Thrown when the payment gateway cannot be reached in time or rejects a request.
+ */
+public class PaymentGatewayException extends RuntimeException {
+    private final boolean unavailable;
+
+    public PaymentGatewayException(String message, boolean unavailable, Throwable cause) {
+        super(message, cause);
+        this.unavailable = unavailable;
+    }
+
+    /**
+     * @return true if the gateway is busy or timed out, so retrying later may succeed
+     */
+    public boolean isUnavailable() {
+        return unavailable;
+    }
+}
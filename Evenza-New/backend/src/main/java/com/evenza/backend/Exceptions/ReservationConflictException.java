@@ -0,0 +1,24 @@
+package com.evenza.backend.Exceptions;
+
+/**
+ * Thrown when some reservations of a bulk state change were no longer RESERVED,
+ * because they expired or were confirmed or cancelled by another request.
+ */
+public class ReservationConflictException extends RuntimeException {
+    private final int expected;
+    private final int updated;
+
+    public ReservationConflictException(int expected, int updated) {
+        super((expected - updated) + " of " + expected + " reservations are no longer active");
+        this.expected = expected;
+        this.updated = updated;
+    }
+
+    public int getExpected() {
+        return expected;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+}
@@ -0,0 +1,18 @@
+package com.evenza.backend.Exceptions;
+
+import java.util.List;
+
+public class SeatTakenException extends RuntimeException {
+    private final List<String> seatIds;
+
+    public SeatTakenException(List<String> seatIds) {
+        super(seatIds.size() == 1
+                ? "Seat " + seatIds.get(0) + " is already taken"
+                : "Seats " + String.join(", ", seatIds) + " are already taken");
+        this.seatIds = seatIds;
+    }
+
+    public List<String> getSeatIds() {
+        return seatIds;
+    }
+}
@@ -0,0 +1,16 @@
+package com.evenza.backend.Exceptions;
+
+public class SoldOutException extends RuntimeException {
+    private final long remaining;
+
+    public SoldOutException(long remaining) {
+        super(remaining <= 0
+                ? "This show is sold out"
+                : "Only " + remaining + " seats are left for this show");
+        this.remaining = remaining;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.evenza.backend.util.PageCursor;
+
 @Configuration
 public class CorsConfig {
 
@@ -29,7 +31,8 @@ public class CorsConfig {
     
     private static final String[] EXPOSED_HEADERS = {
         "Authorization", 
-        "Content-Type"
+        "Content-Type",
+        PageCursor.NEXT_CURSOR_HEADER
     };
 
     @Bean
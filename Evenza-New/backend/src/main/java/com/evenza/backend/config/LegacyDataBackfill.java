@@ -0,0 +1,152 @@
+package com.evenza.backend.config;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.evenza.backend.services.UserKeyResolver;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Applies the data steps of the db/migration scripts that the schema update cannot.
+ *
+ * The schema comes from Hibernate's ddl-auto and the migration scripts are not run, so
+ * the new columns, tables and indexes exist but the data they depend on was never
+ * migrated. After startup a background thread:
+ * <ul>
+ * <li>de-duplicates bookings and payments and creates the unique indexes of V8 and V12
+ * when they are missing; the schema update skips an index whose rows are not unique</li>
+ * <li>sets the user key of rows written before V5, user by user; until it is done
+ * {@link UserKeyResolver} keys a user's rows on their first lookup</li>
+ * </ul>
+ * Every step checks for its work first, so once done a restart costs a few queries.
+ */
+@Component
+public class LegacyDataBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyDataBackfill.class);
+
+    private static final int USER_BATCH_SIZE = 500;
+
+    private record UniqueIndexStep(String table, String index, String dedupeSql, String createSql) {
+    }
+
+    // The same statements as V8 and V12
+    private static final List<UniqueIndexStep> UNIQUE_INDEX_STEPS = List.of(
+            new UniqueIndexStep("bookings", "uk_bookings_payment_seat",
+                    "UPDATE bookings b " +
+                    "JOIN (SELECT payment_id, MIN(id) AS first_id FROM bookings " +
+                    "      WHERE seat_id LIKE 'AUTO-%' AND payment_id IS NOT NULL " +
+                    "      GROUP BY payment_id) f ON b.id = f.first_id " +
+                    "SET b.seat_id = CONCAT('AUTO-', b.payment_id)",
+                    "CREATE UNIQUE INDEX uk_bookings_payment_seat ON bookings (payment_id, seat_id)"),
+            new UniqueIndexStep("payment", "uk_payment_razorpay_payment_id",
+                    "UPDATE payment p " +
+                    "JOIN (SELECT razorpay_payment_id, MIN(id) AS first_id FROM payment " +
+                    "      WHERE razorpay_payment_id IS NOT NULL " +
+                    "      GROUP BY razorpay_payment_id HAVING COUNT(*) > 1) f " +
+                    "  ON p.razorpay_payment_id = f.razorpay_payment_id AND p.id <> f.first_id " +
+                    "SET p.razorpay_payment_id = CONCAT(p.razorpay_payment_id, '#dup-', p.id), " +
+                    "    p.status = 'DUPLICATE'",
+                    "CREATE UNIQUE INDEX uk_payment_razorpay_payment_id ON payment (razorpay_payment_id)"));
+
+    private static final List<String> USER_SCOPED_TABLES = List.of("bookings", "payment", "tickets");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
+    private volatile boolean running;
+    private Thread backfillThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        backfillThread = new Thread(this::run, "legacy-data-backfill");
+        backfillThread.setDaemon(true);
+        backfillThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (backfillThread != null) {
+            backfillThread.interrupt();
+        }
+    }
+
+    private void run() {
+        for (UniqueIndexStep step : UNIQUE_INDEX_STEPS) {
+            try {
+                applyUniqueIndex(step);
+            } catch (Exception e) {
+                logger.error("Could not create {} on {}: {}", step.index(), step.table(), e.getMessage());
+            }
+        }
+        try {
+            if (backfillUserKeys()) {
+                userKeyResolver.markBackfilled();
+            }
+        } catch (Exception e) {
+            logger.error("User key backfill stopped, lookups keep keying rows by user: {}", e.getMessage());
+        }
+    }
+
+    private void applyUniqueIndex(UniqueIndexStep step) {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?",
+                Integer.class, step.table(), step.index());
+        if (existing != null && existing > 0) {
+            return;
+        }
+        int updated = jdbcTemplate.update(step.dedupeSql());
+        jdbcTemplate.execute(step.createSql());
+        logger.info("Created {} on {} after updating {} duplicate rows", step.index(), step.table(), updated);
+        if ("payment".equals(step.table()) && updated > 0) {
+            logger.warn("{} duplicate payments were marked DUPLICATE; rebuild the sales rollup over their range", updated);
+        }
+    }
+
+    /**
+     * @return true once no user-scoped row is left without a key
+     */
+    private boolean backfillUserKeys() {
+        long updated = 0;
+        for (String table : USER_SCOPED_TABLES) {
+            while (running) {
+                List<String> userIds = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT user_id FROM " + table + " WHERE user_key IS NULL AND user_id IS NOT NULL LIMIT ?",
+                        String.class, USER_BATCH_SIZE);
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                long batchUpdated = 0;
+                for (String userId : userIds) {
+                    batchUpdated += userKeyResolver.backfillUser(userId);
+                }
+                if (batchUpdated == 0) {
+                    logger.warn("User key backfill of {} made no progress", table);
+                    return false;
+                }
+                updated += batchUpdated;
+            }
+        }
+        if (!running) {
+            return false;
+        }
+        if (updated > 0) {
+            logger.info("User key backfill set the key of {} rows", updated);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package com.evenza.backend.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+@Configuration
+public class PaymentGatewayConfig {
+
+    /**
+     * Bulkhead for calls to the payment gateway: a fixed pool with a short queue that
+     * rejects further calls instead of letting a slow gateway pile up work. A plain
+     * executor rather than a TaskExecutor, so {@code asyncExecutor} stays the default
+     * for {@code @Async}.
+     *
+     * A call that timed out for its caller keeps its thread until the SDK's own 60 second
+     * timeout. A hanging gateway therefore fills the pool within
+     * {@code (max-concurrent + queue-capacity) / order rate} seconds and sheds orders as busy
+     * for up to a minute. That is the point of the bulkhead, but it means max-concurrent is
+     * sized for normal gateway latency (peak orders per second times a healthy call's
+     * duration, with headroom), not for the timeout.
+     */
+    @Bean(name = "paymentGatewayExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor paymentGatewayExecutor(
+            @Value("${app.payment.gateway.max-concurrent:16}") int maxConcurrent,
+            @Value("${app.payment.gateway.queue-capacity:32}") int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("PaymentGateway-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
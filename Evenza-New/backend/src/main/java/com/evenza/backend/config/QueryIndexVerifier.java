@@ -0,0 +1,319 @@
+package com.evenza.backend.config;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checks at startup that the repository queries use an index
+ * ({@code app.index-verifier.enabled}).
+ *
+ * Every query method of every Spring Data repository has to be listed, either in
+ * {@link #QUERIES} with the SQL it runs or in {@link #UNINDEXED} with the reason it may
+ * scan; a query that is in neither fails the check, as does a listed one that no longer
+ * exists, so the list cannot silently fall behind the repositories. Each listed SQL is
+ * run through EXPLAIN with sample parameters and every plan row of the queried table must
+ * name the index the optimizer chose. Meant for CI or a local MySQL-compatible database
+ * with the migrations applied. With {@code app.index-verifier.fail-on-missing} a failed
+ * check stops the application.
+ */
+@Component
+public class QueryIndexVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryIndexVerifier.class);
+
+    private record IndexedQuery(String name, String table, String sql) {
+    }
+
+    // Repository queries as MySQL sees them, plus hot SQL that services run directly
+    private static final List<IndexedQuery> QUERIES = List.of(
+            new IndexedQuery("BookingRepository.findByUserKey", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1"),
+            new IndexedQuery("BookingRepository.findByPaymentId", "bookings",
+                    "SELECT * FROM bookings WHERE payment_id = 'pay_1'"),
+            new IndexedQuery("BookingRepository.findFirstByPaymentIdOrderByIdAsc", "bookings",
+                    "SELECT * FROM bookings WHERE payment_id = 'pay_1' ORDER BY id LIMIT 1"),
+            new IndexedQuery("BookingRepository.findUserBookingsOrderByTimeDesc", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 ORDER BY booking_time DESC"),
+            new IndexedQuery("BookingRepository.findUserBookingsPage", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 AND ('CONFIRMED' IS NULL OR status = 'CONFIRMED') " +
+                    "ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("BookingRepository.findUserBookingsPageAfter", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 AND ('CONFIRMED' IS NULL OR status = 'CONFIRMED') " +
+                    "AND created_at <= NOW() AND (created_at < NOW() OR id < 1) " +
+                    "ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("BookingRepository.findByStatus", "bookings",
+                    "SELECT * FROM bookings WHERE status = 'CONFIRMED'"),
+            new IndexedQuery("BookingRepository.countByStatus", "bookings",
+                    "SELECT COUNT(*) FROM bookings WHERE status = 'CONFIRMED'"),
+            new IndexedQuery("BookingRepository.countByStatusCustom", "bookings",
+                    "SELECT COUNT(*) FROM bookings WHERE status = 'CONFIRMED'"),
+            new IndexedQuery("BookingRepository.findTop5ByOrderByCreatedAtDesc", "bookings",
+                    "SELECT * FROM bookings ORDER BY created_at DESC LIMIT 5"),
+            new IndexedQuery("BookingRepository.findTop10ByOrderByCreatedAtDesc", "bookings",
+                    "SELECT * FROM bookings ORDER BY created_at DESC LIMIT 10"),
+            new IndexedQuery("BookingRepository.findUserUpcomingBookings", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 AND status = 'CONFIRMED' AND booking_time > NOW()"),
+            new IndexedQuery("BookingRepository.findUserPastBookings", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 AND (status != 'CONFIRMED' OR booking_time < NOW())"),
+            new IndexedQuery("BookingRepository.findByEntityTypeAndEntityId", "bookings",
+                    "SELECT * FROM bookings WHERE entity_type = 'SPORT' AND entity_id = '1'"),
+            new IndexedQuery("BookingRepository.findByEntityTypeAndEntityIdAndSeatIdIn", "bookings",
+                    "SELECT * FROM bookings WHERE entity_type = 'SPORT' AND entity_id = '1' AND seat_id IN ('A1', 'A2')"),
+            new IndexedQuery("BookingRepository.findTakenSeatStatuses", "bookings",
+                    "SELECT seat_id, status FROM bookings WHERE entity_type = 'SPORT' AND entity_id = '1' " +
+                    "AND (status IN ('PENDING', 'CONFIRMED') OR (status = 'RESERVED' AND reservation_expiry > NOW()))"),
+            new IndexedQuery("BookingRepository.countTakenSeats", "bookings",
+                    "SELECT COUNT(*) FROM bookings WHERE entity_type IN ('SPORT', 'SPORTS') AND entity_id = '1' " +
+                    "AND (status IN ('PENDING', 'CONFIRMED') OR (status = 'RESERVED' AND reservation_expiry > NOW()))"),
+            new IndexedQuery("BookingRepository.countTakenSeatsByEntity", "bookings",
+                    "SELECT entity_id, COUNT(*) FROM bookings WHERE entity_type IN ('SPORT', 'SPORTS') " +
+                    "AND entity_id IN ('1', '2') AND (status IN ('PENDING', 'CONFIRMED') " +
+                    "OR (status = 'RESERVED' AND reservation_expiry > NOW())) GROUP BY entity_id"),
+            new IndexedQuery("BookingRepository.findBookingsByEntityTypeAndId", "bookings",
+                    "SELECT * FROM bookings WHERE entity_type = 'SPORT' AND entity_id = '1'"),
+            new IndexedQuery("BookingRepository.findByStatusAndReservationExpiryAfter", "bookings",
+                    "SELECT * FROM bookings WHERE status = 'RESERVED' AND reservation_expiry > NOW()"),
+            new IndexedQuery("BookingRepository.findReservationsByUserKey", "bookings",
+                    "SELECT * FROM bookings WHERE user_key = 1 AND status = 'RESERVED'"),
+            new IndexedQuery("BookingRepository.findReservationsByEntity", "bookings",
+                    "SELECT * FROM bookings WHERE entity_type = 'SPORT' AND entity_id = '1' AND status = 'RESERVED'"),
+            new IndexedQuery("BookingRepository.confirmReservations", "bookings",
+                    "UPDATE bookings SET status = 'CONFIRMED', payment_id = 'pay_1', reservation_expiry = NULL " +
+                    "WHERE id IN (1, 2) AND status = 'RESERVED' AND reservation_expiry > NOW()"),
+            new IndexedQuery("BookingRepository.cancelReservations", "bookings",
+                    "UPDATE bookings SET status = 'CANCELLED', reservation_expiry = NULL " +
+                    "WHERE id IN (1, 2) AND status = 'RESERVED'"),
+            new IndexedQuery("BookingRepository.findExpiredReservationsForUpdate", "bookings",
+                    "SELECT * FROM bookings WHERE status = 'RESERVED' AND reservation_expiry < NOW() " +
+                    "ORDER BY reservation_expiry LIMIT 500 FOR UPDATE"),
+            new IndexedQuery("BookingRepository.findExpiredReservationsForUpdate", "bookings",
+                    "SELECT * FROM bookings WHERE id IN (1, 2) AND status = 'RESERVED' " +
+                    "AND reservation_expiry < NOW() FOR UPDATE"),
+            new IndexedQuery("BookingRepository.cancelExpiredReservationsByIds", "bookings",
+                    "UPDATE bookings SET status = 'CANCELLED', reservation_expiry = NULL " +
+                    "WHERE id IN (1, 2) AND status = 'RESERVED' AND reservation_expiry < NOW()"),
+            new IndexedQuery("TicketRepository.findByUserKey", "tickets",
+                    "SELECT * FROM tickets WHERE user_key = 1"),
+            new IndexedQuery("TicketRepository.findByBookingId", "tickets",
+                    "SELECT * FROM tickets WHERE booking_id = '1'"),
+            new IndexedQuery("TicketRepository.findUserTicketsPage", "tickets",
+                    "SELECT * FROM tickets WHERE user_key = 1 ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("TicketRepository.findUserTicketsPageAfter", "tickets",
+                    "SELECT * FROM tickets WHERE user_key = 1 AND created_at <= NOW() " +
+                    "AND (created_at < NOW() OR id < 'x') ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("TicketRepository.findUpcomingTicketsByUserKey", "tickets",
+                    "SELECT * FROM tickets WHERE event_date_time > NOW() AND is_used = false AND user_key = 1 " +
+                    "ORDER BY event_date_time"),
+            new IndexedQuery("TicketRepository.findPastTicketsByUserKey", "tickets",
+                    "SELECT * FROM tickets WHERE user_key = 1 AND (event_date_time < NOW() OR is_used = true) " +
+                    "ORDER BY event_date_time DESC"),
+            new IndexedQuery("TicketRepository.findByIdAndIsUsedFalse", "tickets",
+                    "SELECT * FROM tickets WHERE id = 'x' AND is_used = false"),
+            new IndexedQuery("PaymentRepository.findByEntityTypeAndEntityId", "payment",
+                    "SELECT * FROM payment WHERE entity_type = 'SPORT' AND entity_id = '1'"),
+            new IndexedQuery("PaymentRepository.findByUserKey", "payment",
+                    "SELECT * FROM payment WHERE user_key = 1"),
+            new IndexedQuery("PaymentRepository.findUserPaymentsPage", "payment",
+                    "SELECT * FROM payment WHERE user_key = 1 ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("PaymentRepository.findUserPaymentsPageAfter", "payment",
+                    "SELECT * FROM payment WHERE user_key = 1 AND created_at <= NOW() " +
+                    "AND (created_at < NOW() OR id < 1) ORDER BY created_at DESC, id DESC LIMIT 21"),
+            new IndexedQuery("PaymentRepository.streamLedger", "payment",
+                    "SELECT razorpay_payment_id, amount, status FROM payment " +
+                    "WHERE created_at >= CURRENT_DATE - INTERVAL 1 DAY AND created_at < CURRENT_DATE " +
+                    "AND razorpay_payment_id IS NOT NULL ORDER BY CAST(razorpay_payment_id AS BINARY)"),
+            new IndexedQuery("PaymentRepository.findExistingRazorpayPaymentIds", "payment",
+                    "SELECT razorpay_payment_id FROM payment WHERE razorpay_payment_id IN ('pay_1', 'pay_2')"),
+            new IndexedQuery("PaymentRepository.findByRazorpayPaymentId", "payment",
+                    "SELECT * FROM payment WHERE razorpay_payment_id = 'pay_1'"),
+            new IndexedQuery("PaymentRepository.findByStatus", "payment",
+                    "SELECT * FROM payment WHERE status = 'SUCCESS'"),
+            new IndexedQuery("PaymentRepository.countByStatus", "payment",
+                    "SELECT COUNT(*) FROM payment WHERE status = 'SUCCESS'"),
+            new IndexedQuery("PaymentRepository.countByStatusCustom", "payment",
+                    "SELECT COUNT(*) FROM payment WHERE status = 'SUCCESS'"),
+            new IndexedQuery("PaymentRepository.findTop5ByOrderByCreatedAtDesc", "payment",
+                    "SELECT * FROM payment ORDER BY created_at DESC LIMIT 5"),
+            new IndexedQuery("PaymentRepository.findTop10ByOrderByCreatedAtDesc", "payment",
+                    "SELECT * FROM payment ORDER BY created_at DESC LIMIT 10"),
+            new IndexedQuery("PaymentRepository.getTotalSuccessfulPaymentAmount", "payment",
+                    "SELECT SUM(amount) FROM payment WHERE status = 'SUCCESS'"),
+            new IndexedQuery("SalesRollupService.MINUTES_FROM_PAYMENTS_SQL", "payment",
+                    "SELECT entity_type, SUM(amount) FROM payment WHERE status = 'SUCCESS' " +
+                    "AND created_at >= NOW() - INTERVAL 2 HOUR GROUP BY entity_type"),
+            new IndexedQuery("SalesRollupRepository.sumByBucket", "sales_rollup",
+                    "SELECT bucket_start, SUM(total_amount) FROM sales_rollup WHERE granularity = 'DAY' " +
+                    "AND bucket_start >= CURRENT_DATE - INTERVAL 7 DAY " +
+                    "AND ('SPORT' IS NULL OR entity_type = 'SPORT') GROUP BY bucket_start ORDER BY bucket_start"),
+            new IndexedQuery("NotificationRepository.findByUserIdOrderByCreatedAtDesc", "notifications",
+                    "SELECT * FROM notifications WHERE user_id = 1 ORDER BY created_at DESC"),
+            new IndexedQuery("SeatClaimRepository.findByEntityTypeAndEntityIdAndSeatIdIn", "seat_claims",
+                    "SELECT * FROM seat_claims WHERE entity_type = 'SPORT' AND entity_id = '1' AND seat_id IN ('A1', 'A2')"),
+            new IndexedQuery("SeatClaimRepository.deleteStaleClaims", "seat_claims",
+                    "DELETE FROM seat_claims WHERE entity_type = 'SPORT' AND entity_id = '1' " +
+                    "AND seat_id IN ('A1', 'A2') AND status = 'HELD' AND (expires_at < NOW() OR user_id = '1')"),
+            new IndexedQuery("SeatClaimRepository.markSold", "seat_claims",
+                    "UPDATE seat_claims SET status = 'SOLD', expires_at = NULL WHERE entity_type = 'SPORT' " +
+                    "AND entity_id = '1' AND seat_id IN ('A1', 'A2') AND user_id = '1'"),
+            new IndexedQuery("SeatClaimRepository.deleteHeldClaims", "seat_claims",
+                    "DELETE FROM seat_claims WHERE entity_type = 'SPORT' AND entity_id = '1' " +
+                    "AND seat_id IN ('A1', 'A2') AND status = 'HELD' AND user_id = '1'"),
+            new IndexedQuery("SeatClaimRepository.deleteExpiredClaims", "seat_claims",
+                    "DELETE FROM seat_claims WHERE expires_at < NOW() LIMIT 500"),
+            new IndexedQuery("UserRepository.findByEmail", "users",
+                    "SELECT * FROM users WHERE email = 'a@example.com'"),
+            new IndexedQuery("UserRepository.findByUid", "users",
+                    "SELECT * FROM users WHERE uid = 'uid_1'"),
+            new IndexedQuery("UserRepository.existsByEmail", "users",
+                    "SELECT 1 FROM users WHERE email = 'a@example.com' LIMIT 1"),
+            new IndexedQuery("NewsletterSubscriberRepository.findByEmail", "newsletter_subscribers",
+                    "SELECT * FROM newsletter_subscribers WHERE email = 'a@example.com'"),
+            new IndexedQuery("NewsletterSubscriberRepository.existsByEmail", "newsletter_subscribers",
+                    "SELECT 1 FROM newsletter_subscribers WHERE email = 'a@example.com' LIMIT 1"),
+            new IndexedQuery("PasswordResetTokenRepository.deleteByUser_Id", "password_reset_tokens",
+                    "SELECT * FROM password_reset_tokens WHERE user_id = 1"));
+
+    // Repository queries that may scan, and why that is acceptable
+    private static final Map<String, String> UNINDEXED = Map.ofEntries(
+            Map.entry("BookingRepository.findAllSeatIds", "returns the seat of every booking"),
+            Map.entry("BookingRepository.existsBySeatId", "no callers"),
+            Map.entry("PaymentRepository.findByOrderId", "no callers"),
+            Map.entry("TicketRepository.findByUserEmail", "no callers"),
+            Map.entry("TicketRepository.findByEntityTypeAndEntityId", "no callers"),
+            Map.entry("EventRepository.findTop8ByOrderByDateDesc", "no callers"),
+            Map.entry("UserRepository.findTop10ByOrderByCreatedAtDesc", "admin activity feed, users has no created_at index"),
+            Map.entry("PasswordResetTokenRepository.findByToken", "password resets are rare, token has no index"),
+            Map.entry("EventRepository.findByCategory", "catalog browsing, category has no index"),
+            Map.entry("SportsRepository.findByCategoryIgnoreCase", "compares LOWER(category), which no index covers"),
+            Map.entry("MovieRepository.findByGenreContainingIgnoreCase", "substring search"),
+            Map.entry("ConcertRepository.searchConcerts", "substring search"),
+            Map.entry("ConcertRepository.searchByKeyword", "substring search"),
+            Map.entry("EventRepository.searchEvents", "substring search"),
+            Map.entry("EventRepository.searchEventsByCategory", "substring search"),
+            Map.entry("EventRepository.searchByKeyword", "substring search"),
+            Map.entry("MovieRepository.searchMovies", "substring search"),
+            Map.entry("MovieRepository.searchByKeyword", "substring search"),
+            Map.entry("SportRepository.searchSports", "substring search"),
+            Map.entry("SportsRepository.searchByKeyword", "substring search"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${app.index-verifier.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.index-verifier.fail-on-missing:false}")
+    private boolean failOnMissing;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (enabled) {
+            verify();
+        }
+    }
+
+    /**
+     * Runs the check regardless of {@code app.index-verifier.enabled}.
+     */
+    public void verify() {
+        List<String> failures = new ArrayList<>(checkListed());
+        for (IndexedQuery query : QUERIES) {
+            try {
+                String problem = check(query);
+                if (problem != null) {
+                    failures.add(query.name() + ": " + problem);
+                }
+            } catch (Exception e) {
+                failures.add(query.name() + ": EXPLAIN failed: " + e.getMessage());
+            }
+        }
+        if (failures.isEmpty()) {
+            logger.info("Index verification passed for {} queries", QUERIES.size());
+            return;
+        }
+        failures.forEach(failure -> logger.error("Query without a usable index - {}", failure));
+        if (failOnMissing) {
+            throw new IllegalStateException(failures.size() + " repository queries have no usable index");
+        }
+    }
+
+    /**
+     * @return the repository queries that are not listed, and the listed ones that no longer exist
+     */
+    private List<String> checkListed() {
+        Set<String> repositories = new HashSet<>();
+        Set<String> declared = new TreeSet<>();
+        Repositories found = new Repositories(applicationContext);
+        for (Class<?> domainType : found) {
+            RepositoryInformation information = found.getRepositoryInformationFor(domainType).orElseThrow();
+            String repository = information.getRepositoryInterface().getSimpleName();
+            repositories.add(repository);
+            information.getQueryMethods().forEach(method -> declared.add(repository + "." + method.getName()));
+        }
+
+        Set<String> listed = new HashSet<>(UNINDEXED.keySet());
+        QUERIES.forEach(query -> listed.add(query.name()));
+        List<String> failures = new ArrayList<>();
+        for (String name : declared) {
+            if (!listed.contains(name)) {
+                failures.add(name + ": not listed, add its SQL to QUERIES or the reason it may scan to UNINDEXED");
+            }
+        }
+        for (String name : new TreeSet<>(listed)) {
+            String owner = name.substring(0, name.indexOf('.'));
+            if (repositories.contains(owner) && !declared.contains(name)) {
+                failures.add(name + ": listed but not a query of " + owner);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return what is wrong with the query plan, or null if every row of the table uses an index
+     */
+    private String check(IndexedQuery query) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + query.sql());
+        boolean read = false;
+        for (Map<String, Object> row : plan) {
+            if (!query.table().equals(row.get("table"))) {
+                continue;
+            }
+            read = true;
+            // possible_keys only says an index could have served; key is the one the optimizer took
+            if (row.get("key") == null) {
+                return "no index used on " + query.table() + " (type " + row.get("type")
+                        + ", possible keys " + row.get("possible_keys") + ")";
+            }
+        }
+        if (!read) {
+            // A unique key lookup is answered while planning and leaves no row for the table
+            for (Map<String, Object> row : plan) {
+                Object extra = row.get("Extra");
+                if (extra != null && extra.toString().contains("const table")) {
+                    return null;
+                }
+            }
+            return query.table() + " is not in the plan";
+        }
+        return null;
+    }
+}
@@ -23,7 +23,12 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.evenza.backend.security.Jwt.AuthEntryPointJwt;
 import com.evenza.backend.security.Jwt.JwtAuthenticationFilter;
+import com.evenza.backend.security.filter.IdempotencyFilter;
+import com.evenza.backend.security.filter.WaitingRoomFilter;
 import com.evenza.backend.services.UserDetailsServiceImpl;
+import com.evenza.backend.util.PageCursor;
+
+import jakarta.servlet.DispatcherType;
 
 @Configuration
 @EnableWebSecurity
@@ -40,6 +45,16 @@ public class SecurityConfig {
         return new JwtAuthenticationFilter();
     }
 
+    @Bean
+    public WaitingRoomFilter waitingRoomFilter() {
+        return new WaitingRoomFilter();
+    }
+
+    @Bean
+    public IdempotencyFilter idempotencyFilter() {
+        return new IdempotencyFilter();
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -75,9 +90,12 @@ public class SecurityConfig {
             "Content-Type", 
             "X-Requested-With",
             "Accept",
-            "Origin"
+            "Origin",
+            WaitingRoomFilter.QUEUE_TOKEN_HEADER,
+            IdempotencyFilter.IDEMPOTENCY_KEY_HEADER
         ));
-        configuration.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(List.of("Authorization", "Content-Type", "ETag", IdempotencyFilter.REPLAYED_HEADER,
+                PageCursor.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
@@ -98,6 +116,10 @@ public class SecurityConfig {
             .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Re-dispatches of async controller results (payment create-order). The JWT filter
+                // skips them and nothing stores the context, but the original dispatch was
+                // already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/events/**").permitAll()
                 .requestMatchers("/api/vimeo/oembed").permitAll()
@@ -105,7 +127,10 @@ public class SecurityConfig {
                 .requestMatchers("/api/sports/**").permitAll()
                 .requestMatchers("/api/concerts/**").permitAll()
                 .requestMatchers("/api/search/**").permitAll()
+                .requestMatchers("/api/waiting-room/**").permitAll()
                 .requestMatchers("/api/tickets/download/**").permitAll()
+                // Authenticated by the signature on the body
+                .requestMatchers("/api/payment/webhook").permitAll()
                 .requestMatchers("/api/admin/**").hasAuthority("ROLE_ADMIN")
                 .requestMatchers(request -> "OPTIONS".equals(request.getMethod())).permitAll()
                 .anyRequest().authenticated()
@@ -113,6 +138,9 @@ public class SecurityConfig {
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        // After authentication, so queue tokens and stored responses are scoped to the user
+        http.addFilterAfter(waitingRoomFilter(), JwtAuthenticationFilter.class);
+        http.addFilterAfter(idempotencyFilter(), JwtAuthenticationFilter.class);
 
         return http.build();
     }
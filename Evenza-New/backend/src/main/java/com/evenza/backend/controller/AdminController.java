@@ -1,22 +1,32 @@
 package com.evenza.backend.controller;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.evenza.backend.DTO.ReconciliationReport;
+import com.evenza.backend.Exceptions.ReservationConflictException;
+import com.evenza.backend.model.Booking;
 import com.evenza.backend.repository.BookingRepository;
 import com.evenza.backend.repository.ConcertRepository;
 import com.evenza.backend.repository.EventRepository;
@@ -24,7 +34,14 @@ import com.evenza.backend.repository.MovieRepository;
 import com.evenza.backend.repository.PaymentRepository;
 import com.evenza.backend.repository.SportsRepository;
 import com.evenza.backend.repository.UserRepository;
+import com.evenza.backend.services.BookingService;
+import com.evenza.backend.services.OutboxDispatcher;
+import com.evenza.backend.services.OutboxService;
+import com.evenza.backend.services.SalesRollupService;
 import com.evenza.backend.services.UserDetailsImpl;
+import com.evenza.backend.services.WaitingRoomService;
+import com.evenza.backend.services.payment.PaymentWebhookService;
+import com.evenza.backend.services.payment.ReconciliationService;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -54,6 +71,27 @@ public class AdminController {
     @Autowired
     private SportsRepository sportsRepository;
     
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+    
+    @Autowired
+    private BookingService bookingService;
+    
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+    
+    @Autowired
+    private ReconciliationService reconciliationService;
+    
+    @Autowired
+    private SalesRollupService salesRollupService;
+    
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+    
+    @Autowired
+    private OutboxService outboxService;
+    
     /**
      * Get dashboard overview statistics for admin
      */
@@ -125,11 +163,12 @@ public class AdminController {
     }
     
     /**
-     * Get sales data for charts
+     * Get sales data for charts, served from the pre-aggregated sales rollups
      */
     @GetMapping("/sales")
     public ResponseEntity<Map<String, Object>> getSalesData(
-            @RequestParam(required = false, defaultValue = "weekly") String period) {
+            @RequestParam(required = false, defaultValue = "weekly") String period,
+            @RequestParam(required = false) String entityType) {
         
         // Log authentication info
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -139,50 +178,12 @@ public class AdminController {
         Map<String, Object> salesData = new HashMap<>();
         
         try {
-            // Get sales data for the requested period (daily, weekly, monthly)
-            List<Object[]> periodSalesData;
-            
-            switch (period.toLowerCase()) {
-                case "daily":
-                    periodSalesData = paymentRepository.getDailySalesData();
-                    break;
-                case "monthly":
-                    periodSalesData = paymentRepository.getMonthlySalesData();
-                    break;
-                case "weekly":
-                default:
-                    periodSalesData = paymentRepository.getWeeklySalesData();
-                    break;
-            }
+            // Totals per period label (hourly, daily, weekly, monthly), oldest first
+            Map<String, BigDecimal> series = salesRollupService.getSalesSeries(period, entityType);
             
-            // Process and format the sales data
             Map<String, Object> formattedData = new HashMap<>();
-            Map<String, Object> labels = new HashMap<>();
-            Map<String, Object> values = new HashMap<>();
-            
-            for (Object[] dataPoint : periodSalesData) {
-                String timeLabel = (String) dataPoint[0];
-                
-                // Handle the amount value correctly, converting Double to BigDecimal if needed
-                Object amountObj = dataPoint[1];
-                BigDecimal amount;
-                
-                if (amountObj instanceof BigDecimal) {
-                    amount = (BigDecimal) amountObj;
-                } else if (amountObj instanceof Double) {
-                    amount = BigDecimal.valueOf((Double) amountObj);
-                } else {
-                    // Fallback for other numeric types
-                    amount = new BigDecimal(String.valueOf(amountObj));
-                }
-                
-                // Add to arrays
-                labels.put(timeLabel, timeLabel);
-                values.put(timeLabel, amount);
-            }
-            
-            formattedData.put("labels", labels.keySet());
-            formattedData.put("data", values.values());
+            formattedData.put("labels", series.keySet());
+            formattedData.put("data", series.values());
             
             salesData.put("period", period);
             salesData.put("salesData", formattedData);
@@ -195,6 +196,34 @@ public class AdminController {
         }
     }
     
+    /**
+     * Recompute the sales rollups of a range of days from the payment table
+     */
+    @PostMapping("/sales/rollup/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSalesRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        logger.info("Sales rollups for {} to {} rebuilt by: {}", from, to, auth.getName());
+        
+        Map<String, Object> response = new HashMap<>();
+        if (to.isBefore(from)) {
+            response.put("error", "'to' must not be before 'from'");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            salesRollupService.rebuild(from, to);
+            response.put("from", from);
+            response.put("to", to);
+            response.put("status", "rebuilt");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error rebuilding sales rollups", e);
+            response.put("error", "Failed to rebuild sales rollups: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
     /**
      * Get recent activity for admin dashboard
      */
@@ -272,4 +301,160 @@ public class AdminController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Set how many users per second the waiting room of a show admits
+     */
+    @PutMapping("/waiting-room/rate")
+    public ResponseEntity<Map<String, Object>> setWaitingRoomRate(
+            @RequestParam String entityType,
+            @RequestParam String entityId,
+            @RequestParam int perSecond) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        logger.info("Waiting room rate for {}:{} set to {}/s by: {}", entityType, entityId, perSecond, auth.getName());
+        
+        Map<String, Object> response = new HashMap<>();
+        if (perSecond < 1) {
+            response.put("error", "perSecond must be at least 1");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        try {
+            waitingRoomService.setAdmissionRate(entityType, entityId, perSecond);
+            response.put("entityType", entityType);
+            response.put("entityId", entityId);
+            response.put("perSecond", perSecond);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error setting waiting room rate", e);
+            response.put("error", "Failed to set waiting room rate: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Cancel all live reservations of a show and free their seats
+     */
+    @PostMapping("/reservations/cancel")
+    public ResponseEntity<Map<String, Object>> cancelShowReservations(
+            @RequestParam String entityType,
+            @RequestParam String entityId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        logger.info("Reservations of {}:{} cancelled by: {}", entityType, entityId, auth.getName());
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<Booking> cancelled = bookingService.cancelReservations(null, entityType.toUpperCase(), entityId);
+            response.put("entityType", entityType);
+            response.put("entityId", entityId);
+            response.put("cancelled", cancelled.size());
+            return ResponseEntity.ok(response);
+        } catch (ReservationConflictException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (Exception e) {
+            logger.error("Error cancelling reservations", e);
+            response.put("error", "Failed to cancel reservations: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Payment webhooks that could not be processed, newest first, with the reason
+     */
+    @GetMapping("/payment-webhooks/dead-letters")
+    public ResponseEntity<Map<String, Object>> getWebhookDeadLetters(@RequestParam(defaultValue = "50") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("total", paymentWebhookService.deadLetterCount());
+            response.put("queued", paymentWebhookService.queueSize());
+            response.put("deadLetters", paymentWebhookService.deadLetters(Math.max(1, Math.min(limit, 500))));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error fetching webhook dead letters", e);
+            response.put("error", "Failed to fetch webhook dead letters: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Put the oldest dead-lettered payment webhooks back on the ingestion queue
+     */
+    @PostMapping("/payment-webhooks/dead-letters/replay")
+    public ResponseEntity<Map<String, Object>> replayWebhookDeadLetters(@RequestParam(defaultValue = "100") int limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Map<String, Object> response = new HashMap<>();
+        try {
+            int replayed = paymentWebhookService.replayDeadLetters(Math.max(1, limit));
+            logger.info("{} payment webhook dead letters replayed by: {}", replayed, auth.getName());
+            response.put("replayed", replayed);
+            response.put("remaining", paymentWebhookService.deadLetterCount());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error replaying webhook dead letters", e);
+            response.put("error", "Failed to replay webhook dead letters: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Start reconciling the payments created from {@code from} to {@code to} (inclusive)
+     * against a settlement file in the settlement input directory
+     */
+    @PostMapping("/reconciliation/run")
+    public ResponseEntity<?> runReconciliation(
+            @RequestParam String file,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        logger.info("Reconciliation of {} for {} to {} started by: {}", file, from, to, auth.getName());
+        try {
+            return ResponseEntity.accepted().body(reconciliationService.submit(file, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Too many reconciliation jobs are queued"));
+        }
+    }
+    
+    /**
+     * Status, totals and report location of a reconciliation job
+     */
+    @GetMapping("/reconciliation/{jobId}")
+    public ResponseEntity<?> getReconciliation(@PathVariable String jobId) {
+        ReconciliationReport report = reconciliationService.getJob(jobId);
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown reconciliation job"));
+        }
+        return ResponseEntity.ok(report);
+    }
+    
+    /**
+     * Backlog of the outbox that drives ticket generation, as of the dispatcher's last refresh
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Object>> getOutboxStats() {
+        return ResponseEntity.ok(outboxDispatcher.stats());
+    }
+    
+    /**
+     * Give outbox events that ran out of attempts a fresh set of attempts
+     */
+    @PostMapping("/outbox/retry-failed")
+    public ResponseEntity<Map<String, Object>> retryFailedOutboxEvents() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Map<String, Object> response = new HashMap<>();
+        try {
+            int requeued = outboxService.retryFailed();
+            outboxService.signal();
+            logger.info("{} failed outbox events requeued by: {}", requeued, auth.getName());
+            response.put("requeued", requeued);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error requeueing failed outbox events", e);
+            response.put("error", "Failed to requeue outbox events: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
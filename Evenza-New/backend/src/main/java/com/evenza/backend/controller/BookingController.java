@@ -1,14 +1,16 @@
 package com.evenza.backend.controller;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -19,13 +21,19 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.evenza.backend.Exceptions.BookingPendingException;
+import com.evenza.backend.Exceptions.ReservationConflictException;
+import com.evenza.backend.Exceptions.SeatTakenException;
+import com.evenza.backend.Exceptions.SoldOutException;
 import com.evenza.backend.model.Booking;
 import com.evenza.backend.repository.BookingRepository;
 import com.evenza.backend.repository.ConcertRepository;
 import com.evenza.backend.repository.EventRepository;
 import com.evenza.backend.repository.MovieRepository;
 import com.evenza.backend.repository.SportRepository;
+import com.evenza.backend.services.BestAvailableService;
 import com.evenza.backend.services.BookingService;
+import com.evenza.backend.services.CapacityService;
 
 @RestController
 @RequestMapping("/api/bookings")
@@ -35,6 +43,12 @@ public class BookingController {
     @Autowired
     private BookingService bookingService;
 
+    @Autowired
+    private CapacityService capacityService;
+
+    @Autowired
+    private BestAvailableService bestAvailableService;
+
     @Autowired
     private BookingRepository bookingRepository;
 
@@ -51,10 +65,40 @@ public class BookingController {
     private EventRepository eventRepository;
 
     @GetMapping
-    public List<String> getBookedSeats() {
+    public List<String> getBookedSeats(
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String entityId) {
+        if (entityType != null && entityId != null) {
+            return bookingService.getBookedSeats(entityType, entityId);
+        }
         return bookingService.getBookedSeats();
     }
 
+    /**
+     * Compact seat map of one show. Polling clients send the last ETag in
+     * If-None-Match and get a 304 when no seat changed.
+     */
+    @GetMapping("/seats")
+    public ResponseEntity<?> getSeatMap(
+            @RequestParam String entityType,
+            @RequestParam String entityId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            Map<String, Object> seatMap = bookingService.getSeatMap(entityType, entityId);
+            String eTag = "\"" + DigestUtils.md5DigestAsHex(
+                    (seatMap.get("sold") + "|" + seatMap.get("held")).getBytes(StandardCharsets.UTF_8)) + "\"";
+            
+            if (eTag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok().eTag(eTag).body(seatMap);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to fetch seat map: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/book")
     public ResponseEntity<?> bookSeats(@RequestBody Map<String, Object> bookingData) {
         try {
@@ -64,6 +108,9 @@ public class BookingController {
             List<String> seatIds = (List<String>) bookingData.get("seatIds");
             String entityType = (String) bookingData.get("entityType");
             String entityId = (String) bookingData.get("entityId");
+            if (capacityService.isSoldOut(entityType, entityId)) {
+                return soldOut();
+            }
             
             // Fix the userId casting issue by handling multiple types
             String userId;
@@ -138,6 +185,15 @@ public class BookingController {
                 "message", "Booking successful",
                 "bookings", bookings
             ));
+        } catch (SeatTakenException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "takenSeats", e.getSeatIds()));
+        } catch (SoldOutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "soldOut", true, "remaining", e.getRemaining()));
+        } catch (BookingPendingException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("message", e.getMessage(), "status", "PENDING", "bookings", e.getBookings()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -205,6 +261,9 @@ public class BookingController {
             } else {
                 return ResponseEntity.badRequest().body(Map.of("error", "Entity ID is required"));
             }
+            if (capacityService.isSoldOut(entityType, entityId)) {
+                return soldOut();
+            }
 
             // Verify that the entity exists before creating bookings
             boolean entityExists = false;
@@ -305,6 +364,15 @@ public class BookingController {
                 "message", "Booking confirmed successfully",
                 "bookings", bookings
             ));
+        } catch (SeatTakenException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "takenSeats", e.getSeatIds()));
+        } catch (SoldOutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "soldOut", true, "remaining", e.getRemaining()));
+        } catch (BookingPendingException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("message", e.getMessage(), "status", "PENDING", "bookings", e.getBookings()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -313,10 +381,15 @@ public class BookingController {
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getUserBookings(@PathVariable String userId) {
+    public ResponseEntity<?> getUserBookings(
+            @PathVariable String userId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Booking> bookings = bookingService.getUserBookings(userId);
-            return ResponseEntity.ok(bookings);
+            return bookingService.getUserBookings(userId, status, cursor, limit).toResponse();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -325,7 +398,11 @@ public class BookingController {
     }
 
     @GetMapping("/current-user")
-    public ResponseEntity<?> getCurrentUserBookings(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getCurrentUserBookings(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
             // Extract user ID from auth token
             String userId = extractUserIdFromToken(authHeader);
@@ -335,8 +412,9 @@ public class BookingController {
                         .body(Map.of("error", "User not authenticated"));
             }
 
-            List<Booking> bookings = bookingService.getUserBookings(userId);
-            return ResponseEntity.ok(bookings);
+            return bookingService.getUserBookings(userId, status, cursor, limit).toResponse();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -378,9 +456,11 @@ public class BookingController {
     @GetMapping("/entity")
     public ResponseEntity<?> getEntityBookings(
             @RequestParam String entityType,
-            @RequestParam String entityId) {
+            @RequestParam String entityId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Booking> bookings = bookingService.getEntityBookings(entityType, entityId);
+            List<Booking> bookings = bookingService.getEntityBookings(entityType, entityId, status, limit);
             return ResponseEntity.ok(bookings);
         } catch (Exception e) {
             e.printStackTrace();
@@ -396,6 +476,9 @@ public class BookingController {
             List<String> seatIds = (List<String>) reservationData.get("seatIds");
             String entityType = (String) reservationData.get("entityType");
             String entityId = (String) reservationData.get("entityId");
+            if (capacityService.isSoldOut(entityType, entityId)) {
+                return soldOut();
+            }
             String userId = (String) reservationData.get("userId");
             Object amountObj = reservationData.get("amount");
             String venue = (String) reservationData.get("venue");
@@ -424,6 +507,80 @@ public class BookingController {
                 "message", "Seats reserved successfully",
                 "reservations", reservations
             ));
+        } catch (SeatTakenException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "takenSeats", e.getSeatIds()));
+        } catch (SoldOutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "soldOut", true, "remaining", e.getRemaining()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Reservation failed: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/best-available")
+    public ResponseEntity<?> reserveBestAvailable(@RequestBody Map<String, Object> requestData) {
+        try {
+            String entityType = (String) requestData.get("entityType");
+            String entityId = (String) requestData.get("entityId");
+            String userId = (String) requestData.get("userId");
+            String section = (String) requestData.get("section");
+            String venue = (String) requestData.get("venue");
+            Object quantityObj = requestData.get("quantity");
+            Object maxPriceObj = requestData.get("maxPrice");
+            boolean allowSplit = !Boolean.FALSE.equals(requestData.get("allowSplit"));
+            
+            if (userId == null || userId.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "User ID is required"));
+            }
+            if (entityType == null || entityId == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Entity type and ID are required"));
+            }
+            if (!bestAvailableService.hasLayout(entityType)) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Best-available seating is not supported for " + entityType.toLowerCase()));
+            }
+            if (!(quantityObj instanceof Number)
+                    || ((Number) quantityObj).intValue() < 1
+                    || ((Number) quantityObj).intValue() > BestAvailableService.MAX_QUANTITY) {
+                return ResponseEntity.badRequest().body(Map.of("error",
+                        "Quantity must be between 1 and " + BestAvailableService.MAX_QUANTITY));
+            }
+            int quantity = ((Number) quantityObj).intValue();
+            
+            Double maxPrice = null;
+            if (maxPriceObj instanceof Number) {
+                maxPrice = ((Number) maxPriceObj).doubleValue();
+            } else if (maxPriceObj != null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid max price"));
+            }
+            
+            if (capacityService.isSoldOut(entityType, entityId)) {
+                return soldOut();
+            }
+            
+            BestAvailableService.Result result = bestAvailableService.reserveBestAvailable(
+                entityType, entityId, userId, quantity, section, maxPrice, allowSplit, venue);
+            if (result == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error",
+                        allowSplit ? "Not enough seats available" : "Not enough adjacent seats available"));
+            }
+            
+            return ResponseEntity.ok(Map.of(
+                "message", "Seats reserved successfully",
+                "reservations", result.reservations(),
+                "seatIds", result.allocation().seatIds(),
+                "split", result.allocation().split(),
+                "amount", result.allocation().amount()
+            ));
+        } catch (SeatTakenException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "takenSeats", e.getSeatIds()));
+        } catch (SoldOutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "soldOut", true, "remaining", e.getRemaining()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -446,11 +603,13 @@ public class BookingController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Reservation IDs are required"));
             }
             
-            List<Booking> bookings = reservationIds.stream()
-                .map(id -> bookingRepository.findById(Long.parseLong(id)))
-                .filter(Optional::isPresent)
-                .<Booking>map(Optional::get)
-                .collect(Collectors.toList());
+            List<Booking> bookings = bookingRepository.findAllById(reservationIds.stream()
+                .map(Long::parseLong)
+                .collect(Collectors.toSet()));
+            if (bookings.size() != reservationIds.size()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Some reservations were not found"));
+            }
             
             bookingService.confirmReservation(paymentId, bookings);
             
@@ -458,11 +617,49 @@ public class BookingController {
                 "message", "Reservations confirmed successfully",
                 "bookings", bookings
             ));
+        } catch (ReservationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "confirmed", 0, "expected", e.getExpected()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Confirmation failed: " + e.getMessage()));
         }
     }
-}
 
+    @PostMapping("/cancel-reservations")
+    public ResponseEntity<?> cancelReservations(@RequestBody Map<String, String> cancelData) {
+        try {
+            String userId = cancelData.get("userId");
+            String entityType = cancelData.get("entityType");
+            String entityId = cancelData.get("entityId");
+            
+            if (userId == null || userId.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "User ID is required"));
+            }
+            if ((entityType == null) != (entityId == null)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Entity type and ID go together"));
+            }
+            
+            List<Booking> cancelled = bookingService.cancelReservations(userId,
+                    entityType != null ? entityType.toUpperCase() : null, entityId);
+            
+            return ResponseEntity.ok(Map.of(
+                "message", "Reservations cancelled successfully",
+                "cancelled", cancelled.size(),
+                "seatIds", cancelled.stream().map(Booking::getSeatId).toList()
+            ));
+        } catch (ReservationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Cancellation failed: " + e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<?> soldOut() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "This show is sold out", "soldOut", true, "remaining", 0));
+    }
+}
@@ -1,24 +1,32 @@
 package com.evenza.backend.controller;
+import com.evenza.backend.DTO.CursorPage;
 import com.evenza.backend.DTO.PaymentRequest;
-import com.evenza.backend.config.RazorpayConfig;
+import com.evenza.backend.Exceptions.PaymentGatewayException;
 import com.evenza.backend.model.Payment;
 import com.evenza.backend.repository.PaymentRepository;
 import com.evenza.backend.services.PaymentService;
-import com.razorpay.Order;
-import com.razorpay.RazorpayClient;
-import org.json.JSONObject;
+import com.evenza.backend.services.UserDetailsImpl;
+import com.evenza.backend.services.UserKeyResolver;
+import com.evenza.backend.services.payment.PaymentGateway;
+import com.evenza.backend.services.payment.PaymentWebhookService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/payment")
@@ -30,10 +38,16 @@ public class PaymentController {
     private PaymentService paymentService;
 
     @Autowired
-    private RazorpayConfig razorpayConfig;
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
 
     @Autowired
     private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
     
     /**
      * Test endpoint to verify the controller is accessible and responding
@@ -50,23 +64,38 @@ public class PaymentController {
     }
 
     @PostMapping("/create-order")
-    public String createOrder(@RequestBody PaymentRequest paymentRequest) {
-        try {
-            RazorpayClient client = new RazorpayClient(
-                    razorpayConfig.getKeyId(),
-                    razorpayConfig.getKeySecret()
-            );
-
-            JSONObject options = new JSONObject();
-            options.put("amount", paymentRequest.getAmount() * 100); // in paise
-            options.put("currency", "INR");
-            options.put("receipt", "receipt_" + System.currentTimeMillis());
-
-            Order order = client.orders.create(options);
-            return order.toString(); // Send order JSON to frontend
-        } catch (Exception e) {
-            return "{\"error\":\"" + e.getMessage() + "\"}";
+    public CompletableFuture<ResponseEntity<?>> createOrder(@RequestBody PaymentRequest paymentRequest) {
+        if (paymentRequest.getAmount() <= 0) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("error", "Amount must be positive")));
+        }
+        Map<String, String> notes = new HashMap<>();
+        if (paymentRequest.getEntityType() != null) {
+            notes.put("entityType", paymentRequest.getEntityType());
+        }
+        if (paymentRequest.getEntityId() != null) {
+            notes.put("entityId", paymentRequest.getEntityId());
         }
+        // The webhook attributes the payment to the user in the notes, so it is the caller,
+        // never a user ID from the request body
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof UserDetailsImpl userDetails)) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Log in to create an order")));
+        }
+        notes.put("userId", String.valueOf(userDetails.getId()));
+        String receipt = "receipt_" + System.currentTimeMillis();
+        // The request thread is released while the gateway call runs
+        return paymentGateway.createOrder(paymentRequest.getAmount() * 100L, "INR", receipt, notes)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.error("Order creation failed: {}", cause.getMessage());
+                    boolean unavailable = cause instanceof PaymentGatewayException gatewayException
+                            && gatewayException.isUnavailable();
+                    return ResponseEntity.status(unavailable ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY)
+                            .body(Map.of("error", cause.getMessage()));
+                });
     }
 
     @PostMapping("/verify")
@@ -74,6 +103,26 @@ public class PaymentController {
         return paymentService.verifyAndSavePayment(payload);
     }
 
+    /**
+     * Razorpay webhook. The delivery is only queued here; signature checks, dedupe and
+     * persistence happen in batches on the drainer.
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<?> receiveWebhook(
+            @RequestBody byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature) {
+        if (signature == null || signature.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing X-Razorpay-Signature header"));
+        }
+        if (!paymentWebhookService.enqueue(body, signature)) {
+            // Razorpay redelivers on non-2xx answers
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("error", "Webhook queue is full"));
+        }
+        return ResponseEntity.accepted().body(Map.of("status", "queued"));
+    }
+
     @GetMapping("/by-entity")
     public ResponseEntity<?> getPaymentsByEntity(
             @RequestParam String entityType,
@@ -98,7 +147,8 @@ public class PaymentController {
             }
             
             logger.info("Fetching payments for user ID: {}", userId);
-            List<Payment> payments = paymentRepository.findByUserId(userId);
+            Long userKey = userKeyResolver.resolve(userId);
+            List<Payment> payments = userKey != null ? paymentRepository.findByUserKey(userKey) : new ArrayList<>();
             logger.info("Found {} payments for user ID: {}", payments.size(), userId);
             return ResponseEntity.ok(payments);
         } catch (Exception e) {
@@ -108,7 +158,9 @@ public class PaymentController {
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getUserPayments(@PathVariable String userId) {
+    public ResponseEntity<?> getUserPayments(@PathVariable String userId,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
         try {
             if (userId == null || userId.trim().isEmpty()) {
                 logger.error("Invalid user ID provided in path: {}", userId);
@@ -116,9 +168,11 @@ public class PaymentController {
             }
             
             logger.info("Fetching payments for user ID (path variable): {}", userId);
-            List<Payment> payments = paymentRepository.findByUserId(userId);
-            logger.info("Found {} payments for user ID: {}", payments.size(), userId);
-            return ResponseEntity.ok(payments);
+            CursorPage<Payment> page = paymentService.getUserPayments(userId, cursor, limit);
+            logger.info("Found {} payments for user ID: {}", page.items().size(), userId);
+            return page.toResponse();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching payments for user ID: {}", userId, e);
             Map<String, Object> errorResponse = new HashMap<>();
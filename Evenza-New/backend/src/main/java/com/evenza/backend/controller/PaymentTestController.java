@@ -2,12 +2,18 @@ package com.evenza.backend.controller;
 
 import com.evenza.backend.model.Payment;
 import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.services.PaymentService;
+import com.evenza.backend.services.payment.FakePaymentGateway;
+import com.evenza.backend.services.payment.PaymentWebhookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -22,6 +28,122 @@ public class PaymentTestController {
 
     @Autowired
     private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private PaymentService paymentService;
+    
+    @Autowired
+    private ObjectProvider<FakePaymentGateway> fakePaymentGateway;
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Completes the checkout of an order created by the fake gateway, for load tests of
+     * the create-order and verify flow. Only available with app.payment.gateway=fake.
+     * @return the fields to send to /api/payment/verify
+     */
+    @PostMapping("/fake-checkout/{orderId}")
+    public ResponseEntity<?> fakeCheckout(@PathVariable String orderId) {
+        FakePaymentGateway gateway = fakePaymentGateway.getIfAvailable();
+        if (gateway == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "The fake payment gateway is not enabled"));
+        }
+        return ResponseEntity.ok(gateway.pay(orderId));
+    }
+
+    /**
+     * Fires synthetic Razorpay payment webhooks into the ingestion queue, signed with the
+     * configured webhook secret, for load tests of the webhook pipeline. The payments land
+     * in the real payment table and sales rollups, so like fake checkout this is only
+     * available with app.payment.gateway=fake.
+     * @param count Number of webhooks to fire
+     * @param duplicateRate Share of webhooks that redeliver an earlier payment
+     * @param invalidRate Share of webhooks with a bad signature, which end up dead-lettered
+     * @param failedRate Share of payment.failed events, the rest are payment.captured
+     */
+    @PostMapping("/webhooks/generate")
+    public ResponseEntity<?> generateWebhooks(
+            @RequestParam(defaultValue = "100") int count,
+            @RequestParam(defaultValue = "0.1") double duplicateRate,
+            @RequestParam(defaultValue = "0") double invalidRate,
+            @RequestParam(defaultValue = "0.1") double failedRate,
+            @RequestParam(required = false) String userId) {
+        if (fakePaymentGateway.getIfAvailable() == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "The fake payment gateway is not enabled"));
+        }
+        if (count < 1 || count > 100000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "count must be between 1 and 100000"));
+        }
+        if (paymentWebhookService.sign(new byte[0]) == null) {
+            return ResponseEntity.status(409).body(Map.of("error", "app.payment.webhook.secret is not set"));
+        }
+
+        String[] entityTypes = {"MOVIE", "CONCERT", "SPORTS", "EVENT"};
+        Random random = new Random();
+        List<String> paymentIds = new ArrayList<>();
+        int accepted = 0;
+        int rejected = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                String paymentId;
+                if (!paymentIds.isEmpty() && random.nextDouble() < duplicateRate) {
+                    paymentId = paymentIds.get(random.nextInt(paymentIds.size()));
+                } else {
+                    paymentId = "pay_" + UUID.randomUUID().toString().replace("-", "").substring(0, 14);
+                    paymentIds.add(paymentId);
+                }
+                // The same payment always carries the same data, like a real redelivery
+                Random payment = new Random(paymentId.hashCode());
+                boolean failed = payment.nextDouble() < failedRate;
+
+                Map<String, Object> notes = new HashMap<>();
+                notes.put("entityType", entityTypes[payment.nextInt(entityTypes.length)]);
+                notes.put("entityId", String.valueOf(payment.nextInt(100) + 1));
+                if (userId != null && !userId.isBlank()) {
+                    notes.put("userId", userId);
+                }
+                Map<String, Object> entity = new HashMap<>();
+                entity.put("id", paymentId);
+                entity.put("order_id", "order_" + paymentId.substring(4));
+                entity.put("amount", (100 + payment.nextInt(4900)) * 100L);
+                entity.put("currency", "INR");
+                entity.put("status", failed ? "failed" : "captured");
+                entity.put("method", "upi");
+                entity.put("notes", notes);
+                Map<String, Object> event = Map.of(
+                        "entity", "event",
+                        "event", failed ? "payment.failed" : "payment.captured",
+                        "payload", Map.of("payment", Map.of("entity", entity)),
+                        "created_at", System.currentTimeMillis() / 1000);
+
+                byte[] body = objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8);
+                String signature = random.nextDouble() < invalidRate
+                        ? paymentWebhookService.sign("tampered".getBytes(StandardCharsets.UTF_8))
+                        : paymentWebhookService.sign(body);
+                if (paymentWebhookService.enqueue(body, signature)) {
+                    accepted++;
+                } else {
+                    rejected++;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error generating payment webhooks", e);
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+
+        logger.info("Generated {} payment webhooks: {} queued, {} rejected", count, accepted, rejected);
+        return ResponseEntity.ok(Map.of(
+            "generated", count,
+            "distinctPayments", paymentIds.size(),
+            "accepted", accepted,
+            "rejected", rejected,
+            "queued", paymentWebhookService.queueSize()
+        ));
+    }
 
     /**
      * Create sample payment records for testing
@@ -80,6 +202,7 @@ public class PaymentTestController {
                 createdPayments.add(savedPayment);
             }
             
+            paymentService.clearUserPaymentCache(userId);
             logger.info("Successfully created {} sample payments", createdPayments.size());
             
             Map<String, Object> response = new HashMap<>();
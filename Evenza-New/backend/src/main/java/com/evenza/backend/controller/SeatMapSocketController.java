@@ -0,0 +1,40 @@
+package com.evenza.backend.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import com.evenza.backend.services.SeatInventoryService;
+import com.evenza.backend.util.SeatRunLengthEncoder;
+import com.evenza.backend.util.SeatStateMap;
+
+/**
+ * Seat map snapshots for clients joining the live seat stream.
+ *
+ * A client subscribes to /app/seats/{entityType}/{entityId} once for the snapshot and to
+ * /topic/seats/{entityType}/{entityId} for deltas. The sequence number is the seat
+ * inventory version the seats were read at, under the same lock, so the snapshot covers
+ * exactly the deltas up to it and every later change arrives with a higher sequence.
+ */
+@Controller
+public class SeatMapSocketController {
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @SubscribeMapping("/seats/{entityType}/{entityId}")
+    public Map<String, Object> seatMapSnapshot(@DestinationVariable String entityType,
+                                               @DestinationVariable String entityId) {
+        SeatStateMap.Snapshot seats = seatInventoryService.snapshot(entityType, entityId);
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("seq", seats.version());
+        snapshot.put("sold", SeatRunLengthEncoder.encode(seats.sold()));
+        snapshot.put("held", SeatRunLengthEncoder.encode(seats.held()));
+        return snapshot;
+    }
+}
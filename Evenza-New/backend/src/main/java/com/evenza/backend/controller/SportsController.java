@@ -1,6 +1,7 @@
 package com.evenza.backend.controller;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -8,10 +9,14 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.evenza.backend.model.Sport;
 import com.evenza.backend.model.Sports;
+import com.evenza.backend.repository.SportRepository;
 import com.evenza.backend.repository.SportsRepository;
+import com.evenza.backend.services.CapacityService;
 
 @RestController
 @RequestMapping("/api/sports")
@@ -21,6 +26,12 @@ public class SportsController {
     @Autowired
     private SportsRepository sportsRepository;
 
+    @Autowired
+    private SportRepository sportRepository;
+
+    @Autowired
+    private CapacityService capacityService;
+
     // Get all sports
     @GetMapping
     public List<Sports> getAllSports() {
@@ -40,4 +51,20 @@ public class SportsController {
     public List<Sports> getSportsByCategory(@PathVariable String category) {
         return sportsRepository.findByCategoryIgnoreCase(category);
     }
+
+    // Get capacity, remaining seats and sold-out state, for all sports or the given IDs
+    @GetMapping("/availability")
+    public List<Map<String, Object>> getAvailability(@RequestParam(required = false) List<String> ids) {
+        List<Sport> sports = ids != null ? sportRepository.findAllById(ids) : sportRepository.findAll();
+        return capacityService.getAvailability(sports);
+    }
+
+    // Get availability of one sport
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<Map<String, Object>> getSportAvailability(@PathVariable String id) {
+        return sportRepository.findById(id)
+                .map(capacityService::getAvailability)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
@@ -163,6 +163,7 @@ public class TicketController {
                         if (movie.isPresent()) {
                             ticket.setEntityName(movie.get().getTitle());
                             ticketRepository.save(ticket);
+                            paymentService.clearUserTicketCache(ticket.getUserId());
                         }
                     } catch (Exception e) {
                         System.out.println("Could not update movie name in ticket: " + e.getMessage());
@@ -192,9 +193,14 @@ public class TicketController {
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Ticket>> getUserTickets(@PathVariable String userId) {
-        List<Ticket> tickets = ticketService.getUserTickets(userId);
-        return ResponseEntity.ok(tickets);
+    public ResponseEntity<?> getUserTickets(@PathVariable String userId,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
+        try {
+            return ticketService.getUserTickets(userId, cursor, limit).toResponse();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     @GetMapping("/user/{userId}/upcoming")
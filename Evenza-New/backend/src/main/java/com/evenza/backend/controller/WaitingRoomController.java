@@ -0,0 +1,55 @@
+package com.evenza.backend.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.evenza.backend.services.UserDetailsImpl;
+import com.evenza.backend.services.WaitingRoomService;
+
+@RestController
+@RequestMapping("/api/waiting-room")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174", "http://127.0.0.1:5173", "http://127.0.0.1:5174"})
+public class WaitingRoomController {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @PostMapping("/join")
+    public ResponseEntity<?> join(@RequestBody Map<String, String> request) {
+        String entityType = request.get("entityType");
+        String entityId = request.get("entityId");
+        if (entityType == null || entityId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "entityType and entityId are required"));
+        }
+        // The token only admits the user who joined
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof UserDetailsImpl userDetails)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Log in to join the waiting room"));
+        }
+        try {
+            return ResponseEntity.ok(waitingRoomService.join(entityType, entityId, userDetails.getId()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to join waiting room: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/status/{token}")
+    public ResponseEntity<?> getStatus(@PathVariable String token) {
+        try {
+            return ResponseEntity.ok(waitingRoomService.getStatus(token));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to get waiting room status: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.evenza.backend.listner;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.evenza.backend.model.UserScoped;
+import com.evenza.backend.services.UserKeyResolver;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Fills in the user key of bookings, payments and tickets before they are written.
+ * Instantiated by Hibernate through Spring, so the resolver is injected.
+ */
+public class UserKeyListener {
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
+    @PrePersist
+    @PreUpdate
+    public void assignUserKey(Object target) {
+        UserScoped entity = (UserScoped) target;
+        if (entity.getUserKey() == null && entity.getUserId() != null) {
+            entity.setUserKey(userKeyResolver.resolveOrAssign(entity.getUserId()));
+        }
+    }
+}
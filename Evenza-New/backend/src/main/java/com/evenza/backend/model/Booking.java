@@ -3,25 +3,39 @@ package com.evenza.backend.model;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import com.evenza.backend.listner.UserKeyListener;
+import com.evenza.backend.util.TimeOrderedId;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+    @Index(name = "idx_bookings_status_expiry", columnList = "status, reservation_expiry"),
+    @Index(name = "idx_bookings_user_key", columnList = "user_key, booking_time"),
+    @Index(name = "idx_bookings_user_created", columnList = "user_key, created_at"),
+    @Index(name = "idx_bookings_entity_status", columnList = "entity_type, entity_id, status, reservation_expiry, seat_id"),
+    @Index(name = "idx_bookings_created_at", columnList = "created_at")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_bookings_payment_seat", columnNames = {"payment_id", "seat_id"})
+})
+@EntityListeners(UserKeyListener.class)
 @Getter
 @Setter
-public class Booking implements Serializable {
+public class Booking implements Serializable, UserScoped {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     @Column(nullable = false)
@@ -36,6 +50,9 @@ public class Booking implements Serializable {
     @Column(nullable = true)
     private String userId;
     
+    @Column(name = "user_key", nullable = true)
+    private Long userKey;
+    
     @Column(nullable = true)
     private String paymentId;
     
@@ -55,12 +72,17 @@ public class Booking implements Serializable {
     @Column(nullable = true)
     private String venue;
     
+    // Whole seconds, like the DATETIME column, so a cached booking pages like the stored row
     @Column(nullable = true)
     private LocalDateTime createdAt;
 
     // Default constructor
     public Booking() {
-        this.createdAt = LocalDateTime.now(); // Set default in constructor
+        this.createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS); // Set default in constructor
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt != null ? createdAt.truncatedTo(ChronoUnit.SECONDS) : null;
     }
 
     // All-args constructor
@@ -123,7 +145,7 @@ public class Booking implements Serializable {
         private String paymentId;
         private BigDecimal amount;
         private String venue;
-        private LocalDateTime createdAt = LocalDateTime.now();
+        private LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
 
         public BookingBuilder id(Long id) {
             this.id = id;
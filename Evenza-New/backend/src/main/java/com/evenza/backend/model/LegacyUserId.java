@@ -0,0 +1,33 @@
+package com.evenza.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Maps a user ID string that is not a numeric users.id (a Firebase uid, an email, or an
+ * ID from older clients) to its user key. Strings that belong to no registered user get a
+ * negative synthetic key, so their records can still be queried by key; pointing such a
+ * row at a real users.id moves those records to that user.
+ */
+@Entity
+@Table(name = "legacy_user_ids", indexes = {
+    @Index(name = "idx_legacy_user_ids_user_key", columnList = "user_key")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class LegacyUserId {
+
+    @Id
+    @Column(name = "legacy_id")
+    private String legacyId;
+
+    @Column(name = "user_key", nullable = false)
+    private Long userKey;
+}
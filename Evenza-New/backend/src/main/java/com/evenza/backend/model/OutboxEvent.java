@@ -0,0 +1,72 @@
+package com.evenza.backend.model;
+
+import java.time.LocalDateTime;
+
+import com.evenza.backend.util.TimeOrderedId;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Work to do after a transaction commits, written in that transaction. The dispatcher
+ * leases a due event by moving {@code availableAt} past the lease and recording its
+ * claim token in {@code lockedBy}; an event whose worker dies becomes due again when
+ * the lease runs out. One event per type and aggregate, so writing it twice is a no-op.
+ */
+@Entity
+@Table(name = "outbox_events",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_outbox_events_aggregate", columnNames = {"event_type", "aggregate_id"})
+    },
+    indexes = {
+        @Index(name = "idx_outbox_events_due", columnList = "status, available_at")
+    })
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    @Column(nullable = false, length = 64)
+    private String aggregateId;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload; // JSON
+
+    @Column(nullable = false, length = 16)
+    private String status; // PENDING, DONE, FAILED
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(length = 64)
+    private String lockedBy;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    private LocalDateTime processedAt;
+}
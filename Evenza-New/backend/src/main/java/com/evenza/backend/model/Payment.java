@@ -1,28 +1,43 @@
 package com.evenza.backend.model;
 
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 
+import com.evenza.backend.listner.UserKeyListener;
+import com.evenza.backend.util.TimeOrderedId;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Getter
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = {
+    @Index(name = "idx_payment_user_key", columnList = "user_key, created_at"),
+    @Index(name = "idx_payment_status_created", columnList = "status, created_at, amount"),
+    @Index(name = "idx_payment_created_at", columnList = "created_at"),
+    @Index(name = "idx_payment_entity", columnList = "entity_type, entity_id")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_payment_razorpay_payment_id", columnNames = {"razorpay_payment_id"})
+})
+@EntityListeners(UserKeyListener.class)
 @NoArgsConstructor
-public class Payment implements Serializable {
+public class Payment implements Serializable, UserScoped {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     @Setter
@@ -49,12 +64,17 @@ public class Payment implements Serializable {
 
     @Setter
     private String userId; // ID of the user who made the payment
+
+    @Setter
+    @Column(name = "user_key")
+    private Long userKey; // Canonical key of the user, see UserKeyResolver
     
     @Setter
     private String orderId; // Order ID for the payment
 
+    // Whole seconds, so a cached payment pages like the stored row whatever the column precision
     @Temporal(TemporalType.TIMESTAMP)
-    private Date createdAt = new Date();
+    private Date createdAt = Date.from(Instant.now().truncatedTo(ChronoUnit.SECONDS));
 
     // Getters and Setters
 
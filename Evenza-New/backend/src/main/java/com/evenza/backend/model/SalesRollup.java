@@ -0,0 +1,53 @@
+package com.evenza.backend.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.evenza.backend.util.TimeOrderedId;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Successful payment totals of one time bucket and entity type. Rows are written with
+ * upserts on the unique key, which also serves the range reads of the admin charts.
+ */
+@Entity
+@Table(name = "sales_rollup",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_sales_rollup_bucket", columnNames = {"granularity", "bucket_start", "entity_type"})
+    })
+@Getter
+@Setter
+@NoArgsConstructor
+public class SalesRollup {
+
+    public static final String MINUTE = "MINUTE";
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(nullable = false, length = 8)
+    private String granularity; // MINUTE, HOUR, DAY
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false, length = 32)
+    private String entityType;
+
+    @Column(nullable = false, precision = 16, scale = 2)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long paymentCount;
+}
@@ -0,0 +1,70 @@
+package com.evenza.backend.model;
+
+import java.time.LocalDateTime;
+
+import com.evenza.backend.util.TimeOrderedId;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A live claim on one seat of a show. The unique key lets the database reject a
+ * second claim on the same seat, so bookings need no read before the write.
+ */
+@Entity
+@Table(name = "seat_claims",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_seat_claims_seat", columnNames = {"entity_type", "entity_id", "seat_id"})
+    },
+    indexes = {
+        @Index(name = "idx_seat_claims_expires_at", columnList = "expires_at")
+    })
+@Getter
+@Setter
+@NoArgsConstructor
+public class SeatClaim {
+
+    public static final String HELD = "HELD";
+    public static final String SOLD = "SOLD";
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(nullable = false)
+    private String entityType;
+
+    @Column(nullable = false)
+    private String entityId;
+
+    @Column(nullable = false)
+    private String seatId;
+
+    @Column(nullable = true)
+    private String userId;
+
+    @Column(nullable = false)
+    private String status; // HELD, SOLD
+
+    @Column(nullable = true)
+    private LocalDateTime expiresAt; // set for HELD claims only
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public SeatClaim(String entityType, String entityId, String seatId, String userId, LocalDateTime expiresAt) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.seatId = seatId;
+        this.userId = userId;
+        this.status = expiresAt != null ? HELD : SOLD;
+        this.expiresAt = expiresAt;
+    }
+}
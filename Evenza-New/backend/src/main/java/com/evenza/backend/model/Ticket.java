@@ -1,5 +1,7 @@
 package com.evenza.backend.model;
 
+import com.evenza.backend.listner.UserKeyListener;
+
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -8,15 +10,21 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "tickets")
+@Table(name = "tickets", indexes = {
+    @Index(name = "idx_tickets_user_key", columnList = "user_key, created_at"),
+    @Index(name = "idx_tickets_user_event", columnList = "user_key, event_date_time"),
+    @Index(name = "idx_tickets_booking_id", columnList = "booking_id")
+})
+@EntityListeners(UserKeyListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Ticket {
+public class Ticket implements UserScoped {
     
     @Id
     private String id;
@@ -27,6 +35,9 @@ public class Ticket {
     @Column(nullable = false)
     private String userId;
     
+    @Column(name = "user_key")
+    private Long userKey;
+    
     @Column(nullable = false)
     private String userEmail;
     
@@ -66,6 +77,14 @@ public class Ticket {
     @Column
     private LocalDateTime updatedAt;
     
+    // Whole seconds, so a cached ticket pages like the stored row whatever the column precision
+    @PrePersist
+    void truncateCreatedAt() {
+        if (createdAt != null) {
+            createdAt = createdAt.truncatedTo(ChronoUnit.SECONDS);
+        }
+    }
+
     // Convenience method to check if ticket is valid for entry
     public boolean isValid() {
         return !isUsed && eventDateTime.isAfter(LocalDateTime.now());
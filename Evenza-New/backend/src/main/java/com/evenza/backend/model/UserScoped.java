@@ -0,0 +1,15 @@
+package com.evenza.backend.model;
+
+/**
+ * An entity owned by a user. The free-form {@code userId} sent by clients is kept as is;
+ * {@code userKey} is the canonical numeric key that user-scoped queries use, assigned by
+ * {@link com.evenza.backend.listner.UserKeyListener} when the entity is saved.
+ */
+public interface UserScoped {
+
+    String getUserId();
+
+    Long getUserKey();
+
+    void setUserKey(Long userKey);
+}
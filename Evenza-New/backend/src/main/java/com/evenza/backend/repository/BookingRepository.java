@@ -1,25 +1,47 @@
 package com.evenza.backend.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.evenza.backend.DTO.SeatStatusView;
 import com.evenza.backend.model.Booking;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     
-    List<Booking> findByUserId(String userId);
+    List<Booking> findByUserKey(Long userKey);
+    
+    List<Booking> findByPaymentId(String paymentId);
+    
+    Optional<Booking> findFirstByPaymentIdOrderByIdAsc(String paymentId);
+    
+    @Query("SELECT b FROM Booking b WHERE b.userKey = :userKey ORDER BY b.bookingTime DESC")
+    List<Booking> findUserBookingsOrderByTimeDesc(@Param("userKey") Long userKey);
     
-    @Query("SELECT b FROM Booking b WHERE b.userId = :userId ORDER BY b.bookingTime DESC")
-    List<Booking> findUserBookingsOrderByTimeDesc(@Param("userId") String userId);
+    // Keyset pages of a user's bookings, newest first; the page size comes from the Pageable
+    @Query("SELECT b FROM Booking b WHERE b.userKey = :userKey AND (:status IS NULL OR b.status = :status) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findUserBookingsPage(@Param("userKey") Long userKey, @Param("status") String status, Pageable page);
     
-    @Query("SELECT b FROM Booking b WHERE b.userId = :userId OR b.userId LIKE CONCAT('%', :userId, '%') ORDER BY b.bookingTime DESC")
-    List<Booking> findUserBookingsByPartialUserId(@Param("userId") String userId);
+    @Query("SELECT b FROM Booking b WHERE b.userKey = :userKey AND (:status IS NULL OR b.status = :status) " +
+           "AND b.createdAt <= :createdAt AND (b.createdAt < :createdAt OR b.id < :id) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findUserBookingsPageAfter(@Param("userKey") Long userKey, @Param("status") String status,
+                                            @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                            Pageable page);
     
     List<Booking> findByStatus(String status);
     
@@ -34,20 +56,83 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @Query("SELECT b FROM Booking b ORDER BY b.createdAt DESC LIMIT 10")
     List<Booking> findTop10ByOrderByCreatedAtDesc();
     
-    @Query("SELECT b FROM Booking b WHERE b.userId = ?1 AND b.status = 'CONFIRMED' AND b.bookingTime > CURRENT_TIMESTAMP")
-    List<Booking> findUserUpcomingBookings(String userId);
+    @Query("SELECT b FROM Booking b WHERE b.userKey = ?1 AND b.status = 'CONFIRMED' AND b.bookingTime > CURRENT_TIMESTAMP")
+    List<Booking> findUserUpcomingBookings(Long userKey);
     
-    @Query("SELECT b FROM Booking b WHERE b.userId = ?1 AND (b.status != 'CONFIRMED' OR b.bookingTime < CURRENT_TIMESTAMP)")
-    List<Booking> findUserPastBookings(String userId);
+    @Query("SELECT b FROM Booking b WHERE b.userKey = ?1 AND (b.status != 'CONFIRMED' OR b.bookingTime < CURRENT_TIMESTAMP)")
+    List<Booking> findUserPastBookings(Long userKey);
 
     boolean existsBySeatId(String seatId);
 
     List<Booking> findByEntityTypeAndEntityId(String entityType, String entityId);
+
+    List<Booking> findByEntityTypeAndEntityIdAndSeatIdIn(String entityType, String entityId, Collection<String> seatIds);
+
+    @Query("SELECT b.seatId AS seatId, b.status AS status FROM Booking b " +
+           "WHERE b.entityType = :entityType AND b.entityId = :entityId " +
+           "AND (b.status IN ('PENDING', 'CONFIRMED') OR (b.status = 'RESERVED' AND b.reservationExpiry > CURRENT_TIMESTAMP))")
+    List<SeatStatusView> findTakenSeatStatuses(@Param("entityType") String entityType, @Param("entityId") String entityId);
+
+    @Query("SELECT COUNT(b) FROM Booking b " +
+           "WHERE b.entityType IN :entityTypes AND b.entityId = :entityId " +
+           "AND (b.status IN ('PENDING', 'CONFIRMED') OR (b.status = 'RESERVED' AND b.reservationExpiry > :now))")
+    long countTakenSeats(@Param("entityTypes") Collection<String> entityTypes, @Param("entityId") String entityId,
+                         @Param("now") LocalDateTime now);
+
+    // Entity ID and taken seat count of each of the entities that has taken seats
+    @Query("SELECT b.entityId, COUNT(b) FROM Booking b " +
+           "WHERE b.entityType IN :entityTypes AND b.entityId IN :entityIds " +
+           "AND (b.status IN ('PENDING', 'CONFIRMED') OR (b.status = 'RESERVED' AND b.reservationExpiry > :now)) " +
+           "GROUP BY b.entityId")
+    List<Object[]> countTakenSeatsByEntity(@Param("entityTypes") Collection<String> entityTypes,
+                                           @Param("entityIds") Collection<String> entityIds,
+                                           @Param("now") LocalDateTime now);
+
+    @Query("SELECT b.seatId FROM Booking b")
+    List<String> findAllSeatIds();
     
     @Query("SELECT b FROM Booking b WHERE b.entityType = :entityType AND b.entityId = :entityId")
     List<Booking> findBookingsByEntityTypeAndId(@Param("entityType") String entityType, @Param("entityId") String entityId);
 
-    @Query("SELECT b FROM Booking b WHERE CAST(b.id AS string) = :stringId")
-    Optional<Booking> findByStringId(String stringId);
+    List<Booking> findByStatusAndReservationExpiryAfter(String status, LocalDateTime time);
+
+    // Live reservations of a user or of a show, the candidates of a bulk cancellation
+    @Query("SELECT b FROM Booking b WHERE b.userKey = :userKey AND b.status = 'RESERVED'")
+    List<Booking> findReservationsByUserKey(@Param("userKey") Long userKey);
+
+    @Query("SELECT b FROM Booking b WHERE b.entityType = :entityType AND b.entityId = :entityId AND b.status = 'RESERVED'")
+    List<Booking> findReservationsByEntity(@Param("entityType") String entityType, @Param("entityId") String entityId);
+
+    // Guarded state transitions: rows that are no longer RESERVED are not counted, so a
+    // result below ids.size() means another request got there first
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Booking b SET b.status = 'CONFIRMED', b.paymentId = :paymentId, b.reservationExpiry = null " +
+           "WHERE b.id IN :ids AND b.status = 'RESERVED' AND b.reservationExpiry > :now")
+    int confirmReservations(@Param("ids") Collection<Long> ids, @Param("paymentId") String paymentId,
+                            @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Booking b SET b.status = 'CANCELLED', b.reservationExpiry = null " +
+           "WHERE b.id IN :ids AND b.status = 'RESERVED'")
+    int cancelReservations(@Param("ids") Collection<Long> ids);
+
+    // Expired reservations, locked until the caller's transaction cancels them, so the
+    // caller releases exactly the seats of the rows it cancelled
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.status = 'RESERVED' AND b.reservationExpiry < :now " +
+           "ORDER BY b.reservationExpiry")
+    List<Booking> findExpiredReservationsForUpdate(@Param("now") LocalDateTime now, Pageable page);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.id IN :ids AND b.status = 'RESERVED' AND b.reservationExpiry < :now")
+    List<Booking> findExpiredReservationsForUpdate(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Booking b SET b.status = 'CANCELLED', b.reservationExpiry = null " +
+           "WHERE b.id IN :ids AND b.status = 'RESERVED' AND b.reservationExpiry < :now")
+    int cancelExpiredReservationsByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
 
 }
@@ -1,19 +1,52 @@
 package com.evenza.backend.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.evenza.backend.DTO.PaymentLedgerView;
 import com.evenza.backend.model.Payment;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByEntityTypeAndEntityId(String entityType, String entityId);
-    List<Payment> findByUserId(String userId);
+    List<Payment> findByUserKey(Long userKey);
+    // Keyset pages of a user's payments, newest first; the page size comes from the Pageable
+    @Query("SELECT p FROM Payment p WHERE p.userKey = :userKey ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findUserPaymentsPage(@Param("userKey") Long userKey, Pageable page);
+    @Query("SELECT p FROM Payment p WHERE p.userKey = :userKey " +
+           "AND p.createdAt <= :createdAt AND (p.createdAt < :createdAt OR p.id < :id) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findUserPaymentsPageAfter(@Param("userKey") Long userKey, @Param("createdAt") Date createdAt,
+                                            @Param("id") Long id, Pageable page);
     List<Payment> findByOrderId(String orderId);
+    // Forward-only stream of a window of the ledger in the byte order of the gateway IDs, for
+    // reconciliation; MySQL streams rows one by one only with a fetch size of Integer.MIN_VALUE
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "SELECT razorpay_payment_id AS razorpayPaymentId, amount, status FROM payment " +
+           "WHERE created_at >= :from AND created_at < :to AND razorpay_payment_id IS NOT NULL " +
+           "ORDER BY CAST(razorpay_payment_id AS BINARY)", nativeQuery = true)
+    Stream<PaymentLedgerView> streamLedger(@Param("from") Date from, @Param("to") Date to);
+    // Which of a webhook batch's gateway payment IDs are already recorded
+    @Query("SELECT p.razorpayPaymentId FROM Payment p WHERE p.razorpayPaymentId IN :ids")
+    List<String> findExistingRazorpayPaymentIds(@Param("ids") Collection<String> ids);
+    Optional<Payment> findByRazorpayPaymentId(String razorpayPaymentId);
     List<Payment> findByStatus(String status);
     long countByStatus(String status);
     @Query("SELECT COUNT(p) FROM Payment p WHERE p.status = ?1")
@@ -24,16 +57,4 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findTop10ByOrderByCreatedAtDesc();
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS'")
     BigDecimal getTotalSuccessfulPaymentAmount();
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') as day, SUM(amount) as total FROM payment " +
-           "WHERE status = 'SUCCESS' AND created_at >= DATE_SUB(CURRENT_DATE, INTERVAL 7 DAY) " +
-           "GROUP BY day ORDER BY day", nativeQuery = true)
-    List<Object[]> getDailySalesData();
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d') as week, SUM(amount) as total FROM payment " +
-           "WHERE status = 'SUCCESS' AND created_at >= DATE_SUB(CURRENT_DATE, INTERVAL 8 WEEK) " +
-           "GROUP BY week ORDER BY week", nativeQuery = true)
-    List<Object[]> getWeeklySalesData();
-    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m') as month, SUM(amount) as total FROM payment " +
-           "WHERE status = 'SUCCESS' AND created_at >= DATE_SUB(CURRENT_DATE, INTERVAL 12 MONTH) " +
-           "GROUP BY month ORDER BY month", nativeQuery = true)
-    List<Object[]> getMonthlySalesData();
 }
@@ -0,0 +1,23 @@
+package com.evenza.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.evenza.backend.model.SalesRollup;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    // Totals per bucket from a point in time on, all entity types or one
+    @Query("SELECT r.bucketStart, SUM(r.totalAmount) FROM SalesRollup r " +
+           "WHERE r.granularity = :granularity AND r.bucketStart >= :from " +
+           "AND (:entityType IS NULL OR r.entityType = :entityType) " +
+           "GROUP BY r.bucketStart ORDER BY r.bucketStart")
+    List<Object[]> sumByBucket(@Param("granularity") String granularity, @Param("from") LocalDateTime from,
+                               @Param("entityType") String entityType);
+}
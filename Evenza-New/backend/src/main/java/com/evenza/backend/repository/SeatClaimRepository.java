@@ -0,0 +1,50 @@
+package com.evenza.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.evenza.backend.model.SeatClaim;
+
+@Repository
+public interface SeatClaimRepository extends JpaRepository<SeatClaim, Long> {
+
+    List<SeatClaim> findByEntityTypeAndEntityIdAndSeatIdIn(String entityType, String entityId, Collection<String> seatIds);
+
+    // Claims that no longer hold their seat: expired holds, and for a sale also the buyer's own holds
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SeatClaim c WHERE c.entityType = :entityType AND c.entityId = :entityId " +
+           "AND c.seatId IN :seatIds AND c.status = 'HELD' " +
+           "AND (c.expiresAt < :now OR (:userId IS NOT NULL AND c.userId = :userId))")
+    int deleteStaleClaims(@Param("entityType") String entityType, @Param("entityId") String entityId,
+                          @Param("seatIds") Collection<String> seatIds, @Param("userId") String userId,
+                          @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SeatClaim c SET c.status = 'SOLD', c.expiresAt = null " +
+           "WHERE c.entityType = :entityType AND c.entityId = :entityId AND c.seatId IN :seatIds AND c.userId = :userId")
+    int markSold(@Param("entityType") String entityType, @Param("entityId") String entityId,
+                 @Param("seatIds") Collection<String> seatIds, @Param("userId") String userId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SeatClaim c WHERE c.entityType = :entityType AND c.entityId = :entityId " +
+           "AND c.seatId IN :seatIds AND c.status = 'HELD' AND c.userId = :userId")
+    int deleteHeldClaims(@Param("entityType") String entityType, @Param("entityId") String entityId,
+                         @Param("seatIds") Collection<String> seatIds, @Param("userId") String userId);
+
+    // Bounded so the sweep never holds locks on a large range at once
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM seat_claims WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredClaims(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
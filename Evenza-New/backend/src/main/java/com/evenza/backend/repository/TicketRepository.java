@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,7 +15,7 @@ import com.evenza.backend.model.Ticket;
 @Repository
 public interface TicketRepository extends JpaRepository<Ticket, String> {
     
-    List<Ticket> findByUserId(String userId);
+    List<Ticket> findByUserKey(Long userKey);
     
     List<Ticket> findByBookingId(String bookingId);
     
@@ -22,14 +23,21 @@ public interface TicketRepository extends JpaRepository<Ticket, String> {
     
     List<Ticket> findByEntityTypeAndEntityId(String entityType, String entityId);
     
-    @Query("SELECT t FROM Ticket t WHERE t.userId = :userId ORDER BY t.createdAt DESC")
-    List<Ticket> findUserTicketsOrderByCreationDesc(@Param("userId") String userId);
+    // Keyset pages of a user's tickets, newest first; the page size comes from the Pageable
+    @Query("SELECT t FROM Ticket t WHERE t.userKey = :userKey ORDER BY t.createdAt DESC, t.id DESC")
+    List<Ticket> findUserTicketsPage(@Param("userKey") Long userKey, Pageable page);
     
-    @Query("SELECT t FROM Ticket t WHERE t.eventDateTime > :now AND t.isUsed = false AND t.userId = :userId ORDER BY t.eventDateTime ASC")
-    List<Ticket> findUpcomingTicketsByUserId(@Param("userId") String userId, @Param("now") LocalDateTime now);
+    @Query("SELECT t FROM Ticket t WHERE t.userKey = :userKey " +
+           "AND t.createdAt <= :createdAt AND (t.createdAt < :createdAt OR t.id < :id) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Ticket> findUserTicketsPageAfter(@Param("userKey") Long userKey, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") String id, Pageable page);
     
-    @Query("SELECT t FROM Ticket t WHERE t.eventDateTime < :now OR t.isUsed = true AND t.userId = :userId ORDER BY t.eventDateTime DESC")
-    List<Ticket> findPastTicketsByUserId(@Param("userId") String userId, @Param("now") LocalDateTime now);
+    @Query("SELECT t FROM Ticket t WHERE t.eventDateTime > :now AND t.isUsed = false AND t.userKey = :userKey ORDER BY t.eventDateTime ASC")
+    List<Ticket> findUpcomingTicketsByUserKey(@Param("userKey") Long userKey, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT t FROM Ticket t WHERE t.userKey = :userKey AND (t.eventDateTime < :now OR t.isUsed = true) ORDER BY t.eventDateTime DESC")
+    List<Ticket> findPastTicketsByUserKey(@Param("userKey") Long userKey, @Param("now") LocalDateTime now);
     
     Optional<Ticket> findByIdAndIsUsedFalse(String ticketId);
 } 
\ No newline at end of file
@@ -22,8 +22,5 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @Query("SELECT u FROM User u ORDER BY u.createdAt DESC LIMIT 10")
     List<User> findTop10ByOrderByCreatedAtDesc();
-
-    @Query("SELECT u FROM User u WHERE CAST(u.id AS string) = :stringId")
-    Optional<User> findByStringId(String stringId);
 }
 
@@ -0,0 +1,257 @@
+package com.evenza.backend.security.filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Makes retried booking and payment-verification requests safe.
+ *
+ * A request carrying an {@code Idempotency-Key} header runs once per user and key; its
+ * response is stored in Redis and replayed to every retry without reaching the services.
+ * A retry arriving while the first request is still running waits for its result. Reusing
+ * a key for a different request body is rejected with 422. Only final outcomes are stored:
+ * successes other than 202 and the validation errors 400 and 422. Answers that tell the
+ * client to come back (202, 409, 429) and server errors are not, so a retry with the same
+ * key runs again.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    private static final Set<String> IDEMPOTENT_PATHS = Set.of(
+            "/api/bookings/book", "/api/bookings/confirm", "/api/payment/verify");
+
+    private static final String RESPONSE_KEY_PREFIX = "IDEMPOTENCY:";
+    private static final String LOCK_KEY_PREFIX = "IDEMPOTENCY_LOCK:";
+    private static final Duration RESPONSE_TTL = Duration.ofHours(24);
+    private static final Duration LOCK_TTL = Duration.ofSeconds(60);
+    private static final long WAIT_TIMEOUT_MILLIS = 30000;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final DefaultRedisScript<Long> PUT_RESPONSE_SCRIPT = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        PUT_RESPONSE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/put-response.lua")));
+        PUT_RESPONSE_SCRIPT.setResultType(Long.class);
+        RELEASE_LOCK_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/release-claim.lua")));
+        RELEASE_LOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // Requests running on this node, so local duplicates wait without polling Redis
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !"POST".equals(request.getMethod())
+                || !IDEMPOTENT_PATHS.contains(request.getRequestURI())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String user = currentUser();
+        if (user == null) {
+            // Unauthenticated requests are rejected further down the chain; nothing to store
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String fingerprint = fingerprint(request.getRequestURI(), cachedRequest.body());
+        String key = user + ":" + request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        // The lock holds the fingerprint, for mismatch checks, and a token of this request,
+        // so it only ever releases its own lock
+        String lock = fingerprint + ":" + UUID.randomUUID();
+
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MILLIS;
+        try {
+            while (true) {
+                Map<Object, Object> stored = stringRedisTemplate.opsForHash().entries(RESPONSE_KEY_PREFIX + key);
+                if (!stored.isEmpty()) {
+                    replay(stored, fingerprint, response);
+                    return;
+                }
+
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                        .setIfAbsent(LOCK_KEY_PREFIX + key, lock, LOCK_TTL))) {
+                    // The first request may have finished between the lookup and the lock
+                    if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(RESPONSE_KEY_PREFIX + key))) {
+                        break;
+                    }
+                    releaseLock(key, lock);
+                    continue;
+                }
+
+                String runningLock = stringRedisTemplate.opsForValue().get(LOCK_KEY_PREFIX + key);
+                if (runningLock != null && !runningLock.startsWith(fingerprint + ":")) {
+                    writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                            "Idempotency-Key was already used for a different request");
+                    return;
+                }
+                if (!awaitFirstRequest(key, deadline)) {
+                    writeError(response, HttpStatus.CONFLICT,
+                            "A request with this Idempotency-Key is still in progress");
+                    return;
+                }
+            }
+        } catch (DataAccessException e) {
+            // Without Redis there is nothing to deduplicate against
+            logger.warn("Idempotency store unavailable (non-critical): {}", e.getMessage());
+            filterChain.doFilter(cachedRequest, response);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+            return;
+        }
+
+        execute(key, fingerprint, lock, cachedRequest, response, filterChain);
+    }
+
+    private void execute(String key, String fingerprint, String lock, CachedBodyRequest request,
+            HttpServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.put(key, done);
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, cachingResponse);
+            int status = cachingResponse.getStatus();
+            if (isFinal(status)) {
+                try {
+                    stringRedisTemplate.execute(PUT_RESPONSE_SCRIPT, List.of(RESPONSE_KEY_PREFIX + key),
+                            String.valueOf(RESPONSE_TTL.toMillis()),
+                            "fingerprint", fingerprint,
+                            "status", String.valueOf(status),
+                            "contentType", cachingResponse.getContentType() != null
+                                    ? cachingResponse.getContentType() : MediaType.APPLICATION_JSON_VALUE,
+                            "body", new String(cachingResponse.getContentAsByteArray(), StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    logger.warn("Could not store idempotent response (non-critical): {}", e.getMessage());
+                }
+            }
+            cachingResponse.copyBodyToResponse();
+        } finally {
+            try {
+                releaseLock(key, lock);
+            } catch (Exception e) {
+                logger.warn("Could not release idempotency lock (non-critical): {}", e.getMessage());
+            }
+            inFlight.remove(key, done);
+            done.complete(null);
+        }
+    }
+
+    // A lock that outlived its TTL and was taken by a duplicate is left to that duplicate
+    private void releaseLock(String key, String lock) {
+        stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(LOCK_KEY_PREFIX + key), lock);
+    }
+
+    /**
+     * Whether a response is the request's outcome rather than a "try again later", and so
+     * may be replayed for the retention period.
+     */
+    static boolean isFinal(int status) {
+        return status >= 200 && status < 300 && status != HttpStatus.ACCEPTED.value()
+                || status == HttpStatus.BAD_REQUEST.value()
+                || status == HttpStatus.UNPROCESSABLE_ENTITY.value();
+    }
+
+    /**
+     * Waits until the request holding the key finishes, on this node or another one.
+     * @return false if the deadline passed first
+     */
+    private boolean awaitFirstRequest(String key, long deadline) throws InterruptedException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        CompletableFuture<Void> local = inFlight.get(key);
+        if (local != null) {
+            try {
+                local.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                return false;
+            }
+        } else {
+            Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, remaining));
+        }
+        return true;
+    }
+
+    private static void replay(Map<Object, Object> stored, String fingerprint, HttpServletResponse response)
+            throws IOException {
+        if (!fingerprint.equals(stored.get("fingerprint"))) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+            return;
+        }
+        response.setStatus(Integer.parseInt((String) stored.get("status")));
+        response.setContentType((String) stored.get("contentType"));
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.getOutputStream().write(((String) stored.get("body")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)
+                ? auth.getName() : null;
+    }
+
+    private static String fingerprint(String path, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.evenza.backend.security.filter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.evenza.backend.services.UserDetailsImpl;
+import com.evenza.backend.services.WaitingRoomService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Lets only users admitted from the waiting room into the booking flow.
+ *
+ * Runs after JWT authentication: a queue token admits only the user who joined with it,
+ * and only into the show named in the request body. A rejected request costs one Redis
+ * lookup and never reaches a booking query.
+ */
+public class WaitingRoomFilter extends OncePerRequestFilter {
+
+    public static final String QUEUE_TOKEN_HEADER = "X-Queue-Token";
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitingRoomFilter.class);
+
+    private static final Set<String> GATED_PATHS = Set.of(
+            "/api/bookings/reserve", "/api/bookings/best-available", "/api/payment/create-order");
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.waiting-room.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !enabled || !"POST".equals(request.getMethod()) || !GATED_PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof UserDetailsImpl userDetails)) {
+            // Unauthenticated requests are rejected further down the chain
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String entityType = null;
+        String entityId = null;
+        try {
+            JsonNode body = objectMapper.readTree(cachedRequest.body());
+            entityType = body != null ? body.path("entityType").asText(null) : null;
+            entityId = body != null ? body.path("entityId").asText(null) : null;
+        } catch (IOException e) {
+            // Names no show, so no token admits it
+        }
+
+        String token = request.getHeader(QUEUE_TOKEN_HEADER);
+        boolean admitted;
+        try {
+            admitted = token != null && entityType != null && entityId != null
+                    && waitingRoomService.isAdmitted(token, entityType, entityId, userDetails.getId());
+        } catch (Exception e) {
+            // Without Redis there is no queue to enforce
+            logger.warn("Waiting room check unavailable (non-critical): {}", e.getMessage());
+            admitted = true;
+        }
+
+        if (!admitted) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Not admitted from the waiting room for this show yet\",\"waitingRoom\":true}");
+            return;
+        }
+        filterChain.doFilter(cachedRequest, response);
+    }
+}
@@ -0,0 +1,127 @@
+package com.evenza.backend.services;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.Exceptions.SeatTakenException;
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.util.SeatAllocator;
+import com.evenza.backend.util.VenueLayout;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Reserves the best available seats for a party instead of seats picked by the user.
+ *
+ * Seats are chosen by {@link SeatAllocator} from the venue layout and the show's in-memory
+ * seat inventory, then held through the regular reservation path. If another request wins
+ * some of the seats in between, they are excluded and the allocation is retried.
+ */
+@Service
+public class BestAvailableService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BestAvailableService.class);
+
+    public static final int MAX_QUANTITY = 10;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public record Result(List<Booking> reservations, SeatAllocator.Allocation allocation) {
+    }
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Value("${app.venue-layout.stadium:classpath:venues/stadium.json}")
+    private Resource stadiumLayout;
+
+    @Value("${app.venue-layout.cinema:classpath:venues/cinema.json}")
+    private Resource cinemaLayout;
+
+    private final Map<String, VenueLayout> layouts = new HashMap<>();
+
+    @PostConstruct
+    public void loadLayouts() throws Exception {
+        VenueLayout stadium = readLayout(stadiumLayout);
+        VenueLayout cinema = readLayout(cinemaLayout);
+        layouts.put("SPORT", stadium);
+        layouts.put("SPORTS", stadium);
+        layouts.put("MOVIE", cinema);
+        layouts.put("THEATER", cinema);
+        logger.info("Loaded venue layouts: stadium {} seats, cinema {} seats", stadium.getSeatCount(), cinema.getSeatCount());
+    }
+
+    public boolean hasLayout(String entityType) {
+        return entityType != null && layouts.containsKey(entityType.toUpperCase());
+    }
+
+    /**
+     * Finds and holds {@code quantity} seats for the user.
+     * @param section section ID or category to pick from, or null for any
+     * @param maxPrice highest seat price to consider, or null for any
+     * @return the reservations, or null if the show doesn't have enough matching free seats
+     */
+    public Result reserveBestAvailable(String entityType, String entityId, String userId, int quantity,
+                                       String section, Double maxPrice, boolean allowSplit, String venue) {
+        VenueLayout layout = layouts.get(entityType.toUpperCase());
+        if (layout == null) {
+            throw new IllegalArgumentException("No seat layout for " + entityType.toLowerCase());
+        }
+        Predicate<VenueLayout.Section> eligible = s ->
+                (section == null || section.equalsIgnoreCase(s.id()) || section.equalsIgnoreCase(s.category()))
+                && (maxPrice == null || s.price() <= maxPrice);
+
+        // Seats lost to other requests, which the local inventory may not know about yet
+        Set<String> excluded = new HashSet<>();
+        for (int attempt = 1; ; attempt++) {
+            BitSet taken = seatInventoryService.takenPositions(entityType, entityId, layout);
+            for (String seatId : excluded) {
+                int position = layout.positionOf(seatId);
+                if (position >= 0) {
+                    taken.set(position);
+                }
+            }
+            SeatAllocator.Allocation allocation = SeatAllocator.allocate(layout, taken, quantity, eligible, allowSplit);
+            if (allocation == null) {
+                return null;
+            }
+            try {
+                List<Booking> reservations = bookingService.createTemporaryReservations(allocation.seatIds(),
+                        entityType, entityId, userId, BigDecimal.valueOf(allocation.amount()), venue);
+                return new Result(reservations, allocation);
+            } catch (SeatTakenException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Best-available seats {} taken for {}:{}, retrying", e.getSeatIds(), entityType, entityId);
+                excluded.addAll(e.getSeatIds());
+            }
+        }
+    }
+
+    private static VenueLayout readLayout(Resource resource) throws Exception {
+        try (InputStream in = resource.getInputStream()) {
+            List<VenueLayout.SectionGroup> groups = new ObjectMapper().readValue(in,
+                    new TypeReference<List<VenueLayout.SectionGroup>>() { });
+            return VenueLayout.of(groups);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.evenza.backend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.util.PageCursor;
+
+/**
+ * Redis caches of a user's bookings and of a show's bookings, maintained incrementally.
+ *
+ * Each cache is a hash of booking JSON by booking ID plus sorted sets of booking IDs
+ * scored by creation time: one over all bookings and one per status. Writes add or
+ * replace just the changed bookings, and reads fetch a range of IDs (latest N, by status)
+ * and only those bookings, so neither side grows with the length of the history.
+ *
+ * A user's cache holds only the newest {@link #USER_CACHE_SIZE} bookings, enough for the
+ * first page of the history at the largest page size plus the row that tells whether
+ * another page follows. Later pages are read from the database by cursor.
+ */
+@Service
+public class BookingCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingCacheService.class);
+
+    private static final String INDEX_KEY_PREFIX = "BOOKINGS_IDX:";
+    private static final String DATA_KEY_PREFIX = "BOOKINGS_DATA:";
+    private static final String STATUS_KEY_PREFIX = "BOOKINGS_STATUS:";
+    private static final List<String> STATUSES = List.of("PENDING", "RESERVED", "CONFIRMED", "CANCELLED", "REFUNDED");
+    private static final Duration CACHE_TTL = Duration.ofHours(1);
+
+    public static final int USER_CACHE_SIZE = PageCursor.MAX_PAGE_SIZE + 1;
+
+    private static final DefaultRedisScript<Long> PUT_BOOKINGS_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        PUT_BOOKINGS_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/put-bookings.lua")));
+        PUT_BOOKINGS_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Newest bookings of a user, at most {@link #USER_CACHE_SIZE}.
+     * @return the cached bookings, or null if the user's cache is not loaded
+     */
+    public List<Booking> getUserBookings(String userId, int limit) {
+        return getBookings(userScope(userId), null, limit);
+    }
+
+    public List<Booking> getEntityBookings(String entityType, String entityId, String status, Integer limit) {
+        return getBookings(entityScope(entityType, entityId), status, limit);
+    }
+
+    /**
+     * @param bookings the user's newest bookings, at least {@link #USER_CACHE_SIZE} unless that is all of them
+     */
+    public void loadUserBookings(String userId, List<Booking> bookings) {
+        putBookings(userScope(userId), bookings, true, USER_CACHE_SIZE);
+    }
+
+    public void loadEntityBookings(String entityType, String entityId, List<Booking> bookings) {
+        putBookings(entityScope(entityType, entityId), bookings, true, 0);
+    }
+
+    /**
+     * Adds or replaces the bookings in the caches of their users and shows that are loaded.
+     */
+    public void updateBookings(Collection<Booking> bookings) {
+        for (Booking booking : bookings) {
+            if (booking.getUserId() != null) {
+                putBookings(userScope(booking.getUserId()), List.of(booking), false, USER_CACHE_SIZE);
+            }
+            putBookings(entityScope(booking.getEntityType(), booking.getEntityId()), List.of(booking), false, 0);
+        }
+    }
+
+    /**
+     * Drops the caches of a user and a show, for changes made directly in the database.
+     */
+    public void evict(String userId, String entityType, String entityId) {
+        List<String> keys = new ArrayList<>(cacheKeys(entityScope(entityType, entityId)));
+        if (userId != null) {
+            keys.addAll(cacheKeys(userScope(userId)));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    private List<Booking> getBookings(String scope, String status, Integer limit) {
+        String indexKey = INDEX_KEY_PREFIX + scope;
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(indexKey))) {
+            return null;
+        }
+        if (limit != null && limit <= 0) {
+            return new ArrayList<>();
+        }
+        String rangeKey = status != null ? STATUS_KEY_PREFIX + scope + ":" + status.toUpperCase() : indexKey;
+        long end = limit != null ? limit - 1 : -1;
+        Set<String> ids = stringRedisTemplate.opsForZSet().reverseRange(rangeKey, 0, end);
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Object> cached = redisTemplate.opsForHash().multiGet(DATA_KEY_PREFIX + scope, new ArrayList<Object>(ids));
+        List<Booking> bookings = new ArrayList<>(cached.size());
+        for (Object booking : cached) {
+            if (booking == null) {
+                // Partly expired cache; let the caller reload it
+                return null;
+            }
+            bookings.add((Booking) booking);
+        }
+        return bookings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void putBookings(String scope, List<Booking> bookings, boolean create, int maxSize) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        RedisSerializer<Object> bookingSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        List<String> args = new ArrayList<>(3 + bookings.size() * 4);
+        args.add(create ? "1" : "0");
+        args.add(String.valueOf(CACHE_TTL.toMillis()));
+        args.add(String.valueOf(maxSize));
+        for (Booking booking : bookings) {
+            int statusIndex = booking.getStatus() != null ? STATUSES.indexOf(booking.getStatus().toUpperCase()) : -1;
+            args.add(String.valueOf(booking.getId()));
+            args.add(String.valueOf(score(booking)));
+            // Status keys follow the index and data keys, and KEYS is 1-based in Lua
+            args.add(String.valueOf(statusIndex >= 0 ? statusIndex + 3 : 0));
+            args.add(new String(bookingSerializer.serialize(booking), StandardCharsets.UTF_8));
+        }
+
+        try {
+            redisTemplate.execute(PUT_BOOKINGS_SCRIPT, StringRedisSerializer.UTF_8,
+                    new GenericToStringSerializer<>(Long.class), cacheKeys(scope), args.toArray());
+        } catch (Exception e) {
+            logger.warn("Booking cache update failed (non-critical): {}", e.getMessage());
+        }
+    }
+
+    private static List<String> cacheKeys(String scope) {
+        List<String> keys = new ArrayList<>(2 + STATUSES.size());
+        keys.add(INDEX_KEY_PREFIX + scope);
+        keys.add(DATA_KEY_PREFIX + scope);
+        for (String status : STATUSES) {
+            keys.add(STATUS_KEY_PREFIX + scope + ":" + status);
+        }
+        return keys;
+    }
+
+    /**
+     * Creation time in microseconds, which a double score still holds exactly, so the cache
+     * orders bookings like the created_at column; ties fall back to the ID.
+     */
+    private static long score(Booking booking) {
+        LocalDateTime time = booking.getCreatedAt() != null ? booking.getCreatedAt() : booking.getBookingTime();
+        if (time == null) {
+            return 0L;
+        }
+        Instant instant = time.atZone(ZoneId.systemDefault()).toInstant();
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    // The hash tag keeps all keys of one cache in one cluster slot for the script
+    private static String userScope(String userId) {
+        return "{USER:" + userId + "}";
+    }
+
+    private static String entityScope(String entityType, String entityId) {
+        return "{ENTITY:" + entityType.toUpperCase() + ":" + entityId + "}";
+    }
+}
@@ -0,0 +1,434 @@
+package com.evenza.backend.services;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.Exceptions.BookingPendingException;
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.model.SeatClaim;
+import com.evenza.backend.util.BookingJournal;
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind mode for confirmed bookings ({@code app.booking-journal.enabled}).
+ *
+ * A sale is acknowledged once it is durable in the local {@link BookingJournal}; a
+ * committer thread fsyncs the journal for all appends that arrived within a short
+ * window (group commit), and a drainer thread writes journaled bookings and their seat
+ * claims to MySQL in large batches. Journal records keep their booking IDs, so replaying
+ * them after a crash is idempotent. Pending records are drained before the application
+ * starts serving. A sale whose seat turns out to be claimed by another user in MySQL is
+ * not written; it goes to the {@code bookings:journal:conflicts} list instead.
+ *
+ * Seat conflicts are decided by this node's seat inventory before the append, so the
+ * mode is meant for deployments where one node takes the sales of a show.
+ */
+@Service
+@DependsOn("entityManagerFactory") // tables exist before the startup replay
+public class BookingJournalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingJournalService.class);
+
+    private static final int DRAIN_BATCH_SIZE = 1000;
+    private static final long DRAIN_IDLE_MILLIS = 20;
+    private static final long DRAIN_RETRY_MILLIS = 1000;
+    private static final long COMMIT_TIMEOUT_MILLIS = 5000;
+
+    private static final String INSERT_BOOKING_SQL = "INSERT IGNORE INTO bookings " +
+            "(id, seat_id, entity_type, entity_id, user_id, user_key, payment_id, amount, booking_time, status, venue, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // A replayed record or the buyer's own hold becomes SOLD, and so does a hold that has
+    // expired but not been swept yet; a live claim of another user is left as it is.
+    // user_id is assigned first, so the later assignments see the new owner.
+    private static final String UPSERT_CLAIM_SQL = "INSERT INTO seat_claims " +
+            "(id, entity_type, entity_id, seat_id, user_id, status, expires_at, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, NULL, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "user_id = IF(status = 'HELD' AND expires_at < NOW(), VALUES(user_id), user_id), " +
+            "status = IF(user_id <=> VALUES(user_id), VALUES(status), status), " +
+            "expires_at = IF(user_id <=> VALUES(user_id), NULL, expires_at)";
+    private static final String SELECT_CLAIMS_SQL = "SELECT seat_id, user_id, status FROM seat_claims " +
+            "WHERE entity_type = ? AND entity_id = ? AND seat_id IN (%s)";
+
+    // Journaled sales that lost their seat to another claim, for manual refund or rebooking
+    private static final String CONFLICTS_KEY = "bookings:journal:conflicts";
+    private static final long CONFLICTS_MAX = 10000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.booking-journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.booking-journal.path:data/booking-journal.dat}")
+    private String journalPath;
+
+    @Value("${app.booking-journal.size-mb:64}")
+    private int journalSizeMb;
+
+    @Value("${app.booking-journal.group-commit-millis:2}")
+    private long groupCommitMillis;
+
+    private BookingJournal journal;
+
+    // Journaled bookings not yet in MySQL, by show, so a rebuilt seat inventory still sees them
+    private final Map<String, Map<Long, Booking>> pendingByShow = new ConcurrentHashMap<>();
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitRequested = commitLock.newCondition();
+    private final Condition committed = commitLock.newCondition();
+    private long requestedCount;
+    private long durableCount;
+
+    private volatile boolean running;
+    private Thread committerThread;
+    private Thread drainerThread;
+
+    private Counter appendedCounter;
+    private Counter drainedCounter;
+    private Counter conflictCounter;
+    private Timer commitLatency;
+
+    @PostConstruct
+    public void start() throws Exception {
+        if (!enabled) {
+            return;
+        }
+        journal = new BookingJournal(Path.of(journalPath), journalSizeMb * 1024 * 1024);
+        appendedCounter = meterRegistry.counter("bookings.journal.appended");
+        drainedCounter = meterRegistry.counter("bookings.journal.drained");
+        conflictCounter = meterRegistry.counter("bookings.journal.conflicts");
+        commitLatency = meterRegistry.timer("bookings.journal.commit.latency");
+        meterRegistry.gauge("bookings.journal.pending.bytes", journal, BookingJournal::pendingBytes);
+
+        // Replay what a previous run left behind before taking new bookings
+        List<BookingJournal.Entry> replay = journal.readDurable(Integer.MAX_VALUE);
+        for (BookingJournal.Entry entry : replay) {
+            addPending(entry.booking());
+        }
+        if (!replay.isEmpty()) {
+            logger.info("Replaying {} journaled bookings", replay.size());
+            try {
+                while (drainOnce() > 0) {
+                    // keep draining
+                }
+            } catch (Exception e) {
+                logger.warn("Journal replay incomplete, the drainer will retry: {}", e.getMessage());
+            }
+        }
+
+        running = true;
+        committerThread = new Thread(this::runCommitter, "booking-journal-commit");
+        committerThread.setDaemon(true);
+        committerThread.start();
+        drainerThread = new Thread(this::runDrainer, "booking-journal-drain");
+        drainerThread.setDaemon(true);
+        drainerThread.start();
+        logger.info("Booking journal enabled at {}", Path.of(journalPath).toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        committerThread.interrupt();
+        drainerThread.interrupt();
+        drainerThread.join(DRAIN_RETRY_MILLIS);
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Journals the bookings and waits until they are durable.
+     * @return the bookings with their IDs assigned, or null if the journal is full
+     *         and the caller should write to the database directly
+     * @throws BookingPendingException if the bookings are journaled but not yet confirmed
+     *         durable within the commit timeout
+     */
+    public List<Booking> append(List<Booking> bookings) {
+        long start = System.nanoTime();
+        for (Booking booking : bookings) {
+            booking.setId(TimeOrderedIdGenerator.nextId());
+        }
+        long count = journal.append(bookings);
+        if (count < 0) {
+            logger.warn("Booking journal is full, writing {} bookings directly", bookings.size());
+            // Leave the IDs to the regular insert
+            bookings.forEach(booking -> booking.setId(null));
+            return null;
+        }
+        for (Booking booking : bookings) {
+            addPending(booking);
+        }
+
+        appendedCounter.increment(bookings.size());
+        if (!awaitDurable(count)) {
+            // The record is in the journal and the drainer writes it once the fsync catches up
+            logger.warn("Booking journal commit is slow, {} bookings are pending", bookings.size());
+            throw new BookingPendingException(bookings);
+        }
+        commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return bookings;
+    }
+
+    /**
+     * Journaled bookings of a show that have not reached the database yet.
+     */
+    public List<Booking> pendingBookings(String entityType, String entityId) {
+        if (!enabled) {
+            return List.of();
+        }
+        Map<Long, Booking> pending = pendingByShow.get(showKey(entityType, entityId));
+        return pending != null ? new ArrayList<>(pending.values()) : List.of();
+    }
+
+    /**
+     * @return false if the records were not forced within the commit timeout
+     */
+    private boolean awaitDurable(long count) {
+        commitLock.lock();
+        try {
+            requestedCount = Math.max(requestedCount, count);
+            commitRequested.signal();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COMMIT_TIMEOUT_MILLIS);
+            while (durableCount < count) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                committed.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void runCommitter() {
+        while (running) {
+            try {
+                commitLock.lock();
+                try {
+                    while (requestedCount <= durableCount) {
+                        commitRequested.await();
+                    }
+                } finally {
+                    commitLock.unlock();
+                }
+                // Let more appends join this fsync
+                if (groupCommitMillis > 0) {
+                    Thread.sleep(groupCommitMillis);
+                }
+                long forced = journal.force();
+
+                commitLock.lock();
+                try {
+                    durableCount = Math.max(durableCount, forced);
+                    committed.signalAll();
+                } finally {
+                    commitLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Booking journal commit failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void runDrainer() {
+        while (running) {
+            try {
+                if (drainOnce() == 0) {
+                    Thread.sleep(DRAIN_IDLE_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Booking journal drain failed, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(DRAIN_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes one batch of durable journal records to MySQL.
+     * @return the number of records drained
+     */
+    private int drainOnce() {
+        List<BookingJournal.Entry> entries = journal.readDurable(DRAIN_BATCH_SIZE);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<Booking> bookings = entries.stream().map(BookingJournal.Entry::booking).toList();
+
+        // Claims first, like the direct path
+        jdbcTemplate.batchUpdate(UPSERT_CLAIM_SQL, bookings, bookings.size(), (ps, booking) -> {
+            ps.setLong(1, booking.getId());
+            ps.setString(2, booking.getEntityType());
+            ps.setString(3, booking.getEntityId());
+            ps.setString(4, booking.getSeatId());
+            ps.setString(5, booking.getUserId());
+            ps.setString(6, SeatClaim.SOLD);
+            ps.setTimestamp(7, timestamp(booking.getCreatedAt()));
+        });
+        List<Booking> conflicts = findConflicts(bookings);
+        if (!conflicts.isEmpty()) {
+            deadLetter(conflicts);
+            Set<Long> conflictIds = conflicts.stream().map(Booking::getId).collect(Collectors.toSet());
+            bookings = bookings.stream().filter(booking -> !conflictIds.contains(booking.getId())).toList();
+        }
+        jdbcTemplate.batchUpdate(INSERT_BOOKING_SQL, bookings, bookings.size(), (ps, booking) -> {
+            ps.setLong(1, booking.getId());
+            ps.setString(2, booking.getSeatId());
+            ps.setString(3, booking.getEntityType());
+            ps.setString(4, booking.getEntityId());
+            ps.setString(5, booking.getUserId());
+            // JDBC inserts skip the entity listener that sets the key for JPA writes
+            ps.setObject(6, booking.getUserId() != null ? userKeyResolver.resolveOrAssign(booking.getUserId()) : null);
+            ps.setString(7, booking.getPaymentId());
+            ps.setDouble(8, booking.getAmount());
+            ps.setTimestamp(9, timestamp(booking.getBookingTime()));
+            ps.setString(10, booking.getStatus());
+            ps.setString(11, booking.getVenue());
+            ps.setTimestamp(12, timestamp(booking.getCreatedAt()));
+        });
+
+        journal.checkpoint(entries.get(entries.size() - 1).endPosition());
+        for (BookingJournal.Entry entry : entries) {
+            Booking booking = entry.booking();
+            Map<Long, Booking> pending = pendingByShow.get(showKey(booking.getEntityType(), booking.getEntityId()));
+            if (pending != null) {
+                pending.remove(booking.getId());
+            }
+        }
+        drainedCounter.increment(bookings.size());
+        return entries.size();
+    }
+
+    /**
+     * Bookings whose seat claim, after the upsert, is not a sale to the booking's user:
+     * another user held or bought the seat through a path this node's inventory did not see.
+     */
+    private List<Booking> findConflicts(List<Booking> bookings) {
+        Map<String, List<Booking>> byShow = new HashMap<>();
+        for (Booking booking : bookings) {
+            byShow.computeIfAbsent(showKey(booking.getEntityType(), booking.getEntityId()),
+                    k -> new ArrayList<>()).add(booking);
+        }
+
+        List<Booking> conflicts = new ArrayList<>();
+        for (List<Booking> showBookings : byShow.values()) {
+            Booking first = showBookings.get(0);
+            List<Object> args = new ArrayList<>();
+            args.add(first.getEntityType());
+            args.add(first.getEntityId());
+            showBookings.forEach(booking -> args.add(booking.getSeatId()));
+            String placeholders = String.join(", ", Collections.nCopies(showBookings.size(), "?"));
+
+            Map<String, String> soldTo = new HashMap<>();
+            jdbcTemplate.query(String.format(SELECT_CLAIMS_SQL, placeholders), rs -> {
+                if (SeatClaim.SOLD.equals(rs.getString("status"))) {
+                    soldTo.put(rs.getString("seat_id"), String.valueOf(rs.getString("user_id")));
+                }
+            }, args.toArray());
+            for (Booking booking : showBookings) {
+                if (!String.valueOf(booking.getUserId()).equals(soldTo.get(booking.getSeatId()))) {
+                    conflicts.add(booking);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Records journaled sales that cannot be written because their seat belongs to another
+     * claim. They are logged, counted and kept in a capped Redis list for follow-up.
+     */
+    private void deadLetter(List<Booking> conflicts) {
+        conflictCounter.increment(conflicts.size());
+        for (Booking booking : conflicts) {
+            logger.error("Journaled booking {} conflicts with another claim on seat {} of {} {} (user {})",
+                    booking.getId(), booking.getSeatId(), booking.getEntityType(), booking.getEntityId(),
+                    booking.getUserId());
+        }
+        try {
+            List<String> records = new ArrayList<>();
+            for (Booking booking : conflicts) {
+                records.add(objectMapper.writeValueAsString(booking));
+            }
+            stringRedisTemplate.opsForList().leftPushAll(CONFLICTS_KEY, records);
+            stringRedisTemplate.opsForList().trim(CONFLICTS_KEY, 0, CONFLICTS_MAX - 1);
+        } catch (Exception e) {
+            logger.warn("Could not record journal conflicts in Redis (non-critical): {}", e.getMessage());
+        }
+    }
+
+    private void addPending(Booking booking) {
+        pendingByShow.computeIfAbsent(showKey(booking.getEntityType(), booking.getEntityId()),
+                k -> new ConcurrentHashMap<>()).put(booking.getId(), booking);
+    }
+
+    private static String showKey(String entityType, String entityId) {
+        return entityType.toUpperCase() + ":" + entityId;
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return Timestamp.valueOf(time != null ? time : LocalDateTime.now());
+    }
+}
@@ -1,19 +1,34 @@
 package com.evenza.backend.services;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.evenza.backend.DTO.CursorPage;
+import com.evenza.backend.DTO.SeatStatusView;
+import com.evenza.backend.Exceptions.BookingPendingException;
+import com.evenza.backend.Exceptions.ReservationConflictException;
+import com.evenza.backend.Exceptions.SeatTakenException;
+import com.evenza.backend.Exceptions.SoldOutException;
 import com.evenza.backend.model.Booking;
 import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.util.PageCursor;
+import com.evenza.backend.util.SeatRunLengthEncoder;
+import com.evenza.backend.util.SeatStateMap;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class BookingService {
@@ -22,11 +37,45 @@ public class BookingService {
     private BookingRepository bookingRepository;
     
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private SeatInventoryService seatInventoryService;
+    
+    @Autowired
+    private SeatHoldService seatHoldService;
+    
+    @Autowired
+    private ReservationExpiryService reservationExpiryService;
+    
+    @Autowired
+    private WebSocketService webSocketService;
+    
+    @Autowired
+    private BookingCacheService bookingCacheService;
+    
+    @Autowired
+    private SeatClaimService seatClaimService;
     
-    private static final String USER_BOOKINGS_KEY_PREFIX = "USER_BOOKINGS:";
-    private static final String ENTITY_BOOKINGS_KEY_PREFIX = "ENTITY_BOOKINGS:";
+    @Autowired
+    private BookingJournalService bookingJournalService;
+
+    @Autowired
+    private CapacityService capacityService;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    
+    private static final int MAX_CANCEL_ATTEMPTS = 3;
     private static final int RESERVATION_TIMEOUT_MINUTES = 15;
+    private static final Duration RESERVATION_TIMEOUT = Duration.ofMinutes(RESERVATION_TIMEOUT_MINUTES);
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
     
     public Booking createBooking(String seatId, String entityType, String entityId, 
                                 String userId, String paymentId, BigDecimal amount) {
@@ -38,18 +87,7 @@ public class BookingService {
         booking.setPaymentId(paymentId);
         booking.setAmount(amount.doubleValue());
         
-        Booking savedBooking = bookingRepository.save(booking);
-        
-        // Update Redis cache - with error handling
-        try {
-            updateUserBookingsCache(userId);
-            updateEntityBookingsCache(entityType, entityId);
-        } catch (Exception e) {
-            // Log the error but don't fail the booking creation
-            System.err.println("Redis caching error (non-critical): " + e.getMessage());
-        }
-        
-        return savedBooking;
+        return sellAndSave(entityType, entityId, List.of(seatId), userId, List.of(booking)).get(0);
     }
     
     public Booking createBooking(String seatId, String entityType, String entityId, 
@@ -63,18 +101,7 @@ public class BookingService {
         booking.setAmount(amount.doubleValue());
         booking.setVenue(venue);
         
-        Booking savedBooking = bookingRepository.save(booking);
-        
-        // Update Redis cache - with error handling
-        try {
-            updateUserBookingsCache(userId);
-            updateEntityBookingsCache(entityType, entityId);
-        } catch (Exception e) {
-            // Log the error but don't fail the booking creation
-            System.err.println("Redis caching error (non-critical): " + e.getMessage());
-        }
-        
-        return savedBooking;
+        return sellAndSave(entityType, entityId, List.of(seatId), userId, List.of(booking)).get(0);
     }
     
     public List<Booking> createBookings(List<String> seatIds, String entityType, String entityId, 
@@ -100,25 +127,7 @@ public class BookingService {
             bookings.add(booking);
         }
         
-        try {
-            List<Booking> savedBookings = bookingRepository.saveAll(bookings);
-            System.out.println("Successfully saved " + savedBookings.size() + " bookings");
-        
-            // Update Redis cache - with error handling
-            try {
-                updateUserBookingsCache(userId);
-                updateEntityBookingsCache(entityType, entityId);
-            } catch (Exception e) {
-                // Log the error but don't fail the booking creation
-                System.err.println("Redis caching error (non-critical): " + e.getMessage());
-            }
-            
-            return savedBookings;
-        } catch (Exception e) {
-            System.err.println("Error saving bookings: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        }
+        return sellAndSave(entityType, entityId, seatIds, userId, bookings);
     }
     
     public List<Booking> createBookings(List<String> seatIds, String entityType, String entityId, 
@@ -150,76 +159,67 @@ public class BookingService {
             bookings.add(booking);
         }
         
-        try {
-            List<Booking> savedBookings = bookingRepository.saveAll(bookings);
-            System.out.println("Successfully saved " + savedBookings.size() + " bookings");
-        
-            // Update Redis cache - with error handling
-            try {
-                updateUserBookingsCache(userId);
-                updateEntityBookingsCache(entityType, entityId);
-            } catch (Exception e) {
-                // Log the error but don't fail the booking creation
-                System.err.println("Redis caching error (non-critical): " + e.getMessage());
-            }
-            
-            return savedBookings;
-        } catch (Exception e) {
-            System.err.println("Error saving bookings: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        }
+        return sellAndSave(entityType, entityId, seatIds, userId, bookings);
     }
     
-    public List<Booking> getUserBookings(String userId) {
-        System.out.println("Getting bookings for user ID: " + userId);
-        
-        String cacheKey = USER_BOOKINGS_KEY_PREFIX + userId;
-        
-        // Try to get from cache first - with error handling
-        try {
-            @SuppressWarnings("unchecked")
-            List<Booking> cachedBookings = (List<Booking>) redisTemplate.opsForValue().get(cacheKey);
-            
-            if (cachedBookings != null) {
-                System.out.println("Found " + cachedBookings.size() + " bookings in cache for user: " + userId);
-                return cachedBookings;
-            }
-        } catch (Exception e) {
-            System.err.println("Redis cache retrieval error (non-critical): " + e.getMessage());
-            // Continue with database lookup on cache error
-        }
-        
-        // If not in cache, get from database using both exact and partial match
-        List<Booking> bookings = bookingRepository.findUserBookingsOrderByTimeDesc(userId);
-        
-        if (bookings.isEmpty()) {
-            // Try with partial user ID matching if exact match returns empty results
-            System.out.println("No bookings found with exact userId match, trying partial match for: " + userId);
-            bookings = bookingRepository.findUserBookingsByPartialUserId(userId);
-        }
-        
-        System.out.println("Found " + bookings.size() + " bookings in database for user: " + userId);
-        
-        // Cache the results - with error handling
-        if (!bookings.isEmpty()) {
+    /**
+     * One page of a user's bookings, newest first by creation time.
+     * @param status only bookings with this status, or null for all
+     * @param cursor cursor from the previous page, or null for the first page
+     * @param limit page size, capped at {@link PageCursor#MAX_PAGE_SIZE}
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public CursorPage<Booking> getUserBookings(String userId, String status, String cursor, Integer limit) {
+        int pageSize = PageCursor.pageSize(limit);
+        PageCursor after = PageCursor.decode(cursor);
+        boolean firstPage = after == null && status == null;
+        
+        // Only the first page of the unfiltered history is cached
+        if (firstPage) {
             try {
-                redisTemplate.opsForValue().set(cacheKey, bookings, 1, TimeUnit.HOURS);
+                List<Booking> cachedBookings = bookingCacheService.getUserBookings(userId, pageSize + 1);
+                if (cachedBookings != null) {
+                    return CursorPage.of(cachedBookings, pageSize, Booking::getCreatedAt, Booking::getId);
+                }
             } catch (Exception e) {
-                System.err.println("Redis caching error (non-critical): " + e.getMessage());
+                System.err.println("Redis cache retrieval error (non-critical): " + e.getMessage());
+                // Continue with database lookup on cache error
             }
         }
         
-        return bookings;
+        // A user ID that was never stored has no bookings
+        Long userKey = userKeyResolver.resolve(userId);
+        if (userKey == null) {
+            return CursorPage.empty();
+        }
+        String statusFilter = status != null ? status.toUpperCase() : null;
+        List<Booking> bookings;
+        if (firstPage) {
+            bookings = bookingRepository.findUserBookingsPage(userKey, null,
+                    PageRequest.of(0, BookingCacheService.USER_CACHE_SIZE));
+            bookingCacheService.loadUserBookings(userId, bookings);
+        } else if (after == null) {
+            bookings = bookingRepository.findUserBookingsPage(userKey, statusFilter, PageRequest.of(0, pageSize + 1));
+        } else {
+            bookings = bookingRepository.findUserBookingsPageAfter(userKey, statusFilter, after.createdAt(),
+                    Long.parseLong(after.id()), PageRequest.of(0, pageSize + 1));
+        }
+        return CursorPage.of(bookings, pageSize, Booking::getCreatedAt, Booking::getId);
     }
     
     public List<Booking> getEntityBookings(String entityType, String entityId) {
-        String cacheKey = ENTITY_BOOKINGS_KEY_PREFIX + entityType + ":" + entityId;
-        
+        return getEntityBookings(entityType, entityId, null, null);
+    }
+    
+    /**
+     * Bookings of a show, newest first.
+     * @param status only bookings with this status, or null for all
+     * @param limit maximum number of bookings, or null for all
+     */
+    public List<Booking> getEntityBookings(String entityType, String entityId, String status, Integer limit) {
         // Try to get from cache first - with error handling
         try {
-            @SuppressWarnings("unchecked")
-            List<Booking> cachedBookings = (List<Booking>) redisTemplate.opsForValue().get(cacheKey);
+            List<Booking> cachedBookings = bookingCacheService.getEntityBookings(entityType, entityId, status, limit);
             
             if (cachedBookings != null) {
                 return cachedBookings;
@@ -230,57 +230,64 @@ public class BookingService {
         }
         
         // If not in cache, get from database
-        List<Booking> bookings = bookingRepository.findByEntityTypeAndEntityId(entityType, entityId);
+        List<Booking> bookings = new ArrayList<>(bookingRepository.findByEntityTypeAndEntityId(entityType, entityId));
+        // Same order as the cache: creation time, then ID
+        bookings.sort(Comparator.comparing(Booking::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(Booking::getId, Comparator.nullsLast(Comparator.reverseOrder())));
         
-        // Cache the results - with error handling
-        try {
-            redisTemplate.opsForValue().set(cacheKey, bookings, 1, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Redis caching error (non-critical): " + e.getMessage());
-        }
+        // Cache the full list so later writes can patch it
+        bookingCacheService.loadEntityBookings(entityType, entityId, bookings);
         
-        return bookings;
+        return filterBookings(bookings, status, limit);
     }
     
-    private void updateUserBookingsCache(String userId) {
-        try {
-            String cacheKey = USER_BOOKINGS_KEY_PREFIX + userId;
-            List<Booking> bookings = bookingRepository.findUserBookingsOrderByTimeDesc(userId);
-            redisTemplate.opsForValue().set(cacheKey, bookings, 1, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error updating user bookings cache: " + e.getMessage());
-            throw e; // Re-throw to be handled by the calling method
-        }
+    private static List<Booking> filterBookings(List<Booking> bookings, String status, Integer limit) {
+        return bookings.stream()
+                .filter(booking -> status == null || status.equalsIgnoreCase(booking.getStatus()))
+                .limit(limit != null ? Math.max(0, limit) : Long.MAX_VALUE)
+                .toList();
     }
     
-    private void updateEntityBookingsCache(String entityType, String entityId) {
-        try {
-            String cacheKey = ENTITY_BOOKINGS_KEY_PREFIX + entityType + ":" + entityId;
-            List<Booking> bookings = bookingRepository.findByEntityTypeAndEntityId(entityType, entityId);
-            redisTemplate.opsForValue().set(cacheKey, bookings, 1, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error updating entity bookings cache: " + e.getMessage());
-            throw e; // Re-throw to be handled by the calling method
-        }
+    public List<String> getBookedSeats() {
+        return bookingRepository.findAllSeatIds();
     }
     
-    public List<String> getBookedSeats() {
-        return bookingRepository.findAll()
+    /**
+     * Seats of one show that are booked or under a live reservation.
+     */
+    public List<String> getBookedSeats(String entityType, String entityId) {
+        return bookingRepository.findTakenSeatStatuses(entityType, entityId)
                 .stream()
-                .map(Booking::getSeatId)
+                .map(SeatStatusView::getSeatId)
                 .toList();
     }
     
-    public boolean existsBySeatId(String seatId) {
-        return bookingRepository.existsBySeatId(seatId);
+    /**
+     * Compact seat map of one show: sold and held seats as run-length lists
+     * (see {@link SeatRunLengthEncoder}).
+     */
+    public Map<String, Object> getSeatMap(String entityType, String entityId) {
+        List<String> soldSeats = new ArrayList<>();
+        List<String> heldSeats = new ArrayList<>();
+        for (SeatStatusView seat : bookingRepository.findTakenSeatStatuses(entityType, entityId)) {
+            if ("RESERVED".equals(seat.getStatus())) {
+                heldSeats.add(seat.getSeatId());
+            } else {
+                soldSeats.add(seat.getSeatId());
+            }
+        }
+        
+        Map<String, Object> seatMap = new LinkedHashMap<>();
+        seatMap.put("entityType", entityType);
+        seatMap.put("entityId", entityId);
+        seatMap.put("sold", SeatRunLengthEncoder.encode(soldSeats));
+        seatMap.put("held", SeatRunLengthEncoder.encode(heldSeats));
+        return seatMap;
     }
-
+    
     public Booking createTemporaryReservation(String seatId, String entityType, String entityId, 
                                             String userId, BigDecimal amount, String venue) {
-        // Check if seat is already reserved or booked
-        if (isSeatTaken(seatId, entityType, entityId)) {
-            throw new RuntimeException("Seat is already taken");
-        }
+        LocalDateTime expiry = LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES);
 
         Booking booking = new Booking();
         booking.setSeatId(seatId);
@@ -290,22 +297,16 @@ public class BookingService {
         booking.setAmount(amount.doubleValue());
         booking.setVenue(venue);
         booking.setStatus("RESERVED");
-        booking.setReservationExpiry(LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES));
+        booking.setReservationExpiry(expiry);
         
-        return bookingRepository.save(booking);
+        return holdAndSave(entityType, entityId, List.of(seatId), userId, expiry, List.of(booking)).get(0);
     }
 
     public List<Booking> createTemporaryReservations(List<String> seatIds, String entityType, String entityId, 
                                                     String userId, BigDecimal amount, String venue) {
         List<Booking> bookings = new ArrayList<>();
         
-        // Check if any seat is already taken
-        for (String seatId : seatIds) {
-            if (isSeatTaken(seatId, entityType, entityId)) {
-                throw new RuntimeException("Seat " + seatId + " is already taken");
-            }
-        }
-
+        LocalDateTime expiry = LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES);
         BigDecimal amountPerSeat = amount.divide(BigDecimal.valueOf(Math.max(1, seatIds.size())), 2, BigDecimal.ROUND_HALF_UP);
         
         for (String seatId : seatIds) {
@@ -317,53 +318,303 @@ public class BookingService {
             booking.setAmount(amountPerSeat.doubleValue());
             booking.setVenue(venue);
             booking.setStatus("RESERVED");
-            booking.setReservationExpiry(LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES));
+            booking.setReservationExpiry(expiry);
             
             bookings.add(booking);
         }
         
-        return bookingRepository.saveAll(bookings);
+        return holdAndSave(entityType, entityId, seatIds, userId, expiry, bookings);
     }
 
+    /**
+     * Confirms the reservations for a payment with one guarded UPDATE. Either all of them
+     * are confirmed or, if any is no longer a live reservation, none is. Their seat claims
+     * turn into sales in the same transaction, one UPDATE per show, so an expired-hold
+     * sweep cannot hand a confirmed seat to someone else.
+     * @param bookings the reservations as loaded by the caller; they are updated to match
+     * @throws ReservationConflictException if some reservations expired or changed meanwhile
+     */
     public void confirmReservation(String paymentId, List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        List<Long> ids = bookings.stream().map(Booking::getId).toList();
+        // A payment's reservations belong to one user, so this is one group per show
+        Map<String, List<Booking>> byHolder = groupByHolder(bookings);
+        int confirmed = transactionTemplate.execute(status -> {
+            int updated = bookingRepository.confirmReservations(ids, paymentId, LocalDateTime.now());
+            if (updated != ids.size()) {
+                status.setRollbackOnly();
+                return updated;
+            }
+            for (List<Booking> held : byHolder.values()) {
+                Booking first = held.get(0);
+                seatClaimService.markSold(first.getEntityType(), first.getEntityId(),
+                        held.stream().map(Booking::getSeatId).toList(), first.getUserId());
+            }
+            return updated;
+        });
+        if (confirmed != ids.size()) {
+            throw new ReservationConflictException(ids.size(), confirmed);
+        }
+        
         for (Booking booking : bookings) {
             booking.setStatus("CONFIRMED");
             booking.setPaymentId(paymentId);
             booking.setReservationExpiry(null);
         }
-        bookingRepository.saveAll(bookings);
+        reservationExpiryService.untrack(ids);
+        bookingCacheService.updateBookings(bookings);
+        
+        for (List<Booking> held : byHolder.values()) {
+            Booking first = held.get(0);
+            List<String> seatIds = held.stream().map(Booking::getSeatId).toList();
+            long seq = seatInventoryService.markSold(first.getEntityType(), first.getEntityId(), seatIds);
+            webSocketService.sendSeatDelta(first.getEntityType(), first.getEntityId(), seq,
+                    WebSocketService.SEAT_SOLD, seatIds);
+        }
     }
-
-    private boolean isSeatTaken(String seatId, String entityType, String entityId) {
-        List<Booking> existingBookings = bookingRepository.findByEntityTypeAndEntityId(entityType, entityId);
-        return existingBookings.stream()
-            .filter(b -> b.getSeatId().equals(seatId))
-            .anyMatch(b -> {
-                if ("RESERVED".equals(b.getStatus())) {
-                    // Check if reservation has expired
-                    return b.getReservationExpiry() != null && 
-                           b.getReservationExpiry().isAfter(LocalDateTime.now());
+    
+    /**
+     * Cancels the live reservations of a user, of a show, or of a user on one show, and
+     * frees their seats. The reservations are cancelled with one guarded UPDATE; if another
+     * request confirms or cancels one of them in between, that attempt is rolled back and
+     * the reservations are read again.
+     * @param userId the user whose reservations to cancel, or null for all users
+     * @param entityType type of the show, or null for all shows of the user
+     * @return the cancelled reservations
+     */
+    public List<Booking> cancelReservations(String userId, String entityType, String entityId) {
+        if (userId == null && entityType == null) {
+            throw new IllegalArgumentException("A user or a show is required");
+        }
+        for (int attempt = 1; ; attempt++) {
+            List<Booking> reservations = findReservations(userId, entityType, entityId);
+            if (reservations.isEmpty()) {
+                return reservations;
+            }
+            List<Long> ids = reservations.stream().map(Booking::getId).toList();
+            int cancelled = transactionTemplate.execute(status -> {
+                int updated = bookingRepository.cancelReservations(ids);
+                if (updated != ids.size()) {
+                    status.setRollbackOnly();
                 }
-                return "CONFIRMED".equals(b.getStatus());
+                return updated;
             });
+            if (cancelled == ids.size()) {
+                releaseCancelled(reservations);
+                return reservations;
+            }
+            if (attempt == MAX_CANCEL_ATTEMPTS) {
+                throw new ReservationConflictException(ids.size(), cancelled);
+            }
+        }
     }
-
-    @Scheduled(fixedRate = 60000) // Run every minute
-    public void cleanupExpiredReservations() {
-        List<Booking> allBookings = bookingRepository.findAll();
-        List<Booking> expiredReservations = allBookings.stream()
-            .filter(b -> "RESERVED".equals(b.getStatus()) &&
-                        b.getReservationExpiry() != null &&
-                        b.getReservationExpiry().isBefore(LocalDateTime.now()))
-            .collect(Collectors.toList());
-        
-        for (Booking booking : expiredReservations) {
+    
+    private List<Booking> findReservations(String userId, String entityType, String entityId) {
+        if (userId == null) {
+            return bookingRepository.findReservationsByEntity(entityType, entityId);
+        }
+        Long userKey = userKeyResolver.resolve(userId);
+        if (userKey == null) {
+            return new ArrayList<>();
+        }
+        List<Booking> reservations = bookingRepository.findReservationsByUserKey(userKey);
+        if (entityType == null) {
+            return reservations;
+        }
+        return reservations.stream()
+                .filter(b -> entityType.equalsIgnoreCase(b.getEntityType()) && entityId.equals(b.getEntityId()))
+                .toList();
+    }
+    
+    private void releaseCancelled(List<Booking> reservations) {
+        for (Booking booking : reservations) {
             booking.setStatus("CANCELLED");
             booking.setReservationExpiry(null);
         }
-        
-        if (!expiredReservations.isEmpty()) {
-            bookingRepository.saveAll(expiredReservations);
+        reservationExpiryService.untrack(reservations.stream().map(Booking::getId).toList());
+        bookingCacheService.updateBookings(reservations);
+        
+        for (List<Booking> held : groupByHolder(reservations).values()) {
+            Booking first = held.get(0);
+            List<String> seatIds = held.stream().map(Booking::getSeatId).toList();
+            seatClaimService.releaseHolds(first.getEntityType(), first.getEntityId(), seatIds, first.getUserId());
+            long seq = seatInventoryService.releaseHolds(first.getEntityType(), first.getEntityId(), seatIds,
+                    first.getUserId());
+            // Otherwise the Redis hold blocks everyone, the canceller too, until its TTL runs out
+            seatHoldService.releaseSeats(first.getEntityType(), first.getEntityId(), seatIds, first.getUserId());
+            capacityService.release(first.getEntityType(), first.getEntityId(), seatIds.size());
+            webSocketService.sendSeatDelta(first.getEntityType(), first.getEntityId(), seq,
+                    WebSocketService.SEAT_RELEASED, seatIds);
+        }
+    }
+
+    // Bookings by show and user, the scope of one seat claim or seat map transition
+    private static Map<String, List<Booking>> groupByHolder(List<Booking> bookings) {
+        Map<String, List<Booking>> byHolder = new LinkedHashMap<>();
+        for (Booking booking : bookings) {
+            byHolder.computeIfAbsent(booking.getEntityType() + ":" + booking.getEntityId() + "|" + booking.getUserId(),
+                    k -> new ArrayList<>()).add(booking);
+        }
+        return byHolder;
+    }
+
+    /**
+     * Sells the seats and saves their bookings, through the booking journal when it is enabled.
+     * The seats are taken from the show's capacity first and given back if the sale fails.
+     */
+    private List<Booking> sellAndSave(String entityType, String entityId, List<String> seatIds, String userId,
+                                      List<Booking> bookings) {
+        return withCapacity(entityType, entityId, seatIds.size(), () -> {
+            long seq = sellSeats(entityType, entityId, seatIds, userId);
+            
+            if (bookingJournalService.isEnabled()) {
+                List<Booking> journaledBookings = journalBookings(entityType, entityId, seq, seatIds, bookings);
+                if (journaledBookings != null) {
+                    return journaledBookings;
+                }
+            }
+            
+            try {
+                List<Booking> savedBookings = seatClaimService.claimSeats(
+                        entityType, entityId, seatIds, userId, null, () -> bookingRepository.saveAll(bookings));
+                System.out.println("Successfully saved " + savedBookings.size() + " bookings");
+                webSocketService.sendSeatDelta(entityType, entityId, seq, WebSocketService.SEAT_SOLD, seatIds);
+            
+                // Patch the Redis booking caches; failures there don't fail the booking
+                bookingCacheService.updateBookings(savedBookings);
+                
+                return savedBookings;
+            } catch (SeatTakenException e) {
+                seatInventoryService.restoreSeats(entityType, entityId, seatIds);
+                throw e;
+            } catch (RuntimeException e) {
+                System.err.println("Error saving bookings: " + e.getMessage());
+                e.printStackTrace();
+                seatInventoryService.evict(entityType, entityId);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Holds the seats (fails if any is already reserved or booked) and saves the reservations.
+     * The seats are taken from the show's capacity first and given back if the hold fails.
+     */
+    private List<Booking> holdAndSave(String entityType, String entityId, List<String> seatIds, String userId,
+                                      LocalDateTime expiry, List<Booking> bookings) {
+        return withCapacity(entityType, entityId, seatIds.size(), () -> {
+            long seq = holdSeats(entityType, entityId, seatIds, userId, expiry);
+            
+            List<Booking> savedBookings = saveHeldSeats(entityType, entityId, seatIds, userId, () -> seatClaimService.claimSeats(
+                    entityType, entityId, seatIds, userId, expiry, () -> bookingRepository.saveAll(bookings)));
+            reservationExpiryService.track(savedBookings);
+            bookingCacheService.updateBookings(savedBookings);
+            webSocketService.sendSeatDelta(entityType, entityId, seq, WebSocketService.SEAT_HELD, seatIds);
+            return savedBookings;
+        });
+    }
+
+    /**
+     * Takes the seats from the show's remaining capacity, failing fast with
+     * {@link SoldOutException} when too few are left, and gives them back if the write fails.
+     */
+    private <T> T withCapacity(String entityType, String entityId, int seats, Supplier<T> write) {
+        capacityService.tryAcquire(entityType, entityId, seats);
+        try {
+            return write.get();
+        } catch (BookingPendingException e) {
+            // Journaled, so the seats stay taken
+            throw e;
+        } catch (RuntimeException e) {
+            capacityService.release(entityType, entityId, seats);
+            throw e;
+        }
+    }
+
+    /**
+     * Write-behind path: acknowledges the sale once it is durable in the booking journal.
+     * @return null if the journal is full and the bookings have to be written directly
+     */
+    private List<Booking> journalBookings(String entityType, String entityId, long seq, List<String> seatIds,
+                                          List<Booking> bookings) {
+        List<Booking> journaledBookings;
+        try {
+            journaledBookings = saveOrEvict(entityType, entityId, seatIds, () -> bookingJournalService.append(bookings));
+        } catch (BookingPendingException e) {
+            // The seats are sold either way; only the acknowledgement is late
+            webSocketService.sendSeatDelta(entityType, entityId, seq, WebSocketService.SEAT_SOLD, seatIds);
+            bookingCacheService.updateBookings(e.getBookings());
+            throw e;
+        }
+        if (journaledBookings != null) {
+            webSocketService.sendSeatDelta(entityType, entityId, seq, WebSocketService.SEAT_SOLD, seatIds);
+            bookingCacheService.updateBookings(journaledBookings);
+        }
+        return journaledBookings;
+    }
+
+    /**
+     * Marks the seats as sold in the in-memory inventory, failing if any of them
+     * is already sold or held by another user.
+     * @return the inventory version of the sale, the sequence number of its seat delta
+     */
+    private long sellSeats(String entityType, String entityId, List<String> seatIds, String userId) {
+        SeatStateMap.Update sale = seatInventoryService.trySell(entityType, entityId, seatIds, userId);
+        if (!sale.seats().isEmpty()) {
+            throw new SeatTakenException(sale.seats());
+        }
+        return sale.version();
+    }
+
+    /**
+     * Holds the seats for the user in Redis (one atomic script for all nodes) and in the
+     * in-memory inventory, failing with the list of taken seats if either rejects the hold.
+     * @return the inventory version of the hold, the sequence number of its seat delta
+     */
+    private long holdSeats(String entityType, String entityId, List<String> seatIds, String userId, LocalDateTime expiry) {
+        List<String> takenSeats = seatHoldService.holdSeats(entityType, entityId, seatIds, userId, RESERVATION_TIMEOUT);
+        if (!takenSeats.isEmpty()) {
+            throw new SeatTakenException(takenSeats);
+        }
+        SeatStateMap.Update hold = seatInventoryService.tryHold(entityType, entityId, seatIds, userId, expiry);
+        if (!hold.seats().isEmpty()) {
+            seatHoldService.releaseSeats(entityType, entityId, seatIds, userId);
+            throw new SeatTakenException(hold.seats());
+        }
+        return hold.version();
+    }
+
+    /**
+     * Writes reservations for seats held by {@link #holdSeats}; if the write fails the holds are released.
+     */
+    private <T> T saveHeldSeats(String entityType, String entityId, List<String> seatIds, String userId, Supplier<T> write) {
+        try {
+            return saveOrEvict(entityType, entityId, seatIds, write);
+        } catch (RuntimeException e) {
+            seatHoldService.releaseSeats(entityType, entityId, seatIds, userId);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a booking write of the seats. If another claim got some of the seats first, just
+     * these seats are re-read from the database; if the write fails otherwise the show's
+     * in-memory inventory is evicted so it gets rebuilt instead of keeping seats that were
+     * never saved.
+     */
+    private <T> T saveOrEvict(String entityType, String entityId, List<String> seatIds, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (BookingPendingException e) {
+            throw e;
+        } catch (SeatTakenException e) {
+            seatInventoryService.restoreSeats(entityType, entityId, seatIds);
+            throw e;
+        } catch (RuntimeException e) {
+            seatInventoryService.evict(entityType, entityId);
+            throw e;
         }
     }
 }
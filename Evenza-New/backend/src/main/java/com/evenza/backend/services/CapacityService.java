@@ -0,0 +1,378 @@
+package com.evenza.backend.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.Exceptions.SoldOutException;
+import com.evenza.backend.model.Sport;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.repository.SportRepository;
+
+/**
+ * Remaining-capacity counters per show, kept in Redis.
+ *
+ * Holds and sales take seats from the counter with one atomic script and expired or
+ * failed reservations give them back, so a sold-out show is rejected before any seat
+ * or database work. Sold-out checks read a snapshot that is at most a second old, so
+ * the controllers can turn away requests without a Redis round trip. The counters are
+ * derived state: they are built from the bookings table on first use and corrected
+ * against it periodically. Every change bumps the counter's version, and a correction
+ * only applies if the version is still the one read before counting the database, so
+ * it never overwrites a hold or sale that happened while it counted. A hold or sale
+ * taken just before that read may not be committed yet, so the count can miss its
+ * seats; a correction that would give seats back therefore waits until the counter has
+ * been quiet for the settle time. Lowering the count is applied right away.
+ *
+ * Only sports have a capacity; other entity types are never limited.
+ */
+@Service
+public class CapacityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapacityService.class);
+
+    private static final String CAPACITY_KEY_PREFIX = "CAPACITY:";
+    private static final String TRACKED_KEY = "CAPACITY_TRACKED";
+    private static final List<String> SPORT_TYPES = List.of("SPORT", "SPORTS");
+    private static final long SNAPSHOT_TTL_MILLIS = 1000;
+
+    private static final List<Object> COUNTER_FIELDS = List.of("capacity", "remaining");
+
+    private static final long NOT_ENOUGH = -1;
+    private static final long NOT_INITIALIZED = -2;
+    private static final long CORRECTED = 1;
+    private static final long CHANGED = -1;
+    private static final long RAISE_DEFERRED = -2;
+
+    private static final DefaultRedisScript<Long> ADJUST_CAPACITY_SCRIPT = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> RECONCILE_CAPACITY_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ADJUST_CAPACITY_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/adjust-capacity.lua")));
+        ADJUST_CAPACITY_SCRIPT.setResultType(Long.class);
+        RECONCILE_CAPACITY_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/reconcile-capacity.lua")));
+        RECONCILE_CAPACITY_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private SportRepository sportRepository;
+
+    @Autowired
+    private BookingJournalService bookingJournalService;
+
+    // Longer than a booking takes from tryAcquire to its commit
+    @Value("${app.capacity.reconcile-settle-millis:30000}")
+    private long settleMillis;
+
+    private record Snapshot(long capacity, long remaining, long readAt) {
+        boolean soldOut() {
+            return capacity >= 0 && remaining <= 0;
+        }
+    }
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    public boolean isLimited(String entityType) {
+        return entityType != null && SPORT_TYPES.contains(entityType.toUpperCase());
+    }
+
+    /**
+     * Whether the show has no seats left, as of at most a second ago.
+     * Returns false when the counter can't be read.
+     */
+    public boolean isSoldOut(String entityType, String entityId) {
+        if (!isLimited(entityType) || entityId == null) {
+            return false;
+        }
+        Snapshot snapshot = snapshot(entityId);
+        return snapshot != null && snapshot.soldOut();
+    }
+
+    /**
+     * Takes the seats from the show's remaining capacity.
+     * If Redis is unreachable the seats are let through; the seat checks still apply.
+     * @throws SoldOutException if fewer seats are left
+     */
+    public void tryAcquire(String entityType, String entityId, int seats) {
+        if (!isLimited(entityType) || seats <= 0) {
+            return;
+        }
+        try {
+            long result = adjust(entityId, seats);
+            if (result == NOT_INITIALIZED) {
+                initialize(entityId);
+                result = adjust(entityId, seats);
+            }
+            if (result == NOT_ENOUGH) {
+                Snapshot snapshot = read(entityId);
+                throw new SoldOutException(snapshot != null ? snapshot.remaining() : 0);
+            }
+        } catch (SoldOutException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("Capacity counter unavailable (non-critical): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gives seats back to the show's remaining capacity, never beyond its capacity.
+     */
+    public void release(String entityType, String entityId, int seats) {
+        if (!isLimited(entityType) || seats <= 0) {
+            return;
+        }
+        try {
+            // An uninitialized counter is built from the database, which already has the seats back
+            adjust(entityId, -seats);
+        } catch (Exception e) {
+            logger.warn("Capacity release failed (non-critical): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Capacity and remaining seats of a sport for the catalog; remaining is null when
+     * the sport has no capacity or the counter can't be read.
+     */
+    public Map<String, Object> getAvailability(Sport sport) {
+        return getAvailability(List.of(sport)).get(0);
+    }
+
+    /**
+     * {@link #getAvailability(Sport)} for many sports: the counters are read in one
+     * pipelined round trip and the missing ones built from one grouped count.
+     */
+    public List<Map<String, Object>> getAvailability(List<Sport> sports) {
+        Map<String, Snapshot> found = snapshots(sports.stream().filter(sport -> sport.getCapacity() != null).toList());
+        List<Map<String, Object>> availabilities = new ArrayList<>(sports.size());
+        for (Sport sport : sports) {
+            Snapshot snapshot = found.get(sport.getId());
+            Map<String, Object> availability = new LinkedHashMap<>();
+            availability.put("id", sport.getId());
+            availability.put("capacity", sport.getCapacity());
+            availability.put("remaining", snapshot != null && snapshot.capacity() >= 0 ? snapshot.remaining() : null);
+            availability.put("soldOut", snapshot != null && snapshot.soldOut());
+            availabilities.add(availability);
+        }
+        return availabilities;
+    }
+
+    /**
+     * Resets every counter in use to capacity minus the seats taken in the database,
+     * correcting drift from sweeps, crashes and requests that failed halfway.
+     */
+    @Scheduled(fixedDelayString = "${app.capacity.reconcile-millis:300000}", initialDelay = 60000)
+    public void reconcile() {
+        long cutoff = System.currentTimeMillis() - SNAPSHOT_TTL_MILLIS;
+        snapshots.values().removeIf(snapshot -> snapshot.readAt() < cutoff);
+        try {
+            Set<String> tracked = stringRedisTemplate.opsForSet().members(TRACKED_KEY);
+            if (tracked == null) {
+                return;
+            }
+            int corrected = 0;
+            int changed = 0;
+            for (String entityId : tracked) {
+                String key = key(entityId);
+                // Read before counting; a hold or sale after this point makes the count stale
+                Object version = stringRedisTemplate.opsForHash().get(key, "version");
+                long[] counts = countFromDatabase(entityId);
+                Long result = stringRedisTemplate.execute(RECONCILE_CAPACITY_SCRIPT, List.of(key),
+                        version != null ? version.toString() : "0",
+                        String.valueOf(counts[0]), String.valueOf(counts[1]), String.valueOf(settleMillis));
+                if (result != null && result == CORRECTED) {
+                    corrected++;
+                } else if (result != null && (result == CHANGED || result == RAISE_DEFERRED)) {
+                    // Busy counter; the next round tries again
+                    changed++;
+                }
+            }
+            if (corrected > 0 || changed > 0) {
+                logger.info("Capacity reconciliation corrected {} of {} counters, {} busy and left for the next round",
+                        corrected, tracked.size(), changed);
+            }
+        } catch (Exception e) {
+            logger.warn("Capacity reconciliation failed (non-critical): {}", e.getMessage());
+        }
+    }
+
+    private long adjust(String entityId, int seats) {
+        Long result = stringRedisTemplate.execute(ADJUST_CAPACITY_SCRIPT, List.of(key(entityId)), String.valueOf(seats));
+        long value = result != null ? result : NOT_INITIALIZED;
+        Snapshot previous = snapshots.get(entityId);
+        if (value >= 0 && previous != null) {
+            snapshots.put(entityId, new Snapshot(previous.capacity(), value, System.currentTimeMillis()));
+        }
+        return value;
+    }
+
+    private Snapshot snapshot(String entityId) {
+        Snapshot snapshot = snapshots.get(entityId);
+        if (snapshot != null && System.currentTimeMillis() - snapshot.readAt() < SNAPSHOT_TTL_MILLIS) {
+            return snapshot;
+        }
+        try {
+            snapshot = read(entityId);
+            if (snapshot == null) {
+                initialize(entityId);
+                snapshot = read(entityId);
+            }
+            return snapshot;
+        } catch (Exception e) {
+            logger.warn("Capacity counter unavailable (non-critical): {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Snapshots of the sports' counters; a sport whose counter can't be read is left out.
+     */
+    private Map<String, Snapshot> snapshots(List<Sport> sports) {
+        Map<String, Snapshot> found = new HashMap<>();
+        List<Sport> stale = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Sport sport : sports) {
+            Snapshot snapshot = snapshots.get(sport.getId());
+            if (snapshot != null && now - snapshot.readAt() < SNAPSHOT_TTL_MILLIS) {
+                found.put(sport.getId(), snapshot);
+            } else {
+                stale.add(sport);
+            }
+        }
+        if (stale.isEmpty()) {
+            return found;
+        }
+        try {
+            Map<String, Snapshot> read = readAll(stale.stream().map(Sport::getId).toList());
+            List<Sport> missing = stale.stream().filter(sport -> !read.containsKey(sport.getId())).toList();
+            if (!missing.isEmpty()) {
+                initializeAll(missing);
+                read.putAll(readAll(missing.stream().map(Sport::getId).toList()));
+            }
+            found.putAll(read);
+        } catch (Exception e) {
+            logger.warn("Capacity counters unavailable (non-critical): {}", e.getMessage());
+        }
+        return found;
+    }
+
+    /**
+     * Reads the counters in one pipelined round trip; uninitialized ones are left out.
+     */
+    private Map<String, Snapshot> readAll(List<String> entityIds) {
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            public Object execute(RedisOperations operations) {
+                for (String entityId : entityIds) {
+                    operations.opsForHash().multiGet(key(entityId), COUNTER_FIELDS);
+                }
+                return null;
+            }
+        });
+        Map<String, Snapshot> read = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < entityIds.size(); i++) {
+            List<?> values = (List<?>) results.get(i);
+            if (values == null || values.get(0) == null || values.get(1) == null) {
+                continue;
+            }
+            Snapshot snapshot = new Snapshot(Long.parseLong(values.get(0).toString()),
+                    Long.parseLong(values.get(1).toString()), now);
+            snapshots.put(entityIds.get(i), snapshot);
+            read.put(entityIds.get(i), snapshot);
+        }
+        return read;
+    }
+
+    private Snapshot read(String entityId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key(entityId), COUNTER_FIELDS);
+        if (values.get(0) == null || values.get(1) == null) {
+            return null;
+        }
+        Snapshot snapshot = new Snapshot(Long.parseLong(values.get(0).toString()),
+                Long.parseLong(values.get(1).toString()), System.currentTimeMillis());
+        snapshots.put(entityId, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Builds the counter from the database unless another request got there first.
+     */
+    private void initialize(String entityId) {
+        long[] counts = countFromDatabase(entityId);
+        initialize(entityId, counts[0], counts[1]);
+    }
+
+    /**
+     * {@link #initialize(String)} for many sports, with one grouped count of their taken seats.
+     */
+    private void initializeAll(List<Sport> sports) {
+        Map<String, Long> taken = new HashMap<>();
+        List<String> entityIds = sports.stream().map(Sport::getId).toList();
+        for (Object[] row : bookingRepository.countTakenSeatsByEntity(SPORT_TYPES, entityIds, LocalDateTime.now())) {
+            taken.put((String) row[0], (Long) row[1]);
+        }
+        for (Sport sport : sports) {
+            long capacity = sport.getCapacity();
+            initialize(sport.getId(), capacity, remaining(sport.getId(), capacity, taken.getOrDefault(sport.getId(), 0L)));
+        }
+    }
+
+    private void initialize(String entityId, long capacity, long remaining) {
+        String key = key(entityId);
+        // Capacity first: the script treats a counter without "remaining" as not initialized
+        stringRedisTemplate.opsForHash().putIfAbsent(key, "capacity", String.valueOf(capacity));
+        stringRedisTemplate.opsForHash().putIfAbsent(key, "remaining", String.valueOf(remaining));
+        stringRedisTemplate.opsForSet().add(TRACKED_KEY, entityId);
+    }
+
+    /**
+     * @return the sport's capacity (-1 when it has none) and its remaining seats
+     */
+    private long[] countFromDatabase(String entityId) {
+        Integer capacity = sportRepository.findById(entityId).map(Sport::getCapacity).orElse(null);
+        if (capacity == null) {
+            return new long[] { -1, -1 };
+        }
+        long taken = bookingRepository.countTakenSeats(SPORT_TYPES, entityId, LocalDateTime.now());
+        return new long[] { capacity, remaining(entityId, capacity, taken) };
+    }
+
+    private long remaining(String entityId, long capacity, long takenInDatabase) {
+        long taken = takenInDatabase;
+        for (String type : SPORT_TYPES) {
+            // Journaled sales are not in the bookings table yet
+            taken += bookingJournalService.pendingBookings(type, entityId).size();
+        }
+        return Math.max(0, capacity - taken);
+    }
+
+    private static String key(String entityId) {
+        // Sports are booked as both SPORT and SPORTS; they share one counter
+        return CAPACITY_KEY_PREFIX + "{SPORT:" + entityId + "}";
+    }
+}
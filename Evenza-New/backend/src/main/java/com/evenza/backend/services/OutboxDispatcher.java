@@ -0,0 +1,239 @@
+package com.evenza.backend.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Drives outbox events to their {@link OutboxHandler}s.
+ *
+ * A poller thread leases due events in batches sized to the free worker slots and hands
+ * them to a dedicated worker pool. Successful events are marked done; failed ones are
+ * retried with exponential backoff until they run out of attempts and are marked FAILED.
+ * Events enqueued on this node wake the poller when they commit, so they do not wait for
+ * the next poll. Several nodes can run dispatchers against the same table: claiming skips
+ * rows other dispatchers hold locks on, and leases keep claimed rows off the due index.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final long STATS_INTERVAL_MILLIS = 10000;
+    private static final long FAILURE_PAUSE_MILLIS = 1000;
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private List<OutboxHandler> handlerList;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.outbox.workers:4}")
+    private int workers;
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.poll-millis:500}")
+    private long pollMillis;
+
+    @Value("${app.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.retry-base-millis:5000}")
+    private long retryBaseMillis;
+
+    @Value("${app.outbox.retry-max-millis:600000}")
+    private long retryMaxMillis;
+
+    @Value("${app.outbox.retention-hours:72}")
+    private long retentionHours;
+
+    private final Map<String, OutboxHandler> handlers = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+    private volatile boolean running;
+    private Thread pollerThread;
+
+    private Counter doneCounter;
+    private Counter retryCounter;
+    private Counter failedCounter;
+    private Counter lostLeaseCounter;
+    private Timer lagTimer;
+    private Timer handleTimer;
+
+    @PostConstruct
+    public void start() {
+        for (OutboxHandler handler : handlerList) {
+            handlers.put(handler.eventType(), handler);
+        }
+        // Never more work queued than the poller leased, so the queue cannot overflow
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 2), runnable -> {
+                    Thread thread = new Thread(runnable, "outbox-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        doneCounter = meterRegistry.counter("outbox.events", "outcome", "done");
+        retryCounter = meterRegistry.counter("outbox.events", "outcome", "retry");
+        failedCounter = meterRegistry.counter("outbox.events", "outcome", "failed");
+        lostLeaseCounter = meterRegistry.counter("outbox.events", "outcome", "lost_lease");
+        // Commit of the event to its completion
+        lagTimer = meterRegistry.timer("outbox.lag");
+        handleTimer = meterRegistry.timer("outbox.handle.latency");
+        meterRegistry.gauge("outbox.in.flight", inFlight);
+        meterRegistry.gauge("outbox.pending", pending);
+        meterRegistry.gauge("outbox.failed", failed);
+        meterRegistry.gauge("outbox.oldest.pending.age.seconds", oldestPendingAgeSeconds);
+        meterRegistry.gauge("outbox.executor.active", executor, ThreadPoolExecutor::getActiveCount);
+
+        running = true;
+        pollerThread = new Thread(this::runPoller, "outbox-poller");
+        pollerThread.setDaemon(true);
+        pollerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        pollerThread.interrupt();
+        executor.shutdown();
+        // Events still running when this times out are picked up again once their lease ends
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void runPoller() {
+        String token = UUID.randomUUID().toString();
+        long nextStats = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextStats) {
+                    refreshStats();
+                    nextStats = System.currentTimeMillis() + STATS_INTERVAL_MILLIS;
+                }
+
+                int free = workers * 2 - inFlight.get();
+                int claimed = 0;
+                if (free > 0) {
+                    LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+                    List<OutboxService.Claimed> events = outboxService.claim(Math.min(batchSize, free), token, leaseUntil);
+                    for (OutboxService.Claimed event : events) {
+                        inFlight.incrementAndGet();
+                        executor.execute(() -> process(event, token));
+                    }
+                    claimed = events.size();
+                }
+                // A full batch means more is due; otherwise wait for a wake-up or the next poll
+                if (claimed == 0 || claimed < Math.min(batchSize, free)) {
+                    outboxService.awaitSignal(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Outbox poll failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(FAILURE_PAUSE_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(OutboxService.Claimed event, String token) {
+        long start = System.nanoTime();
+        try {
+            OutboxHandler handler = handlers.get(event.eventType());
+            if (handler == null) {
+                throw new IllegalStateException("No handler for outbox event type " + event.eventType());
+            }
+            if (event.payload() == null) {
+                throw new IllegalStateException("Unreadable outbox payload");
+            }
+            handler.handle(event.aggregateId(), event.payload());
+
+            if (outboxService.complete(event.id(), token)) {
+                doneCounter.increment();
+                lagTimer.record(Duration.between(event.createdAt(), LocalDateTime.now()));
+            } else {
+                lostLeaseCounter.increment();
+            }
+        } catch (Exception e) {
+            long backoff = Math.min(retryMaxMillis, retryBaseMillis << Math.min(event.attempts() - 1, 20));
+            boolean giveUp = event.attempts() >= maxAttempts;
+            logger.warn("Outbox event {} {} attempt {} failed{}: {}", event.eventType(), event.aggregateId(),
+                    event.attempts(), giveUp ? ", giving up" : "", e.getMessage());
+            try {
+                if (outboxService.retry(event.id(), token, LocalDateTime.now().plusNanos(backoff * 1_000_000),
+                        maxAttempts, e.getMessage())) {
+                    (giveUp ? failedCounter : retryCounter).increment();
+                } else {
+                    lostLeaseCounter.increment();
+                }
+            } catch (Exception retryError) {
+                // The lease runs out and the event is delivered again
+                logger.error("Could not reschedule outbox event {}: {}", event.id(), retryError.getMessage());
+            }
+        } finally {
+            handleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+            // A worker slot is free again
+            outboxService.signal();
+        }
+    }
+
+    private void refreshStats() {
+        pending.set(outboxService.countPending());
+        failed.set(outboxService.countFailed());
+        LocalDateTime oldest = outboxService.oldestPendingCreatedAt();
+        oldestPendingAgeSeconds.set(oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()) : 0);
+        outboxService.purgeDone(LocalDateTime.now().minusHours(retentionHours), PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * Pending and failed counts and the age of the oldest pending event, as of the last refresh.
+     */
+    public Map<String, Object> stats() {
+        return Map.of(
+                "pending", pending.get(),
+                "failed", failed.get(),
+                "oldestPendingAgeSeconds", oldestPendingAgeSeconds.get(),
+                "inFlight", inFlight.get(),
+                "workers", workers);
+    }
+}
@@ -0,0 +1,17 @@
+package com.evenza.backend.services;
+
+import java.util.Map;
+
+/**
+ * Processes the outbox events of one type. Events are delivered at least once, so
+ * handlers must tolerate seeing an event again.
+ */
+public interface OutboxHandler {
+
+    String eventType();
+
+    /**
+     * @throws Exception to have the event retried with backoff
+     */
+    void handle(String aggregateId, Map<String, Object> payload) throws Exception;
+}
@@ -0,0 +1,218 @@
+package com.evenza.backend.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.model.OutboxEvent;
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Reads and writes the outbox_events table; {@link OutboxDispatcher} drives the events.
+ */
+@Service
+public class OutboxService {
+
+    public static final String TICKET_GENERATION = "TICKET_GENERATION";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO outbox_events " +
+            "(id, event_type, aggregate_id, payload, status, attempts, available_at, created_at) " +
+            "VALUES (?, ?, ?, ?, 'PENDING', 0, ?, ?)";
+    // Rows another dispatcher is claiming are skipped rather than waited for
+    private static final String SELECT_DUE_SQL = "SELECT id, event_type, aggregate_id, payload, attempts, created_at " +
+            "FROM outbox_events WHERE status = 'PENDING' AND available_at <= ? " +
+            "ORDER BY available_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String LEASE_SQL = "UPDATE outbox_events " +
+            "SET available_at = ?, locked_by = ?, attempts = attempts + 1 WHERE id = ?";
+    // Only the holder of the lease may settle an event
+    private static final String COMPLETE_SQL = "UPDATE outbox_events " +
+            "SET status = 'DONE', processed_at = ?, locked_by = NULL, last_error = NULL WHERE id = ? AND locked_by = ?";
+    private static final String RETRY_SQL = "UPDATE outbox_events " +
+            "SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+            "available_at = ?, locked_by = NULL, last_error = ? WHERE id = ? AND locked_by = ?";
+
+    /**
+     * A leased event.
+     * @param attempts the number of deliveries including this one
+     */
+    public record Claimed(long id, String eventType, String aggregateId, Map<String, Object> payload,
+                          int attempts, LocalDateTime createdAt) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Lets the dispatcher wait for new events instead of sleeping a full poll interval
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Adds an event in the caller's transaction, so it is stored exactly when the caller's
+     * writes are. An event of the same type and aggregate is kept as it is. The dispatcher
+     * is woken up once the event is committed.
+     * @return true if the event was added
+     */
+    public boolean enqueue(String eventType, String aggregateId, Map<String, Object> payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        boolean added = jdbcTemplate.update(INSERT_SQL, TimeOrderedIdGenerator.nextId(), eventType, aggregateId,
+                json, now, now) > 0;
+        if (added) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        signal();
+                    }
+                });
+            } else {
+                signal();
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Tells the dispatcher there may be due events.
+     */
+    public void signal() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    /**
+     * Waits until {@link #signal()} is called or the timeout passes.
+     */
+    public void awaitSignal(long timeoutMillis) throws InterruptedException {
+        wakeUps.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        wakeUps.drainPermits();
+    }
+
+    /**
+     * Leases up to {@code limit} due events to {@code claimToken} until {@code leaseUntil}.
+     */
+    public List<Claimed> claim(int limit, String claimToken, LocalDateTime leaseUntil) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp lease = Timestamp.valueOf(leaseUntil);
+        return transactionTemplate.execute(status -> {
+            List<Claimed> due = jdbcTemplate.query(SELECT_DUE_SQL, (rs, row) -> new Claimed(
+                    rs.getLong("id"),
+                    rs.getString("event_type"),
+                    rs.getString("aggregate_id"),
+                    readPayload(rs.getString("payload")),
+                    rs.getInt("attempts") + 1,
+                    rs.getTimestamp("created_at").toLocalDateTime()), now, limit);
+            if (!due.isEmpty()) {
+                jdbcTemplate.batchUpdate(LEASE_SQL, due, due.size(), (ps, event) -> {
+                    ps.setTimestamp(1, lease);
+                    ps.setString(2, claimToken);
+                    ps.setLong(3, event.id());
+                });
+            }
+            return due;
+        });
+    }
+
+    /**
+     * @return false if the lease was lost and another dispatcher owns the event now
+     */
+    public boolean complete(long id, String claimToken) {
+        return jdbcTemplate.update(COMPLETE_SQL, Timestamp.valueOf(LocalDateTime.now()), id, claimToken) > 0;
+    }
+
+    /**
+     * Makes the event due again at {@code retryAt}, or marks it FAILED once it has had
+     * {@code maxAttempts} deliveries.
+     */
+    public boolean retry(long id, String claimToken, LocalDateTime retryAt, int maxAttempts, String error) {
+        String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        return jdbcTemplate.update(RETRY_SQL, maxAttempts, Timestamp.valueOf(retryAt), message, id, claimToken) > 0;
+    }
+
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM outbox_events WHERE status = 'PENDING'", Long.class);
+        return count != null ? count : 0;
+    }
+
+    public long countFailed() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM outbox_events WHERE status = 'FAILED'", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return when the oldest pending event was written, or null if none is pending
+     */
+    public LocalDateTime oldestPendingCreatedAt() {
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM outbox_events WHERE status = 'PENDING'", Timestamp.class);
+        return oldest != null ? oldest.toLocalDateTime() : null;
+    }
+
+    /**
+     * Puts FAILED events back in line with a fresh set of attempts.
+     * @return the number of events requeued
+     */
+    public int retryFailed() {
+        return jdbcTemplate.update("UPDATE outbox_events SET status = 'PENDING', attempts = 0, available_at = ? " +
+                "WHERE status = 'FAILED'", Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Deletes up to {@code limit} events that were done before {@code before}. A done event
+     * keeps the lease it was processed under, so the due index finds them.
+     */
+    public int purgeDone(LocalDateTime before, int limit) {
+        return jdbcTemplate.update("DELETE FROM outbox_events WHERE status = '" + OutboxEvent.DONE +
+                "' AND available_at < ? LIMIT " + limit, Timestamp.valueOf(before));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readPayload(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, Map.class);
+        } catch (JsonProcessingException e) {
+            // Leased anyway, so the handler fails it instead of it blocking the head of the queue
+            return null;
+        }
+    }
+}
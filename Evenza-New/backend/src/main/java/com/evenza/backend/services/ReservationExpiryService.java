@@ -0,0 +1,278 @@
+package com.evenza.backend.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.util.SeatStateMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Expires temporary seat reservations.
+ *
+ * Reservations made on this node are tracked in a delay queue and cancelled within
+ * a moment of their deadline. A periodic sweep backs it up for reservations made
+ * elsewhere or lost on restart: it cancels expired rows in bounded batches found
+ * through the (status, reservation_expiry) index instead of loading the bookings table.
+ * Either way the expired rows are locked before they are cancelled, so only the seats
+ * of reservations that were actually cancelled are released, never those of one
+ * confirmed just before its deadline.
+ */
+@Service
+public class ReservationExpiryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationExpiryService.class);
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+    private static final int EXPIRE_BATCH_SIZE = 200;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private BookingCacheService bookingCacheService;
+
+    @Autowired
+    private SeatClaimService seatClaimService;
+
+    @Autowired
+    private CapacityService capacityService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final DelayQueue<ExpiringReservation> expiryQueue = new DelayQueue<>();
+    // The tracked entries by booking ID; untracked entries stay queued until due and are skipped
+    private final Map<Long, ExpiringReservation> tracked = new ConcurrentHashMap<>();
+    private Thread expiryThread;
+
+    private Counter timerExpiredCounter;
+    private Counter sweepExpiredCounter;
+    private Timer timerLatency;
+    private Timer sweepLatency;
+
+    @PostConstruct
+    public void start() {
+        timerExpiredCounter = meterRegistry.counter("bookings.reservations.expired", "source", "timer");
+        sweepExpiredCounter = meterRegistry.counter("bookings.reservations.expired", "source", "sweep");
+        timerLatency = meterRegistry.timer("bookings.reservations.expiry.latency", "source", "timer");
+        sweepLatency = meterRegistry.timer("bookings.reservations.expiry.latency", "source", "sweep");
+        meterRegistry.gauge("bookings.reservations.tracked", tracked, Map::size);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        expiryThread = new Thread(this::runExpiryLoop, "reservation-expiry");
+        expiryThread.setDaemon(true);
+        expiryThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryThread.interrupt();
+    }
+
+    /**
+     * Re-tracks the live reservations after a restart so they expire on time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trackLiveReservations() {
+        try {
+            track(bookingRepository.findByStatusAndReservationExpiryAfter("RESERVED", LocalDateTime.now()));
+        } catch (Exception e) {
+            logger.warn("Could not load live reservations, relying on the sweep: {}", e.getMessage());
+        }
+    }
+
+    public void track(List<Booking> reservations) {
+        for (Booking booking : reservations) {
+            if (booking.getId() != null && booking.getReservationExpiry() != null) {
+                ExpiringReservation reservation = new ExpiringReservation(booking);
+                tracked.put(reservation.bookingId, reservation);
+                expiryQueue.add(reservation);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking reservations that were confirmed or cancelled. Their queue entries
+     * are dropped when due; the status guard would skip them anyway.
+     */
+    public void untrack(Collection<Long> bookingIds) {
+        for (Long bookingId : bookingIds) {
+            tracked.remove(bookingId);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000) // Run every minute
+    public void cleanupExpiredReservations() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        List<Booking> cancelled;
+        do {
+            cancelled = transactionTemplate.execute(status -> cancel(
+                    bookingRepository.findExpiredReservationsForUpdate(now, PageRequest.of(0, SWEEP_BATCH_SIZE)), now));
+            expired += cancelled.size();
+            untrack(cancelled.stream().map(Booking::getId).toList());
+            releaseCancelled(cancelled);
+        } while (cancelled.size() == SWEEP_BATCH_SIZE);
+
+        // Expired seat holds are also freed on conflict; the sweep keeps the claim table small
+        int deleted;
+        do {
+            deleted = seatClaimService.deleteExpiredClaims(now, SWEEP_BATCH_SIZE);
+        } while (deleted == SWEEP_BATCH_SIZE);
+
+        sweepLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        sweepExpiredCounter.increment(expired);
+        if (expired > 0) {
+            logger.info("Reservation sweep cancelled {} expired reservations", expired);
+        }
+    }
+
+    private void runExpiryLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<ExpiringReservation> due = new ArrayList<>();
+                due.add(expiryQueue.take());
+                expiryQueue.drainTo(due, EXPIRE_BATCH_SIZE - 1);
+                due.removeIf(reservation -> !tracked.remove(reservation.bookingId, reservation));
+                if (!due.isEmpty()) {
+                    expire(due);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Error expiring reservations: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void expire(List<ExpiringReservation> due) {
+        long start = System.nanoTime();
+        List<Long> ids = new ArrayList<>(due.size());
+        for (ExpiringReservation reservation : due) {
+            ids.add(reservation.bookingId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Confirmed or already cancelled bookings are not locked, so they are neither cancelled nor released
+        List<Booking> cancelled = transactionTemplate.execute(status ->
+                cancel(bookingRepository.findExpiredReservationsForUpdate(ids, now), now));
+
+        timerLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        timerExpiredCounter.increment(cancelled.size());
+        releaseCancelled(cancelled);
+    }
+
+    // Cancels the locked expired reservations, in the caller's transaction
+    private List<Booking> cancel(List<Booking> expired, LocalDateTime now) {
+        if (!expired.isEmpty()) {
+            bookingRepository.cancelExpiredReservationsByIds(expired.stream().map(Booking::getId).toList(), now);
+        }
+        return expired;
+    }
+
+    private void releaseCancelled(List<Booking> cancelled) {
+        if (cancelled.isEmpty()) {
+            return;
+        }
+        publishReleasedSeats(cancelled);
+        evictBookingCaches(cancelled);
+    }
+
+    /**
+     * The bulk UPDATE bypasses the booking caches, so the affected ones are dropped.
+     */
+    private void evictBookingCaches(List<Booking> cancelled) {
+        Set<String> evicted = new HashSet<>();
+        for (Booking booking : cancelled) {
+            if (evicted.add(booking.getUserId() + "|" + booking.getEntityType() + ":" + booking.getEntityId())) {
+                try {
+                    bookingCacheService.evict(booking.getUserId(), booking.getEntityType(), booking.getEntityId());
+                } catch (Exception e) {
+                    logger.warn("Booking cache eviction failed (non-critical): {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Announces the seats of the cancelled reservations that are free again and gives
+     * them back to the show's capacity. A seat sold or re-held in the meantime is not
+     * free in the inventory and is skipped.
+     */
+    private void publishReleasedSeats(List<Booking> cancelled) {
+        Map<String, List<Booking>> byShow = new LinkedHashMap<>();
+        for (Booking booking : cancelled) {
+            byShow.computeIfAbsent(booking.getEntityType() + ":" + booking.getEntityId(), k -> new ArrayList<>())
+                    .add(booking);
+        }
+        for (List<Booking> bookings : byShow.values()) {
+            String entityType = bookings.get(0).getEntityType();
+            String entityId = bookings.get(0).getEntityId();
+            SeatStateMap.Update released = seatInventoryService.expireHolds(entityType, entityId,
+                    bookings.stream().map(Booking::getSeatId).toList());
+            webSocketService.sendSeatDelta(entityType, entityId, released.version(), WebSocketService.SEAT_RELEASED,
+                    released.seats());
+            capacityService.release(entityType, entityId, released.seats().size());
+        }
+    }
+
+    private static final class ExpiringReservation implements Delayed {
+        private final Long bookingId;
+        private final long expiresAtMillis;
+
+        ExpiringReservation(Booking booking) {
+            this.bookingId = booking.getId();
+            this.expiresAtMillis = booking.getReservationExpiry().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((ExpiringReservation) other).expiresAtMillis);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.evenza.backend.services;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.model.SalesRollup;
+import com.evenza.backend.repository.SalesRollupRepository;
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the sales_rollup table, successful payment totals per minute, hour and day and
+ * entity type, which the admin sales charts read instead of grouping the payment table.
+ *
+ * Payment writes hand their amounts to {@link #recordPayments} after they commit. The
+ * amounts are summed in memory and a flusher thread adds them to the rollup rows every
+ * {@code app.sales-rollup.flush-millis}, so a burst of payments updates each hot row once
+ * per flush instead of once per payment, and never inside a payment transaction. A
+ * catch-up job recomputes the recent window from the payment table and overwrites it,
+ * which picks up payments written by other paths and repairs totals lost with the buffer
+ * on a crash or counted twice by a flush racing a recompute.
+ *
+ * An empty table is backfilled from the whole payment history on a thread of its own after
+ * startup; the catch-up waits until the backfill has decided whether to run.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    private static final String SUCCESS = "SUCCESS";
+    private static final String OTHER_ENTITY_TYPE = "OTHER";
+    private static final int MAX_ENTITY_TYPE_LENGTH = 32;
+    private static final int PRUNE_BATCH_SIZE = 10000;
+
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private static final String ADD_SQL = "INSERT INTO sales_rollup " +
+            "(id, granularity, bucket_start, entity_type, total_amount, payment_count) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE total_amount = total_amount + VALUES(total_amount), " +
+            "payment_count = payment_count + VALUES(payment_count)";
+    private static final String PUT_SQL = "INSERT INTO sales_rollup " +
+            "(id, granularity, bucket_start, entity_type, total_amount, payment_count) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE total_amount = VALUES(total_amount), payment_count = VALUES(payment_count)";
+    private static final String DELETE_RANGE_SQL = "DELETE FROM sales_rollup " +
+            "WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ?";
+    // Minutes straight from the payments; hours from minutes, days from hours
+    private static final String MINUTES_FROM_PAYMENTS_SQL =
+            "SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:%i:00'), entity_type, SUM(amount), COUNT(*) FROM payment " +
+            "WHERE status = 'SUCCESS' AND created_at >= ? AND created_at < ? GROUP BY 1, 2";
+    private static final String HOURS_FROM_MINUTES_SQL =
+            "SELECT DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00'), entity_type, SUM(total_amount), SUM(payment_count) " +
+            "FROM sales_rollup WHERE granularity = 'MINUTE' AND bucket_start >= ? AND bucket_start < ? GROUP BY 1, 2";
+    private static final String DAYS_FROM_HOURS_SQL =
+            "SELECT DATE_FORMAT(bucket_start, '%Y-%m-%d 00:00:00'), entity_type, SUM(total_amount), SUM(payment_count) " +
+            "FROM sales_rollup WHERE granularity = 'HOUR' AND bucket_start >= ? AND bucket_start < ? GROUP BY 1, 2";
+
+    /**
+     * One successful payment to count.
+     */
+    public record Sale(Date createdAt, double amount, String entityType) {
+    }
+
+    private record BucketKey(String granularity, LocalDateTime bucketStart, String entityType) {
+    }
+
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator.comparing(BucketKey::granularity)
+            .thenComparing(BucketKey::bucketStart)
+            .thenComparing(BucketKey::entityType);
+
+    private static final class Totals {
+        BigDecimal amount = BigDecimal.ZERO;
+        long count;
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.sales-rollup.lookback-minutes:120}")
+    private int lookbackMinutes;
+
+    @Value("${app.sales-rollup.minute-retention-days:30}")
+    private int minuteRetentionDays;
+
+    @Value("${app.sales-rollup.flush-millis:1000}")
+    private long flushMillis;
+
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean backfillChecked;
+
+    // Totals recorded since the last flush
+    private final Object bufferLock = new Object();
+    private Map<BucketKey, Totals> buffer = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread flushThread;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        flushThread = new Thread(this::runFlusher, "sales-rollup-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        flushThread.interrupt();
+        try {
+            flushThread.join(flushMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        // A first run over the whole history takes long; keep it off the scheduler
+        Thread backfillThread = new Thread(() -> {
+            try {
+                backfillIfEmpty();
+            } catch (Exception e) {
+                logger.error("Sales rollup backfill failed, rebuild the history from the admin API: {}", e.getMessage());
+                backfillChecked = true;
+            }
+        }, "sales-rollup-backfill");
+        backfillThread.setDaemon(true);
+        backfillThread.start();
+    }
+
+    /**
+     * Adds successful payments to their minute, hour and day buckets. Call it after the
+     * payments commit; the totals reach the table with the next flush.
+     */
+    public void recordPayments(Collection<Sale> sales) {
+        if (sales.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, Totals> buckets = new HashMap<>();
+        for (Sale sale : sales) {
+            LocalDateTime at = LocalDateTime.ofInstant(sale.createdAt().toInstant(), ZoneId.systemDefault());
+            String entityType = normalizeEntityType(sale.entityType());
+            BigDecimal amount = BigDecimal.valueOf(sale.amount());
+            add(buckets, new BucketKey(SalesRollup.MINUTE, at.truncatedTo(ChronoUnit.MINUTES), entityType), amount, 1);
+            add(buckets, new BucketKey(SalesRollup.HOUR, at.truncatedTo(ChronoUnit.HOURS), entityType), amount, 1);
+            add(buckets, new BucketKey(SalesRollup.DAY, at.truncatedTo(ChronoUnit.DAYS), entityType), amount, 1);
+        }
+        synchronized (bufferLock) {
+            merge(buffer, buckets);
+        }
+    }
+
+    public void recordPayment(Date createdAt, double amount, String entityType) {
+        recordPayments(List.of(new Sale(createdAt, amount, entityType)));
+    }
+
+    @Scheduled(fixedDelayString = "${app.sales-rollup.catch-up-millis:60000}", initialDelay = 30000)
+    public void catchUp() {
+        if (!backfillChecked) {
+            // Its rows would make the table look backfilled
+            return;
+        }
+        try {
+            LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            LocalDateTime start = end.minusMinutes(lookbackMinutes).truncatedTo(ChronoUnit.HOURS);
+            recompute(start, end);
+
+            int pruned;
+            Timestamp cutoff = Timestamp.valueOf(LocalDate.now().minusDays(minuteRetentionDays).atStartOfDay());
+            do {
+                pruned = jdbcTemplate.update("DELETE FROM sales_rollup WHERE granularity = 'MINUTE' " +
+                        "AND bucket_start < ? LIMIT " + PRUNE_BATCH_SIZE, cutoff);
+            } while (pruned == PRUNE_BATCH_SIZE);
+        } catch (Exception e) {
+            logger.error("Sales rollup catch-up failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the rollups of the days from {@code from} to {@code to} (inclusive) from
+     * the payment table, one day per transaction.
+     */
+    public void rebuild(LocalDate from, LocalDate to) {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            recompute(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        }
+        logger.info("Sales rollups rebuilt for {} to {}", from, to);
+    }
+
+    private void backfillIfEmpty() {
+        Boolean hasRollups = jdbcTemplate.queryForObject("SELECT EXISTS(SELECT 1 FROM sales_rollup)", Boolean.class);
+        // Decided; the catch-up may write rows from here on, the rebuild overwrites the same totals
+        backfillChecked = true;
+        if (Boolean.TRUE.equals(hasRollups)) {
+            return;
+        }
+        Timestamp first = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM payment WHERE status = 'SUCCESS'", Timestamp.class);
+        if (first != null) {
+            logger.info("Backfilling sales rollups from {}", first);
+            rebuild(first.toLocalDateTime().toLocalDate(), LocalDate.now());
+        }
+    }
+
+    /**
+     * Overwrites the minute rows of [start, end), which must start on an hour, and the hour
+     * and day rows that cover them.
+     */
+    private void recompute(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS).equals(end)
+                ? end : end.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime dayStart = start.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime dayEnd = end.truncatedTo(ChronoUnit.DAYS).equals(end)
+                ? end : end.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            replace(SalesRollup.MINUTE, MINUTES_FROM_PAYMENTS_SQL, start, end);
+            replace(SalesRollup.HOUR, HOURS_FROM_MINUTES_SQL, start, hourEnd);
+            replace(SalesRollup.DAY, DAYS_FROM_HOURS_SQL, dayStart, dayEnd);
+        });
+    }
+
+    private void replace(String granularity, String sourceSql, LocalDateTime start, LocalDateTime end) {
+        Timestamp from = Timestamp.valueOf(start);
+        Timestamp to = Timestamp.valueOf(end);
+        jdbcTemplate.update(DELETE_RANGE_SQL, granularity, from, to);
+
+        Map<BucketKey, Totals> buckets = new TreeMap<>(KEY_ORDER);
+        jdbcTemplate.query(sourceSql, rs -> {
+            LocalDateTime bucket = LocalDateTime.parse(rs.getString(1), BUCKET_FORMAT);
+            // Entity types are stored in mixed case; the rollup keeps one row per normalized type
+            add(buckets, new BucketKey(granularity, bucket, normalizeEntityType(rs.getString(2))),
+                    rs.getBigDecimal(3), rs.getLong(4));
+        }, from, to);
+        write(PUT_SQL, buckets);
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Adds the buffered totals to the rollup rows in one transaction. On failure they go
+     * back into the buffer for the next flush.
+     */
+    private void flush() {
+        Map<BucketKey, Totals> flushed;
+        synchronized (bufferLock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            flushed = buffer;
+            buffer = new HashMap<>();
+        }
+        // Rows in key order, so concurrent writers lock them in the same order
+        Map<BucketKey, Totals> buckets = new TreeMap<>(KEY_ORDER);
+        buckets.putAll(flushed);
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(ADD_SQL, buckets));
+        } catch (Exception e) {
+            logger.warn("Sales rollup flush failed, retrying with the next one: {}", e.getMessage());
+            synchronized (bufferLock) {
+                merge(buffer, flushed);
+            }
+        }
+    }
+
+    private static void merge(Map<BucketKey, Totals> into, Map<BucketKey, Totals> from) {
+        for (Map.Entry<BucketKey, Totals> entry : from.entrySet()) {
+            add(into, entry.getKey(), entry.getValue().amount, entry.getValue().count);
+        }
+    }
+
+    private void write(String sql, Map<BucketKey, Totals> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<BucketKey, Totals>> rows = new ArrayList<>(buckets.entrySet());
+        jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, TimeOrderedIdGenerator.nextId());
+            ps.setString(2, row.getKey().granularity());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getKey().bucketStart()));
+            ps.setString(4, row.getKey().entityType());
+            ps.setBigDecimal(5, row.getValue().amount);
+            ps.setLong(6, row.getValue().count);
+        });
+    }
+
+    private static void add(Map<BucketKey, Totals> buckets, BucketKey key, BigDecimal amount, long count) {
+        Totals totals = buckets.computeIfAbsent(key, k -> new Totals());
+        if (amount != null) {
+            totals.amount = totals.amount.add(amount);
+        }
+        totals.count += count;
+    }
+
+    private static String normalizeEntityType(String entityType) {
+        if (entityType == null || entityType.isBlank()) {
+            return OTHER_ENTITY_TYPE;
+        }
+        String normalized = entityType.trim().toUpperCase(Locale.ROOT);
+        return normalized.length() > MAX_ENTITY_TYPE_LENGTH ? normalized.substring(0, MAX_ENTITY_TYPE_LENGTH) : normalized;
+    }
+
+    /**
+     * Sales totals for the admin charts, oldest first.
+     * @param period hourly (last 24 hours), daily (last 7 days), weekly (per day over the last
+     *               8 weeks) or monthly (last 12 months)
+     * @param entityType one entity type, or null for all
+     */
+    public Map<String, BigDecimal> getSalesSeries(String period, String entityType) {
+        String type = entityType != null && !entityType.isBlank() ? normalizeEntityType(entityType) : null;
+        LocalDate today = LocalDate.now();
+        Map<String, BigDecimal> series = new LinkedHashMap<>();
+        switch (period.toLowerCase(Locale.ROOT)) {
+            case "hourly":
+                fill(series, SalesRollup.HOUR, LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(23),
+                        type, HOUR_LABEL);
+                break;
+            case "daily":
+                fill(series, SalesRollup.DAY, today.minusDays(7).atStartOfDay(), type, DAY_LABEL);
+                break;
+            case "monthly":
+                fill(series, SalesRollup.DAY, today.minusMonths(12).atStartOfDay(), type, MONTH_LABEL);
+                break;
+            case "weekly":
+            default:
+                fill(series, SalesRollup.DAY, today.minusWeeks(8).atStartOfDay(), type, DAY_LABEL);
+                break;
+        }
+        return series;
+    }
+
+    private void fill(Map<String, BigDecimal> series, String granularity, LocalDateTime from, String entityType,
+                      DateTimeFormatter label) {
+        for (Object[] row : salesRollupRepository.sumByBucket(granularity, from, entityType)) {
+            BigDecimal amount = (BigDecimal) row[1];
+            if (amount.signum() != 0) {
+                series.merge(((LocalDateTime) row[0]).format(label), amount, BigDecimal::add);
+            }
+        }
+    }
+}
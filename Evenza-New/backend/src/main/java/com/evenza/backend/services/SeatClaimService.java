@@ -0,0 +1,120 @@
+package com.evenza.backend.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.Exceptions.SeatTakenException;
+import com.evenza.backend.model.SeatClaim;
+import com.evenza.backend.repository.SeatClaimRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Database-enforced seat ownership.
+ *
+ * A booking write claims its seats in the same transaction by inserting rows into
+ * seat_claims, whose unique key on (entity_type, entity_id, seat_id) rejects a seat that
+ * is already claimed. The happy path is a plain batched insert with no read before it;
+ * conflicts are only looked up after the database reported one.
+ */
+@Service
+public class SeatClaimService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeatClaimService.class);
+
+    @Autowired
+    private SeatClaimRepository seatClaimRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Claims the seats and runs the booking write in one transaction.
+     * @param expiresAt expiry of a temporary hold, or null to claim the seats as sold
+     * @throws SeatTakenException listing the seats claimed by someone else
+     */
+    public <T> T claimSeats(String entityType, String entityId, List<String> seatIds, String userId,
+                            LocalDateTime expiresAt, Supplier<T> write) {
+        try {
+            return insertClaims(entityType, entityId, seatIds, userId, expiresAt, write);
+        } catch (DataIntegrityViolationException e) {
+            // Expired holds stay in the table until swept; a sale may also take over the buyer's own holds
+            String owner = expiresAt == null ? userId : null;
+            int freed = seatClaimRepository.deleteStaleClaims(entityType, entityId, seatIds, owner, LocalDateTime.now());
+            if (freed == 0) {
+                throw seatTaken(entityType, entityId, seatIds, e);
+            }
+            logger.debug("Freed {} stale seat claims for {}:{}, retrying", freed, entityType, entityId);
+        }
+
+        try {
+            return insertClaims(entityType, entityId, seatIds, userId, expiresAt, write);
+        } catch (DataIntegrityViolationException e) {
+            throw seatTaken(entityType, entityId, seatIds, e);
+        }
+    }
+
+    /**
+     * Turns the user's holds on the seats into sales.
+     */
+    public void markSold(String entityType, String entityId, List<String> seatIds, String userId) {
+        seatClaimRepository.markSold(entityType, entityId, seatIds, userId);
+    }
+
+    /**
+     * Frees the user's holds on the seats.
+     */
+    public void releaseHolds(String entityType, String entityId, List<String> seatIds, String userId) {
+        seatClaimRepository.deleteHeldClaims(entityType, entityId, seatIds, userId);
+    }
+
+    /**
+     * Deletes up to {@code limit} expired holds.
+     */
+    public int deleteExpiredClaims(LocalDateTime now, int limit) {
+        return seatClaimRepository.deleteExpiredClaims(now, limit);
+    }
+
+    private <T> T insertClaims(String entityType, String entityId, List<String> seatIds, String userId,
+                               LocalDateTime expiresAt, Supplier<T> write) {
+        return transactionTemplate.execute(status -> {
+            List<SeatClaim> claims = new ArrayList<>(seatIds.size());
+            for (String seatId : seatIds) {
+                claims.add(new SeatClaim(entityType, entityId, seatId, userId, expiresAt));
+            }
+            // Flush now so a conflict surfaces here, before the booking rows are written
+            seatClaimRepository.saveAllAndFlush(claims);
+            return write.get();
+        });
+    }
+
+    private SeatTakenException seatTaken(String entityType, String entityId, List<String> seatIds,
+                                         DataIntegrityViolationException cause) {
+        List<String> takenSeats = seatClaimRepository.findByEntityTypeAndEntityIdAndSeatIdIn(entityType, entityId, seatIds)
+                .stream()
+                .map(SeatClaim::getSeatId)
+                .toList();
+        if (takenSeats.isEmpty()) {
+            // Not a seat conflict after all
+            throw cause;
+        }
+        return new SeatTakenException(takenSeats);
+    }
+}
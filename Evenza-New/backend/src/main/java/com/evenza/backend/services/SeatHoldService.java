@@ -0,0 +1,88 @@
+package com.evenza.backend.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cluster-wide seat holds kept in Redis.
+ *
+ * A multi-seat hold runs as a single Lua script, so two users racing for the same
+ * seats can't both get them and the check costs one Redis round trip regardless of
+ * the number of seats. The database write of the reservation stays the confirmation step.
+ */
+@Service
+public class SeatHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeatHoldService.class);
+
+    private static final String SEAT_HOLD_KEY_PREFIX = "SEAT_HOLD:";
+
+    private static final DefaultRedisScript<List> HOLD_SEATS_SCRIPT = script("redis/hold-seats.lua", List.class);
+    private static final DefaultRedisScript<Long> RELEASE_SEATS_SCRIPT = script("redis/release-seats.lua", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Holds all seats for the user, or none of them.
+     * If Redis is unreachable the hold is skipped and an empty list is returned,
+     * leaving conflict detection to the in-memory seat inventory.
+     * @return the seats that are already held; empty when the hold succeeded
+     */
+    public List<String> holdSeats(String entityType, String entityId, List<String> seatIds, String userId, Duration ttl) {
+        try {
+            List<?> conflicts = stringRedisTemplate.execute(HOLD_SEATS_SCRIPT,
+                    holdKeys(entityType, entityId, seatIds), userId, String.valueOf(ttl.toMillis()));
+            if (conflicts == null || conflicts.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<String> takenSeats = new ArrayList<>();
+            for (Object position : conflicts) {
+                takenSeats.add(seatIds.get(((Number) position).intValue() - 1));
+            }
+            return takenSeats;
+        } catch (Exception e) {
+            logger.warn("Redis seat hold unavailable (non-critical): {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Releases the seats still held by the user. Holds of other users are left untouched.
+     */
+    public void releaseSeats(String entityType, String entityId, List<String> seatIds, String userId) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SEATS_SCRIPT, holdKeys(entityType, entityId, seatIds), userId);
+        } catch (Exception e) {
+            logger.warn("Redis seat release failed (non-critical): {}", e.getMessage());
+        }
+    }
+
+    private static List<String> holdKeys(String entityType, String entityId, List<String> seatIds) {
+        // The hash tag keeps all seats of a show in one cluster slot, as multi-key scripts require
+        String showTag = "{" + entityType.toUpperCase() + ":" + entityId + "}";
+        List<String> keys = new ArrayList<>(seatIds.size());
+        for (String seatId : seatIds) {
+            keys.add(SEAT_HOLD_KEY_PREFIX + showTag + ":" + seatId);
+        }
+        return keys;
+    }
+
+    private static <T> DefaultRedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+}
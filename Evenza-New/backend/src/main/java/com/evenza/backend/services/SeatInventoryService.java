@@ -0,0 +1,222 @@
+package com.evenza.backend.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.util.SeatStateMap;
+import com.evenza.backend.util.VenueLayout;
+
+/**
+ * In-memory seat availability per show, so seat checks on the booking path
+ * don't have to load every booking of the show.
+ *
+ * Each show's map is rebuilt from the bookings table the first time it is used
+ * and then kept up to date by {@link BookingService}. The database stays the
+ * source of truth: when a write fails unexpectedly the show is evicted and rebuilt on
+ * next use. A write that loses seats to another claim only has those seats re-read, so a
+ * popular show is not rebuilt by every request that loses a race for a seat.
+ *
+ * Changes return the map's version, which is the sequence number of their seat delta.
+ * A rebuilt map continues from the version of the map it replaces.
+ */
+@Service
+public class SeatInventoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeatInventoryService.class);
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingJournalService bookingJournalService;
+
+    private final Map<String, SeatStateMap> seatMaps = new ConcurrentHashMap<>();
+
+    // Last version handed out per show while its map was not loaded
+    private final Map<String, Long> versionFloors = new ConcurrentHashMap<>();
+
+    // Slot-to-layout-position translations per show, valid for the seat map they were built from
+    private record LayoutPositions(SeatStateMap seatMap, VenueLayout layout, int[] positions) {
+    }
+
+    private final Map<String, LayoutPositions> layoutPositions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the seats that are already taken, empty when all seats are now held for the user
+     */
+    public SeatStateMap.Update tryHold(String entityType, String entityId, Collection<String> seatIds,
+                                       String userId, LocalDateTime expiry) {
+        return seatMap(entityType, entityId).tryHold(seatIds, userId, toMillis(expiry), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the seats that are already taken, empty when all seats are now sold to the user
+     */
+    public SeatStateMap.Update trySell(String entityType, String entityId, Collection<String> seatIds, String userId) {
+        return seatMap(entityType, entityId).trySell(seatIds, userId, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the version of the change
+     */
+    public long markSold(String entityType, String entityId, Collection<String> seatIds) {
+        return seatMap(entityType, entityId).markSold(seatIds);
+    }
+
+    /**
+     * @return the version of the change
+     */
+    public long releaseHolds(String entityType, String entityId, Collection<String> seatIds, String userId) {
+        String key = key(entityType, entityId);
+        SeatStateMap seatMap = seatMaps.get(key);
+        if (seatMap != null) {
+            return seatMap.releaseHolds(seatIds, userId);
+        }
+        // Nothing to release; the map built next starts after this version
+        return versionFloors.merge(key, 1L, Long::sum);
+    }
+
+    /**
+     * Clears the expired holds among the seats.
+     * @return the seats that are free now
+     */
+    public SeatStateMap.Update expireHolds(String entityType, String entityId, Collection<String> seatIds) {
+        return seatMap(entityType, entityId).expireHolds(seatIds, System.currentTimeMillis());
+    }
+
+    public SeatStateMap.Snapshot snapshot(String entityType, String entityId) {
+        return seatMap(entityType, entityId).snapshot(System.currentTimeMillis());
+    }
+
+    public boolean isSeatTaken(String entityType, String entityId, String seatId) {
+        return seatMap(entityType, entityId).isTaken(seatId, System.currentTimeMillis());
+    }
+
+    public List<String> getTakenSeats(String entityType, String entityId) {
+        return seatMap(entityType, entityId).takenSeats(System.currentTimeMillis());
+    }
+
+    public List<String> getSeatsInState(String entityType, String entityId, byte state) {
+        return seatMap(entityType, entityId).seatsInState(state, System.currentTimeMillis());
+    }
+
+    public byte getSeatState(String entityType, String entityId, String seatId) {
+        return seatMap(entityType, entityId).stateOf(seatId, System.currentTimeMillis());
+    }
+
+    /**
+     * Bitmap of the layout positions of the show's taken seats.
+     */
+    public BitSet takenPositions(String entityType, String entityId, VenueLayout layout) {
+        String key = key(entityType, entityId);
+        SeatStateMap seatMap = seatMap(entityType, entityId);
+        LayoutPositions cached = layoutPositions.get(key);
+        int[] positions = cached != null && cached.seatMap() == seatMap && cached.layout() == layout
+                ? cached.positions() : new int[0];
+        BitSet taken = new BitSet(layout.getSeatCount());
+        int[] updated = seatMap.markTaken(taken, positions, layout::positionOf, System.currentTimeMillis());
+        if (updated != positions) {
+            layoutPositions.put(key, new LayoutPositions(seatMap, layout, updated));
+        }
+        return taken;
+    }
+
+    /**
+     * Puts the seats back to the state the database has for them, after a write of them
+     * was rejected because someone else claimed some of them first. The rest of the show's
+     * map stays cached; if the seats cannot be read the show is evicted instead.
+     */
+    public void restoreSeats(String entityType, String entityId, Collection<String> seatIds) {
+        SeatStateMap seatMap = seatMaps.get(key(entityType, entityId));
+        if (seatMap == null) {
+            return;
+        }
+        try {
+            Set<String> requested = new HashSet<>(seatIds);
+            Set<String> sold = new HashSet<>();
+            Map<String, SeatStateMap.Hold> holds = new HashMap<>();
+            collectStates(bookingRepository.findByEntityTypeAndEntityIdAndSeatIdIn(entityType, entityId, requested),
+                    bookingJournalService.pendingBookings(entityType, entityId), sold, holds);
+            seatMap.restore(requested, sold, holds);
+        } catch (RuntimeException e) {
+            logger.warn("Re-reading seats of {}:{} failed, evicting the show: {}", entityType, entityId, e.getMessage());
+            evict(entityType, entityId);
+        }
+    }
+
+    /**
+     * Drops the cached map of a show; it is rebuilt from the database on next use.
+     */
+    public void evict(String entityType, String entityId) {
+        String key = key(entityType, entityId);
+        SeatStateMap evicted = seatMaps.remove(key);
+        if (evicted != null) {
+            versionFloors.merge(key, evicted.version(), Math::max);
+        }
+        layoutPositions.remove(key);
+    }
+
+    SeatStateMap seatMap(String entityType, String entityId) {
+        return seatMaps.computeIfAbsent(key(entityType, entityId), k -> load(entityType, entityId));
+    }
+
+    private SeatStateMap load(String entityType, String entityId) {
+        SeatStateMap seatMap = new SeatStateMap(versionFloors.getOrDefault(key(entityType, entityId), 0L));
+        Set<String> sold = new HashSet<>();
+        Map<String, SeatStateMap.Hold> holds = new HashMap<>();
+        collectStates(bookingRepository.findByEntityTypeAndEntityId(entityType, entityId),
+                bookingJournalService.pendingBookings(entityType, entityId), sold, holds);
+        seatMap.markSold(sold);
+        holds.forEach((seatId, hold) -> seatMap.markHeld(seatId, hold.userId(), hold.expiresAtMillis()));
+        return seatMap;
+    }
+
+    /**
+     * Sorts the bookings into sold seats and live holds.
+     * @param journaled sales still on their way from the booking journal to the database
+     */
+    private static void collectStates(List<Booking> bookings, List<Booking> journaled, Set<String> sold,
+                                      Map<String, SeatStateMap.Hold> holds) {
+        long now = System.currentTimeMillis();
+        for (Booking booking : bookings) {
+            String status = booking.getStatus();
+            // createBooking(s) saves paid bookings with the default PENDING status; they keep
+            // their seat, as in findTakenSeatStatuses and countTakenSeats
+            if ("CONFIRMED".equals(status) || "PENDING".equals(status)) {
+                sold.add(booking.getSeatId());
+            } else if ("RESERVED".equals(status) && booking.getReservationExpiry() != null) {
+                long expiry = toMillis(booking.getReservationExpiry());
+                if (expiry > now) {
+                    holds.put(booking.getSeatId(), new SeatStateMap.Hold(booking.getUserId(), expiry));
+                }
+            }
+        }
+        for (Booking booking : journaled) {
+            sold.add(booking.getSeatId());
+        }
+        holds.keySet().removeAll(sold);
+    }
+
+    private static String key(String entityType, String entityId) {
+        return entityType.toUpperCase() + ":" + entityId;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,27 @@
+package com.evenza.backend.services;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates the ticket of a paid booking; the aggregate is the booking ID.
+ */
+@Component
+public class TicketOutboxHandler implements OutboxHandler {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Override
+    public String eventType() {
+        return OutboxService.TICKET_GENERATION;
+    }
+
+    @Override
+    public void handle(String aggregateId, Map<String, Object> payload) throws Exception {
+        paymentService.generateTicketForBooking(aggregateId,
+                (String) payload.get("entityType"), (String) payload.get("entityId"));
+    }
+}
@@ -9,26 +9,32 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.evenza.backend.DTO.CursorPage;
 import com.evenza.backend.model.Booking;
 import com.evenza.backend.model.Ticket;
 import com.evenza.backend.model.User;
 import com.evenza.backend.repository.BookingRepository;
 import com.evenza.backend.repository.TicketRepository;
 import com.evenza.backend.repository.UserRepository;
+import com.evenza.backend.util.PageCursor;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.zxing.BarcodeFormat;
@@ -56,8 +62,15 @@ import jakarta.mail.internet.MimeMessage;
 @Service
 public class TicketService {
 
+    // Same key PaymentService.clearUserTicketCache drops
+    private static final String USER_TICKETS_CACHE_PREFIX = "tickets:user:";
+    private static final int USER_TICKETS_CACHE_MINUTES = 30;
+
     @Autowired
     private TicketRepository ticketRepository;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
     
     @Autowired
     private BookingRepository bookingRepository;
@@ -67,6 +80,9 @@ public class TicketService {
     
     @Autowired
     private JavaMailSender javaMailSender;
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
 
     @Value("${app.ticket.storage.path:tickets}")
     private String ticketStoragePath;
@@ -90,9 +106,9 @@ public class TicketService {
             bookingOpt = bookingRepository.findById(bookingIdLong);
             System.out.println("Looking up booking with numeric ID: " + bookingIdLong);
         } catch (NumberFormatException e) {
-            // If parsing fails, try to find by string ID
-            System.out.println("Booking ID is not numeric, trying string lookup: " + bookingId);
-            bookingOpt = bookingRepository.findByStringId(bookingId);
+            // Booking IDs are always numeric, so there is nothing to look up
+            System.out.println("Booking ID is not numeric: " + bookingId);
+            bookingOpt = Optional.empty();
         }
         
         if (bookingOpt.isEmpty()) {
@@ -112,9 +128,10 @@ public class TicketService {
             userOpt = userRepository.findById(userIdLong);
             System.out.println("Looking up user with numeric ID: " + userIdLong);
         } catch (NumberFormatException e) {
-            // If it's not a number, try to find by string ID
-            System.out.println("User ID is not numeric, trying string lookup: " + userId);
-            userOpt = userRepository.findByStringId(userId);
+            // Firebase uids and emails map to a users.id through the user key
+            System.out.println("User ID is not numeric, resolving user key: " + userId);
+            Long userKey = userKeyResolver.resolve(userId);
+            userOpt = userKey != null && userKey > 0 ? userRepository.findById(userKey) : Optional.empty();
         }
         
         String userEmail = userOpt.map(User::getEmail).orElse("user@example.com");
@@ -187,6 +204,7 @@ public class TicketService {
         // Save ticket
         try {
             Ticket savedTicket = ticketRepository.save(ticket);
+            evictUserTickets(savedTicket.getUserId());
             System.out.println("Ticket saved successfully with ID: " + savedTicket.getId());
             
             // Send email asynchronously
@@ -413,16 +431,69 @@ public class TicketService {
         }
     }
     
-    public List<Ticket> getUserTickets(String userId) {
-        return ticketRepository.findUserTicketsOrderByCreationDesc(userId);
+    /**
+     * One page of a user's tickets, newest first by creation time. Only the first page
+     * is cached.
+     * @param cursor cursor from the previous page, or null for the first page
+     * @param limit page size, capped at {@link PageCursor#MAX_PAGE_SIZE}
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @SuppressWarnings("unchecked")
+    public CursorPage<Ticket> getUserTickets(String userId, String cursor, Integer limit) {
+        int pageSize = PageCursor.pageSize(limit);
+        PageCursor after = PageCursor.decode(cursor);
+        String cacheKey = USER_TICKETS_CACHE_PREFIX + userId;
+        
+        if (after == null) {
+            try {
+                Object cached = redisTemplate.opsForValue().get(cacheKey);
+                if (cached != null) {
+                    return CursorPage.of((List<Ticket>) cached, pageSize, Ticket::getCreatedAt, Ticket::getId);
+                }
+            } catch (Exception e) {
+                System.err.println("Redis cache retrieval error (non-critical): " + e.getMessage());
+            }
+        }
+        
+        Long userKey = userKeyResolver.resolve(userId);
+        if (userKey == null) {
+            return CursorPage.empty();
+        }
+        List<Ticket> tickets;
+        if (after == null) {
+            // Enough rows for the first page at the largest page size
+            tickets = ticketRepository.findUserTicketsPage(userKey, PageRequest.of(0, PageCursor.MAX_PAGE_SIZE + 1));
+            try {
+                redisTemplate.opsForValue().set(cacheKey, tickets, USER_TICKETS_CACHE_MINUTES, TimeUnit.MINUTES);
+            } catch (Exception e) {
+                System.err.println("Redis cache update error (non-critical): " + e.getMessage());
+            }
+        } else {
+            tickets = ticketRepository.findUserTicketsPageAfter(userKey, after.createdAt(), after.id(),
+                    PageRequest.of(0, pageSize + 1));
+        }
+        return CursorPage.of(tickets, pageSize, Ticket::getCreatedAt, Ticket::getId);
+    }
+    
+    private void evictUserTickets(String userId) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            redisTemplate.delete(USER_TICKETS_CACHE_PREFIX + userId);
+        } catch (Exception e) {
+            System.err.println("Redis cache eviction error (non-critical): " + e.getMessage());
+        }
     }
     
     public List<Ticket> getUpcomingTicketsByUserId(String userId) {
-        return ticketRepository.findUpcomingTicketsByUserId(userId, LocalDateTime.now());
+        Long userKey = userKeyResolver.resolve(userId);
+        return userKey != null ? ticketRepository.findUpcomingTicketsByUserKey(userKey, LocalDateTime.now()) : new ArrayList<>();
     }
     
     public List<Ticket> getPastTicketsByUserId(String userId) {
-        return ticketRepository.findPastTicketsByUserId(userId, LocalDateTime.now());
+        Long userKey = userKeyResolver.resolve(userId);
+        return userKey != null ? ticketRepository.findPastTicketsByUserKey(userKey, LocalDateTime.now()) : new ArrayList<>();
     }
     
     public Optional<Ticket> getTicketById(String ticketId) {
@@ -441,6 +512,7 @@ public class TicketService {
                 // Mark as used
                 ticket.markAsUsed();
                 ticketRepository.save(ticket);
+                evictUserTickets(ticket.getUserId());
                 return true;
             }
         }
@@ -459,4 +531,11 @@ public class TicketService {
     public List<Ticket> getTicketsByBookingId(String bookingId) {
         return ticketRepository.findByBookingId(bookingId);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Whether a booking already has a ticket, read from the database rather than the cache
+     */
+    public boolean hasTicketForBooking(String bookingId) {
+        return !ticketRepository.findByBookingId(bookingId).isEmpty();
+    }
+}
@@ -0,0 +1,153 @@
+package com.evenza.backend.services;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+
+/**
+ * Turns the user ID strings clients send into canonical user keys.
+ *
+ * A numeric ID of a registered user is its own key. Any other string is looked up in
+ * legacy_user_ids; on the write path an unmapped string is added there, with the users.id
+ * of the user whose uid or email it is, or a negative synthetic key otherwise. A string
+ * that was never written therefore has no key, and reads for it can skip the database.
+ *
+ * Uses plain JDBC so it can run inside JPA entity callbacks. Resolved keys are cached;
+ * edits to legacy_user_ids take effect after a restart.
+ *
+ * Rows written before user keys existed have no key until
+ * {@link com.evenza.backend.config.LegacyDataBackfill} has set it. Until then a lookup
+ * first keys the rows of the user it is asked about, found by user_id, so key-only
+ * queries still see them.
+ */
+@Service
+public class UserKeyResolver {
+
+    private static final int MAX_CACHED_KEYS = 50000;
+
+    private static final List<String> USER_SCOPED_TABLES = List.of("bookings", "payment", "tickets");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Long> cache = new ConcurrentHashMap<>();
+
+    // Users whose rows were keyed by a lookup; only used until the backfill is done
+    private final Set<String> backfilledUsers = ConcurrentHashMap.newKeySet();
+    private volatile boolean backfilled;
+
+    /**
+     * @return the user key, or null if nothing was ever stored under this user ID
+     */
+    public Long resolve(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return null;
+        }
+        if (!backfilled && backfilledUsers.add(userId)) {
+            try {
+                backfillUser(userId);
+            } catch (RuntimeException e) {
+                backfilledUsers.remove(userId);
+                throw e;
+            }
+        }
+        return lookup(userId);
+    }
+
+    /**
+     * Like {@link #resolve} but maps an unknown user ID instead of returning null.
+     * Runs on the write path, so it leaves older rows of the user to the backfill.
+     */
+    public Long resolveOrAssign(String userId) {
+        Long userKey = lookup(userId);
+        if (userKey != null) {
+            return userKey;
+        }
+        Long registered = queryForKey("SELECT id FROM users WHERE uid = ? OR email = ? ORDER BY id LIMIT 1", userId, userId);
+        long candidate = registered != null ? registered : -TimeOrderedIdGenerator.nextId();
+        jdbcTemplate.update("INSERT IGNORE INTO legacy_user_ids (legacy_id, user_key) VALUES (?, ?)", userId, candidate);
+        // Another writer may have mapped the same ID first; its key wins
+        userKey = queryForKey("SELECT user_key FROM legacy_user_ids WHERE legacy_id = ?", userId);
+        remember(userId, userKey);
+        return userKey;
+    }
+
+    /**
+     * Sets the key of the user's rows that do not have one yet.
+     * @return the number of rows updated
+     */
+    public int backfillUser(String userId) {
+        boolean unkeyed = false;
+        for (String table : USER_SCOPED_TABLES) {
+            unkeyed |= Boolean.TRUE.equals(jdbcTemplate.query(
+                    "SELECT 1 FROM " + table + " WHERE user_id = ? AND user_key IS NULL LIMIT 1", ResultSet::next, userId));
+        }
+        if (!unkeyed) {
+            return 0;
+        }
+        Long userKey = resolveOrAssign(userId);
+        int updated = 0;
+        for (String table : USER_SCOPED_TABLES) {
+            updated += jdbcTemplate.update(
+                    "UPDATE " + table + " SET user_key = ? WHERE user_id = ? AND user_key IS NULL", userKey, userId);
+        }
+        return updated;
+    }
+
+    /**
+     * Called once every user-scoped row has its key; lookups stop checking for unkeyed rows.
+     */
+    public void markBackfilled() {
+        backfilled = true;
+        backfilledUsers.clear();
+    }
+
+    private Long lookup(String userId) {
+        Long cached = cache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        Long userKey = null;
+        if (isNumericId(userId)) {
+            userKey = queryForKey("SELECT id FROM users WHERE id = ?", Long.parseLong(userId));
+        }
+        if (userKey == null) {
+            userKey = queryForKey("SELECT user_key FROM legacy_user_ids WHERE legacy_id = ?", userId);
+        }
+        if (userKey != null) {
+            remember(userId, userKey);
+        }
+        return userKey;
+    }
+
+    private Long queryForKey(String sql, Object... args) {
+        return jdbcTemplate.query(sql, rs -> rs.next() ? rs.getLong(1) : null, args);
+    }
+
+    private void remember(String userId, Long userKey) {
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+        }
+        cache.put(userId, userKey);
+    }
+
+    private static boolean isNumericId(String userId) {
+        if (userId.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < userId.length(); i++) {
+            if (!Character.isDigit(userId.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
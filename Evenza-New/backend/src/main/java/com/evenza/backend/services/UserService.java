@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,6 +39,9 @@ public class UserService {
     @Autowired
     private PaymentRepository paymentRepository;
 
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
@@ -189,11 +193,12 @@ public class UserService {
         Map<String, Object> dashboardData = new HashMap<>();
 
         try {
-            // Get user bookings
-            List<Booking> bookings = bookingRepository.findUserBookingsOrderByTimeDesc(userId);
-
-            // Get user payments
-            List<Payment> payments = paymentRepository.findByUserId(userId);
+            // Get user bookings and payments; a user ID that was never stored has none
+            Long userKey = userKeyResolver.resolve(userId);
+            List<Booking> bookings = userKey != null
+                    ? bookingRepository.findUserBookingsOrderByTimeDesc(userKey) : new ArrayList<>();
+            List<Payment> payments = userKey != null
+                    ? paymentRepository.findByUserKey(userKey) : new ArrayList<>();
 
             // Calculate stats
             LocalDateTime now = LocalDateTime.now();
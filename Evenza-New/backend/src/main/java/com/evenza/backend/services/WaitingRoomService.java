@@ -0,0 +1,192 @@
+package com.evenza.backend.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Virtual waiting room for high-demand on-sales.
+ *
+ * Users join the queue of a show and get a token bound to the show and the user. Once a
+ * second the queue head is admitted at the show's configured rate; an admitted token lets
+ * its user into the booking flow of that show for a limited time. All state lives in Redis
+ * so every backend node shares the same queues, and a per-room tick lock that lasts a full
+ * tick keeps nodes from admitting more than one batch a second.
+ */
+@Service
+public class WaitingRoomService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitingRoomService.class);
+
+    public static final String STATUS_WAITING = "WAITING";
+    public static final String STATUS_ADMITTED = "ADMITTED";
+    public static final String STATUS_UNKNOWN = "UNKNOWN";
+
+    private static final String QUEUE_KEY_PREFIX = "WAITING_ROOM:";
+    private static final String SEQUENCE_KEY_PREFIX = "WAITING_ROOM_SEQ:";
+    private static final String RATE_KEY_PREFIX = "WAITING_ROOM_RATE:";
+    private static final String TICK_KEY_PREFIX = "WAITING_ROOM_TICK:";
+    private static final String TOKEN_KEY_PREFIX = "WAITING_ROOM_TOKEN:";
+    private static final String ADMITTED_KEY_PREFIX = "WAITING_ROOM_ADMITTED:";
+    private static final String ACTIVE_ROOMS_KEY = "WAITING_ROOM_ACTIVE";
+    private static final String HOLDER_SEPARATOR = "|";
+
+    private static final Duration TOKEN_TTL = Duration.ofHours(2);
+    private static final long ADMISSION_TICK_MILLIS = 1000;
+    // As long as the tick, so however the nodes' schedules drift one batch is admitted per tick
+    private static final Duration TICK_LOCK_TTL = Duration.ofMillis(ADMISSION_TICK_MILLIS);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Value("${app.waiting-room.default-rate:50}")
+    private int defaultAdmissionRate;
+
+    @Value("${app.waiting-room.admission-window-minutes:15}")
+    private int admissionWindowMinutes;
+
+    /**
+     * Puts a new token for the user at the back of the show's queue.
+     */
+    public Map<String, Object> join(String entityType, String entityId, long userKey) {
+        String room = room(entityType, entityId);
+        String token = UUID.randomUUID().toString();
+        Long ticket = stringRedisTemplate.opsForValue().increment(SEQUENCE_KEY_PREFIX + room);
+
+        stringRedisTemplate.opsForValue().set(TOKEN_KEY_PREFIX + token, holder(room, userKey), TOKEN_TTL);
+        stringRedisTemplate.opsForZSet().add(QUEUE_KEY_PREFIX + room, token, ticket);
+        stringRedisTemplate.opsForSet().add(ACTIVE_ROOMS_KEY, room);
+
+        Map<String, Object> response = getStatus(token);
+        response.put("token", token);
+        response.put("ticket", ticket);
+        return response;
+    }
+
+    /**
+     * Queue position and estimated wait of a token.
+     */
+    public Map<String, Object> getStatus(String token) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (isAdmitted(token)) {
+            status.put("status", STATUS_ADMITTED);
+            return status;
+        }
+
+        String holder = stringRedisTemplate.opsForValue().get(TOKEN_KEY_PREFIX + token);
+        String room = holder != null ? holder.substring(0, holder.lastIndexOf(HOLDER_SEPARATOR)) : null;
+        Long rank = room != null ? stringRedisTemplate.opsForZSet().rank(QUEUE_KEY_PREFIX + room, token) : null;
+        if (rank == null) {
+            status.put("status", STATUS_UNKNOWN);
+            return status;
+        }
+
+        // Re-activate the room in case the admission tick dropped it while this token was joining
+        stringRedisTemplate.opsForSet().add(ACTIVE_ROOMS_KEY, room);
+        long position = rank + 1;
+        status.put("status", STATUS_WAITING);
+        status.put("position", position);
+        status.put("etaSeconds", (position + admissionRate(room) - 1) / admissionRate(room));
+        return status;
+    }
+
+    public boolean isAdmitted(String token) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(ADMITTED_KEY_PREFIX + token));
+    }
+
+    /**
+     * Whether the token was admitted into the show's booking flow and belongs to the user.
+     */
+    public boolean isAdmitted(String token, String entityType, String entityId, long userKey) {
+        return holder(room(entityType, entityId), userKey)
+                .equals(stringRedisTemplate.opsForValue().get(ADMITTED_KEY_PREFIX + token));
+    }
+
+    /**
+     * Sets how many users per second are admitted into the booking flow of a show.
+     */
+    public void setAdmissionRate(String entityType, String entityId, int perSecond) {
+        stringRedisTemplate.opsForValue().set(RATE_KEY_PREFIX + room(entityType, entityId), String.valueOf(perSecond));
+    }
+
+    @Scheduled(fixedRate = ADMISSION_TICK_MILLIS)
+    public void admitNext() {
+        try {
+            Set<String> rooms = stringRedisTemplate.opsForSet().members(ACTIVE_ROOMS_KEY);
+            if (rooms == null) {
+                return;
+            }
+            for (String room : rooms) {
+                // Only one node admits per room and tick
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                        .setIfAbsent(TICK_KEY_PREFIX + room, "1", TICK_LOCK_TTL))) {
+                    admit(room);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Waiting room admission tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void admit(String room) {
+        String queueKey = QUEUE_KEY_PREFIX + room;
+        Set<TypedTuple<String>> admitted = stringRedisTemplate.opsForZSet().popMin(queueKey, admissionRate(room));
+
+        long admittedThrough = 0;
+        if (admitted != null && !admitted.isEmpty()) {
+            Duration admissionWindow = Duration.ofMinutes(admissionWindowMinutes);
+            List<TypedTuple<String>> entries = new ArrayList<>(admitted);
+            List<String> holders = stringRedisTemplate.opsForValue().multiGet(
+                    entries.stream().map(entry -> TOKEN_KEY_PREFIX + entry.getValue()).toList());
+            for (int i = 0; i < entries.size(); i++) {
+                TypedTuple<String> entry = entries.get(i);
+                admittedThrough = Math.max(admittedThrough, entry.getScore().longValue());
+                String holder = holders != null ? holders.get(i) : null;
+                if (holder == null) {
+                    // The token expired while it waited
+                    continue;
+                }
+                stringRedisTemplate.opsForValue().set(ADMITTED_KEY_PREFIX + entry.getValue(), holder, admissionWindow);
+                webSocketService.sendWaitingRoomAdmission(entry.getValue());
+            }
+        }
+
+        Long waiting = stringRedisTemplate.opsForZSet().zCard(queueKey);
+        if (waiting == null || waiting == 0) {
+            stringRedisTemplate.opsForSet().remove(ACTIVE_ROOMS_KEY, room);
+        }
+        if (admittedThrough > 0) {
+            webSocketService.sendWaitingRoomProgress(room, admittedThrough, waiting != null ? waiting : 0,
+                    admissionRate(room));
+        }
+    }
+
+    private int admissionRate(String room) {
+        String rate = stringRedisTemplate.opsForValue().get(RATE_KEY_PREFIX + room);
+        return rate != null ? Math.max(1, Integer.parseInt(rate)) : Math.max(1, defaultAdmissionRate);
+    }
+
+    private static String room(String entityType, String entityId) {
+        return entityType.toUpperCase() + ":" + entityId;
+    }
+
+    private static String holder(String room, long userKey) {
+        return room + HOLDER_SEPARATOR + userKey;
+    }
+}
@@ -1,15 +1,60 @@
 package com.evenza.backend.services;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
 public class WebSocketService {
+    public static final String SEAT_HELD = "HELD";
+    public static final String SEAT_RELEASED = "RELEASED";
+    public static final String SEAT_SOLD = "SOLD";
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
     public void sendNotification(String userId, String message) {
         messagingTemplate.convertAndSend("/topic/notifications/" + userId, message);
     }
+
+    /**
+     * Publishes a seat change of one show to /topic/seats/{entityType}/{entityId}.
+     * Every delta carries a per-show sequence number so clients can order deltas
+     * and skip the ones already covered by their snapshot.
+     * @param seq the seat inventory version of the change, see {@link SeatInventoryService}
+     */
+    public void sendSeatDelta(String entityType, String entityId, long seq, String state, List<String> seatIds) {
+        if (seatIds.isEmpty()) {
+            return;
+        }
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("seq", seq);
+        delta.put("state", state);
+        delta.put("seats", seatIds);
+        messagingTemplate.convertAndSend("/topic/seats/" + seatTopicKey(entityType, entityId), delta);
+    }
+
+    /**
+     * Publishes the admission progress of a waiting room to /topic/waiting-room/{entityType}/{entityId}.
+     * Clients compare admittedThrough with their ticket to update position and ETA locally.
+     */
+    public void sendWaitingRoomProgress(String room, long admittedThrough, long waiting, int admissionRate) {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("admittedThrough", admittedThrough);
+        progress.put("waiting", waiting);
+        progress.put("admissionRate", admissionRate);
+        messagingTemplate.convertAndSend("/topic/waiting-room/" + room.replace(':', '/'), progress);
+    }
+
+    public void sendWaitingRoomAdmission(String token) {
+        messagingTemplate.convertAndSend("/topic/waiting-room/token/" + token, Map.of("status", WaitingRoomService.STATUS_ADMITTED));
+    }
+
+    private static String seatTopicKey(String entityType, String entityId) {
+        return entityType.toUpperCase() + "/" + entityId;
+    }
 }
@@ -0,0 +1,71 @@
+package com.evenza.backend.services.payment;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.DTO.GatewayOrder;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-process stand-in for Razorpay, for load tests of the create-order and verify flow
+ * without network access ({@code app.payment.gateway=fake}).
+ *
+ * Orders are created locally after {@code app.payment.gateway.fake-latency-millis}, and
+ * {@link #pay} plays the checkout: it returns a payment ID and a signature made with the
+ * configured key secret, which {@code /api/payment/verify} accepts like a real one.
+ */
+@Service
+@ConditionalOnProperty(name = "app.payment.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakePaymentGateway.class);
+
+    @Autowired
+    private RazorpaySignatureVerifier signatureVerifier;
+
+    @Value("${app.payment.gateway.fake-latency-millis:0}")
+    private long latencyMillis;
+
+    @PostConstruct
+    public void init() {
+        logger.warn("Using the fake payment gateway; no real payments are taken");
+    }
+
+    @Override
+    public CompletableFuture<GatewayOrder> createOrder(long amount, String currency, String receipt,
+                                                      Map<String, String> notes) {
+        GatewayOrder order = new GatewayOrder("order_fake_" + randomId(), amount, currency, receipt, "created");
+        if (latencyMillis <= 0) {
+            return CompletableFuture.completedFuture(order);
+        }
+        // Simulated latency without holding a thread, like a non-blocking client
+        return CompletableFuture.supplyAsync(() -> order,
+                CompletableFuture.delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Completes the checkout of an order.
+     * @return the fields the checkout hands to the client for verification
+     */
+    public Map<String, String> pay(String orderId) {
+        String paymentId = "pay_fake_" + randomId();
+        return Map.of(
+                "razorpay_order_id", orderId,
+                "razorpay_payment_id", paymentId,
+                "razorpay_signature", signatureVerifier.signPayment(orderId, paymentId));
+    }
+
+    private static String randomId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 14);
+    }
+}
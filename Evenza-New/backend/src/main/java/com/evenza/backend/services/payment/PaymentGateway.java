@@ -0,0 +1,22 @@
+package com.evenza.backend.services.payment;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.evenza.backend.DTO.GatewayOrder;
+
+/**
+ * Payment gateway used to create checkout orders. The implementation is picked with
+ * {@code app.payment.gateway}: {@code razorpay} (default) or {@code fake}.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Creates an order without blocking the calling thread.
+     * @param amount amount in paise
+     * @param notes stored with the order and its payments; webhooks read the buyer and the
+     *              show from them
+     * @return the order; fails with {@link com.evenza.backend.Exceptions.PaymentGatewayException}
+     */
+    CompletableFuture<GatewayOrder> createOrder(long amount, String currency, String receipt, Map<String, String> notes);
+}
@@ -0,0 +1,112 @@
+package com.evenza.backend.services.payment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+/**
+ * First-writer-wins verification of a gateway payment.
+ *
+ * The browser, retries and duplicate tabs can verify the same payment at the same time.
+ * The first caller claims the payment with SET NX and a lease and does the work; the
+ * others wait for its cached result instead of racing it to the database. A claim that is
+ * released without a result (the winner failed) or whose lease ran out is taken over by
+ * the next waiter. If Redis is unreachable callers run unclaimed, and the unique gateway
+ * payment ID on the payment table decides.
+ */
+@Service
+public class PaymentVerificationClaims {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentVerificationClaims.class);
+
+    private static final String CLAIM_KEY_PREFIX = "payment:claim:";
+
+    private static final DefaultRedisScript<Long> RELEASE_CLAIM_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        RELEASE_CLAIM_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/release-claim.lua")));
+        RELEASE_CLAIM_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // Longer than a verification normally takes; a winner that dies holds it this long at most
+    @Value("${app.payment.verify.claim-lease-millis:30000}")
+    private long leaseMillis;
+
+    @Value("${app.payment.verify.wait-millis:10000}")
+    private long waitMillis;
+
+    @Value("${app.payment.verify.poll-millis:50}")
+    private long pollMillis;
+
+    /**
+     * Returns the result of the payment's verification, running {@code work} only if no
+     * other caller is running it. {@code work} must publish its result where
+     * {@code cachedResult} finds it before it returns, so waiters pick it up when the claim
+     * is released.
+     * @param cachedResult looks up a finished verification; returns null if there is none
+     * @return empty if another caller still held the claim after the wait
+     */
+    public <T> Optional<T> runOnce(String paymentId, Supplier<T> cachedResult, Supplier<T> work) {
+        String key = CLAIM_KEY_PREFIX + paymentId;
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            T cached = cachedResult.get();
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+
+            String token = UUID.randomUUID().toString();
+            Boolean claimed;
+            try {
+                claimed = stringRedisTemplate.opsForValue().setIfAbsent(key, token, Duration.ofMillis(leaseMillis));
+            } catch (Exception e) {
+                logger.warn("Redis payment claim unavailable (non-critical): {}", e.getMessage());
+                return Optional.ofNullable(work.get());
+            }
+            if (Boolean.TRUE.equals(claimed)) {
+                try {
+                    // The previous holder may have published its result and released the
+                    // claim between the lookup above and this claim
+                    T published = cachedResult.get();
+                    return Optional.ofNullable(published != null ? published : work.get());
+                } finally {
+                    release(key, token);
+                }
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                return Optional.empty();
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+    }
+
+    private void release(String key, String token) {
+        try {
+            stringRedisTemplate.execute(RELEASE_CLAIM_SCRIPT, List.of(key), token);
+        } catch (Exception e) {
+            // The lease runs out instead
+            logger.warn("Redis payment claim release failed (non-critical): {}", e.getMessage());
+        }
+    }
+}
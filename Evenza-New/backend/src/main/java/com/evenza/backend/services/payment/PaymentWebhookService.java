@@ -0,0 +1,450 @@
+package com.evenza.backend.services.payment;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.services.PaymentService;
+import com.evenza.backend.services.SalesRollupService;
+import com.evenza.backend.services.UserKeyResolver;
+import com.evenza.backend.util.HmacVerifier;
+import com.evenza.backend.util.TimeOrderedIdGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ingests Razorpay payment webhooks.
+ *
+ * A delivery is acknowledged as soon as it is in a bounded in-memory queue; when the
+ * queue is full the endpoint answers 503 and Razorpay redelivers later. A drainer thread
+ * takes deliveries in batches, checks the X-Razorpay-Signature HMAC of each raw body,
+ * drops payments that are already recorded (in the batch or in the database) and writes
+ * the rest with one JDBC batch. Deliveries that cannot be processed are moved to a
+ * dead-letter list in Redis together with the reason, from where they can be replayed.
+ */
+@Service
+public class PaymentWebhookService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookService.class);
+
+    public static final String DEAD_LETTER_KEY = "payments:webhook:dead-letters";
+
+    private static final long DRAIN_POLL_MILLIS = 100;
+    private static final long DRAIN_STOP_MILLIS = 5000;
+
+    private static final String INSERT_PAYMENT_SQL = "INSERT INTO payment " +
+            "(id, razorpay_order_id, razorpay_payment_id, razorpay_signature, amount, payment_method, status, " +
+            "entity_type, entity_id, user_id, user_key, order_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * A webhook as it was received: the raw body is what the signature covers.
+     */
+    public record Delivery(byte[] body, String signature, long receivedAt) {
+    }
+
+    // One payment parsed from a verified delivery
+    private record WebhookPayment(String razorpayPaymentId, String razorpayOrderId, double amount, String method,
+                                  String status, String entityType, String entityId, String userId,
+                                  Timestamp createdAt) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private UserKeyResolver userKeyResolver;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.payment.webhook.secret:}")
+    private String webhookSecret;
+
+    @Value("${app.payment.webhook.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.webhook.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.payment.webhook.dead-letter-max:10000}")
+    private int deadLetterMax;
+
+    private BlockingQueue<Delivery> queue;
+    private HmacVerifier verifier;
+    private TransactionTemplate transactionTemplate;
+
+    private volatile boolean running;
+    private Thread drainerThread;
+
+    private Counter acceptedCounter;
+    private Counter rejectedCounter;
+    private Counter persistedCounter;
+    private Counter duplicateCounter;
+    private Counter ignoredCounter;
+    private Counter deadLetteredCounter;
+    private Timer batchLatency;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (webhookSecret != null && !webhookSecret.isBlank()) {
+            verifier = new HmacVerifier(webhookSecret.getBytes(StandardCharsets.UTF_8));
+        } else {
+            logger.warn("app.payment.webhook.secret is not set, webhooks will be dead-lettered");
+        }
+
+        acceptedCounter = meterRegistry.counter("payments.webhook.deliveries", "outcome", "accepted");
+        rejectedCounter = meterRegistry.counter("payments.webhook.deliveries", "outcome", "rejected");
+        persistedCounter = meterRegistry.counter("payments.webhook.payments", "outcome", "persisted");
+        duplicateCounter = meterRegistry.counter("payments.webhook.payments", "outcome", "duplicate");
+        ignoredCounter = meterRegistry.counter("payments.webhook.payments", "outcome", "ignored");
+        deadLetteredCounter = meterRegistry.counter("payments.webhook.payments", "outcome", "dead_lettered");
+        batchLatency = meterRegistry.timer("payments.webhook.batch.latency");
+        meterRegistry.gauge("payments.webhook.queue.size", queue, BlockingQueue::size);
+        meterRegistry.gauge("payments.webhook.queue.remaining", queue, BlockingQueue::remainingCapacity);
+
+        running = true;
+        drainerThread = new Thread(this::runDrainer, "payment-webhook-drain");
+        drainerThread.setDaemon(true);
+        drainerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        // The drainer finishes what is queued before it exits
+        drainerThread.join(DRAIN_STOP_MILLIS);
+        if (!queue.isEmpty()) {
+            logger.warn("{} payment webhooks were still queued at shutdown", queue.size());
+        }
+    }
+
+    /**
+     * Queues a delivery for the drainer without blocking.
+     * @return false if the queue is full and the sender should retry later
+     */
+    public boolean enqueue(byte[] body, String signature) {
+        boolean accepted = queue.offer(new Delivery(body, signature, System.currentTimeMillis()));
+        (accepted ? acceptedCounter : rejectedCounter).increment();
+        return accepted;
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Signs a body with the webhook secret like Razorpay does, for the event generator.
+     * @return the signature, or null if no secret is configured
+     */
+    public String sign(byte[] body) {
+        return verifier != null ? verifier.sign(body) : null;
+    }
+
+    private void runDrainer() {
+        List<Delivery> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Delivery first = queue.poll(DRAIN_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Payment webhook batch failed: {}", e.getMessage());
+                deadLetter(batch, "Batch failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<Delivery> batch) {
+        long start = System.nanoTime();
+
+        // Verify and parse; later deliveries of a payment in the same batch are duplicates
+        Map<String, WebhookPayment> payments = new LinkedHashMap<>();
+        Map<String, Delivery> sources = new HashMap<>();
+        for (Delivery delivery : batch) {
+            if (verifier == null) {
+                deadLetter(delivery, "Webhook secret is not configured");
+                continue;
+            }
+            if (!verifier.verify(delivery.body(), 0, delivery.body().length, delivery.signature())) {
+                deadLetter(delivery, "Invalid signature");
+                continue;
+            }
+            WebhookPayment payment;
+            try {
+                payment = parse(delivery);
+            } catch (Exception e) {
+                deadLetter(delivery, "Malformed payload: " + e.getMessage());
+                continue;
+            }
+            if (payment == null) {
+                ignoredCounter.increment();
+            } else if (payments.putIfAbsent(payment.razorpayPaymentId(), payment) != null) {
+                duplicateCounter.increment();
+            } else {
+                sources.put(payment.razorpayPaymentId(), delivery);
+            }
+        }
+        if (payments.isEmpty()) {
+            return;
+        }
+
+        List<WebhookPayment> rows;
+        try {
+            rows = persistNew(payments);
+        } catch (DuplicateKeyException e) {
+            // A verification recorded one of them between the lookup and the insert; the
+            // batch rolled back, so look them up again and insert the rest
+            try {
+                rows = persistNew(payments);
+            } catch (Exception retryError) {
+                persistFailed(payments, sources, retryError);
+                return;
+            }
+        } catch (Exception e) {
+            persistFailed(payments, sources, e);
+            return;
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        persistedCounter.increment(rows.size());
+
+        Set<String> users = new HashSet<>();
+        for (WebhookPayment payment : rows) {
+            if (payment.userId() != null && users.add(payment.userId())) {
+                paymentService.clearUserPaymentCache(payment.userId());
+            }
+        }
+        batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Inserts the payments that are not recorded yet in one transaction and hands the
+     * successful ones to the sales rollups. Recorded ones are dropped from {@code payments}
+     * as duplicates.
+     * @return the payments inserted
+     */
+    private List<WebhookPayment> persistNew(Map<String, WebhookPayment> payments) {
+        for (String existing : paymentRepository.findExistingRazorpayPaymentIds(payments.keySet())) {
+            payments.remove(existing);
+            duplicateCounter.increment();
+        }
+        List<WebhookPayment> rows = new ArrayList<>(payments.values());
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        transactionTemplate.executeWithoutResult(tx -> {
+            jdbcTemplate.batchUpdate(INSERT_PAYMENT_SQL, rows, rows.size(), (ps, payment) -> {
+                ps.setLong(1, TimeOrderedIdGenerator.nextId());
+                ps.setString(2, payment.razorpayOrderId());
+                ps.setString(3, payment.razorpayPaymentId());
+                // Webhooks sign the body, not the payment
+                ps.setString(4, null);
+                ps.setDouble(5, payment.amount());
+                ps.setString(6, payment.method());
+                ps.setString(7, payment.status());
+                ps.setString(8, payment.entityType());
+                ps.setString(9, payment.entityId());
+                ps.setString(10, payment.userId());
+                // JDBC inserts skip the entity listener that sets the key for JPA writes
+                ps.setObject(11, payment.userId() != null ? userKeyResolver.resolveOrAssign(payment.userId()) : null);
+                ps.setString(12, null);
+                ps.setTimestamp(13, payment.createdAt());
+            });
+        });
+        salesRollupService.recordPayments(rows.stream()
+                .filter(payment -> "SUCCESS".equals(payment.status()))
+                .map(payment -> new SalesRollupService.Sale(payment.createdAt(), payment.amount(), payment.entityType()))
+                .toList());
+        return rows;
+    }
+
+    private void persistFailed(Map<String, WebhookPayment> payments, Map<String, Delivery> sources, Exception e) {
+        logger.error("Could not persist {} webhook payments: {}", payments.size(), e.getMessage());
+        deadLetter(payments.keySet().stream().map(sources::get).toList(), "Persist failed: " + e.getMessage());
+    }
+
+    /**
+     * Reads the payment out of a payment.captured or payment.failed event.
+     * @return the payment, or null for other events
+     */
+    private WebhookPayment parse(Delivery delivery) throws Exception {
+        JsonNode root = objectMapper.readTree(delivery.body());
+        String event = root.path("event").asText();
+        String status;
+        if ("payment.captured".equals(event)) {
+            status = "SUCCESS";
+        } else if ("payment.failed".equals(event)) {
+            status = "FAILED";
+        } else {
+            return null;
+        }
+
+        JsonNode entity = root.path("payload").path("payment").path("entity");
+        String paymentId = textOrNull(entity.path("id"));
+        if (paymentId == null) {
+            throw new IllegalArgumentException("payment id is missing");
+        }
+        JsonNode notes = entity.path("notes");
+        long createdAt = root.path("created_at").asLong(0);
+        return new WebhookPayment(
+                paymentId,
+                textOrNull(entity.path("order_id")),
+                entity.path("amount").asLong() / 100.0, // the gateway counts in paise
+                textOrNull(entity.path("method")),
+                status,
+                textOrNull(notes.path("entityType")),
+                textOrNull(notes.path("entityId")),
+                textOrNull(notes.path("userId")),
+                new Timestamp(createdAt > 0 ? createdAt * 1000 : delivery.receivedAt()));
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node.isTextual() && !node.asText().isEmpty() ? node.asText() : null;
+    }
+
+    /**
+     * Dead-lettered deliveries, newest first.
+     */
+    public List<Map<String, Object>> deadLetters(int limit) {
+        List<String> entries = stringRedisTemplate.opsForList().range(DEAD_LETTER_KEY, 0, limit - 1);
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (entries == null) {
+            return result;
+        }
+        for (String raw : entries) {
+            try {
+                JsonNode entry = objectMapper.readTree(raw);
+                result.add(Map.of(
+                        "reason", entry.path("reason").asText(),
+                        "failedAt", entry.path("failedAt").asLong(),
+                        "receivedAt", entry.path("receivedAt").asLong(),
+                        "body", entry.path("body").asText()));
+            } catch (Exception e) {
+                logger.warn("Skipping unreadable dead letter: {}", e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    public long deadLetterCount() {
+        Long size = stringRedisTemplate.opsForList().size(DEAD_LETTER_KEY);
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Moves up to {@code limit} of the oldest dead letters back onto the queue. Replayed
+     * deliveries go through the same checks again, so ones that still fail return to
+     * the dead-letter list.
+     * @return the number of deliveries replayed
+     */
+    public int replayDeadLetters(int limit) {
+        // Deliveries that fail again go back in at the head while this runs; take only the
+        // entries there now, so none is replayed twice in one call
+        long remaining = Math.min(limit, deadLetterCount());
+        int replayed = 0;
+        for (; remaining > 0 && queue.remainingCapacity() > 0; remaining--) {
+            String entry = stringRedisTemplate.opsForList().rightPop(DEAD_LETTER_KEY);
+            if (entry == null) {
+                break;
+            }
+            Delivery delivery;
+            try {
+                JsonNode node = objectMapper.readTree(entry);
+                delivery = new Delivery(node.path("body").asText().getBytes(StandardCharsets.UTF_8),
+                        textOrNull(node.path("signature")), node.path("receivedAt").asLong());
+            } catch (Exception e) {
+                logger.warn("Dropping unreadable dead letter: {}", e.getMessage());
+                continue;
+            }
+            if (!queue.offer(delivery)) {
+                // Filled up meanwhile; put it back at the old end
+                stringRedisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, entry);
+                break;
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+
+    private void deadLetter(List<Delivery> deliveries, String reason) {
+        for (Delivery delivery : deliveries) {
+            deadLetter(delivery, reason);
+        }
+    }
+
+    private void deadLetter(Delivery delivery, String reason) {
+        deadLetteredCounter.increment();
+        try {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("reason", reason);
+            entry.put("failedAt", System.currentTimeMillis());
+            entry.put("receivedAt", delivery.receivedAt());
+            entry.put("signature", delivery.signature());
+            entry.put("body", new String(delivery.body(), StandardCharsets.UTF_8));
+            // Newest at the head; the list is capped so a flood of bad deliveries cannot fill Redis
+            stringRedisTemplate.opsForList().leftPush(DEAD_LETTER_KEY, objectMapper.writeValueAsString(entry));
+            stringRedisTemplate.opsForList().trim(DEAD_LETTER_KEY, 0, deadLetterMax - 1);
+        } catch (Exception e) {
+            logger.error("Could not dead-letter payment webhook ({}): {} body={}", reason, e.getMessage(),
+                    new String(delivery.body(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.evenza.backend.services.payment;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.evenza.backend.DTO.GatewayOrder;
+import com.evenza.backend.Exceptions.PaymentGatewayException;
+import com.evenza.backend.config.RazorpayConfig;
+import com.razorpay.Order;
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Creates orders with Razorpay.
+ *
+ * One client is shared by all requests. The SDK keeps its HTTP client in a static field
+ * and rebuilds it, with a new connection pool, for every client constructed, so a client
+ * per request never reused a connection. The SDK's own timeouts are fixed at 60 seconds;
+ * calls run on the bounded gateway executor and are given up after
+ * {@code app.payment.gateway.timeout-millis}, so a slow gateway ties up at most that pool
+ * and never the request threads.
+ *
+ * Giving up on a call does not end it: the SDK call cannot be interrupted, so its pool
+ * thread stays blocked until the SDK's 60 second timeout. While the gateway hangs, callers
+ * first get "timed out", and once every pool thread and queue slot is held by a hung call,
+ * "busy" until those calls end. See {@code PaymentGatewayConfig} for sizing the pool.
+ */
+@Service
+@ConditionalOnProperty(name = "app.payment.gateway", havingValue = "razorpay", matchIfMissing = true)
+public class RazorpayGateway implements PaymentGateway {
+
+    @Autowired
+    private RazorpayConfig razorpayConfig;
+
+    @Autowired
+    @Qualifier("paymentGatewayExecutor")
+    private Executor paymentGatewayExecutor;
+
+    @Value("${app.payment.gateway.timeout-millis:10000}")
+    private long timeoutMillis;
+
+    private RazorpayClient client;
+
+    @PostConstruct
+    public void init() throws RazorpayException {
+        client = new RazorpayClient(razorpayConfig.getKeyId(), razorpayConfig.getKeySecret());
+    }
+
+    @Override
+    public CompletableFuture<GatewayOrder> createOrder(long amount, String currency, String receipt,
+                                                      Map<String, String> notes) {
+        JSONObject options = new JSONObject();
+        options.put("amount", amount);
+        options.put("currency", currency);
+        options.put("receipt", receipt);
+        if (!notes.isEmpty()) {
+            options.put("notes", new JSONObject(notes));
+        }
+
+        CompletableFuture<GatewayOrder> order;
+        try {
+            order = CompletableFuture.supplyAsync(() -> create(options), paymentGatewayExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new PaymentGatewayException("Payment gateway is busy, please retry", true, e));
+        }
+        return order.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(translate(e)));
+    }
+
+    private GatewayOrder create(JSONObject options) {
+        try {
+            Order order = client.orders.create(options);
+            return new GatewayOrder(order.get("id"), ((Number) order.get("amount")).longValue(),
+                    order.get("currency"), order.get("receipt"), order.get("status"));
+        } catch (RazorpayException e) {
+            throw new PaymentGatewayException("Order creation failed: " + e.getMessage(), false, e);
+        }
+    }
+
+    private static PaymentGatewayException translate(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof PaymentGatewayException gatewayException) {
+            return gatewayException;
+        }
+        if (cause instanceof TimeoutException) {
+            return new PaymentGatewayException("Payment gateway timed out", true, cause);
+        }
+        return new PaymentGatewayException("Order creation failed: " + cause.getMessage(), false, cause);
+    }
+}
@@ -0,0 +1,43 @@
+package com.evenza.backend.services.payment;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evenza.backend.config.RazorpayConfig;
+import com.evenza.backend.util.HmacVerifier;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Checks the signatures Razorpay puts on completed payments: the hex HMAC-SHA256 of
+ * {@code orderId|paymentId} with the key secret.
+ */
+@Component
+public class RazorpaySignatureVerifier {
+
+    @Autowired
+    private RazorpayConfig razorpayConfig;
+
+    private HmacVerifier paymentVerifier;
+
+    @PostConstruct
+    public void init() {
+        paymentVerifier = new HmacVerifier(razorpayConfig.getKeySecret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean verifyPayment(String orderId, String paymentId, String signature) {
+        if (orderId == null || paymentId == null || signature == null) {
+            return false;
+        }
+        return paymentVerifier.verify(orderId, '|', paymentId, signature);
+    }
+
+    /**
+     * Signs a payment like Razorpay does, for the fake gateway.
+     */
+    public String signPayment(String orderId, String paymentId) {
+        return paymentVerifier.sign(orderId, '|', paymentId);
+    }
+}
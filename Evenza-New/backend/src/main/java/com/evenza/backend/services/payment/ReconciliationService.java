@@ -0,0 +1,374 @@
+package com.evenza.backend.services.payment;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.evenza.backend.DTO.PaymentLedgerView;
+import com.evenza.backend.DTO.ReconciliationReport;
+import com.evenza.backend.DTO.SettlementRecord;
+import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.util.SettlementCsvReader;
+import com.evenza.backend.util.SettlementSorter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Reconciles the payment ledger against a gateway settlement file.
+ *
+ * Both sides are streamed in gateway payment ID order and merge-joined, so memory does not
+ * grow with the size of the day: the ledger comes from a forward-only MySQL result set,
+ * the settlement file is sorted externally in bounded runs. Every mismatch is appended to
+ * a CSV report; only the counts are kept in memory. Jobs run one at a time on their own
+ * thread and are looked up by ID.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationService.class);
+
+    private static final int LOOKUP_BATCH_SIZE = 500;
+    private static final int MAX_QUEUED_JOBS = 4;
+    private static final int MAX_KEPT_JOBS = 50;
+    private static final long PROGRESS_ROWS = 1_000_000;
+
+    public enum MismatchType {
+        // Captured in the ledger, absent from the settlement file
+        MISSING_IN_SETTLEMENT,
+        // Settled, but no payment in the ledger at all
+        MISSING_IN_LEDGER,
+        // Settled, and the payment exists but was created outside the reconciled window
+        OUTSIDE_WINDOW,
+        AMOUNT_MISMATCH,
+        // Settled, but not a successful payment in the ledger
+        STATUS_MISMATCH,
+        DUPLICATE_IN_LEDGER,
+        DUPLICATE_IN_SETTLEMENT
+    }
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.reconciliation.input-dir:data/settlements}")
+    private String inputDir;
+
+    @Value("${app.reconciliation.report-dir:data/reconciliation}")
+    private String reportDir;
+
+    @Value("${app.reconciliation.sort-chunk-rows:200000}")
+    private int sortChunkRows;
+
+    private TransactionTemplate streamTransaction;
+    private TransactionTemplate lookupTransaction;
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, ReconciliationReport> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReconciliationReport> eldest) {
+            return size() > MAX_KEPT_JOBS;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        streamTransaction = new TransactionTemplate(transactionManager);
+        streamTransaction.setReadOnly(true);
+        // The streaming result set holds its connection until it is read to the end, so
+        // lookups made meanwhile need a connection of their own
+        lookupTransaction = new TransactionTemplate(transactionManager);
+        lookupTransaction.setReadOnly(true);
+        lookupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS), runnable -> {
+                    Thread thread = new Thread(runnable, "payment-reconciliation");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a reconciliation of the payments created on the days {@code from} to {@code to}
+     * (inclusive) against a file in the settlement input directory.
+     * @return the queued job
+     * @throws IllegalArgumentException if the file or the dates are not usable
+     * @throws RejectedExecutionException if too many jobs are queued
+     */
+    public ReconciliationReport submit(String fileName, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        Path base = Path.of(inputDir).toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+        if (!file.startsWith(base) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No settlement file " + fileName + " in " + base);
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        ReconciliationReport queued = ReconciliationReport.running(jobId, fileName, from, to);
+        saveJob(queued);
+        try {
+            executor.execute(() -> run(queued, file));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(jobId);
+            }
+            throw e;
+        }
+        return queued;
+    }
+
+    public ReconciliationReport getJob(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    private void saveJob(ReconciliationReport report) {
+        synchronized (jobs) {
+            jobs.put(report.jobId(), report);
+        }
+    }
+
+    private void run(ReconciliationReport job, Path settlementFile) {
+        long start = System.nanoTime();
+        Path workDir = null;
+        try {
+            Files.createDirectories(Path.of(reportDir));
+            workDir = Files.createTempDirectory("reconciliation-");
+            Path reportFile = Path.of(reportDir, "reconciliation-" + job.from() + "-" + job.to() + "-" + job.jobId() + ".csv");
+
+            SettlementSorter.Sorted sorted = SettlementSorter.sort(settlementFile, workDir, sortChunkRows);
+            logger.info("Reconciliation {}: sorted {} settlement rows in {} ms", job.jobId(), sorted.records(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            MergeJoin join;
+            try (BufferedWriter report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8);
+                 SettlementCsvReader settlement = new SettlementCsvReader(sorted.file())) {
+                report.write("type,payment_id,ledger_amount,settlement_amount,ledger_status,settlement_line");
+                report.newLine();
+                join = new MergeJoin(job.jobId(), report);
+                Date from = toDate(job.from());
+                Date to = toDate(job.to().plusDays(1));
+                streamTransaction.executeWithoutResult(status -> {
+                    try (Stream<PaymentLedgerView> ledger = paymentRepository.streamLedger(from, to)) {
+                        join.run(ledger.iterator(), settlement);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Could not write the reconciliation report", e);
+                    }
+                });
+            }
+
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            long rows = join.ledgerRows + join.settlementRows;
+            Map<String, Long> mismatches = new LinkedHashMap<>();
+            join.mismatches.forEach((type, count) -> mismatches.put(type.name(), count));
+            meterRegistry.counter("payments.reconciliation.rows").increment(rows);
+            join.mismatches.forEach((type, count) ->
+                    meterRegistry.counter("payments.reconciliation.mismatches", "type", type.name()).increment(count));
+
+            ReconciliationReport done = new ReconciliationReport(job.jobId(), ReconciliationReport.COMPLETED,
+                    job.settlementFile(), job.from(), job.to(), join.ledgerRows, join.settlementRows, sorted.skipped(),
+                    join.matched, mismatches, reportFile.toAbsolutePath().toString(), elapsedMillis,
+                    rows * 1000 / elapsedMillis, null);
+            saveJob(done);
+            logger.info("Reconciliation {} done: {} ledger and {} settlement rows in {} ms ({} rows/s), mismatches {}",
+                    job.jobId(), join.ledgerRows, join.settlementRows, elapsedMillis, done.rowsPerSecond(), mismatches);
+        } catch (Exception e) {
+            logger.error("Reconciliation {} failed", job.jobId(), e);
+            saveJob(new ReconciliationReport(job.jobId(), ReconciliationReport.FAILED, job.settlementFile(),
+                    job.from(), job.to(), 0, 0, 0, 0, Map.of(), null,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 0, e.getMessage()));
+        } finally {
+            deleteQuietly(workDir);
+        }
+    }
+
+    /**
+     * The merge join of one job: both inputs ordered by payment ID, each step advances
+     * the side with the smaller ID or both when they match.
+     */
+    private final class MergeJoin {
+        private final String jobId;
+        private final BufferedWriter report;
+        private final Map<MismatchType, Long> mismatches = new EnumMap<>(MismatchType.class);
+        // Settled IDs absent from the window, checked against the whole ledger in batches
+        private final List<SettlementRecord> unmatched = new ArrayList<>(LOOKUP_BATCH_SIZE);
+
+        long ledgerRows;
+        long settlementRows;
+        long matched;
+
+        MergeJoin(String jobId, BufferedWriter report) {
+            this.jobId = jobId;
+            this.report = report;
+        }
+
+        void run(Iterator<PaymentLedgerView> ledger, Iterator<SettlementRecord> settlement) throws IOException {
+            PaymentLedgerView l = nextLedger(ledger, null);
+            SettlementRecord s = nextSettlement(settlement, null);
+            while (l != null || s != null) {
+                int order = l == null ? 1 : s == null ? -1 : l.getRazorpayPaymentId().compareTo(s.paymentId());
+                if (order < 0) {
+                    if ("SUCCESS".equals(l.getStatus())) {
+                        mismatch(MismatchType.MISSING_IN_SETTLEMENT, l.getRazorpayPaymentId(), l, null);
+                    }
+                    l = nextLedger(ledger, l);
+                } else if (order > 0) {
+                    unmatched.add(s);
+                    if (unmatched.size() == LOOKUP_BATCH_SIZE) {
+                        resolveUnmatched();
+                    }
+                    s = nextSettlement(settlement, s);
+                } else {
+                    if (!"SUCCESS".equals(l.getStatus())) {
+                        mismatch(MismatchType.STATUS_MISMATCH, s.paymentId(), l, s);
+                    } else if (paise(l.getAmount()) != s.amountPaise()) {
+                        mismatch(MismatchType.AMOUNT_MISMATCH, s.paymentId(), l, s);
+                    } else {
+                        matched++;
+                    }
+                    l = nextLedger(ledger, l);
+                    s = nextSettlement(settlement, s);
+                }
+            }
+            resolveUnmatched();
+        }
+
+        private PaymentLedgerView nextLedger(Iterator<PaymentLedgerView> ledger, PaymentLedgerView previous)
+                throws IOException {
+            while (ledger.hasNext()) {
+                PaymentLedgerView row = ledger.next();
+                progress(++ledgerRows, "ledger");
+                if (previous != null) {
+                    int order = row.getRazorpayPaymentId().compareTo(previous.getRazorpayPaymentId());
+                    if (order < 0) {
+                        throw new IllegalStateException("Ledger rows are not ordered by payment ID at "
+                                + row.getRazorpayPaymentId());
+                    }
+                    if (order == 0) {
+                        mismatch(MismatchType.DUPLICATE_IN_LEDGER, row.getRazorpayPaymentId(), row, null);
+                        continue;
+                    }
+                }
+                return row;
+            }
+            return null;
+        }
+
+        private SettlementRecord nextSettlement(Iterator<SettlementRecord> settlement, SettlementRecord previous)
+                throws IOException {
+            while (settlement.hasNext()) {
+                SettlementRecord record = settlement.next();
+                progress(++settlementRows, "settlement");
+                if (previous != null && record.paymentId().equals(previous.paymentId())) {
+                    mismatch(MismatchType.DUPLICATE_IN_SETTLEMENT, record.paymentId(), null, record);
+                    continue;
+                }
+                return record;
+            }
+            return null;
+        }
+
+        private void resolveUnmatched() throws IOException {
+            if (unmatched.isEmpty()) {
+                return;
+            }
+            Set<String> ids = new HashSet<>();
+            unmatched.forEach(record -> ids.add(record.paymentId()));
+            List<String> existing = lookupTransaction.execute(status -> paymentRepository.findExistingRazorpayPaymentIds(ids));
+            Set<String> known = existing != null ? new HashSet<>(existing) : Set.of();
+            unmatched.sort(Comparator.comparing(SettlementRecord::paymentId));
+            for (SettlementRecord record : unmatched) {
+                mismatch(known.contains(record.paymentId()) ? MismatchType.OUTSIDE_WINDOW : MismatchType.MISSING_IN_LEDGER,
+                        record.paymentId(), null, record);
+            }
+            unmatched.clear();
+        }
+
+        private void mismatch(MismatchType type, String paymentId, PaymentLedgerView ledger, SettlementRecord settlement)
+                throws IOException {
+            mismatches.merge(type, 1L, Long::sum);
+            report.write(type.name());
+            report.write(',');
+            report.write(SettlementSorter.quote(paymentId));
+            report.write(',');
+            report.write(ledger != null ? BigDecimal.valueOf(paise(ledger.getAmount()), 2).toPlainString() : "");
+            report.write(',');
+            report.write(settlement != null ? BigDecimal.valueOf(settlement.amountPaise(), 2).toPlainString() : "");
+            report.write(',');
+            report.write(ledger != null ? SettlementSorter.quote(ledger.getStatus()) : "");
+            report.write(',');
+            report.write(settlement != null ? Long.toString(settlement.line()) : "");
+            report.newLine();
+        }
+
+        private void progress(long rows, String side) {
+            if (rows % PROGRESS_ROWS == 0) {
+                logger.info("Reconciliation {}: {} {} rows read", jobId, rows, side);
+            }
+        }
+    }
+
+    private static long paise(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+}
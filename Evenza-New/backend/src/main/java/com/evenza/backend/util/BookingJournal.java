@@ -0,0 +1,263 @@
+package com.evenza.backend.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.evenza.backend.model.Booking;
+
+/**
+ * Append-only journal of bookings in a memory-mapped file.
+ *
+ * Layout: a 16 byte header (magic, version, drained position) followed by records of
+ * {@code [int length][int crc32][payload]}. A zero length ends the journal. Appends only
+ * write to the mapping; {@link #force()} makes everything appended so far durable, so
+ * many appends can share one fsync. Records up to the drained position have been
+ * written to the database; once everything is drained the file starts over.
+ *
+ * On open the records after the drained position are scanned back in, stopping at the
+ * first torn or corrupt record.
+ */
+public class BookingJournal implements Closeable {
+
+    public record Entry(Booking booking, long endPosition) {
+    }
+
+    private static final int MAGIC = 0x45564A4C; // "EVJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int DRAINED_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private long writePosition;
+    private long forcedPosition;
+    private long drainedPosition;
+    private long appendedCount;
+    // Bumped when the file starts over, so a force racing with it can't publish a stale position
+    private long generation;
+
+    public BookingJournal(Path file, int capacity) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(DRAINED_OFFSET, HEADER_SIZE);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.force();
+        }
+        drainedPosition = buffer.getLong(DRAINED_OFFSET);
+        if (drainedPosition < HEADER_SIZE || drainedPosition >= capacity) {
+            drainedPosition = HEADER_SIZE;
+        }
+        writePosition = drainedPosition;
+        while (readRecord(writePosition) != null) {
+            writePosition = nextPosition(writePosition);
+            appendedCount++;
+        }
+        forcedPosition = writePosition;
+    }
+
+    /**
+     * Appends the bookings as one unit, not yet durable.
+     * @return the number of records appended so far including these, or -1 if the journal is full
+     */
+    public synchronized long append(List<Booking> bookings) {
+        List<byte[]> payloads = new ArrayList<>(bookings.size());
+        long needed = 0;
+        for (Booking booking : bookings) {
+            byte[] payload = encode(booking);
+            payloads.add(payload);
+            needed += RECORD_HEADER_SIZE + payload.length;
+        }
+        // Room for the records plus the terminating zero length
+        if (writePosition + needed + 4 > capacity) {
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            int position = (int) writePosition;
+            crc.reset();
+            crc.update(payload);
+            buffer.put(position + RECORD_HEADER_SIZE, payload);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.putInt(position, payload.length);
+            writePosition += RECORD_HEADER_SIZE + payload.length;
+        }
+        buffer.putInt((int) writePosition, 0);
+        appendedCount += bookings.size();
+        return appendedCount;
+    }
+
+    /**
+     * Flushes everything appended so far to disk.
+     * @return the number of records appended so far, all of which are now durable
+     */
+    public long force() {
+        long position;
+        long count;
+        long forceGeneration;
+        synchronized (this) {
+            position = writePosition;
+            count = appendedCount;
+            forceGeneration = generation;
+        }
+        buffer.force();
+        synchronized (this) {
+            if (forceGeneration == generation) {
+                forcedPosition = Math.max(forcedPosition, position);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Durable records after the drained position, oldest first.
+     */
+    public synchronized List<Entry> readDurable(int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        long position = drainedPosition;
+        while (position < forcedPosition && entries.size() < maxEntries) {
+            Booking booking = readRecord(position);
+            if (booking == null) {
+                break;
+            }
+            position = nextPosition(position);
+            entries.add(new Entry(booking, position));
+        }
+        return entries;
+    }
+
+    /**
+     * Records that the entries up to the position are in the database. Starts the file
+     * over once every appended record is drained.
+     */
+    public synchronized void checkpoint(long position) {
+        drainedPosition = position;
+        if (drainedPosition == writePosition) {
+            drainedPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            forcedPosition = HEADER_SIZE;
+            generation++;
+            buffer.putInt(HEADER_SIZE, 0);
+        }
+        buffer.putLong(DRAINED_OFFSET, drainedPosition);
+        // The checkpoint only saves replay work, so it is left to the next force
+    }
+
+    public synchronized long pendingBytes() {
+        return writePosition - drainedPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private long nextPosition(long position) {
+        return position + RECORD_HEADER_SIZE + buffer.getInt((int) position);
+    }
+
+    private Booking readRecord(long position) {
+        if (position + RECORD_HEADER_SIZE > capacity) {
+            return null;
+        }
+        int length = buffer.getInt((int) position);
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length > capacity) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get((int) position + RECORD_HEADER_SIZE, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt((int) position + 4)) {
+            return null;
+        }
+        return decode(payload);
+    }
+
+    private static byte[] encode(Booking booking) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(booking.getId());
+            writeString(out, booking.getSeatId());
+            writeString(out, booking.getEntityType());
+            writeString(out, booking.getEntityId());
+            writeString(out, booking.getUserId());
+            writeString(out, booking.getPaymentId());
+            out.writeDouble(booking.getAmount());
+            writeString(out, booking.getStatus());
+            writeString(out, booking.getVenue());
+            out.writeLong(toMillis(booking.getBookingTime()));
+            out.writeLong(toMillis(booking.getCreatedAt()));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Booking decode(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            Booking booking = new Booking();
+            booking.setId(in.readLong());
+            booking.setSeatId(readString(in));
+            booking.setEntityType(readString(in));
+            booking.setEntityId(readString(in));
+            booking.setUserId(readString(in));
+            booking.setPaymentId(readString(in));
+            booking.setAmount(in.readDouble());
+            booking.setStatus(readString(in));
+            booking.setVenue(readString(in));
+            booking.setBookingTime(fromMillis(in.readLong()));
+            booking.setCreatedAt(fromMillis(in.readLong()));
+            return booking;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L;
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return millis >= 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.evenza.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Verifies hex-encoded HMAC-SHA256 signatures with a fixed key.
+ *
+ * The key is initialized once into a prototype {@link Mac}; each thread works on its own
+ * clone together with reusable input and output buffers. The only allocation left per
+ * verification is the 32-byte digest that {@code Mac.doFinal} makes internally even when
+ * given an output buffer. Signatures are decoded to bytes and compared in constant time,
+ * never as hex strings.
+ */
+public final class HmacVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int INITIAL_SCRATCH = 128;
+
+    private final SecretKeySpec key;
+    private final Mac prototype;
+    private final ThreadLocal<Engine> engines;
+
+    private static final class Engine {
+        final Mac mac;
+        final byte[] expected = new byte[MAC_LENGTH];
+        final byte[] actual = new byte[MAC_LENGTH];
+        byte[] scratch = new byte[INITIAL_SCRATCH];
+
+        Engine(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
+    public HmacVerifier(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        try {
+            prototype = Mac.getInstance(ALGORITHM);
+            prototype.init(this.key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+        engines = ThreadLocal.withInitial(() -> new Engine(newMac()));
+    }
+
+    /**
+     * @return true if {@code signature} is the hex HMAC of the message bytes
+     */
+    public boolean verify(byte[] message, int offset, int length, CharSequence signature) {
+        Engine engine = engines.get();
+        if (!decodeHex(signature, engine.actual)) {
+            return false;
+        }
+        engine.mac.update(message, offset, length);
+        return finish(engine);
+    }
+
+    /**
+     * @return true if {@code signature} is the hex HMAC of {@code first + separator + second}
+     *         in UTF-8, the form Razorpay signs payments in
+     */
+    public boolean verify(CharSequence first, char separator, CharSequence second, CharSequence signature) {
+        Engine engine = engines.get();
+        if (!decodeHex(signature, engine.actual)) {
+            return false;
+        }
+        int length = first.length() + 1 + second.length();
+        if (engine.scratch.length < length) {
+            engine.scratch = new byte[Math.max(length, engine.scratch.length * 2)];
+        }
+        int position = putAscii(first, engine.scratch, 0);
+        if (position >= 0) {
+            engine.scratch[position++] = (byte) separator;
+            position = separator < 0x80 ? putAscii(second, engine.scratch, position) : -1;
+        }
+        if (position >= 0) {
+            engine.mac.update(engine.scratch, 0, position);
+        } else {
+            // Not plain ASCII; IDs from the gateway always are, so this path may allocate
+            engine.mac.update((first.toString() + separator + second).getBytes(StandardCharsets.UTF_8));
+        }
+        return finish(engine);
+    }
+
+    /**
+     * @return the hex HMAC of {@code first + separator + second}, for tests and the fake gateway
+     */
+    public String sign(CharSequence first, char separator, CharSequence second) {
+        Mac mac = engines.get().mac;
+        byte[] digest = mac.doFinal((first.toString() + separator + second).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * @return the hex HMAC of the message bytes, for generating test webhooks
+     */
+    public String sign(byte[] message) {
+        return HexFormat.of().formatHex(engines.get().mac.doFinal(message));
+    }
+
+    private static boolean finish(Engine engine) {
+        try {
+            engine.mac.doFinal(engine.expected, 0);
+        } catch (GeneralSecurityException e) {
+            engine.mac.reset();
+            return false;
+        }
+        return MessageDigest.isEqual(engine.expected, engine.actual);
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // Providers without cloning get their own instance with the same key
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM, prototype.getProvider());
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException inner) {
+                throw new IllegalStateException("Could not create HMAC engine", inner);
+            }
+        }
+    }
+
+    private static int putAscii(CharSequence value, byte[] target, int position) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            target[position++] = (byte) c;
+        }
+        return position;
+    }
+
+    private static boolean decodeHex(CharSequence hex, byte[] target) {
+        if (hex == null || hex.length() != target.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < target.length; i++) {
+            int high = hexDigit(hex.charAt(2 * i));
+            int low = hexDigit(hex.charAt(2 * i + 1));
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            target[i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
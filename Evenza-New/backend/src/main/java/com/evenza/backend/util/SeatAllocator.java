@@ -0,0 +1,139 @@
+package com.evenza.backend.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Picks the best available seats of a venue layout.
+ *
+ * Free seats are found as runs in a bitmap of taken positions, so a row costs a couple
+ * of bit scans instead of a check per seat. The first eligible section with a row that
+ * fits the whole party wins, front rows first, and within that row the run position
+ * closest to the middle of the row. If no row can seat the party together and splitting
+ * is allowed, the largest free runs are combined, within one section if any has enough
+ * room, otherwise across the eligible sections.
+ */
+public final class SeatAllocator {
+
+    public record Allocation(List<String> seatIds, boolean split, double amount) {
+    }
+
+    private record Run(int start, int length, double price) {
+    }
+
+    private SeatAllocator() {
+    }
+
+    /**
+     * @param taken positions of seats that are sold or held
+     * @return the allocated seats, or null if the eligible sections don't have enough free seats
+     */
+    public static Allocation allocate(VenueLayout layout, BitSet taken, int quantity,
+                                      Predicate<VenueLayout.Section> eligible, boolean allowSplit) {
+        List<VenueLayout.Section> sections = layout.getSections().stream().filter(eligible).toList();
+
+        for (VenueLayout.Section section : sections) {
+            for (int row = section.firstRow(); row < section.firstRow() + section.rowCount(); row++) {
+                int start = bestStartInRow(layout, taken, row, quantity);
+                if (start >= 0) {
+                    return allocation(layout, List.of(new Run(start, quantity, section.price())), quantity, false);
+                }
+            }
+        }
+        if (!allowSplit) {
+            return null;
+        }
+
+        List<Run> allRuns = new ArrayList<>();
+        for (VenueLayout.Section section : sections) {
+            List<Run> runs = freeRuns(layout, taken, section);
+            if (freeSeats(runs) >= quantity) {
+                return allocation(layout, runs, quantity, true);
+            }
+            allRuns.addAll(runs);
+        }
+        if (freeSeats(allRuns) >= quantity) {
+            return allocation(layout, allRuns, quantity, true);
+        }
+        return null;
+    }
+
+    /**
+     * @return the start of the free block of {@code quantity} seats closest to the middle
+     *         of the row, or -1 if no block fits
+     */
+    private static int bestStartInRow(VenueLayout layout, BitSet taken, int row, int quantity) {
+        int rowStart = layout.rowStart(row);
+        int rowEnd = layout.rowEnd(row);
+        int ideal = rowStart + (rowEnd - rowStart - quantity) / 2;
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int runStart = taken.nextClearBit(rowStart);
+        while (runStart < rowEnd) {
+            int runEnd = Math.min(nextTaken(taken, runStart), rowEnd);
+            if (runEnd - runStart >= quantity) {
+                int start = Math.max(runStart, Math.min(ideal, runEnd - quantity));
+                int distance = Math.abs(start - ideal);
+                if (distance < bestDistance) {
+                    best = start;
+                    bestDistance = distance;
+                }
+            }
+            runStart = taken.nextClearBit(runEnd);
+        }
+        return best;
+    }
+
+    private static List<Run> freeRuns(VenueLayout layout, BitSet taken, VenueLayout.Section section) {
+        List<Run> runs = new ArrayList<>();
+        for (int row = section.firstRow(); row < section.firstRow() + section.rowCount(); row++) {
+            int rowEnd = layout.rowEnd(row);
+            int runStart = taken.nextClearBit(layout.rowStart(row));
+            while (runStart < rowEnd) {
+                int runEnd = Math.min(nextTaken(taken, runStart), rowEnd);
+                runs.add(new Run(runStart, runEnd - runStart, section.price()));
+                runStart = taken.nextClearBit(runEnd);
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Fills the party from the largest runs first, so it is split into as few groups as possible;
+     * equal runs keep their preference order.
+     */
+    private static Allocation allocation(VenueLayout layout, List<Run> runs, int quantity, boolean split) {
+        List<Run> ordered = new ArrayList<>(runs);
+        if (split) {
+            ordered.sort(Comparator.comparingInt(Run::length).reversed());
+        }
+        List<String> seatIds = new ArrayList<>(quantity);
+        double amount = 0;
+        for (Run run : ordered) {
+            for (int position = run.start(); position < run.start() + run.length() && seatIds.size() < quantity; position++) {
+                seatIds.add(layout.seatIdAt(position));
+                amount += run.price();
+            }
+            if (seatIds.size() == quantity) {
+                break;
+            }
+        }
+        return new Allocation(seatIds, split, amount);
+    }
+
+    private static int freeSeats(List<Run> runs) {
+        int free = 0;
+        for (Run run : runs) {
+            free += run.length();
+        }
+        return free;
+    }
+
+    private static int nextTaken(BitSet taken, int from) {
+        int next = taken.nextSetBit(from);
+        return next < 0 ? Integer.MAX_VALUE : next;
+    }
+}
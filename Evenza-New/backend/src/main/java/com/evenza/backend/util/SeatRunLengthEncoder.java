@@ -0,0 +1,81 @@
+package com.evenza.backend.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Encodes a set of seat IDs as a compact run-length list.
+ *
+ * Seat IDs are split into a prefix and a trailing seat number ("EXECUTIVE-1-A7" is
+ * prefix "EXECUTIVE-1-A", number 7). Consecutive numbers with the same prefix collapse
+ * into one run written as {@code prefix + start + "~" + end}; runs are comma separated.
+ * For example A1, A2, A3, A5 and B2 encode as {@code "A1~3,A5,B2"}. Seat IDs without a
+ * plain trailing number are written as they are.
+ */
+public final class SeatRunLengthEncoder {
+
+    public static final String RUN_SEPARATOR = ",";
+    public static final String RANGE_SEPARATOR = "~";
+
+    private SeatRunLengthEncoder() {
+    }
+
+    public static String encode(Collection<String> seatIds) {
+        Map<String, TreeSet<Integer>> numbersByPrefix = new TreeMap<>();
+        List<String> others = new ArrayList<>();
+
+        for (String seatId : seatIds) {
+            int digitsStart = seatId.length();
+            while (digitsStart > 0 && Character.isDigit(seatId.charAt(digitsStart - 1))) {
+                digitsStart--;
+            }
+            String digits = seatId.substring(digitsStart);
+            // Leading zeros or very long numbers would not round-trip through an int
+            if (digits.isEmpty() || digits.length() > 9 || (digits.length() > 1 && digits.charAt(0) == '0')) {
+                others.add(seatId);
+            } else {
+                numbersByPrefix.computeIfAbsent(seatId.substring(0, digitsStart), p -> new TreeSet<>())
+                        .add(Integer.parseInt(digits));
+            }
+        }
+
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, TreeSet<Integer>> entry : numbersByPrefix.entrySet()) {
+            Integer runStart = null;
+            int runEnd = 0;
+            for (int number : entry.getValue()) {
+                if (runStart != null && number == runEnd + 1) {
+                    runEnd = number;
+                    continue;
+                }
+                if (runStart != null) {
+                    appendRun(encoded, entry.getKey(), runStart, runEnd);
+                }
+                runStart = number;
+                runEnd = number;
+            }
+            if (runStart != null) {
+                appendRun(encoded, entry.getKey(), runStart, runEnd);
+            }
+        }
+        others.stream().sorted().forEach(seatId -> appendRun(encoded, seatId));
+        return encoded.toString();
+    }
+
+    private static void appendRun(StringBuilder encoded, String prefix, int start, int end) {
+        appendRun(encoded, start == end
+                ? prefix + start
+                : prefix + start + RANGE_SEPARATOR + end);
+    }
+
+    private static void appendRun(StringBuilder encoded, String run) {
+        if (encoded.length() > 0) {
+            encoded.append(RUN_SEPARATOR);
+        }
+        encoded.append(run);
+    }
+}
@@ -0,0 +1,314 @@
+package com.evenza.backend.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compact seat state for a single show (entityType + entityId).
+ *
+ * Seat IDs are mapped to slots once; the state of each slot lives in a byte array
+ * with a parallel array of hold expiries, so checking or updating N seats is O(N)
+ * no matter how many bookings the show has. All methods are synchronized on the map.
+ *
+ * Every change bumps the map's version and returns it. The version is the sequence
+ * number of the change's seat delta, and {@link #snapshot} returns it together with the
+ * seats, so a client can tell exactly which deltas its snapshot already covers.
+ */
+public class SeatStateMap {
+
+    /**
+     * Result of a change: the map's version after it and the seats it reports on.
+     */
+    public record Update(long version, List<String> seats) {
+    }
+
+    /**
+     * Sold and live-held seats as of one version.
+     */
+    public record Snapshot(long version, List<String> sold, List<String> held) {
+    }
+
+    /**
+     * A live hold: who holds the seat and until when.
+     */
+    public record Hold(String userId, long expiresAtMillis) {
+    }
+
+    public static final byte FREE = 0;
+    public static final byte HELD = 1;
+    public static final byte SOLD = 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] seatIds = new String[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private long[] holdExpiries = new long[INITIAL_CAPACITY];
+    private String[] holders = new String[INITIAL_CAPACITY];
+    private int size;
+    private long version;
+
+    public SeatStateMap() {
+        this(0L);
+    }
+
+    /**
+     * @param initialVersion versions start after this one; a rebuilt map continues
+     *                       the versions of the map it replaces
+     */
+    public SeatStateMap(long initialVersion) {
+        this.version = initialVersion;
+    }
+
+    /**
+     * Holds every seat for the given user, or none of them. Any live hold,
+     * including one of the same user, counts as taken.
+     * @return the seats that are already taken, empty when the hold succeeded
+     */
+    public synchronized Update tryHold(Collection<String> requested, String userId, long expiresAtMillis, long nowMillis) {
+        List<String> conflicts = findConflicts(requested, null, nowMillis);
+        if (!conflicts.isEmpty()) {
+            return new Update(version, conflicts);
+        }
+        for (String seatId : requested) {
+            int slot = slotFor(seatId);
+            states[slot] = HELD;
+            holdExpiries[slot] = expiresAtMillis;
+            holders[slot] = userId;
+        }
+        return new Update(++version, conflicts);
+    }
+
+    /**
+     * Marks every seat as sold for the given user, or none of them.
+     * Seats held by the same user count as free.
+     * @return the seats that are already taken, empty when the sale succeeded
+     */
+    public synchronized Update trySell(Collection<String> requested, String userId, long nowMillis) {
+        List<String> conflicts = findConflicts(requested, userId, nowMillis);
+        if (!conflicts.isEmpty()) {
+            return new Update(version, conflicts);
+        }
+        return new Update(markSold(requested), conflicts);
+    }
+
+    /**
+     * @return the version of the change
+     */
+    public synchronized long markSold(Collection<String> requested) {
+        for (String seatId : requested) {
+            int slot = slotFor(seatId);
+            states[slot] = SOLD;
+            holdExpiries[slot] = 0L;
+            holders[slot] = null;
+        }
+        return ++version;
+    }
+
+    public synchronized void markHeld(String seatId, String userId, long expiresAtMillis) {
+        int slot = slotFor(seatId);
+        states[slot] = HELD;
+        holdExpiries[slot] = expiresAtMillis;
+        holders[slot] = userId;
+        version++;
+    }
+
+    /**
+     * Frees seats that are currently held by the given user. Sold seats and
+     * holds of other users are left untouched.
+     * @return the version of the change
+     */
+    public synchronized long releaseHolds(Collection<String> requested, String userId) {
+        for (String seatId : requested) {
+            Integer slot = slots.get(seatId);
+            if (slot != null && states[slot] == HELD && Objects.equals(userId, holders[slot])) {
+                states[slot] = FREE;
+                holdExpiries[slot] = 0L;
+                holders[slot] = null;
+            }
+        }
+        return ++version;
+    }
+
+    /**
+     * Overwrites the state of the seats, for seats whose state here turned out wrong.
+     * Seats that are neither in {@code sold} nor in {@code holds} become free.
+     * @return the version of the change
+     */
+    public synchronized long restore(Collection<String> requested, Collection<String> sold, Map<String, Hold> holds) {
+        for (String seatId : requested) {
+            int slot = slotFor(seatId);
+            Hold hold = holds.get(seatId);
+            if (sold.contains(seatId)) {
+                states[slot] = SOLD;
+                holdExpiries[slot] = 0L;
+                holders[slot] = null;
+            } else if (hold != null) {
+                states[slot] = HELD;
+                holdExpiries[slot] = hold.expiresAtMillis();
+                holders[slot] = hold.userId();
+            } else {
+                states[slot] = FREE;
+                holdExpiries[slot] = 0L;
+                holders[slot] = null;
+            }
+        }
+        return ++version;
+    }
+
+    /**
+     * Clears the holds among the seats that have expired.
+     * @return the seats that are free now; sold seats and live holds are left out
+     */
+    public synchronized Update expireHolds(Collection<String> requested, long nowMillis) {
+        List<String> free = new ArrayList<>();
+        for (String seatId : requested) {
+            Integer slot = slots.get(seatId);
+            if (slot == null) {
+                free.add(seatId);
+            } else if (!isTaken(slot, null, nowMillis)) {
+                states[slot] = FREE;
+                holdExpiries[slot] = 0L;
+                holders[slot] = null;
+                free.add(seatId);
+            }
+        }
+        return new Update(++version, free);
+    }
+
+    public synchronized boolean isTaken(String seatId, long nowMillis) {
+        Integer slot = slots.get(seatId);
+        return slot != null && isTaken(slot, null, nowMillis);
+    }
+
+    /**
+     * Current state of a seat, with expired holds reported as {@link #FREE}.
+     */
+    public synchronized byte stateOf(String seatId, long nowMillis) {
+        Integer slot = slots.get(seatId);
+        if (slot == null) {
+            return FREE;
+        }
+        if (states[slot] == HELD && holdExpiries[slot] <= nowMillis) {
+            return FREE;
+        }
+        return states[slot];
+    }
+
+    /**
+     * Seat IDs that are sold or under a live hold.
+     */
+    public synchronized List<String> takenSeats(long nowMillis) {
+        List<String> taken = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            if (isTaken(slot, null, nowMillis)) {
+                taken.add(seatIds[slot]);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Sold and held seats together with the version they are current as of.
+     */
+    public synchronized Snapshot snapshot(long nowMillis) {
+        return new Snapshot(version, seatsInState(SOLD, nowMillis), seatsInState(HELD, nowMillis));
+    }
+
+    /**
+     * Seat IDs currently in the given state, with expired holds reported as {@link #FREE}.
+     */
+    public synchronized List<String> seatsInState(byte state, long nowMillis) {
+        List<String> seats = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            byte current = states[slot] == HELD && holdExpiries[slot] <= nowMillis ? FREE : states[slot];
+            if (current == state) {
+                seats.add(seatIds[slot]);
+            }
+        }
+        return seats;
+    }
+
+    /**
+     * Sets the bits of taken seats in a bitmap indexed by layout position. Slots never move,
+     * so the slot-to-position translation is kept by the caller between calls and only slots
+     * added since are resolved with {@code positionOf}; -1 marks seats outside the layout.
+     * @return the translation, grown to cover every slot
+     */
+    public synchronized int[] markTaken(BitSet taken, int[] positions, ToIntFunction<String> positionOf, long nowMillis) {
+        int[] translation = positions;
+        if (translation.length < size) {
+            int resolved = translation.length;
+            translation = Arrays.copyOf(translation, size);
+            for (int slot = resolved; slot < size; slot++) {
+                translation[slot] = positionOf.applyAsInt(seatIds[slot]);
+            }
+        }
+        for (int slot = 0; slot < size; slot++) {
+            if (translation[slot] >= 0 && isTaken(slot, null, nowMillis)) {
+                taken.set(translation[slot]);
+            }
+        }
+        return translation;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Incremented on every mutation; cheap to compare for change detection.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    private List<String> findConflicts(Collection<String> requested, String userId, long nowMillis) {
+        List<String> conflicts = new ArrayList<>();
+        for (String seatId : requested) {
+            Integer slot = slots.get(seatId);
+            if (slot != null && isTaken(slot, userId, nowMillis)) {
+                conflicts.add(seatId);
+            }
+        }
+        return conflicts;
+    }
+
+    private boolean isTaken(int slot, String userId, long nowMillis) {
+        switch (states[slot]) {
+            case SOLD:
+                return true;
+            case HELD:
+                if (holdExpiries[slot] <= nowMillis) {
+                    return false;
+                }
+                return userId == null || !userId.equals(holders[slot]);
+            default:
+                return false;
+        }
+    }
+
+    private int slotFor(String seatId) {
+        Integer slot = slots.get(seatId);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == states.length) {
+            int newCapacity = states.length * 2;
+            seatIds = Arrays.copyOf(seatIds, newCapacity);
+            states = Arrays.copyOf(states, newCapacity);
+            holdExpiries = Arrays.copyOf(holdExpiries, newCapacity);
+            holders = Arrays.copyOf(holders, newCapacity);
+        }
+        seatIds[size] = seatId;
+        slots.put(seatId, size);
+        return size++;
+    }
+}
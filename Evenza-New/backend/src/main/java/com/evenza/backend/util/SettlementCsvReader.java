@@ -0,0 +1,183 @@
+package com.evenza.backend.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import com.evenza.backend.DTO.SettlementRecord;
+
+/**
+ * Reads a gateway settlement CSV one record at a time.
+ *
+ * The first row is a header. Columns are found by name: the payment ID is
+ * {@code payment_id} or, in Razorpay reconciliation reports, {@code entity_id};
+ * {@code amount} is in rupees. If there is a {@code type} column only {@code payment}
+ * rows are returned, refunds and adjustments are counted as skipped. A {@code line}
+ * column, written by {@link SettlementSorter}, keeps the line number of the original
+ * file. Quoted fields may contain commas, doubled quotes and line breaks.
+ */
+public class SettlementCsvReader implements Iterator<SettlementRecord>, Closeable {
+
+    private final BufferedReader reader;
+    private final int idColumn;
+    private final int amountColumn;
+    private final int typeColumn;
+    private final int lineColumn;
+
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private long lineNumber;
+    private long skipped;
+    private SettlementRecord next;
+
+    public SettlementCsvReader(Path file) throws IOException {
+        reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            if (!readRow()) {
+                throw new IllegalArgumentException("Settlement file is empty: " + file.getFileName());
+            }
+            List<String> header = fields.stream()
+                    .map(name -> name.trim().toLowerCase(Locale.ROOT).replace("\uFEFF", ""))
+                    .toList();
+            int paymentId = header.indexOf("payment_id");
+            idColumn = paymentId >= 0 ? paymentId : header.indexOf("entity_id");
+            amountColumn = header.indexOf("amount");
+            typeColumn = header.indexOf("type");
+            lineColumn = header.indexOf("line");
+            if (idColumn < 0 || amountColumn < 0) {
+                throw new IllegalArgumentException("Settlement file needs payment_id (or entity_id) and amount columns");
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public SettlementRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SettlementRecord record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * @return the number of rows passed over because they are not payments
+     */
+    public long skipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private SettlementRecord readRecord() throws IOException {
+        while (true) {
+            long rowLine = lineNumber + 1;
+            if (!readRow()) {
+                return null;
+            }
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            if (typeColumn >= 0 && !"payment".equalsIgnoreCase(column(typeColumn))) {
+                skipped++;
+                continue;
+            }
+            String paymentId = column(idColumn);
+            String amount = column(amountColumn);
+            if (paymentId.isEmpty() || amount.isEmpty()) {
+                throw new IllegalArgumentException("Settlement line " + rowLine + " has no payment ID or amount");
+            }
+            long paise;
+            try {
+                paise = new BigDecimal(amount).movePointRight(2).longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                throw new IllegalArgumentException("Settlement line " + rowLine + " has an invalid amount: " + amount);
+            }
+            long line = lineColumn >= 0 ? Long.parseLong(column(lineColumn)) : rowLine;
+            return new SettlementRecord(paymentId, paise, line);
+        }
+    }
+
+    private String column(int index) {
+        return index < fields.size() ? fields.get(index).trim() : "";
+    }
+
+    /**
+     * Reads the fields of the next row, which spans several lines if a quoted field has line breaks.
+     * @return false at the end of the file
+     */
+    private boolean readRow() throws IOException {
+        fields.clear();
+        String line = reader.readLine();
+        if (line == null) {
+            return false;
+        }
+        lineNumber++;
+        field.setLength(0);
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IllegalArgumentException("Unterminated quoted field at line " + lineNumber);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+}
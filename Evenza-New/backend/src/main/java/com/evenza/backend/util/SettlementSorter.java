@@ -0,0 +1,139 @@
+package com.evenza.backend.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.evenza.backend.DTO.SettlementRecord;
+
+/**
+ * Sorts a settlement file by payment ID with a bounded amount of memory.
+ *
+ * Runs of at most {@code chunkRows} records are sorted in memory and written to temporary
+ * files, which are then merged through a priority queue holding one record per run.
+ * Payment IDs are compared with {@link String#compareTo}, the same byte order as the
+ * ledger query's {@code ORDER BY CAST(... AS BINARY)} for the ASCII IDs of the gateway.
+ */
+public final class SettlementSorter {
+
+    private static final Comparator<SettlementRecord> ORDER =
+            Comparator.comparing(SettlementRecord::paymentId).thenComparingLong(SettlementRecord::line);
+
+    private static final String HEADER = "payment_id,amount,line";
+
+    private SettlementSorter() {
+    }
+
+    /**
+     * Result of a sort.
+     * @param file the sorted file, readable with {@link SettlementCsvReader}
+     * @param records the number of payment records
+     * @param skipped the number of rows that were not payments
+     */
+    public record Sorted(Path file, long records, long skipped) {
+    }
+
+    private record Run(SettlementCsvReader reader, SettlementRecord head) {
+    }
+
+    /**
+     * Writes a sorted copy of {@code input} into {@code workDir}. The caller deletes the work directory.
+     */
+    public static Sorted sort(Path input, Path workDir, int chunkRows) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        long records = 0;
+        long skipped;
+        try (SettlementCsvReader reader = new SettlementCsvReader(input)) {
+            List<SettlementRecord> chunk = new ArrayList<>(chunkRows);
+            while (reader.hasNext()) {
+                chunk.add(reader.next());
+                records++;
+                if (chunk.size() == chunkRows) {
+                    runs.add(writeRun(chunk, workDir, runs.size()));
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty() || runs.isEmpty()) {
+                runs.add(writeRun(chunk, workDir, runs.size()));
+            }
+            skipped = reader.skipped();
+        }
+        if (runs.size() == 1) {
+            return new Sorted(runs.get(0), records, skipped);
+        }
+
+        Path merged = workDir.resolve("sorted.csv");
+        PriorityQueue<Run> heads = new PriorityQueue<>(runs.size(), Comparator.comparing(Run::head, ORDER));
+        try (BufferedWriter writer = Files.newBufferedWriter(merged, StandardCharsets.UTF_8)) {
+            for (Path run : runs) {
+                SettlementCsvReader reader = new SettlementCsvReader(run);
+                if (reader.hasNext()) {
+                    heads.add(new Run(reader, reader.next()));
+                } else {
+                    reader.close();
+                }
+            }
+            writer.write(HEADER);
+            writer.newLine();
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                write(writer, run.head());
+                if (run.reader().hasNext()) {
+                    heads.add(new Run(run.reader(), run.reader().next()));
+                } else {
+                    run.reader().close();
+                }
+            }
+        } finally {
+            for (Run run : heads) {
+                run.reader().close();
+            }
+        }
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        return new Sorted(merged, records, skipped);
+    }
+
+    private static Path writeRun(List<SettlementRecord> chunk, Path workDir, int index) throws IOException {
+        chunk.sort(ORDER);
+        Path run = workDir.resolve("run-" + index + ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (SettlementRecord record : chunk) {
+                write(writer, record);
+            }
+        }
+        return run;
+    }
+
+    private static void write(BufferedWriter writer, SettlementRecord record) throws IOException {
+        writer.write(quote(record.paymentId()));
+        writer.write(',');
+        writer.write(BigDecimal.valueOf(record.amountPaise(), 2).toPlainString());
+        writer.write(',');
+        writer.write(Long.toString(record.line()));
+        writer.newLine();
+    }
+
+    /**
+     * Quotes a CSV field if it needs it.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
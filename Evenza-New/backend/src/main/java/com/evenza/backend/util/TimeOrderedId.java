@@ -0,0 +1,19 @@
+package com.evenza.backend.util;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Marks an entity ID as assigned by {@link TimeOrderedIdGenerator} before the INSERT,
+ * which keeps JDBC batching available for the entity.
+ */
+@IdGeneratorType(TimeOrderedIdGenerator.class)
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface TimeOrderedId {
+}
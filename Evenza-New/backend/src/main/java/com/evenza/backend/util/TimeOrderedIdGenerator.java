@@ -0,0 +1,74 @@
+package com.evenza.backend.util;
+
+import java.util.EnumSet;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+/**
+ * Generates time-ordered, application-assigned entity IDs.
+ *
+ * IDENTITY columns make Hibernate run every INSERT on its own to read back the key,
+ * which disables JDBC batching. These IDs are known before the INSERT instead.
+ * Layout: 41 bits of milliseconds since 2024-01-01, 4 bits of node ID and an 8 bit
+ * per-millisecond sequence. That is 53 bits, so IDs stay exact as JavaScript numbers,
+ * and they sort after every ID the old AUTO_INCREMENT columns handed out.
+ *
+ * The node ID comes from the {@code evenza.node-id} system property or the
+ * {@code EVENZA_NODE_ID} environment variable (0-15, default 0); every backend
+ * node writing to the same database needs its own.
+ */
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long NODE_ID = resolveNodeId();
+
+    private static long lastMillis = -1L;
+    private static long sequence = 0L;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+            EventType eventType) {
+        return nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    public static synchronized long nextId() {
+        // Never step back in time, even if the system clock does
+        long millis = Math.max(System.currentTimeMillis(), lastMillis);
+        if (millis == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // Sequence exhausted for this millisecond, borrow the next one
+                millis++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = millis;
+        return ((millis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) | (NODE_ID << SEQUENCE_BITS) | sequence;
+    }
+
+    private static long resolveNodeId() {
+        String configured = System.getProperty("evenza.node-id", System.getenv("EVENZA_NODE_ID"));
+        if (configured == null || configured.isBlank()) {
+            return 0L;
+        }
+        long nodeId = Long.parseLong(configured.trim());
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("evenza.node-id must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+        return nodeId;
+    }
+}
@@ -0,0 +1,98 @@
+package com.evenza.backend.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seat layout of a venue, flattened into one array of seats in preference order:
+ * sections in the order they are configured, rows front to back, seats left to right.
+ * A seat's position in that array is used as its index in availability bitmaps.
+ *
+ * Layouts are built from section groups matching the seat IDs the frontend generates:
+ * {@code CATEGORY-n-A1} for groups with numbered sections (stadium), {@code A1} for a
+ * group that is a single section (cinema).
+ */
+public class VenueLayout {
+
+    /**
+     * One or more identical sections as configured.
+     * @param sections number of numbered sections in the group, or null for a single unnumbered section
+     * @param rows row labels, front row first
+     */
+    public record SectionGroup(String category, Integer sections, String rows, int seatsPerRow, double price) {
+    }
+
+    public record Section(String id, String category, double price, int firstRow, int rowCount) {
+    }
+
+    private final List<Section> sections;
+    private final String[] seatIds;
+    // Index of the first seat of each row, plus the total seat count at the end
+    private final int[] rowStarts;
+    private final Map<String, Integer> positions;
+
+    private VenueLayout(List<Section> sections, List<String> seatIds, List<Integer> rowStarts) {
+        this.sections = List.copyOf(sections);
+        this.seatIds = seatIds.toArray(new String[0]);
+        this.rowStarts = new int[rowStarts.size() + 1];
+        for (int row = 0; row < rowStarts.size(); row++) {
+            this.rowStarts[row] = rowStarts.get(row);
+        }
+        this.rowStarts[rowStarts.size()] = this.seatIds.length;
+        this.positions = new HashMap<>(this.seatIds.length * 2);
+        for (int i = 0; i < this.seatIds.length; i++) {
+            positions.put(this.seatIds[i], i);
+        }
+    }
+
+    public static VenueLayout of(List<SectionGroup> groups) {
+        List<Section> sections = new ArrayList<>();
+        List<String> seatIds = new ArrayList<>();
+        List<Integer> rowStarts = new ArrayList<>();
+        for (SectionGroup group : groups) {
+            int count = group.sections() != null ? group.sections() : 1;
+            for (int n = 1; n <= count; n++) {
+                String sectionId = group.sections() != null ? group.category() + "-" + n : group.category();
+                String seatPrefix = group.sections() != null ? sectionId + "-" : "";
+                sections.add(new Section(sectionId, group.category(), group.price(), rowStarts.size(), group.rows().length()));
+                for (char row : group.rows().toCharArray()) {
+                    rowStarts.add(seatIds.size());
+                    for (int seat = 1; seat <= group.seatsPerRow(); seat++) {
+                        seatIds.add(seatPrefix + row + seat);
+                    }
+                }
+            }
+        }
+        return new VenueLayout(sections, seatIds, rowStarts);
+    }
+
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    public int getSeatCount() {
+        return seatIds.length;
+    }
+
+    public String seatIdAt(int position) {
+        return seatIds[position];
+    }
+
+    /**
+     * @return the seat's position, or -1 if the seat is not part of this layout
+     */
+    public int positionOf(String seatId) {
+        Integer position = positions.get(seatId);
+        return position != null ? position : -1;
+    }
+
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    public int rowEnd(int row) {
+        return rowStarts[row + 1];
+    }
+}
@@ -0,0 +1,12 @@
+-- Successful payment totals per minute, hour and day and entity type, kept up to date by
+-- the payment write paths and SalesRollupService's catch-up job. The unique key is the
+-- upsert target and the index of the chart reads (granularity = ? AND bucket_start >= ?).
+CREATE TABLE sales_rollup (
+    id BIGINT NOT NULL PRIMARY KEY,
+    granularity VARCHAR(8) NOT NULL,
+    bucket_start DATETIME(6) NOT NULL,
+    entity_type VARCHAR(32) NOT NULL,
+    total_amount DECIMAL(16, 2) NOT NULL,
+    payment_count BIGINT NOT NULL,
+    CONSTRAINT uk_sales_rollup_bucket UNIQUE (granularity, bucket_start, entity_type)
+);
@@ -0,0 +1,17 @@
+-- Transactional outbox: written with the payment and booking, claimed by
+-- OutboxDispatcher with SELECT ... FOR UPDATE SKIP LOCKED (MySQL 8) on the due index.
+CREATE TABLE outbox_events (
+    id BIGINT NOT NULL PRIMARY KEY,
+    event_type VARCHAR(64) NOT NULL,
+    aggregate_id VARCHAR(64) NOT NULL,
+    payload TEXT,
+    status VARCHAR(16) NOT NULL,
+    attempts INT NOT NULL,
+    available_at DATETIME(6) NOT NULL,
+    locked_by VARCHAR(64),
+    last_error VARCHAR(1000),
+    created_at DATETIME(6) NOT NULL,
+    processed_at DATETIME(6),
+    CONSTRAINT uk_outbox_events_aggregate UNIQUE (event_type, aggregate_id)
+);
+CREATE INDEX idx_outbox_events_due ON outbox_events (status, available_at);
@@ -0,0 +1,17 @@
+-- One payment row per gateway payment. Backs the first-writer-wins verification claim:
+-- a verification or webhook that slips past the claim fails on this index and reuses the
+-- recorded row. Replaces the plain index from V9; rows without a gateway payment ID
+-- (NULL) are not constrained.
+
+-- Earlier duplicates are kept for audit, renamed out of the way and taken out of the
+-- sales figures; run POST /api/admin/sales/rollup/rebuild over their range afterwards
+UPDATE payment p
+JOIN (SELECT razorpay_payment_id, MIN(id) AS first_id FROM payment
+      WHERE razorpay_payment_id IS NOT NULL
+      GROUP BY razorpay_payment_id HAVING COUNT(*) > 1) f
+  ON p.razorpay_payment_id = f.razorpay_payment_id AND p.id <> f.first_id
+SET p.razorpay_payment_id = CONCAT(p.razorpay_payment_id, '#dup-', p.id),
+    p.status = 'DUPLICATE';
+
+CREATE UNIQUE INDEX uk_payment_razorpay_payment_id ON payment (razorpay_payment_id);
+DROP INDEX idx_payment_razorpay_payment_id ON payment;
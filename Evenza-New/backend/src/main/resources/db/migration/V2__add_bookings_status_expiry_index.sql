@@ -0,0 +1,2 @@
+-- Supports the reservation expiry sweep: WHERE status = 'RESERVED' AND reservation_expiry < now
+CREATE INDEX idx_bookings_status_expiry ON bookings (status, reservation_expiry);
@@ -0,0 +1,6 @@
+-- IDs of bookings, payments and notifications are assigned by the application
+-- (TimeOrderedIdGenerator) so Hibernate can batch INSERTs; AUTO_INCREMENT is no longer used.
+-- New IDs are time based and sort after every previously generated one.
+ALTER TABLE bookings MODIFY id BIGINT NOT NULL;
+ALTER TABLE payment MODIFY id BIGINT NOT NULL;
+ALTER TABLE notifications MODIFY id BIGINT NOT NULL;
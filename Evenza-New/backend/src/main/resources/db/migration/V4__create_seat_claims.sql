@@ -0,0 +1,24 @@
+-- One live claim per seat of a show; a second booking or hold of the seat fails on the unique key
+CREATE TABLE IF NOT EXISTS seat_claims (
+    id BIGINT NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id VARCHAR(255) NOT NULL,
+    seat_id VARCHAR(255) NOT NULL,
+    user_id VARCHAR(255) NULL,
+    status VARCHAR(255) NOT NULL,
+    expires_at DATETIME(6) NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_seat_claims_seat UNIQUE (entity_type, entity_id, seat_id)
+);
+CREATE INDEX idx_seat_claims_expires_at ON seat_claims (expires_at);
+
+-- Claim the seats of existing sold bookings and live reservations; booking IDs are reused as claim IDs
+INSERT IGNORE INTO seat_claims (id, entity_type, entity_id, seat_id, user_id, status, expires_at, created_at)
+SELECT id, entity_type, entity_id, seat_id, user_id,
+       CASE WHEN status = 'RESERVED' THEN 'HELD' ELSE 'SOLD' END,
+       CASE WHEN status = 'RESERVED' THEN reservation_expiry ELSE NULL END,
+       NOW()
+FROM bookings
+WHERE status IN ('PENDING', 'CONFIRMED')
+   OR (status = 'RESERVED' AND reservation_expiry > NOW());
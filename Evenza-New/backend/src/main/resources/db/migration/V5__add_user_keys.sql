@@ -0,0 +1,41 @@
+-- Canonical numeric user key for user-scoped rows; user_id stays as the client sent it
+ALTER TABLE bookings ADD COLUMN user_key BIGINT NULL;
+ALTER TABLE payment ADD COLUMN user_key BIGINT NULL;
+ALTER TABLE tickets ADD COLUMN user_key BIGINT NULL;
+
+-- User ID strings that are not a numeric users.id, mapped to their key
+CREATE TABLE IF NOT EXISTS legacy_user_ids (
+    legacy_id VARCHAR(255) NOT NULL,
+    user_key BIGINT NOT NULL,
+    PRIMARY KEY (legacy_id)
+);
+CREATE INDEX idx_legacy_user_ids_user_key ON legacy_user_ids (user_key);
+
+-- Firebase uids and emails of registered users
+INSERT IGNORE INTO legacy_user_ids (legacy_id, user_key)
+SELECT uid, id FROM users WHERE uid IS NOT NULL;
+INSERT IGNORE INTO legacy_user_ids (legacy_id, user_key)
+SELECT email, id FROM users;
+
+-- Every other stored user ID gets a negative synthetic key; point a row at a users.id to merge it
+INSERT IGNORE INTO legacy_user_ids (legacy_id, user_key)
+SELECT legacy_id, -ROW_NUMBER() OVER (ORDER BY legacy_id)
+FROM (
+    SELECT user_id AS legacy_id FROM bookings WHERE user_id IS NOT NULL
+    UNION SELECT user_id FROM payment WHERE user_id IS NOT NULL
+    UNION SELECT user_id FROM tickets WHERE user_id IS NOT NULL
+) ids
+WHERE legacy_id NOT IN (SELECT legacy_id FROM legacy_user_ids)
+  AND legacy_id NOT IN (SELECT CAST(id AS CHAR) FROM users);
+
+-- Backfill: numeric IDs of registered users first, then the mapping table
+UPDATE bookings b JOIN users u ON b.user_id = CAST(u.id AS CHAR) SET b.user_key = u.id WHERE b.user_key IS NULL;
+UPDATE bookings b JOIN legacy_user_ids l ON l.legacy_id = b.user_id SET b.user_key = l.user_key WHERE b.user_key IS NULL;
+UPDATE payment p JOIN users u ON p.user_id = CAST(u.id AS CHAR) SET p.user_key = u.id WHERE p.user_key IS NULL;
+UPDATE payment p JOIN legacy_user_ids l ON l.legacy_id = p.user_id SET p.user_key = l.user_key WHERE p.user_key IS NULL;
+UPDATE tickets t JOIN users u ON t.user_id = CAST(u.id AS CHAR) SET t.user_key = u.id WHERE t.user_key IS NULL;
+UPDATE tickets t JOIN legacy_user_ids l ON l.legacy_id = t.user_id SET t.user_key = l.user_key WHERE t.user_key IS NULL;
+
+CREATE INDEX idx_bookings_user_key ON bookings (user_key, booking_time);
+CREATE INDEX idx_payment_user_key ON payment (user_key, created_at);
+CREATE INDEX idx_tickets_user_key ON tickets (user_key, created_at);
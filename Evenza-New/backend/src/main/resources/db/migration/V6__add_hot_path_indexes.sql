@@ -0,0 +1,21 @@
+-- Seat inventory, taken-seat and capacity queries of a show:
+-- WHERE entity_type = ? AND entity_id = ? [AND status ... AND reservation_expiry > ?], reading seat_id
+CREATE INDEX idx_bookings_entity_status ON bookings (entity_type, entity_id, status, reservation_expiry, seat_id);
+-- Admin dashboard: ORDER BY created_at DESC LIMIT n
+CREATE INDEX idx_bookings_created_at ON bookings (created_at);
+
+-- Ticket generation and lookups by booking
+CREATE INDEX idx_tickets_booking_id ON tickets (booking_id);
+-- Upcoming and past tickets of a user: WHERE user_key = ? ... ORDER BY event_date_time
+CREATE INDEX idx_tickets_user_event ON tickets (user_key, event_date_time);
+
+-- Status counts, the successful-payment total and the daily/weekly/monthly sales reports;
+-- amount makes them covering so the table rows are never read
+CREATE INDEX idx_payment_status_created ON payment (status, created_at, amount);
+-- Admin dashboard: ORDER BY created_at DESC LIMIT n
+CREATE INDEX idx_payment_created_at ON payment (created_at);
+-- Payments of a show
+CREATE INDEX idx_payment_entity ON payment (entity_type, entity_id);
+
+-- Notifications of a user, newest first
+CREATE INDEX idx_notifications_user_created ON notifications (user_id, created_at);
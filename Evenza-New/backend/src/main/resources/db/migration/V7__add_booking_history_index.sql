@@ -0,0 +1,5 @@
+-- Keyset pages of a user's bookings: WHERE user_key = ? AND (created_at, id) < (?, ?)
+-- ORDER BY created_at DESC, id DESC. InnoDB appends the primary key to secondary
+-- indexes, so (user_key, created_at) already orders ties by id. Tickets and payments
+-- are served by idx_tickets_user_key and idx_payment_user_key from V5.
+CREATE INDEX idx_bookings_user_created ON bookings (user_key, created_at);
@@ -0,0 +1,14 @@
+-- One booking per seat of a payment. Serves the lookup of a payment's bookings
+-- (WHERE payment_id = ?) and lets concurrent verifications of the same payment insert
+-- its placeholder booking (seat AUTO-<paymentId>) with INSERT IGNORE exactly once.
+-- Reservations without a payment have a NULL payment_id and are not constrained.
+
+-- Placeholder bookings used to get a timestamp seat ID; give the first one of each
+-- payment the deterministic one
+UPDATE bookings b
+JOIN (SELECT payment_id, MIN(id) AS first_id FROM bookings
+      WHERE seat_id LIKE 'AUTO-%' AND payment_id IS NOT NULL
+      GROUP BY payment_id) f ON b.id = f.first_id
+SET b.seat_id = CONCAT('AUTO-', b.payment_id);
+
+CREATE UNIQUE INDEX uk_bookings_payment_seat ON bookings (payment_id, seat_id);
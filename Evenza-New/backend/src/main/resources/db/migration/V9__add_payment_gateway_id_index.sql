@@ -0,0 +1,3 @@
+-- The webhook drainer looks up which gateway payment IDs of a batch are already
+-- recorded: WHERE razorpay_payment_id IN (...).
+CREATE INDEX idx_payment_razorpay_payment_id ON payment (razorpay_payment_id);
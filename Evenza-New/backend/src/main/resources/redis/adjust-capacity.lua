@@ -0,0 +1,23 @@
+-- Takes seats from (or gives them back to) a show's remaining capacity.
+-- KEYS[1]: capacity hash with fields "capacity", "remaining", "version" and "changedAt"
+-- ARGV[1]: seats to take; negative to give seats back
+-- Returns the new remaining count, -1 if not enough seats are left,
+-- -2 if the counter is not initialized, -3 if the show has no capacity limit.
+local remaining = tonumber(redis.call('HGET', KEYS[1], 'remaining'))
+if remaining == nil then
+    return -2
+end
+local capacity = tonumber(redis.call('HGET', KEYS[1], 'capacity'))
+if capacity == nil or capacity < 0 then
+    return -3
+end
+local seats = tonumber(ARGV[1])
+if seats > 0 and remaining < seats then
+    return -1
+end
+remaining = math.min(capacity, remaining - seats)
+local time = redis.call('TIME')
+redis.call('HSET', KEYS[1], 'remaining', remaining, 'changedAt', time[1] * 1000 + math.floor(time[2] / 1000))
+-- Lets the reconciliation tell that the counter moved while it counted the database
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+return remaining
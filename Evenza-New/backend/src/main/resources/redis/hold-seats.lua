@@ -0,0 +1,17 @@
+-- Holds every seat in KEYS for one user, or none of them.
+-- KEYS: one hold key per seat
+-- ARGV[1]: user ID, ARGV[2]: hold TTL in milliseconds
+-- Returns the 1-based positions of the keys that are already held (empty on success).
+local conflicts = {}
+for i, key in ipairs(KEYS) do
+    if redis.call('EXISTS', key) == 1 then
+        table.insert(conflicts, i)
+    end
+end
+if #conflicts > 0 then
+    return conflicts
+end
+for _, key in ipairs(KEYS) do
+    redis.call('SET', key, ARGV[1], 'PX', ARGV[2])
+end
+return conflicts
@@ -0,0 +1,45 @@
+-- Adds or replaces bookings in one booking cache (a user's or a show's bookings).
+-- KEYS[1]: index sorted set (booking ID -> booking time), also marks the cache as loaded
+-- KEYS[2]: hash (booking ID -> booking JSON)
+-- KEYS[3..]: one sorted set per booking status
+-- ARGV[1]: "1" to (re)create the cache, "0" to patch it only if it is loaded
+-- ARGV[2]: TTL in milliseconds, used when creating
+-- ARGV[3]: maximum number of bookings to keep, the newest ones (0 for all)
+-- ARGV[4..]: per booking: ID, time score, status key position in KEYS (0 for none), JSON
+-- Returns 1 if the cache was written, 0 if it was not loaded.
+local create = ARGV[1] == '1'
+if create then
+    redis.call('DEL', unpack(KEYS))
+elseif redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+for i = 4, #ARGV, 4 do
+    local id, score, statusKey = ARGV[i], ARGV[i + 1], tonumber(ARGV[i + 2])
+    redis.call('ZADD', KEYS[1], score, id)
+    redis.call('HSET', KEYS[2], id, ARGV[i + 3])
+    for k = 3, #KEYS do
+        redis.call('ZREM', KEYS[k], id)
+    end
+    if statusKey > 0 then
+        redis.call('ZADD', KEYS[statusKey], score, id)
+    end
+end
+-- A bounded cache keeps only the newest bookings; older ones added by a patch drop out again
+local maxSize = tonumber(ARGV[3])
+local excess = maxSize > 0 and redis.call('ZCARD', KEYS[1]) - maxSize or 0
+if excess > 0 then
+    local dropped = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+    redis.call('HDEL', KEYS[2], unpack(dropped))
+    redis.call('ZREM', KEYS[1], unpack(dropped))
+    for k = 3, #KEYS do
+        redis.call('ZREM', KEYS[k], unpack(dropped))
+    end
+end
+-- Keys created by this call expire together with the rest of the cache
+local ttl = create and tonumber(ARGV[2]) or redis.call('PTTL', KEYS[1])
+if ttl > 0 then
+    for _, key in ipairs(KEYS) do
+        redis.call('PEXPIRE', key, ttl)
+    end
+end
+return 1
@@ -0,0 +1,10 @@
+-- Stores a final idempotent response together with its expiry, so no stored response is
+-- left without a TTL.
+-- KEYS[1]: response hash
+-- ARGV[1]: TTL in milliseconds
+-- ARGV[2..]: field, value pairs
+-- Returns 1.
+redis.call('DEL', KEYS[1])
+redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+return 1
@@ -0,0 +1,32 @@
+-- Resets a show's capacity counter to the counts taken from the database, unless a hold,
+-- sale or release changed the counter since the caller read its version.
+-- Lowering "remaining" is always safe. Raising it is not while bookings that took seats
+-- from the counter may still be committing, since the count cannot see them yet, so a
+-- raise waits until the counter has not changed for the settle time.
+-- KEYS[1]: capacity hash with fields "capacity", "remaining", "version" and "changedAt"
+-- ARGV[1]: version read before the database count
+-- ARGV[2]: capacity
+-- ARGV[3]: remaining seats according to the database
+-- ARGV[4]: settle time in milliseconds
+-- Returns 1 if the counter was corrected, 0 if it was already right,
+-- -1 if it changed in between and was left alone, -2 if a raise has to wait.
+local version = redis.call('HGET', KEYS[1], 'version') or '0'
+if version ~= ARGV[1] then
+    return -1
+end
+local remaining = redis.call('HGET', KEYS[1], 'remaining')
+if redis.call('HGET', KEYS[1], 'capacity') == ARGV[2] and remaining == ARGV[3] then
+    return 0
+end
+if remaining and tonumber(ARGV[3]) > tonumber(remaining) then
+    local changedAt = tonumber(redis.call('HGET', KEYS[1], 'changedAt') or '0')
+    local time = redis.call('TIME')
+    if time[1] * 1000 + math.floor(time[2] / 1000) - changedAt < tonumber(ARGV[4]) then
+        return -2
+    end
+end
+local time = redis.call('TIME')
+redis.call('HSET', KEYS[1], 'capacity', ARGV[2], 'remaining', ARGV[3],
+        'changedAt', time[1] * 1000 + math.floor(time[2] / 1000))
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+return 1
@@ -0,0 +1,9 @@
+-- Deletes a claim key if it still holds the caller's token, so a claim that expired and
+-- was taken over is not released by its previous owner.
+-- KEYS[1]: claim key
+-- ARGV[1]: claim token
+-- Returns 1 if the claim was released, 0 otherwise.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,12 @@
+-- Releases the holds in KEYS that belong to one user.
+-- KEYS: one hold key per seat
+-- ARGV[1]: user ID
+-- Returns the number of holds released.
+local released = 0
+for _, key in ipairs(KEYS) do
+    if redis.call('GET', key) == ARGV[1] then
+        redis.call('DEL', key)
+        released = released + 1
+    end
+end
+return released
@@ -0,0 +1,73 @@
+package com.evenza.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.evenza.backend.services.UserKeyResolver;
+
+/**
+ * Runs the index check against a real MySQL with the schema of the entities, whose
+ * indexes mirror the migrations. The context only starts if the check passes, since
+ * it runs on ApplicationReadyEvent with fail-on-missing set.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create",
+        "app.index-verifier.enabled=true",
+        "app.index-verifier.fail-on-missing=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(QueryIndexVerifier.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryIndexVerifierTest {
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    // Needed by the entity listener of bookings, payments and tickets
+    @MockitoBean
+    private UserKeyResolver userKeyResolver;
+
+    @Autowired
+    private QueryIndexVerifier verifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void everyRepositoryQueryUsesAnIndex() {
+        assertDoesNotThrow(verifier::verify);
+    }
+
+    @Test
+    void missingIndexFailsTheCheck() {
+        jdbcTemplate.execute("DROP INDEX idx_tickets_booking_id ON tickets");
+        try {
+            assertThrows(IllegalStateException.class, verifier::verify);
+        } finally {
+            jdbcTemplate.execute("CREATE INDEX idx_tickets_booking_id ON tickets (booking_id)");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.evenza.backend.controller;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.evenza.backend.DTO.GatewayOrder;
+import com.evenza.backend.config.SecurityConfig;
+import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.security.Jwt.AuthEntryPointJwt;
+import com.evenza.backend.security.Jwt.JwtUtils;
+import com.evenza.backend.services.PaymentService;
+import com.evenza.backend.services.UserDetailsImpl;
+import com.evenza.backend.services.UserDetailsServiceImpl;
+import com.evenza.backend.services.UserKeyResolver;
+import com.evenza.backend.services.WaitingRoomService;
+import com.evenza.backend.services.payment.PaymentGateway;
+import com.evenza.backend.services.payment.PaymentWebhookService;
+
+/**
+ * create-order completes on the gateway executor, so its response is written in an ASYNC
+ * re-dispatch that goes through the security filter chain again.
+ */
+@WebMvcTest(PaymentController.class)
+@Import({SecurityConfig.class, AuthEntryPointJwt.class})
+class PaymentControllerAsyncTest {
+
+    private static final String JWT = "test-jwt";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PaymentGateway paymentGateway;
+
+    @MockitoBean
+    private PaymentService paymentService;
+
+    @MockitoBean
+    private PaymentWebhookService paymentWebhookService;
+
+    @MockitoBean
+    private PaymentRepository paymentRepository;
+
+    @MockitoBean
+    private UserKeyResolver userKeyResolver;
+
+    @MockitoBean
+    private JwtUtils jwtUtils;
+
+    @MockitoBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockitoBean
+    private WaitingRoomService waitingRoomService;
+
+    @MockitoBean
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        when(jwtUtils.validateJwtToken(JWT)).thenReturn(true);
+        when(jwtUtils.getUsernameFromJwtToken(JWT)).thenReturn("buyer@example.com");
+        when(jwtUtils.getRoleFromJwtToken(JWT)).thenReturn("USER");
+        when(userDetailsService.loadUserByUsername("buyer@example.com")).thenReturn(new UserDetailsImpl(
+                7, "buyer@example.com", "Buyer", "", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @Test
+    void createOrderAnswersOnTheAsyncDispatch() throws Exception {
+        when(paymentGateway.createOrder(anyLong(), anyString(), anyString(), anyMap())).thenAnswer(call ->
+                CompletableFuture.supplyAsync(() -> new GatewayOrder("order_1", call.getArgument(0), "INR",
+                        call.getArgument(2), "created")));
+
+        MvcResult started = mockMvc.perform(post("/api/payment/create-order")
+                        .header("Authorization", "Bearer " + JWT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":250,\"entityType\":\"CONCERT\",\"entityId\":\"12\",\"userId\":\"99\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("order_1"))
+                .andExpect(jsonPath("$.amount").value(25000));
+        // The webhook attributes the payment from the order notes, to the caller and not the body's user
+        verify(paymentGateway).createOrder(eq(25000L), eq("INR"), anyString(),
+                eq(Map.of("entityType", "CONCERT", "entityId", "12", "userId", "7")));
+    }
+
+    @Test
+    void createOrderStillRequiresAJwt() throws Exception {
+        mockMvc.perform(post("/api/payment/create-order")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":250}"))
+                .andExpect(status().isUnauthorized());
+    }
+}
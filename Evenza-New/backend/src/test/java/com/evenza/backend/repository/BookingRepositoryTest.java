@@ -0,0 +1,108 @@
+package com.evenza.backend.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.evenza.backend.DTO.CursorPage;
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.services.UserKeyResolver;
+import com.evenza.backend.util.PageCursor;
+
+/**
+ * Pages a user's booking history on MySQL with created_at as a plain DATETIME, as V1
+ * creates it, starting from a first page built from the in-memory bookings the way the
+ * history cache serves it.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class BookingRepositoryTest {
+
+    private static final long USER_KEY = 7L;
+    private static final int PAGE_SIZE = 2;
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    // Needed by the entity listener of bookings
+    @MockitoBean
+    private UserKeyResolver userKeyResolver;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void useTheMigratedColumn() {
+        jdbcTemplate.execute("ALTER TABLE bookings MODIFY created_at DATETIME NULL");
+    }
+
+    @Test
+    void pagesThroughBookingsThatShareTheBoundarySecond() {
+        LocalDateTime second = LocalDateTime.of(2026, 10, 1, 12, 30, 15);
+        // Fractions above half a second would round up to the next second in the column
+        List<Booking> saved = bookingRepository.saveAllAndFlush(List.of(
+                booking("A1", second.minusSeconds(1).withNano(900_000_000)),
+                booking("A2", second.minusSeconds(1).withNano(100_000_000)),
+                booking("A3", second.withNano(800_000_000)),
+                booking("A4", second.withNano(600_000_000)),
+                booking("A5", second.withNano(200_000_000))));
+        List<Booking> cached = saved.stream()
+                .sorted(Comparator.comparing(Booking::getCreatedAt).thenComparing(Booking::getId).reversed())
+                .toList();
+
+        CursorPage<Booking> page = CursorPage.of(cached.subList(0, PAGE_SIZE + 1), PAGE_SIZE,
+                Booking::getCreatedAt, Booking::getId);
+        List<Long> paged = new ArrayList<>(page.items().stream().map(Booking::getId).toList());
+        while (page.nextCursor() != null) {
+            PageCursor after = PageCursor.decode(page.nextCursor());
+            List<Booking> rows = bookingRepository.findUserBookingsPageAfter(USER_KEY, null, after.createdAt(),
+                    Long.parseLong(after.id()), PageRequest.of(0, PAGE_SIZE + 1));
+            page = CursorPage.of(rows, PAGE_SIZE, Booking::getCreatedAt, Booking::getId);
+            page.items().forEach(booking -> paged.add(booking.getId()));
+        }
+
+        // Each booking exactly once, in the order of the history
+        assertEquals(cached.stream().map(Booking::getId).toList(), paged);
+    }
+
+    private static Booking booking(String seatId, LocalDateTime createdAt) {
+        Booking booking = new Booking();
+        booking.setSeatId(seatId);
+        booking.setEntityType("MOVIE");
+        booking.setEntityId("1");
+        booking.setUserId("7");
+        booking.setUserKey(USER_KEY);
+        booking.setAmount(250);
+        booking.setStatus("CONFIRMED");
+        booking.setCreatedAt(createdAt);
+        return booking;
+    }
+}
@@ -0,0 +1,232 @@
+package com.evenza.backend.security.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+
+class IdempotencyFilterTest {
+
+    private static final int CALLERS = 20;
+
+    // Stands in for Redis: the response hashes, the locks and the two scripts
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, String> locks = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisScript<Long> putResponse = (RedisScript<Long>) ReflectionTestUtils.getField(
+                IdempotencyFilter.class, "PUT_RESPONSE_SCRIPT");
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(anyString()))
+                .thenAnswer(call -> hashes.getOrDefault(call.<String>getArgument(0), Map.of()));
+        when(redis.hasKey(anyString())).thenAnswer(call -> hashes.containsKey(call.<String>getArgument(0)));
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(call -> locks.putIfAbsent(call.getArgument(0), call.getArgument(1)) == null);
+        when(values.get(anyString())).thenAnswer(call -> locks.get(call.<String>getArgument(0)));
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(call -> {
+            String key = ((List<String>) call.getArgument(1)).get(0);
+            Object[] args = call.getArguments();
+            if (call.getArgument(0) == putResponse) {
+                Map<Object, Object> stored = new HashMap<>();
+                for (int i = 3; i < args.length; i += 2) {
+                    stored.put(args[i], args[i + 1]);
+                }
+                hashes.put(key, stored);
+                return 1L;
+            }
+            return locks.remove(key, args[2]) ? 1L : 0L;
+        });
+
+        filter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(filter, "stringRedisTemplate", redis);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        List<MockHttpServletResponse> responses = sendConcurrently(respond(201, 100));
+
+        assertEquals(1, runs.get());
+        int replayed = 0;
+        for (MockHttpServletResponse response : responses) {
+            assertEquals(201, response.getStatus());
+            assertEquals("{\"id\":1}", response.getContentAsString());
+            if ("true".equals(response.getHeader(IdempotencyFilter.REPLAYED_HEADER))) {
+                replayed++;
+            }
+        }
+        assertEquals(CALLERS - 1, replayed);
+        assertEquals(Map.of(), locks);
+    }
+
+    @Test
+    void replayServesTheStoredResponse() throws Exception {
+        MockHttpServletResponse first = send("{\"seat\":\"A1\"}", respond(200, 0));
+        MockHttpServletResponse retry = send("{\"seat\":\"A1\"}", respond(200, 0));
+
+        assertEquals(1, runs.get());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(200, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+    }
+
+    @Test
+    void keyReusedForAnotherBodyIsRejected() throws Exception {
+        send("{\"seat\":\"A1\"}", respond(200, 0));
+
+        MockHttpServletResponse reused = send("{\"seat\":\"B2\"}", respond(200, 0));
+
+        assertEquals(1, runs.get());
+        assertEquals(422, reused.getStatus());
+    }
+
+    @Test
+    void keyReusedWhileTheFirstRequestRunsIsRejected() throws Exception {
+        locks.put("IDEMPOTENCY_LOCK:alice:key-1", "other-fingerprint:token");
+
+        MockHttpServletResponse reused = send("{\"seat\":\"A1\"}", respond(200, 0));
+
+        assertEquals(0, runs.get());
+        assertEquals(422, reused.getStatus());
+    }
+
+    @Test
+    void answersToComeBackLaterAreNotStored() throws Exception {
+        for (int status : new int[] { 202, 409, 429, 503 }) {
+            send("{\"seat\":\"A1\"}", respond(status, 0));
+        }
+        MockHttpServletResponse completed = send("{\"seat\":\"A1\"}", respond(201, 0));
+
+        assertEquals(5, runs.get());
+        assertEquals(201, completed.getStatus());
+        assertNull(completed.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void finalOutcomesAreStored() {
+        assertTrue(IdempotencyFilter.isFinal(200));
+        assertTrue(IdempotencyFilter.isFinal(201));
+        assertTrue(IdempotencyFilter.isFinal(400));
+        assertTrue(IdempotencyFilter.isFinal(422));
+        assertFalse(IdempotencyFilter.isFinal(202));
+        assertFalse(IdempotencyFilter.isFinal(409));
+        assertFalse(IdempotencyFilter.isFinal(429));
+        assertFalse(IdempotencyFilter.isFinal(500));
+    }
+
+    @Test
+    void lockTakenOverAfterItsTtlIsNotReleased() throws Exception {
+        // The lock expires while the request runs and a duplicate takes it
+        send("{\"seat\":\"A1\"}", (request, response) -> {
+            runs.incrementAndGet();
+            locks.put("IDEMPOTENCY_LOCK:alice:key-1", "fingerprint:duplicate");
+            ((HttpServletResponse) response).setStatus(409);
+        });
+
+        assertEquals("fingerprint:duplicate", locks.get("IDEMPOTENCY_LOCK:alice:key-1"));
+    }
+
+    private FilterChain respond(int status, long millis) {
+        return (request, response) -> {
+            int run = runs.incrementAndGet();
+            sleep(millis);
+            ((HttpServletResponse) response).setStatus(status);
+            response.setContentType("application/json");
+            response.getOutputStream().write(("{\"id\":" + run + "}").getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private MockHttpServletResponse send(String body, FilterChain chain) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/bookings/book");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    // Starts all callers at once and returns their responses
+    private List<MockHttpServletResponse> sendConcurrently(FilterChain chain) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<MockHttpServletResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return send("{\"seat\":\"A1\"}", chain);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+            List<MockHttpServletResponse> responses = new ArrayList<>();
+            for (Future<MockHttpServletResponse> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
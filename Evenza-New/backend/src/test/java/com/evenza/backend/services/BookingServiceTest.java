@@ -0,0 +1,265 @@
+package com.evenza.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.evenza.backend.Exceptions.ReservationConflictException;
+import com.evenza.backend.Exceptions.SeatTakenException;
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.model.SeatClaim;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.repository.SeatClaimRepository;
+import com.evenza.backend.util.SeatStateMap;
+
+class BookingServiceTest {
+
+    private static final int CALLERS = 50;
+
+    private final SimpleTransactionStatus transaction = new SimpleTransactionStatus();
+
+    private BookingRepository bookingRepository;
+    private SeatClaimService seatClaimService;
+    private SeatInventoryService seatInventoryService;
+    private WebSocketService webSocketService;
+    private SeatHoldService seatHoldService;
+    private CapacityService capacityService;
+    private PlatformTransactionManager transactionManager;
+    private BookingService bookingService;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        seatClaimService = mock(SeatClaimService.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        webSocketService = mock(WebSocketService.class);
+        seatHoldService = mock(SeatHoldService.class);
+        capacityService = mock(CapacityService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(transaction);
+
+        bookingService = new BookingService();
+        ReflectionTestUtils.setField(bookingService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(bookingService, "seatClaimService", seatClaimService);
+        ReflectionTestUtils.setField(bookingService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(bookingService, "webSocketService", webSocketService);
+        ReflectionTestUtils.setField(bookingService, "seatHoldService", seatHoldService);
+        ReflectionTestUtils.setField(bookingService, "capacityService", capacityService);
+        ReflectionTestUtils.setField(bookingService, "reservationExpiryService", mock(ReservationExpiryService.class));
+        ReflectionTestUtils.setField(bookingService, "bookingCacheService", mock(BookingCacheService.class));
+        ReflectionTestUtils.setField(bookingService, "transactionManager", transactionManager);
+        bookingService.init();
+    }
+
+    @Test
+    void confirmationSellsTheClaimsOfEachShowInTheSameTransaction() {
+        List<Booking> bookings = List.of(
+                reservation(1L, "MOVIE", "1", "A1"),
+                reservation(2L, "MOVIE", "1", "A2"),
+                reservation(3L, "EVENT", "9", "B1"));
+        when(bookingRepository.confirmReservations(anyCollection(), eq("pay_1"), any(LocalDateTime.class)))
+                .thenReturn(3);
+        when(seatInventoryService.markSold(anyString(), anyString(), anyCollection())).thenReturn(5L);
+
+        bookingService.confirmReservation("pay_1", bookings);
+
+        InOrder order = inOrder(transactionManager, bookingRepository, seatClaimService);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(bookingRepository).confirmReservations(eq(List.of(1L, 2L, 3L)), eq("pay_1"), any(LocalDateTime.class));
+        order.verify(seatClaimService).markSold("MOVIE", "1", List.of("A1", "A2"), "alice");
+        order.verify(seatClaimService).markSold("EVENT", "9", List.of("B1"), "alice");
+        order.verify(transactionManager).commit(transaction);
+        verify(seatInventoryService).markSold("MOVIE", "1", List.of("A1", "A2"));
+        verify(webSocketService).sendSeatDelta("MOVIE", "1", 5L, WebSocketService.SEAT_SOLD, List.of("A1", "A2"));
+        verify(webSocketService).sendSeatDelta("EVENT", "9", 5L, WebSocketService.SEAT_SOLD, List.of("B1"));
+        bookings.forEach(booking -> assertEquals("CONFIRMED", booking.getStatus()));
+    }
+
+    @Test
+    void partlyExpiredReservationsConfirmNothing() {
+        List<Booking> bookings = List.of(reservation(1L, "MOVIE", "1", "A1"), reservation(2L, "MOVIE", "1", "A2"));
+        when(bookingRepository.confirmReservations(anyCollection(), eq("pay_1"), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        ReservationConflictException conflict = assertThrows(ReservationConflictException.class,
+                () -> bookingService.confirmReservation("pay_1", bookings));
+
+        assertEquals(1, conflict.getUpdated());
+        assertTrue(transaction.isRollbackOnly());
+        verify(seatClaimService, never()).markSold(anyString(), anyString(), anyList(), anyString());
+        verify(webSocketService, never()).sendSeatDelta(anyString(), anyString(), anyLong(), anyString(), anyList());
+        bookings.forEach(booking -> assertEquals("RESERVED", booking.getStatus()));
+    }
+
+    @Test
+    void concurrentReservationsOfOneSeatSucceedOnce() throws Exception {
+        List<Booking> saved = claimSeatsInTheDatabase();
+
+        List<Object> outcomes = reserveConcurrently(caller -> List.of("A1"));
+
+        assertEquals(1, outcomes.stream().filter(List.class::isInstance).count());
+        List<SeatTakenException> taken = outcomes.stream()
+                .filter(SeatTakenException.class::isInstance)
+                .map(SeatTakenException.class::cast)
+                .toList();
+        assertEquals(CALLERS - 1, taken.size());
+        taken.forEach(conflict -> assertEquals(List.of("A1"), conflict.getSeatIds()));
+        assertEquals(1, saved.size());
+        // The losers give back their capacity and their Redis holds
+        verify(capacityService, times(CALLERS - 1)).release("MOVIE", "1", 1);
+        verify(seatHoldService, times(CALLERS - 1)).releaseSeats(eq("MOVIE"), eq("1"), eq(List.of("A1")), anyString());
+    }
+
+    @Test
+    void overlappingReservationsNeverShareASeat() throws Exception {
+        List<Booking> saved = claimSeatsInTheDatabase();
+
+        // Pairs of neighbouring seats around a block of four, so at most two callers can win
+        List<Object> outcomes = reserveConcurrently(caller -> List.of("A" + (caller % 4 + 1), "A" + ((caller + 1) % 4 + 1)));
+
+        long won = outcomes.stream().filter(List.class::isInstance).count();
+        assertTrue(won >= 1 && won <= 2, won + " callers won");
+        outcomes.stream()
+                .filter(outcome -> !(outcome instanceof List))
+                .forEach(outcome -> assertTrue(outcome instanceof SeatTakenException, outcome.toString()));
+        // A winner saved both of its seats and nobody else saved either of them
+        assertEquals(2 * won, saved.size());
+        Set<String> seats = new HashSet<>();
+        saved.forEach(booking -> assertTrue(seats.add(booking.getSeatId()), booking.getSeatId() + " was reserved twice"));
+    }
+
+    /**
+     * Lets every caller through the Redis hold and the in-memory inventory, as after a
+     * Redis failover or on another instance, so the seat claims in the database are all
+     * that keeps two reservations off one seat. The claims table is a map that rejects a
+     * batch with a duplicate key, as the unique key does.
+     * @return the bookings saved
+     */
+    private List<Booking> claimSeatsInTheDatabase() {
+        when(seatHoldService.holdSeats(anyString(), anyString(), anyList(), anyString(), any(Duration.class)))
+                .thenReturn(List.of());
+        when(seatInventoryService.tryHold(anyString(), anyString(), anyCollection(), anyString(), any(LocalDateTime.class)))
+                .thenReturn(new SeatStateMap.Update(1, List.of()));
+
+        Map<String, SeatClaim> claims = new HashMap<>();
+        SeatClaimRepository seatClaimRepository = mock(SeatClaimRepository.class);
+        when(seatClaimRepository.saveAllAndFlush(anyIterable())).thenAnswer(call -> {
+            List<SeatClaim> batch = call.getArgument(0);
+            synchronized (claims) {
+                for (SeatClaim claim : batch) {
+                    if (claims.containsKey(claimKey(claim))) {
+                        throw new DataIntegrityViolationException("Duplicate entry for key 'uk_seat_claims_seat'");
+                    }
+                }
+                batch.forEach(claim -> claims.put(claimKey(claim), claim));
+            }
+            return batch;
+        });
+        when(seatClaimRepository.findByEntityTypeAndEntityIdAndSeatIdIn(anyString(), anyString(), anyCollection()))
+                .thenAnswer(call -> {
+                    synchronized (claims) {
+                        return call.<List<String>>getArgument(2).stream()
+                                .map(seatId -> claims.get(call.getArgument(0) + ":" + call.getArgument(1) + ":" + seatId))
+                                .filter(Objects::nonNull)
+                                .toList();
+                    }
+                });
+        SeatClaimService seatClaimService = new SeatClaimService();
+        ReflectionTestUtils.setField(seatClaimService, "seatClaimRepository", seatClaimRepository);
+        ReflectionTestUtils.setField(seatClaimService, "transactionManager", transactionManager);
+        seatClaimService.init();
+        ReflectionTestUtils.setField(bookingService, "seatClaimService", seatClaimService);
+
+        List<Booking> saved = new ArrayList<>();
+        when(bookingRepository.saveAll(anyIterable())).thenAnswer(call -> {
+            List<Booking> bookings = call.getArgument(0);
+            synchronized (saved) {
+                saved.addAll(bookings);
+            }
+            return bookings;
+        });
+        return saved;
+    }
+
+    private static String claimKey(SeatClaim claim) {
+        return claim.getEntityType() + ":" + claim.getEntityId() + ":" + claim.getSeatId();
+    }
+
+    // Starts all callers at once; each outcome is the saved bookings or the exception thrown
+    private List<Object> reserveConcurrently(IntFunction<List<String>> seats) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                int caller = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return bookingService.createTemporaryReservations(seats.apply(caller), "MOVIE", "1",
+                                "user" + caller, BigDecimal.valueOf(500), "Screen 1");
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            start.countDown();
+            List<Object> outcomes = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                outcomes.add(future.get());
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Booking reservation(Long id, String entityType, String entityId, String seatId) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setEntityType(entityType);
+        booking.setEntityId(entityId);
+        booking.setSeatId(seatId);
+        booking.setUserId("alice");
+        booking.setStatus("RESERVED");
+        booking.setReservationExpiry(LocalDateTime.now().plusMinutes(15));
+        return booking;
+    }
+}
@@ -0,0 +1,162 @@
+package com.evenza.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.evenza.backend.Exceptions.SoldOutException;
+import com.evenza.backend.model.Sport;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.repository.SportRepository;
+
+/**
+ * Runs adjust-capacity.lua and reconcile-capacity.lua against a real Redis, with the
+ * bookings table standing in as a count.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CapacityServiceTest {
+
+    private static final String SPORT_ID = "s1";
+    private static final String KEY = "CAPACITY:{SPORT:" + SPORT_ID + "}";
+    private static final long SETTLE_MILLIS = 300;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    // Seats taken in the bookings table
+    private final AtomicLong taken = new AtomicLong();
+
+    private CapacityService capacityService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        Sport sport = new Sport();
+        sport.setId(SPORT_ID);
+        sport.setCapacity(10);
+        SportRepository sportRepository = mock(SportRepository.class);
+        when(sportRepository.findById(SPORT_ID)).thenReturn(Optional.of(sport));
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.countTakenSeats(anyCollection(), eq(SPORT_ID), any(LocalDateTime.class)))
+                .thenAnswer(call -> taken.get());
+        BookingJournalService bookingJournalService = mock(BookingJournalService.class);
+        when(bookingJournalService.pendingBookings(anyString(), anyString())).thenReturn(List.of());
+
+        capacityService = new CapacityService();
+        ReflectionTestUtils.setField(capacityService, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(capacityService, "sportRepository", sportRepository);
+        ReflectionTestUtils.setField(capacityService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(capacityService, "bookingJournalService", bookingJournalService);
+        ReflectionTestUtils.setField(capacityService, "settleMillis", SETTLE_MILLIS);
+    }
+
+    @Test
+    void acquireAndReleaseStayWithinCapacity() {
+        taken.set(4);
+
+        capacityService.tryAcquire("SPORTS", SPORT_ID, 5);
+        assertEquals(1, remaining());
+        SoldOutException soldOut = assertThrows(SoldOutException.class,
+                () -> capacityService.tryAcquire("SPORT", SPORT_ID, 2));
+        assertEquals(1, soldOut.getRemaining());
+
+        capacityService.release("SPORTS", SPORT_ID, 20);
+        assertEquals(10, remaining());
+        assertEquals("2", redis.opsForHash().get(KEY, "version"));
+    }
+
+    @Test
+    void unlimitedShowsAreNotCounted() {
+        capacityService.tryAcquire("MOVIE", SPORT_ID, 100);
+
+        assertFalse(redis.hasKey(KEY));
+    }
+
+    @Test
+    void reconcileLowersRightAway() {
+        capacityService.tryAcquire("SPORTS", SPORT_ID, 2);
+        // A crashed sale made it to the database without going through the counter
+        taken.set(5);
+
+        capacityService.reconcile();
+
+        assertEquals(5, remaining());
+    }
+
+    @Test
+    void reconcileRaisesOnlyOnceTheCounterIsQuiet() throws Exception {
+        // A sale took its seats from the counter but has not committed its bookings yet
+        capacityService.tryAcquire("SPORTS", SPORT_ID, 3);
+
+        capacityService.reconcile();
+        assertEquals(7, remaining());
+
+        // It never commits
+        Thread.sleep(SETTLE_MILLIS + 100);
+        capacityService.reconcile();
+        assertEquals(10, remaining());
+    }
+
+    @Test
+    void reconcileLeavesACounterThatMovedWhileCounting() {
+        capacityService.tryAcquire("SPORTS", SPORT_ID, 1);
+        Object version = redis.opsForHash().get(KEY, "version");
+        capacityService.tryAcquire("SPORTS", SPORT_ID, 1);
+
+        Long result = redis.execute(reconcileScript(), List.of(KEY), version.toString(), "10", "3", "0");
+
+        assertEquals(-1L, result);
+        assertEquals(8, remaining());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisScript<Long> reconcileScript() {
+        return (RedisScript<Long>) ReflectionTestUtils.getField(
+                CapacityService.class, "RECONCILE_CAPACITY_SCRIPT");
+    }
+
+    private static long remaining() {
+        return Long.parseLong((String) redis.opsForHash().get(KEY, "remaining"));
+    }
+}
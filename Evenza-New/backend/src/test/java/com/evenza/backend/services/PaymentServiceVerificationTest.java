@@ -0,0 +1,260 @@
+package com.evenza.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.model.Payment;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.services.payment.PaymentVerificationClaims;
+import com.evenza.backend.services.payment.RazorpaySignatureVerifier;
+
+/**
+ * Many verifications of one payment at once, as sent by retries and duplicate tabs.
+ * The repositories stand in for the payment table's unique gateway payment ID and the
+ * bookings table's INSERT IGNORE; Redis is a map.
+ */
+class PaymentServiceVerificationTest {
+
+    private static final int CALLERS = 50;
+    private static final String PAYMENT_ID = "pay_1";
+
+    // Payment table by gateway payment ID, bookings by payment ID
+    private final Map<String, Payment> payments = new ConcurrentHashMap<>();
+    private final Map<String, Booking> bookings = new ConcurrentHashMap<>();
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+    private final Map<String, String> claims = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(100);
+    private final AtomicInteger bookingInserts = new AtomicInteger();
+
+    private PaymentRepository paymentRepository;
+    private OutboxService outboxService;
+    private SalesRollupService salesRollupService;
+    private ValueOperations<String, String> claimValues;
+    private PaymentService paymentService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        when(paymentRepository.saveAndFlush(any(Payment.class))).thenAnswer(call -> {
+            Payment payment = call.getArgument(0);
+            sleep(20);
+            ReflectionTestUtils.setField(payment, "id", ids.incrementAndGet());
+            if (payments.putIfAbsent(payment.getRazorpayPaymentId(), payment) != null) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'uk_payment_razorpay_payment_id'");
+            }
+            return payment;
+        });
+        when(paymentRepository.findByRazorpayPaymentId(anyString()))
+                .thenAnswer(call -> Optional.ofNullable(payments.get(call.<String>getArgument(0))));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(call -> call.getArgument(0));
+
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findFirstByPaymentIdOrderByIdAsc(anyString()))
+                .thenAnswer(call -> Optional.ofNullable(bookings.get(call.<String>getArgument(0))));
+
+        // INSERT IGNORE on the (payment_id, seat_id) unique index
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(call -> {
+            Object[] args = call.getArguments();
+            Booking booking = new Booking();
+            booking.setId((Long) args[1]);
+            booking.setSeatId((String) args[2]);
+            booking.setPaymentId((String) args[7]);
+            if (bookings.putIfAbsent(booking.getPaymentId(), booking) != null) {
+                return 0;
+            }
+            bookingInserts.incrementAndGet();
+            return 1;
+        });
+
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(call -> cache.get(call.<String>getArgument(0)));
+        doAnswer(call -> cache.put(call.getArgument(0), call.getArgument(1)))
+                .when(values).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        claimValues = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(claimValues);
+        when(claimValues.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(call -> claims.putIfAbsent(call.getArgument(0), call.getArgument(1)) == null);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString()))
+                .thenAnswer(call -> claims.remove(((List<String>) call.getArgument(1)).get(0), call.getArgument(2)) ? 1L : 0L);
+        PaymentVerificationClaims verificationClaims = new PaymentVerificationClaims();
+        ReflectionTestUtils.setField(verificationClaims, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(verificationClaims, "leaseMillis", 30000L);
+        ReflectionTestUtils.setField(verificationClaims, "waitMillis", 10000L);
+        ReflectionTestUtils.setField(verificationClaims, "pollMillis", 5L);
+
+        UserKeyResolver userKeyResolver = mock(UserKeyResolver.class);
+        when(userKeyResolver.resolveOrAssign(anyString())).thenReturn(7L);
+        outboxService = mock(OutboxService.class);
+        salesRollupService = mock(SalesRollupService.class);
+
+        paymentService = new PaymentService();
+        ReflectionTestUtils.setField(paymentService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(paymentService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(paymentService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(paymentService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(paymentService, "verificationClaims", verificationClaims);
+        ReflectionTestUtils.setField(paymentService, "userKeyResolver", userKeyResolver);
+        ReflectionTestUtils.setField(paymentService, "signatureVerifier", mock(RazorpaySignatureVerifier.class));
+        ReflectionTestUtils.setField(paymentService, "bookingCacheService", mock(BookingCacheService.class));
+        ReflectionTestUtils.setField(paymentService, "ticketService", mock(TicketService.class));
+        ReflectionTestUtils.setField(paymentService, "outboxService", outboxService);
+        ReflectionTestUtils.setField(paymentService, "salesRollupService", salesRollupService);
+        ReflectionTestUtils.setField(paymentService, "transactionManager", mock(PlatformTransactionManager.class));
+        paymentService.init();
+    }
+
+    @Test
+    void concurrentVerificationsSaveOnceAndAnswerAlike() throws Exception {
+        List<ResponseEntity<?>> responses = verifyConcurrently();
+
+        verify(paymentRepository, times(1)).saveAndFlush(any(Payment.class));
+        assertEquals(1, bookingInserts.get());
+        verify(outboxService, times(1)).enqueue(eq(OutboxService.TICKET_GENERATION), anyString(), anyMap());
+        verify(salesRollupService, times(1)).recordPayment(any(), anyDouble(), eq("CONCERT"));
+        assertAllAlike(responses);
+        assertEquals(true, body(responses.get(0)).get("valid"));
+        assertEquals(bookings.get(PAYMENT_ID).getId().toString(), body(responses.get(0)).get("bookingId"));
+    }
+
+    @Test
+    void paymentRecordedByTheWebhookIsCompletedOnce() throws Exception {
+        // The webhook recorded the payment without a user, show or signature
+        Payment recorded = new Payment();
+        recorded.setRazorpayPaymentId(PAYMENT_ID);
+        recorded.setAmount(250);
+        recorded.setStatus("SUCCESS");
+        ReflectionTestUtils.setField(recorded, "id", 42L);
+        payments.put(PAYMENT_ID, recorded);
+
+        List<ResponseEntity<?>> responses = verifyConcurrently();
+
+        // The winner's insert hits the unique key and completes the recorded payment instead
+        verify(paymentRepository, times(1)).saveAndFlush(any(Payment.class));
+        verify(paymentRepository, times(1)).save(recorded);
+        assertEquals("7", recorded.getUserId());
+        assertEquals("CONCERT", recorded.getEntityType());
+        assertEquals("sig_1", recorded.getRazorpaySignature());
+        assertEquals(1, bookingInserts.get());
+        verify(outboxService, times(1)).enqueue(eq(OutboxService.TICKET_GENERATION), anyString(), anyMap());
+        // The webhook counted it already
+        verify(salesRollupService, never()).recordPayment(any(), anyDouble(), any());
+        assertAllAlike(responses);
+        assertEquals(42L, body(responses.get(0)).get("paymentId"));
+    }
+
+    @Test
+    void withoutRedisTheUniqueKeysDecide() throws Exception {
+        when(claimValues.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        List<ResponseEntity<?>> responses = verifyConcurrently();
+
+        // Every caller runs; all but one land on the fallback path
+        verify(paymentRepository, atLeastOnce()).saveAndFlush(any(Payment.class));
+        assertEquals(1, payments.size());
+        assertEquals(1, bookingInserts.get());
+        verify(salesRollupService, times(1)).recordPayment(any(), anyDouble(), eq("CONCERT"));
+        assertAllAlike(responses);
+        assertEquals(payments.get(PAYMENT_ID).getId(), body(responses.get(0)).get("paymentId"));
+    }
+
+    // Starts all callers at once and returns their responses
+    private List<ResponseEntity<?>> verifyConcurrently() throws Exception {
+        Map<String, String> payload = Map.of(
+                "razorpay_order_id", "order_1",
+                "razorpay_payment_id", PAYMENT_ID,
+                "razorpay_signature", "sig_1",
+                "amount", "250",
+                "entityType", "CONCERT",
+                "entityId", "12",
+                "userId", "7");
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ResponseEntity<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return paymentService.verifyAndSavePayment(payload);
+                }));
+            }
+            start.countDown();
+            List<ResponseEntity<?>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<?>> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertAllAlike(List<ResponseEntity<?>> responses) {
+        assertEquals(CALLERS, responses.size());
+        for (ResponseEntity<?> response : responses) {
+            assertEquals(200, response.getStatusCode().value(), String.valueOf(response.getBody()));
+            assertEquals(responses.get(0).getBody(), response.getBody());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(ResponseEntity<?> response) {
+        return (Map<String, Object>) response.getBody();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.evenza.backend.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.util.SeatStateMap;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReservationExpiryServiceTest {
+
+    private BookingRepository bookingRepository;
+    private SeatInventoryService seatInventoryService;
+    private WebSocketService webSocketService;
+    private BookingCacheService bookingCacheService;
+    private CapacityService capacityService;
+    private ReservationExpiryService reservationExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        webSocketService = mock(WebSocketService.class);
+        bookingCacheService = mock(BookingCacheService.class);
+        capacityService = mock(CapacityService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(call -> new SimpleTransactionStatus());
+        when(seatInventoryService.expireHolds(anyString(), anyString(), anyCollection()))
+                .thenAnswer(call -> new SeatStateMap.Update(3, List.copyOf(call.<List<String>>getArgument(2))));
+
+        reservationExpiryService = new ReservationExpiryService();
+        ReflectionTestUtils.setField(reservationExpiryService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(reservationExpiryService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(reservationExpiryService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(reservationExpiryService, "webSocketService", webSocketService);
+        ReflectionTestUtils.setField(reservationExpiryService, "bookingCacheService", bookingCacheService);
+        ReflectionTestUtils.setField(reservationExpiryService, "seatClaimService", mock(SeatClaimService.class));
+        ReflectionTestUtils.setField(reservationExpiryService, "capacityService", capacityService);
+        ReflectionTestUtils.setField(reservationExpiryService, "transactionManager", transactionManager);
+        reservationExpiryService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationExpiryService.stop();
+    }
+
+    @Test
+    void timerReleasesOnlyTheReservationsItCancelled() {
+        Booking expired = reservation(1L, "alice", "A1", 50);
+        Booking confirmed = reservation(2L, "bob", "A2", 50);
+        reservationExpiryService.track(List.of(expired, confirmed));
+        // Booking 2 was confirmed just before its deadline, so the guard does not lock it
+        when(bookingRepository.findExpiredReservationsForUpdate(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(expired));
+
+        verify(webSocketService, timeout(2000))
+                .sendSeatDelta("MOVIE", "1", 3L, WebSocketService.SEAT_RELEASED, List.of("A1"));
+        verify(bookingRepository).cancelExpiredReservationsByIds(eq(List.of(1L)), any(LocalDateTime.class));
+        verify(seatInventoryService).expireHolds("MOVIE", "1", List.of("A1"));
+        verify(capacityService).release("MOVIE", "1", 1);
+        verify(bookingCacheService).evict("alice", "MOVIE", "1");
+        verify(bookingCacheService, never()).evict(eq("bob"), anyString(), anyString());
+    }
+
+    @Test
+    void untrackedReservationsAreSkipped() {
+        Booking booking = reservation(1L, "alice", "A1", 20);
+        reservationExpiryService.track(List.of(booking));
+
+        reservationExpiryService.untrack(List.of(1L));
+
+        verify(bookingRepository, after(300).never())
+                .findExpiredReservationsForUpdate(anyCollection(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void sweepReleasesSeatsAndEvictsCaches() {
+        List<Booking> expired = List.of(reservation(1L, "alice", "A1", -60000), reservation(2L, "bob", "A2", -60000));
+        when(bookingRepository.findExpiredReservationsForUpdate(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(expired);
+
+        reservationExpiryService.cleanupExpiredReservations();
+
+        verify(bookingRepository).cancelExpiredReservationsByIds(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(seatInventoryService).expireHolds("MOVIE", "1", List.of("A1", "A2"));
+        verify(webSocketService).sendSeatDelta("MOVIE", "1", 3L, WebSocketService.SEAT_RELEASED, List.of("A1", "A2"));
+        verify(capacityService).release("MOVIE", "1", 2);
+        verify(bookingCacheService).evict("alice", "MOVIE", "1");
+        verify(bookingCacheService).evict("bob", "MOVIE", "1");
+    }
+
+    private static Booking reservation(Long id, String userId, String seatId, long expiresInMillis) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setEntityType("MOVIE");
+        booking.setEntityId("1");
+        booking.setSeatId(seatId);
+        booking.setUserId(userId);
+        booking.setStatus("RESERVED");
+        booking.setReservationExpiry(LocalDateTime.now().plusNanos(expiresInMillis * 1_000_000));
+        return booking;
+    }
+}
@@ -0,0 +1,146 @@
+package com.evenza.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Runs hold-seats.lua against a real Redis, with many users racing for overlapping seats.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SeatHoldServiceTest {
+
+    private static final int USERS = 50;
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    private SeatHoldService seatHoldService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        seatHoldService = new SeatHoldService();
+        ReflectionTestUtils.setField(seatHoldService, "stringRedisTemplate", redis);
+    }
+
+    @Test
+    void onlyOneUserHoldsTheSameSeats() throws Exception {
+        List<String> seats = List.of("A1", "A2", "A3");
+        Map<String, List<String>> outcomes = holdConcurrently(user -> seats);
+
+        List<String> winners = outcomes.entrySet().stream()
+                .filter(outcome -> outcome.getValue().isEmpty()).map(Map.Entry::getKey).toList();
+        assertEquals(1, winners.size());
+        outcomes.forEach((user, taken) -> assertTrue(taken.isEmpty() || taken.equals(seats)));
+        for (String seat : seats) {
+            assertEquals(winners.get(0), holder(seat));
+        }
+    }
+
+    @Test
+    void overlappingHoldsAreAllOrNothing() throws Exception {
+        // User i wants seats i and i+1, so every user overlaps with both neighbours
+        Map<String, List<String>> outcomes = holdConcurrently(user -> {
+            int i = Integer.parseInt(user.substring(1));
+            return List.of("A" + i, "A" + (i + 1));
+        });
+
+        Map<String, String> heldBy = new HashMap<>();
+        outcomes.forEach((user, taken) -> {
+            int i = Integer.parseInt(user.substring(1));
+            if (taken.isEmpty()) {
+                assertNull(heldBy.put("A" + i, user));
+                assertNull(heldBy.put("A" + (i + 1), user));
+            }
+        });
+        assertTrue(heldBy.size() >= 2);
+        for (int seat = 0; seat <= USERS; seat++) {
+            assertEquals(heldBy.get("A" + seat), holder("A" + seat));
+        }
+    }
+
+    @Test
+    void releaseLeavesOtherUsersHolds() {
+        assertEquals(List.of(), seatHoldService.holdSeats("CONCERT", "12", List.of("A1", "A2"), "u1", TTL));
+        assertEquals(List.of("A2"), seatHoldService.holdSeats("CONCERT", "12", List.of("A2", "A3"), "u2", TTL));
+
+        seatHoldService.releaseSeats("CONCERT", "12", List.of("A1", "A2"), "u2");
+        assertEquals("u1", holder("A1"));
+        assertEquals("u1", holder("A2"));
+
+        seatHoldService.releaseSeats("CONCERT", "12", List.of("A1", "A2"), "u1");
+        assertEquals(List.of(), seatHoldService.holdSeats("CONCERT", "12", List.of("A2", "A3"), "u2", TTL));
+        assertEquals(List.of(), seatHoldService.holdSeats("CONCERT", "12", List.of("A1"), "u3", TTL));
+    }
+
+    // Starts all users at once; returns each user's taken seats, empty for the users whose hold succeeded
+    private Map<String, List<String>> holdConcurrently(Function<String, List<String>> seatsOf)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Map<String, Future<List<String>>> futures = new HashMap<>();
+            for (int i = 0; i < USERS; i++) {
+                String user = "u" + i;
+                futures.put(user, pool.submit(() -> {
+                    start.await();
+                    return seatHoldService.holdSeats("CONCERT", "12", seatsOf.apply(user), user, TTL);
+                }));
+            }
+            start.countDown();
+            Map<String, List<String>> outcomes = new HashMap<>();
+            for (Map.Entry<String, Future<List<String>>> future : futures.entrySet()) {
+                outcomes.put(future.getKey(), new ArrayList<>(future.getValue().get()));
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String holder(String seatId) {
+        return redis.opsForValue().get("SEAT_HOLD:{CONCERT:12}:" + seatId);
+    }
+}
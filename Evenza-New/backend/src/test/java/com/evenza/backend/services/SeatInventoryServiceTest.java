@@ -0,0 +1,53 @@
+package com.evenza.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.evenza.backend.model.Booking;
+import com.evenza.backend.repository.BookingRepository;
+import com.evenza.backend.util.SeatStateMap;
+
+class SeatInventoryServiceTest {
+
+    @Test
+    void loadsTheSeatsTheTakenSeatQueriesCount() {
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findByEntityTypeAndEntityId("MOVIE", "1")).thenReturn(List.of(
+                booking("A1", "CONFIRMED", null),
+                // A paid booking from createBooking, which keeps the default status
+                booking("A2", "PENDING", null),
+                booking("A3", "RESERVED", LocalDateTime.now().plusMinutes(10)),
+                booking("A4", "RESERVED", LocalDateTime.now().minusMinutes(1)),
+                booking("A5", "CANCELLED", null)));
+        BookingJournalService bookingJournalService = mock(BookingJournalService.class);
+        when(bookingJournalService.pendingBookings("MOVIE", "1")).thenReturn(List.of(booking("A6", "CONFIRMED", null)));
+        SeatInventoryService seatInventoryService = new SeatInventoryService();
+        ReflectionTestUtils.setField(seatInventoryService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(seatInventoryService, "bookingJournalService", bookingJournalService);
+
+        assertEquals(SeatStateMap.SOLD, seatInventoryService.getSeatState("MOVIE", "1", "A1"));
+        assertEquals(SeatStateMap.SOLD, seatInventoryService.getSeatState("MOVIE", "1", "A2"));
+        assertEquals(SeatStateMap.HELD, seatInventoryService.getSeatState("MOVIE", "1", "A3"));
+        assertEquals(SeatStateMap.FREE, seatInventoryService.getSeatState("MOVIE", "1", "A4"));
+        assertEquals(SeatStateMap.FREE, seatInventoryService.getSeatState("MOVIE", "1", "A5"));
+        assertEquals(SeatStateMap.SOLD, seatInventoryService.getSeatState("MOVIE", "1", "A6"));
+    }
+
+    private static Booking booking(String seatId, String status, LocalDateTime reservationExpiry) {
+        Booking booking = new Booking();
+        booking.setSeatId(seatId);
+        booking.setEntityType("MOVIE");
+        booking.setEntityId("1");
+        booking.setUserId("alice");
+        booking.setStatus(status);
+        booking.setReservationExpiry(reservationExpiry);
+        return booking;
+    }
+}
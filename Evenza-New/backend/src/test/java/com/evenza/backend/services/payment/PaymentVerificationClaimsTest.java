@@ -0,0 +1,149 @@
+package com.evenza.backend.services.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PaymentVerificationClaimsTest {
+
+    private static final int CALLERS = 50;
+
+    // Stands in for Redis: SET NX and the compare-and-delete release script
+    private final Map<String, String> claims = new ConcurrentHashMap<>();
+    private final Map<String, String> results = new ConcurrentHashMap<>();
+
+    private StringRedisTemplate redis;
+    private ValueOperations<String, String> values;
+    private PaymentVerificationClaims verificationClaims;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(call -> claims.putIfAbsent(call.getArgument(0), call.getArgument(1)) == null);
+        when(redis.execute(any(RedisScript.class), anyList(), anyString()))
+                .thenAnswer(call -> claims.remove(((List<String>) call.getArgument(1)).get(0), call.getArgument(2)) ? 1L : 0L);
+
+        verificationClaims = new PaymentVerificationClaims();
+        ReflectionTestUtils.setField(verificationClaims, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(verificationClaims, "leaseMillis", 30000L);
+        ReflectionTestUtils.setField(verificationClaims, "waitMillis", 10000L);
+        ReflectionTestUtils.setField(verificationClaims, "pollMillis", 5L);
+    }
+
+    @Test
+    void concurrentVerificationsRunOnceAndShareTheResult() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<String> outcomes = verifyConcurrently("pay_1", () -> {
+            int run = runs.incrementAndGet();
+            sleep(50);
+            String result = "verified-" + run;
+            results.put("pay_1", result);
+            return result;
+        });
+
+        assertEquals(1, runs.get());
+        assertEquals(CALLERS, outcomes.size());
+        outcomes.forEach(outcome -> assertEquals("verified-1", outcome));
+        assertEquals(Map.of(), claims);
+    }
+
+    @Test
+    void waiterTakesOverWhenTheWinnerFails() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<String> outcomes = verifyConcurrently("pay_2", () -> {
+            int run = runs.incrementAndGet();
+            sleep(20);
+            if (run == 1) {
+                return null;
+            }
+            String result = "verified-" + run;
+            results.put("pay_2", result);
+            return result;
+        });
+
+        assertEquals(2, runs.get());
+        assertEquals(CALLERS - 1, outcomes.size());
+        outcomes.forEach(outcome -> assertEquals("verified-2", outcome));
+    }
+
+    @Test
+    void waitersGiveUpWhileTheClaimIsHeld() {
+        claims.put("payment:claim:pay_3", "other-node");
+        ReflectionTestUtils.setField(verificationClaims, "waitMillis", 30L);
+
+        Optional<String> outcome = verificationClaims.runOnce("pay_3", () -> results.get("pay_3"), () -> "verified");
+
+        assertEquals(Optional.empty(), outcome);
+    }
+
+    @Test
+    void runsUnclaimedWhenRedisIsDown() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(Optional.of("verified"), verificationClaims.runOnce("pay_4", () -> null, () -> "verified"));
+        assertThrows(IllegalStateException.class, () -> verificationClaims.runOnce("pay_4", () -> null, () -> {
+            throw new IllegalStateException("failed");
+        }));
+    }
+
+    // Starts all callers at once; returns the results of those that got one
+    private List<String> verifyConcurrently(String paymentId, Supplier<String> work) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Optional<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return verificationClaims.runOnce(paymentId, () -> results.get(paymentId), work);
+                }));
+            }
+            start.countDown();
+            List<String> outcomes = new ArrayList<>();
+            for (Future<Optional<String>> future : futures) {
+                future.get().ifPresent(outcomes::add);
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
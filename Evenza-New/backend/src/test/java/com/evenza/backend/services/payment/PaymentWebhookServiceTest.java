@@ -0,0 +1,240 @@
+package com.evenza.backend.services.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.evenza.backend.repository.PaymentRepository;
+import com.evenza.backend.services.PaymentService;
+import com.evenza.backend.services.SalesRollupService;
+import com.evenza.backend.services.UserKeyResolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Feeds batches of deliveries through the verify, dedupe and insert steps, with the
+ * dead-letter list kept in a deque in place of Redis.
+ */
+class PaymentWebhookServiceTest {
+
+    private static final String KEY = PaymentWebhookService.DEAD_LETTER_KEY;
+
+    // Razorpay payment IDs of each JDBC batch that went through
+    private final List<List<String>> inserts = new CopyOnWriteArrayList<>();
+    // Thrown by the next inserts, in order
+    private final Deque<RuntimeException> insertFailures = new ArrayDeque<>();
+    private final Deque<String> deadLetters = new ArrayDeque<>();
+
+    private JdbcTemplate jdbcTemplate;
+    private ListOperations<String, String> listOperations;
+    private PaymentRepository paymentRepository;
+    private PaymentService paymentService;
+    private PaymentWebhookService webhookService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(call -> {
+                    RuntimeException failure;
+                    synchronized (insertFailures) {
+                        failure = insertFailures.poll();
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    List<String> ids = new ArrayList<>();
+                    PreparedStatement ps = mock(PreparedStatement.class);
+                    doAnswer(set -> ids.add(set.getArgument(1))).when(ps).setString(eq(3), anyString());
+                    ParameterizedPreparedStatementSetter<Object> setter = call.getArgument(3);
+                    for (Object row : call.<Collection<Object>>getArgument(1)) {
+                        setter.setValues(ps, row);
+                    }
+                    inserts.add(ids);
+                    return new int[0][];
+                });
+
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        listOperations = mock(ListOperations.class);
+        when(redis.opsForList()).thenReturn(listOperations);
+        when(listOperations.leftPush(eq(KEY), anyString())).thenAnswer(call -> {
+            synchronized (deadLetters) {
+                deadLetters.addFirst(call.getArgument(1));
+                return (long) deadLetters.size();
+            }
+        });
+        when(listOperations.rightPush(eq(KEY), anyString())).thenAnswer(call -> {
+            synchronized (deadLetters) {
+                deadLetters.addLast(call.getArgument(1));
+                return (long) deadLetters.size();
+            }
+        });
+        when(listOperations.rightPop(KEY)).thenAnswer(call -> {
+            synchronized (deadLetters) {
+                return deadLetters.pollLast();
+            }
+        });
+        when(listOperations.size(KEY)).thenAnswer(call -> {
+            synchronized (deadLetters) {
+                return (long) deadLetters.size();
+            }
+        });
+        when(listOperations.range(eq(KEY), anyLong(), anyLong())).thenAnswer(call -> {
+            synchronized (deadLetters) {
+                return List.copyOf(deadLetters);
+            }
+        });
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(call -> new SimpleTransactionStatus());
+        paymentRepository = mock(PaymentRepository.class);
+        paymentService = mock(PaymentService.class);
+
+        webhookService = new PaymentWebhookService();
+        ReflectionTestUtils.setField(webhookService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(webhookService, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(webhookService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(webhookService, "paymentService", paymentService);
+        ReflectionTestUtils.setField(webhookService, "userKeyResolver", mock(UserKeyResolver.class));
+        ReflectionTestUtils.setField(webhookService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(webhookService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(webhookService, "salesRollupService", mock(SalesRollupService.class));
+        ReflectionTestUtils.setField(webhookService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(webhookService, "webhookSecret", "whsec_test");
+        ReflectionTestUtils.setField(webhookService, "queueCapacity", 100);
+        ReflectionTestUtils.setField(webhookService, "batchSize", 50);
+        ReflectionTestUtils.setField(webhookService, "deadLetterMax", 100);
+        webhookService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        webhookService.stop();
+    }
+
+    @Test
+    void verifiedPaymentsAreInsertedOnceAndBadSignaturesDeadLettered() {
+        PaymentWebhookService.Delivery forged = new PaymentWebhookService.Delivery(
+                event("payment.captured", "pay_3"), "0".repeat(64), System.currentTimeMillis());
+
+        processBatch(List.of(
+                signed(event("payment.captured", "pay_1")),
+                signed(event("payment.captured", "pay_1")),
+                signed(event("payment.failed", "pay_2")),
+                forged,
+                signed(event("order.paid", "pay_4"))));
+
+        assertEquals(List.of(List.of("pay_1", "pay_2")), inserts);
+        verify(paymentService).clearUserPaymentCache("7");
+        List<Map<String, Object>> dead = webhookService.deadLetters(10);
+        assertEquals(1, dead.size());
+        assertEquals("Invalid signature", dead.get(0).get("reason"));
+        assertTrue(((String) dead.get(0).get("body")).contains("pay_3"));
+    }
+
+    @Test
+    void paymentsAlreadyRecordedAreSkipped() {
+        when(paymentRepository.findExistingRazorpayPaymentIds(anyCollection())).thenReturn(List.of("pay_1"));
+
+        processBatch(List.of(signed(event("payment.captured", "pay_1")), signed(event("payment.captured", "pay_2"))));
+
+        assertEquals(List.of(List.of("pay_2")), inserts);
+    }
+
+    @Test
+    void insertRacingAVerificationIsRetriedWithoutTheRecordedPayment() {
+        // A verification records pay_1 between the lookup and the insert
+        when(paymentRepository.findExistingRazorpayPaymentIds(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of("pay_1"));
+        insertFailures.add(new DuplicateKeyException("Duplicate entry 'pay_1'"));
+
+        processBatch(List.of(signed(event("payment.captured", "pay_1")), signed(event("payment.captured", "pay_2"))));
+
+        assertEquals(List.of(List.of("pay_2")), inserts);
+        assertEquals(0, webhookService.deadLetterCount());
+    }
+
+    @Test
+    void failedInsertsAreDeadLetteredAndReplayed() {
+        insertFailures.add(new DataAccessResourceFailureException("Connection refused"));
+
+        processBatch(List.of(signed(event("payment.captured", "pay_1"))));
+
+        assertEquals(List.of(), inserts);
+        assertEquals(1, webhookService.deadLetterCount());
+        assertTrue(((String) webhookService.deadLetters(10).get(0).get("reason")).startsWith("Persist failed"));
+
+        // The database is back; the drainer takes the replayed delivery through the same checks
+        assertEquals(1, webhookService.replayDeadLetters(10));
+
+        verify(paymentService, timeout(2000)).clearUserPaymentCache("7");
+        assertEquals(List.of(List.of("pay_1")), inserts);
+        assertEquals(0, webhookService.deadLetterCount());
+    }
+
+    @Test
+    void replayedDeliveriesThatStillFailAreDeadLetteredAgain() {
+        processBatch(List.of(new PaymentWebhookService.Delivery(
+                event("payment.captured", "pay_1"), "0".repeat(64), System.currentTimeMillis())));
+
+        assertEquals(1, webhookService.replayDeadLetters(10));
+
+        verify(listOperations, timeout(2000).times(2)).leftPush(eq(KEY), anyString());
+        assertEquals(1, webhookService.deadLetterCount());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(paymentService, never()).clearUserPaymentCache(anyString());
+    }
+
+    private void processBatch(List<PaymentWebhookService.Delivery> batch) {
+        ReflectionTestUtils.invokeMethod(webhookService, "processBatch", batch);
+    }
+
+    private PaymentWebhookService.Delivery signed(byte[] body) {
+        return new PaymentWebhookService.Delivery(body, webhookService.sign(body), System.currentTimeMillis());
+    }
+
+    private static byte[] event(String event, String paymentId) {
+        return ("{\"event\":\"" + event + "\",\"created_at\":1760000000,\"payload\":{\"payment\":{\"entity\":{"
+                + "\"id\":\"" + paymentId + "\",\"order_id\":\"order_" + paymentId + "\",\"amount\":25000,"
+                + "\"method\":\"upi\",\"notes\":{\"entityType\":\"CONCERT\",\"entityId\":\"12\",\"userId\":\"7\"}}}}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,167 @@
+package com.evenza.backend.services.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.evenza.backend.DTO.PaymentLedgerView;
+import com.evenza.backend.DTO.ReconciliationReport;
+import com.evenza.backend.repository.PaymentRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs whole reconciliation jobs, so the settlement file goes through the external sort
+ * in several runs before it is merge-joined with the ledger.
+ */
+class ReconciliationServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+
+    private record LedgerRow(String razorpayPaymentId, double amount, String status) implements PaymentLedgerView {
+        @Override
+        public String getRazorpayPaymentId() {
+            return razorpayPaymentId;
+        }
+
+        @Override
+        public double getAmount() {
+            return amount;
+        }
+
+        @Override
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    private PaymentRepository paymentRepository;
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        reconciliationService = new ReconciliationService();
+        ReflectionTestUtils.setField(reconciliationService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(reconciliationService, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(reconciliationService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(reconciliationService, "inputDir", dir.resolve("in").toString());
+        ReflectionTestUtils.setField(reconciliationService, "reportDir", dir.resolve("out").toString());
+        ReflectionTestUtils.setField(reconciliationService, "sortChunkRows", 2);
+        reconciliationService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciliationService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void classifiesEveryMismatch() throws Exception {
+        ledger(new LedgerRow("pay_a", 100.00, "SUCCESS"),
+                new LedgerRow("pay_b", 50.00, "SUCCESS"),
+                new LedgerRow("pay_c", 20.00, "FAILED"),
+                new LedgerRow("pay_d", 10.00, "SUCCESS"),
+                new LedgerRow("pay_d", 10.00, "SUCCESS"),
+                new LedgerRow("pay_f", 5.00, "SUCCESS"));
+        // pay_e was created before the window
+        when(paymentRepository.findExistingRazorpayPaymentIds(anyCollection())).thenAnswer(call ->
+                ((Collection<String>) call.getArgument(0)).stream().filter(Set.of("pay_e")::contains).toList());
+        settlement("payment_id,amount",
+                "pay_g,1.00",
+                "pay_b,50.00",
+                "pay_a,99.00",
+                "pay_e,7.00",
+                "pay_c,20.00",
+                "pay_d,10.00",
+                "pay_b,50.00");
+
+        ReconciliationReport report = await(reconciliationService.submit("settlement.csv", DAY, DAY));
+
+        assertEquals(ReconciliationReport.COMPLETED, report.status(), report.error());
+        assertEquals(6, report.ledgerRows());
+        assertEquals(7, report.settlementRows());
+        assertEquals(2, report.matched());
+        assertEquals(Map.of(
+                "AMOUNT_MISMATCH", 1L,
+                "STATUS_MISMATCH", 1L,
+                "DUPLICATE_IN_LEDGER", 1L,
+                "DUPLICATE_IN_SETTLEMENT", 1L,
+                "MISSING_IN_SETTLEMENT", 1L,
+                "OUTSIDE_WINDOW", 1L,
+                "MISSING_IN_LEDGER", 1L), report.mismatches());
+
+        List<String> rows = Files.readAllLines(Path.of(report.reportFile()));
+        assertEquals("type,payment_id,ledger_amount,settlement_amount,ledger_status,settlement_line", rows.get(0));
+        assertTrue(rows.contains("AMOUNT_MISMATCH,pay_a,100.00,99.00,SUCCESS,4"));
+        assertTrue(rows.contains("STATUS_MISMATCH,pay_c,20.00,20.00,FAILED,6"));
+        assertTrue(rows.contains("DUPLICATE_IN_SETTLEMENT,pay_b,,50.00,,8"));
+        assertTrue(rows.contains("MISSING_IN_SETTLEMENT,pay_f,5.00,,SUCCESS,"));
+        assertTrue(rows.contains("OUTSIDE_WINDOW,pay_e,,7.00,,5"));
+        assertTrue(rows.contains("MISSING_IN_LEDGER,pay_g,,1.00,,2"));
+    }
+
+    @Test
+    void matchingSidesHaveNoMismatches() throws Exception {
+        ledger(new LedgerRow("pay_a", 1.10, "SUCCESS"), new LedgerRow("pay_b", 2.20, "SUCCESS"));
+        settlement("payment_id,amount", "pay_b,2.20", "pay_a,1.10");
+
+        ReconciliationReport report = await(reconciliationService.submit("settlement.csv", DAY, DAY));
+
+        assertEquals(ReconciliationReport.COMPLETED, report.status(), report.error());
+        assertEquals(2, report.matched());
+        assertEquals(Map.of(), report.mismatches());
+    }
+
+    @Test
+    void unorderedLedgerFailsTheJob() throws Exception {
+        ledger(new LedgerRow("pay_b", 1.00, "SUCCESS"), new LedgerRow("pay_a", 1.00, "SUCCESS"));
+        settlement("payment_id,amount", "pay_a,1.00");
+
+        ReconciliationReport report = await(reconciliationService.submit("settlement.csv", DAY, DAY));
+
+        assertEquals(ReconciliationReport.FAILED, report.status());
+        assertTrue(report.error().contains("not ordered"));
+    }
+
+    private void ledger(LedgerRow... rows) {
+        when(paymentRepository.streamLedger(any(), any())).thenAnswer(call -> List.<PaymentLedgerView>of(rows).stream());
+    }
+
+    private void settlement(String... lines) throws Exception {
+        Files.createDirectories(dir.resolve("in"));
+        Files.write(dir.resolve("in").resolve("settlement.csv"), List.of(lines));
+    }
+
+    private ReconciliationReport await(ReconciliationReport queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        ReconciliationReport job = reconciliationService.getJob(queued.jobId());
+        while (ReconciliationReport.RUNNING.equals(job.status()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = reconciliationService.getJob(queued.jobId());
+        }
+        return job;
+    }
+}
@@ -0,0 +1,160 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.evenza.backend.model.Booking;
+
+class BookingJournalTest {
+
+    private static final int CAPACITY = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forcedRecordsSurviveAReopen() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            assertEquals(2, journal.append(List.of(booking(1, "A1"), booking(2, "A2"))));
+            assertEquals(3, journal.append(List.of(booking(3, "A3"))));
+            assertEquals(3, journal.force());
+        }
+
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            assertEquals(List.of("A1", "A2", "A3"), seats(journal.readDurable(Integer.MAX_VALUE)));
+            Booking replayed = journal.readDurable(1).get(0).booking();
+            assertEquals(1L, replayed.getId());
+            assertEquals("CONCERT", replayed.getEntityType());
+            assertEquals("12", replayed.getEntityId());
+            assertEquals("7", replayed.getUserId());
+            assertEquals(250.0, replayed.getAmount());
+        }
+    }
+
+    @Test
+    void recordsAreNotDurableUntilForced() throws Exception {
+        try (BookingJournal journal = new BookingJournal(dir.resolve("journal.dat"), CAPACITY)) {
+            journal.append(List.of(booking(1, "A1")));
+            assertEquals(List.of(), journal.readDurable(Integer.MAX_VALUE));
+
+            journal.force();
+            journal.append(List.of(booking(2, "A2")));
+            assertEquals(List.of("A1"), seats(journal.readDurable(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void reopenStopsAtATornTail() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        long lastRecord;
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            journal.append(List.of(booking(1, "A1"), booking(2, "A2")));
+            journal.force();
+            lastRecord = journal.readDurable(Integer.MAX_VALUE).get(0).endPosition();
+        }
+
+        // Half-written payload of the last record: its checksum no longer matches
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(lastRecord + 8 + 4);
+            raf.writeInt(0xDEADBEEF);
+        }
+
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            assertEquals(List.of("A1"), seats(journal.readDurable(Integer.MAX_VALUE)));
+            // New records go after the last good one
+            journal.append(List.of(booking(3, "A3")));
+            journal.force();
+            assertEquals(List.of("A1", "A3"), seats(journal.readDurable(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void reopenStopsAtALengthPastTheEnd() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        long lastRecord;
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            journal.append(List.of(booking(1, "A1"), booking(2, "A2")));
+            journal.force();
+            lastRecord = journal.readDurable(Integer.MAX_VALUE).get(0).endPosition();
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(lastRecord);
+            raf.writeInt(CAPACITY);
+        }
+
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            assertEquals(List.of("A1"), seats(journal.readDurable(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void drainedRecordsAreNotReplayed() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            journal.append(List.of(booking(1, "A1"), booking(2, "A2"), booking(3, "A3")));
+            journal.force();
+            List<BookingJournal.Entry> drained = journal.readDurable(2);
+            journal.checkpoint(drained.get(1).endPosition());
+            journal.force();
+        }
+
+        try (BookingJournal journal = new BookingJournal(file, CAPACITY)) {
+            assertEquals(List.of("A3"), seats(journal.readDurable(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void fullyDrainedJournalStartsOver() throws Exception {
+        try (BookingJournal journal = new BookingJournal(dir.resolve("journal.dat"), CAPACITY)) {
+            journal.append(List.of(booking(1, "A1")));
+            journal.force();
+            journal.checkpoint(journal.readDurable(1).get(0).endPosition());
+
+            assertEquals(0, journal.pendingBytes());
+            assertEquals(List.of(), journal.readDurable(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void fullJournalRejectsTheAppend() throws Exception {
+        try (BookingJournal journal = new BookingJournal(dir.resolve("journal.dat"), 256)) {
+            List<Booking> bookings = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                bookings.add(booking(i, "A" + i));
+            }
+            assertEquals(-1, journal.append(bookings));
+            assertTrue(journal.append(List.of(booking(1, "A1"))) > 0);
+        }
+    }
+
+    private static Booking booking(long id, String seatId) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setSeatId(seatId);
+        booking.setEntityType("CONCERT");
+        booking.setEntityId("12");
+        booking.setUserId("7");
+        booking.setPaymentId("pay_1");
+        booking.setAmount(250.0);
+        booking.setStatus("CONFIRMED");
+        booking.setVenue("Evenza Concert Hall");
+        booking.setBookingTime(LocalDateTime.of(2025, 1, 1, 10, 0));
+        booking.setCreatedAt(LocalDateTime.of(2025, 1, 1, 10, 0));
+        return booking;
+    }
+
+    private static List<String> seats(List<BookingJournal.Entry> entries) {
+        return entries.stream().map(entry -> entry.booking().getSeatId()).toList();
+    }
+}
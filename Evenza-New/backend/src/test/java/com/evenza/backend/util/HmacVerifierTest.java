@@ -0,0 +1,110 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class HmacVerifierTest {
+
+    // RFC 4231, test case 2
+    private static final byte[] RFC_KEY = "Jefe".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RFC_MESSAGE = "what do ya want for nothing?".getBytes(StandardCharsets.US_ASCII);
+    private static final String RFC_MAC = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+
+    private final HmacVerifier verifier = new HmacVerifier("key_secret".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void matchesTheRfcTestVector() {
+        HmacVerifier rfcVerifier = new HmacVerifier(RFC_KEY);
+
+        assertEquals(RFC_MAC, rfcVerifier.sign(RFC_MESSAGE));
+        assertTrue(rfcVerifier.verify(RFC_MESSAGE, 0, RFC_MESSAGE.length, RFC_MAC));
+        assertTrue(rfcVerifier.verify(RFC_MESSAGE, 0, RFC_MESSAGE.length, RFC_MAC.toUpperCase()));
+    }
+
+    @Test
+    void verifiesOnlyTheGivenRangeOfTheMessage() {
+        HmacVerifier rfcVerifier = new HmacVerifier(RFC_KEY);
+        byte[] padded = new byte[RFC_MESSAGE.length + 8];
+        System.arraycopy(RFC_MESSAGE, 0, padded, 4, RFC_MESSAGE.length);
+
+        assertTrue(rfcVerifier.verify(padded, 4, RFC_MESSAGE.length, RFC_MAC));
+        assertFalse(rfcVerifier.verify(padded, 0, padded.length, RFC_MAC));
+    }
+
+    @Test
+    void paymentSignaturesAreTheMacOfOrderAndPaymentId() throws Exception {
+        String signature = hmac("key_secret", "order_1|pay_1");
+
+        assertEquals(signature, verifier.sign("order_1", '|', "pay_1"));
+        assertTrue(verifier.verify("order_1", '|', "pay_1", signature));
+        assertFalse(verifier.verify("order_1", '|', "pay_2", signature));
+        assertFalse(verifier.verify("order_2", '|', "pay_1", signature));
+    }
+
+    @Test
+    void nonAsciiIdsAreSignedAsUtf8() throws Exception {
+        String signature = hmac("key_secret", "order_é|pay_1");
+
+        assertTrue(verifier.verify("order_é", '|', "pay_1", signature));
+    }
+
+    @Test
+    void malformedSignaturesAreRejected() {
+        String signature = verifier.sign("order_1", '|', "pay_1");
+
+        assertFalse(verifier.verify("order_1", '|', "pay_1", null));
+        assertFalse(verifier.verify("order_1", '|', "pay_1", ""));
+        assertFalse(verifier.verify("order_1", '|', "pay_1", signature.substring(2)));
+        assertFalse(verifier.verify("order_1", '|', "pay_1", "zz" + signature.substring(2)));
+        // A rejected signature leaves the engine ready for the next one
+        assertTrue(verifier.verify("order_1", '|', "pay_1", signature));
+    }
+
+    @Test
+    void longIdsGrowTheScratchBuffer() throws Exception {
+        String orderId = "order_" + "x".repeat(500);
+
+        assertTrue(verifier.verify(orderId, '|', "pay_1", hmac("key_secret", orderId + "|pay_1")));
+        assertTrue(verifier.verify("order_1", '|', "pay_1", hmac("key_secret", "order_1|pay_1")));
+    }
+
+    @Test
+    void threadsVerifyOnTheirOwnEngines() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String paymentId = "pay_" + i;
+                String signature = hmac("key_secret", "order_1|" + paymentId);
+                boolean tampered = i % 3 == 0;
+                results.add(pool.submit(() ->
+                        verifier.verify("order_1", '|', tampered ? paymentId + "x" : paymentId, signature) != tampered));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String hmac(String key, String message) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+    }
+}
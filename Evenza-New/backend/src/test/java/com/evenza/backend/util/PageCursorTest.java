@@ -0,0 +1,89 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.evenza.backend.DTO.CursorPage;
+import com.evenza.backend.model.Booking;
+
+class PageCursorTest {
+
+    @Test
+    void roundTripsTimeAndId() {
+        for (LocalDateTime createdAt : List.of(
+                LocalDateTime.of(2026, 10, 1, 12, 30, 15, 123_456_789),
+                LocalDateTime.of(2026, 10, 1, 12, 30, 15),
+                // toString drops zero seconds, parse has to take it back
+                LocalDateTime.of(2026, 10, 1, 12, 30))) {
+            PageCursor cursor = new PageCursor(createdAt, "7340032000123");
+
+            assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        }
+    }
+
+    @Test
+    void keepsIdsThatContainTheSeparator() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2026, 10, 1, 12, 30, 15), "TKT|42");
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new PageCursor(LocalDateTime.of(2026, 10, 1, 12, 30, 15), "~~~???>>>").encode();
+
+        assertFalse(token.contains("+") || token.contains("/") || token.contains("="), token);
+    }
+
+    @Test
+    void missingCursorIsTheFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+        assertNull(PageCursor.decode("  "));
+    }
+
+    @Test
+    void rejectsTokensThatAreNotCursors() {
+        for (String token : List.of("not base64!", encode("2026-10-01T12:30:15"), encode("|42"),
+                encode("2026-10-01T12:30:15|"), encode("yesterday|42"))) {
+            assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token), token);
+        }
+    }
+
+    @Test
+    void pageSizeStaysWithinBounds() {
+        assertEquals(PageCursor.DEFAULT_PAGE_SIZE, PageCursor.pageSize(null));
+        assertEquals(PageCursor.DEFAULT_PAGE_SIZE, PageCursor.pageSize(0));
+        assertEquals(5, PageCursor.pageSize(5));
+        assertEquals(PageCursor.MAX_PAGE_SIZE, PageCursor.pageSize(PageCursor.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void cursorOfACachedBookingHasTheSecondTheDatabaseStores() {
+        // The cache pages objects that never went through the database
+        Booking newest = new Booking();
+        newest.setId(2L);
+        newest.setCreatedAt(LocalDateTime.of(2026, 10, 1, 12, 30, 15, 700_000_000));
+        Booking oldest = new Booking();
+        oldest.setId(1L);
+
+        CursorPage<Booking> page = CursorPage.of(List.of(newest, oldest), 1, Booking::getCreatedAt, Booking::getId);
+
+        PageCursor next = PageCursor.decode(page.nextCursor());
+        assertEquals(new PageCursor(LocalDateTime.of(2026, 10, 1, 12, 30, 15), "2"), next);
+        assertEquals(0, oldest.getCreatedAt().getNano());
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
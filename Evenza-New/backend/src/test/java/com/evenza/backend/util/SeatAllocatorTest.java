@@ -0,0 +1,97 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SeatAllocatorTest {
+
+    // Cinema style: one section, rows A and B of 10 seats
+    private final VenueLayout cinema = VenueLayout.of(List.of(
+            new VenueLayout.SectionGroup("STANDARD", null, "AB", 10, 100)));
+
+    // Stadium style: EXECUTIVE-1, EXECUTIVE-2 and STANDARD-1, one row of 4 seats each
+    private final VenueLayout stadium = VenueLayout.of(List.of(
+            new VenueLayout.SectionGroup("EXECUTIVE", 2, "A", 4, 200),
+            new VenueLayout.SectionGroup("STANDARD", 1, "A", 4, 100)));
+
+    @Test
+    void emptyVenueSeatsThePartyInTheMiddleOfTheFrontRow() {
+        SeatAllocator.Allocation allocation = allocate(cinema, taken(cinema), 4, false);
+
+        assertEquals(List.of("A4", "A5", "A6", "A7"), allocation.seatIds());
+        assertFalse(allocation.split());
+        assertEquals(400.0, allocation.amount());
+    }
+
+    @Test
+    void picksTheFreeRunClosestToTheMiddle() {
+        SeatAllocator.Allocation allocation = allocate(cinema, taken(cinema, "A5"), 2, false);
+
+        assertEquals(List.of("A6", "A7"), allocation.seatIds());
+    }
+
+    @Test
+    void movesBackARowWhenTheFrontRowIsFragmented() {
+        SeatAllocator.Allocation allocation = allocate(cinema, taken(cinema, "A4", "A8"), 4, false);
+
+        assertEquals(List.of("B4", "B5", "B6", "B7"), allocation.seatIds());
+        assertFalse(allocation.split());
+    }
+
+    @Test
+    void splitsAcrossTheLargestRunsWhenNoRowFits() {
+        BitSet taken = taken(cinema, "A4", "A8", "B4", "B8");
+
+        assertNull(allocate(cinema, taken, 4, false));
+        SeatAllocator.Allocation allocation = allocate(cinema, taken, 4, true);
+        assertEquals(List.of("A1", "A2", "A3", "A5"), allocation.seatIds());
+        assertTrue(allocation.split());
+    }
+
+    @Test
+    void onlyEligibleSectionsArePickedFrom() {
+        SeatAllocator.Allocation allocation = SeatAllocator.allocate(stadium, taken(stadium), 2,
+                section -> section.price() <= 150, false);
+
+        assertEquals(List.of("STANDARD-1-A2", "STANDARD-1-A3"), allocation.seatIds());
+        assertEquals(200.0, allocation.amount());
+    }
+
+    @Test
+    void splitsAcrossSectionsWhenNoSectionHasRoom() {
+        BitSet taken = taken(stadium, "EXECUTIVE-1-A3", "EXECUTIVE-2-A3");
+
+        SeatAllocator.Allocation allocation = SeatAllocator.allocate(stadium, taken, 5,
+                section -> section.category().equals("EXECUTIVE"), true);
+
+        assertEquals(List.of("EXECUTIVE-1-A1", "EXECUTIVE-1-A2", "EXECUTIVE-2-A1", "EXECUTIVE-2-A2", "EXECUTIVE-1-A4"),
+                allocation.seatIds());
+        assertEquals(1000.0, allocation.amount());
+    }
+
+    @Test
+    void returnsNullWhenTooFewSeatsAreFree() {
+        BitSet taken = taken(stadium, "STANDARD-1-A1", "STANDARD-1-A2");
+
+        assertNull(SeatAllocator.allocate(stadium, taken, 3, section -> section.category().equals("STANDARD"), true));
+    }
+
+    private static SeatAllocator.Allocation allocate(VenueLayout layout, BitSet taken, int quantity, boolean allowSplit) {
+        return SeatAllocator.allocate(layout, taken, quantity, section -> true, allowSplit);
+    }
+
+    private static BitSet taken(VenueLayout layout, String... seatIds) {
+        BitSet taken = new BitSet(layout.getSeatCount());
+        for (String seatId : seatIds) {
+            taken.set(layout.positionOf(seatId));
+        }
+        return taken;
+    }
+}
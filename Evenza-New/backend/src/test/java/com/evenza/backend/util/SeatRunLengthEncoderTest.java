@@ -0,0 +1,42 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SeatRunLengthEncoderTest {
+
+    @Test
+    void consecutiveSeatsCollapseIntoRuns() {
+        assertEquals("A1~3,A5,B2", SeatRunLengthEncoder.encode(List.of("B2", "A3", "A1", "A5", "A2")));
+    }
+
+    @Test
+    void prefixesKeepTheirOwnRuns() {
+        assertEquals("EXECUTIVE-1-A7~8,EXECUTIVE-2-A9", SeatRunLengthEncoder.encode(
+                List.of("EXECUTIVE-1-A7", "EXECUTIVE-2-A9", "EXECUTIVE-1-A8")));
+    }
+
+    @Test
+    void runsFollowTheNumbersNotTheText() {
+        assertEquals("A9~11", SeatRunLengthEncoder.encode(List.of("A10", "A9", "A11")));
+    }
+
+    @Test
+    void duplicatesAreEncodedOnce() {
+        assertEquals("A1~2", SeatRunLengthEncoder.encode(List.of("A1", "A2", "A1")));
+    }
+
+    @Test
+    void seatsWithoutAPlainNumberAreWrittenAsTheyAre() {
+        assertEquals("A1,A01,BOX,X1234567890", SeatRunLengthEncoder.encode(
+                List.of("BOX", "A01", "X1234567890", "A1")));
+    }
+
+    @Test
+    void noSeatsEncodeAsAnEmptyString() {
+        assertEquals("", SeatRunLengthEncoder.encode(List.of()));
+    }
+}
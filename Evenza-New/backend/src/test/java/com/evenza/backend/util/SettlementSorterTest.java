@@ -0,0 +1,104 @@
+package com.evenza.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.evenza.backend.DTO.SettlementRecord;
+
+class SettlementSorterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergesSortedRunsIntoOneFile() throws Exception {
+        Path input = write("settlement.csv",
+                "entity_id,type,amount",
+                "pay_e,payment,5.00",
+                "pay_b,payment,20.50",
+                "rfnd_1,refund,3.00",
+                "pay_d,payment,1",
+                "pay_a,payment,100.00",
+                "pay_c,payment,7.25",
+                "pay_b,payment,20.50");
+
+        SettlementSorter.Sorted sorted = SettlementSorter.sort(input, work(), 2);
+
+        assertEquals(6, sorted.records());
+        assertEquals(1, sorted.skipped());
+        assertEquals(List.of(
+                new SettlementRecord("pay_a", 10000, 6),
+                new SettlementRecord("pay_b", 2050, 3),
+                new SettlementRecord("pay_b", 2050, 8),
+                new SettlementRecord("pay_c", 725, 7),
+                new SettlementRecord("pay_d", 100, 5),
+                new SettlementRecord("pay_e", 500, 2)), read(sorted.file()));
+    }
+
+    @Test
+    void quotedIdsSurviveTheRuns() throws Exception {
+        Path input = write("settlement.csv",
+                "payment_id,amount",
+                "\"pay,2\",2.00",
+                "\"pay \"\"1\"\"\",1.00",
+                "pay_3,3.00");
+
+        SettlementSorter.Sorted sorted = SettlementSorter.sort(input, work(), 1);
+
+        assertEquals(List.of(
+                new SettlementRecord("pay \"1\"", 100, 3),
+                new SettlementRecord("pay,2", 200, 2),
+                new SettlementRecord("pay_3", 300, 4)), read(sorted.file()));
+    }
+
+    @Test
+    void fileThatFitsOneRunIsSortedInMemory() throws Exception {
+        Path input = write("settlement.csv", "payment_id,amount", "pay_b,2", "pay_a,1");
+
+        SettlementSorter.Sorted sorted = SettlementSorter.sort(input, work(), 10);
+
+        assertEquals(List.of("run-0.csv"), listWork());
+        assertEquals(List.of(new SettlementRecord("pay_a", 100, 3), new SettlementRecord("pay_b", 200, 2)),
+                read(sorted.file()));
+    }
+
+    @Test
+    void headerOnlyFileSortsToNoRecords() throws Exception {
+        Path input = write("settlement.csv", "payment_id,amount");
+
+        SettlementSorter.Sorted sorted = SettlementSorter.sort(input, work(), 10);
+
+        assertEquals(0, sorted.records());
+        assertEquals(List.of(), read(sorted.file()));
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        return Files.write(dir.resolve(name), List.of(lines));
+    }
+
+    private Path work() throws Exception {
+        return Files.createDirectories(dir.resolve("work"));
+    }
+
+    private List<String> listWork() throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve("work"))) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<SettlementRecord> read(Path file) throws Exception {
+        List<SettlementRecord> records = new ArrayList<>();
+        try (SettlementCsvReader reader = new SettlementCsvReader(file)) {
+            reader.forEachRemaining(records::add);
+        }
+        return records;
+    }
+}
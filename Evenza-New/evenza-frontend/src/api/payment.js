@@ -3,10 +3,14 @@ import axios from "axios";
 const BASE_URL = "http://localhost:8080/api";
 
 // Create Razorpay order
-export const createPaymentOrder = async (amount) => {
+// entityType, entityId and userId are stored as order notes for the payment webhook
+export const createPaymentOrder = async (amount, { entityType, entityId, userId } = {}) => {
   try {
     const response = await axios.post(`${BASE_URL}/payment/create-order`, {
       amount,
+      entityType,
+      entityId,
+      userId,
     });
     return response.data;
   } catch (error) {
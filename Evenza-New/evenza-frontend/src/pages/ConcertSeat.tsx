@@ -147,7 +147,8 @@ function App() {
           'Content-Type': 'application/json',
           'Authorization': `Bearer ${token}`
         },
-        body: JSON.stringify({ amount: selectedCategory.price })
+        // Stored as order notes, so the payment webhook can attribute the payment
+        body: JSON.stringify({ amount: selectedCategory.price, entityType: "CONCERT", entityId: concertId, userId })
       });
 
       if (!res.ok) {
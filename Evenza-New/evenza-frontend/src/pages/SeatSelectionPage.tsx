@@ -183,7 +183,8 @@ export default function SeatSelectionPage() {
       const orderResponse = await fetch('http://localhost:8080/api/payment/create-order', {
         method: 'POST',
         headers: { 'Content-Type': 'application/json', ...(token && { 'Authorization': `Bearer ${token}` }) },
-        body: JSON.stringify({ amount: totalAmount })
+        // Stored as order notes, so the payment webhook can attribute the payment
+        body: JSON.stringify({ amount: totalAmount, entityType, entityId, userId })
       });
       const order = await orderResponse.json();
 
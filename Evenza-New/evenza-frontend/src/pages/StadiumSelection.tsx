@@ -70,10 +70,16 @@ function App() {
   }, [event]);
 
   useEffect(() => {
-    axios.get<string[]>('http://localhost:8080/api/bookings')
+    const eventId = event?.id || new URLSearchParams(window.location.search).get('id') || 'default-sport-id';
+    axios.get<string[]>('http://localhost:8080/api/bookings', {
+      params: {
+        entityType: event?.category?.toUpperCase() || 'SPORT',
+        entityId: eventId.toString()
+      }
+    })
       .then(response => setBookedSeats(new Set(response.data)))
       .catch(err => console.error('Error fetching booked seats:', err));
-  }, []);
+  }, [event]);
 
   const generateSeats = (sectionId: string, rowCount: number, seatsPerRow: number): Seat[] => {
     const seats: Seat[] = [];
@@ -170,7 +176,11 @@ function App() {
       }
       
       const response = await axios.post('http://localhost:8080/api/payment/create-order', {
-        amount: totalAmount // Pass the amount directly in INR
+        amount: totalAmount, // Pass the amount directly in INR
+        // Stored as order notes, so the payment webhook can attribute the payment
+        entityType: "SPORTS",
+        entityId: eventId?.toString(),
+        userId
       }, {
         headers: {
           'Authorization': `Bearer ${token}`,